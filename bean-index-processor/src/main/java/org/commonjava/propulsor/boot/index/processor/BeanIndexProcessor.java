@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.index.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the bean index (read by propulsor-core's BeanIndex) for the classes being compiled, following the bean
+ * discovery mode of the META-INF/beans.xml among the resources: in "annotated" mode (also used when there is no
+ * beans.xml) only classes with a bean defining annotation are indexed, in "all" mode every class that can be a managed
+ * bean, and in "none" mode nothing. A module gets an index only if it lists this artifact in its
+ * annotationProcessorPaths.
+ *
+ * The index covers one compilation, so a partial recompile (as some IDEs do) leaves it incomplete; a full build fixes
+ * that.
+ */
+@SupportedAnnotationTypes( "*" )
+public class BeanIndexProcessor
+        extends AbstractProcessor
+{
+    /**
+     * Must match BeanIndex.RESOURCE in propulsor-core, which this artifact doesn't depend on.
+     */
+    static final String INDEX = "META-INF/propulsor/beans.idx";
+
+    private static final String BEANS_XML = "META-INF/beans.xml";
+
+    private static final Pattern DISCOVERY_MODE = Pattern.compile( "bean-discovery-mode\\s*=\\s*\"(\\w+)\"" );
+
+    private static final Set<String> BEAN_DEFINING_ANNOTATIONS = new HashSet<>(
+            Arrays.asList( "javax.enterprise.context.ApplicationScoped", "javax.enterprise.context.SessionScoped",
+                           "javax.enterprise.context.ConversationScoped", "javax.enterprise.context.RequestScoped",
+                           "javax.enterprise.context.Dependent", "javax.interceptor.Interceptor",
+                           "javax.decorator.Decorator" ) );
+
+    private static final Set<String> BEAN_DEFINING_META_ANNOTATIONS = new HashSet<>(
+            Arrays.asList( "javax.enterprise.inject.Stereotype", "javax.enterprise.context.NormalScope" ) );
+
+    private static final String DECORATOR = "javax.decorator.Decorator";
+
+    private static final String VETOED = "javax.enterprise.inject.Vetoed";
+
+    private static final String INJECT = "javax.inject.Inject";
+
+    private static final String EXTENSION = "javax.enterprise.inject.spi.Extension";
+
+    private final Set<String> beans = new TreeSet<>();
+
+    private String mode;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv )
+    {
+        if ( mode == null )
+        {
+            mode = readDiscoveryMode();
+        }
+
+        if ( roundEnv.processingOver() )
+        {
+            writeIndex();
+        }
+        else if ( !"none".equals( mode ) )
+        {
+            roundEnv.getRootElements().forEach( this::collect );
+        }
+
+        // never claim the annotations; other processors may want them too
+        return false;
+    }
+
+    private void collect( final Element element )
+    {
+        if ( !element.getKind().isClass() && !element.getKind().isInterface() )
+        {
+            return;
+        }
+
+        final TypeElement type = (TypeElement) element;
+        if ( isBean( type ) )
+        {
+            beans.add( processingEnv.getElementUtils().getBinaryName( type ).toString() );
+        }
+
+        ElementFilter.typesIn( type.getEnclosedElements() ).forEach( this::collect );
+    }
+
+    private boolean isBean( final TypeElement type )
+    {
+        if ( type.getKind() != ElementKind.CLASS || !isStatic( type ) || hasAnnotation( type, VETOED )
+                || !hasBeanConstructor( type ) || isExtension( type ) )
+        {
+            return false;
+        }
+
+        if ( type.getModifiers().contains( Modifier.ABSTRACT ) && !hasAnnotation( type, DECORATOR ) )
+        {
+            return false;
+        }
+
+        return "all".equals( mode ) || hasBeanDefiningAnnotation( type );
+    }
+
+    private boolean isStatic( final TypeElement type )
+    {
+        final NestingKind nesting = type.getNestingKind();
+        if ( nesting == NestingKind.TOP_LEVEL )
+        {
+            return true;
+        }
+
+        return nesting == NestingKind.MEMBER && ( type.getModifiers().contains( Modifier.STATIC )
+                || type.getEnclosingElement().getKind().isInterface() );
+    }
+
+    private boolean hasBeanConstructor( final TypeElement type )
+    {
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn( type.getEnclosedElements() );
+        return constructors.stream()
+                           .anyMatch( c -> c.getParameters().isEmpty() || hasAnnotation( c, INJECT ) );
+    }
+
+    private boolean isExtension( final TypeElement type )
+    {
+        final TypeElement extension = processingEnv.getElementUtils().getTypeElement( EXTENSION );
+        return extension != null && processingEnv.getTypeUtils()
+                                                 .isAssignable( processingEnv.getTypeUtils().erasure( type.asType() ),
+                                                                extension.asType() );
+    }
+
+    private boolean hasBeanDefiningAnnotation( final TypeElement type )
+    {
+        for ( final AnnotationMirror mirror : type.getAnnotationMirrors() )
+        {
+            final TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if ( BEAN_DEFINING_ANNOTATIONS.contains( annotation.getQualifiedName().toString() ) )
+            {
+                return true;
+            }
+
+            for ( final AnnotationMirror meta : annotation.getAnnotationMirrors() )
+            {
+                final TypeElement metaType = (TypeElement) meta.getAnnotationType().asElement();
+                if ( BEAN_DEFINING_META_ANNOTATIONS.contains( metaType.getQualifiedName().toString() ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasAnnotation( final Element element, final String name )
+    {
+        return element.getAnnotationMirrors()
+                      .stream()
+                      .anyMatch( m -> ( (TypeElement) m.getAnnotationType().asElement() ).getQualifiedName()
+                                                                                          .contentEquals( name ) );
+    }
+
+    /**
+     * @return the bean-discovery-mode of the beans.xml copied to the class output; "all" if it doesn't give one, as
+     * in CDI 1.x, and "annotated" if there is no beans.xml, as for implicit bean archives
+     */
+    private String readDiscoveryMode()
+    {
+        final CharSequence beansXml;
+        try
+        {
+            final FileObject resource =
+                    processingEnv.getFiler().getResource( StandardLocation.CLASS_OUTPUT, "", BEANS_XML );
+            beansXml = resource.getCharContent( true );
+        }
+        catch ( final IOException | IllegalArgumentException e )
+        {
+            return "annotated";
+        }
+
+        final Matcher matcher = DISCOVERY_MODE.matcher( beansXml );
+        return matcher.find() ? matcher.group( 1 ) : "all";
+    }
+
+    private void writeIndex()
+    {
+        if ( beans.isEmpty() )
+        {
+            return;
+        }
+
+        try
+        {
+            final FileObject index =
+                    processingEnv.getFiler().createResource( StandardLocation.CLASS_OUTPUT, "", INDEX );
+            try (Writer writer = index.openWriter())
+            {
+                for ( final String bean : beans )
+                {
+                    writer.write( bean );
+                    writer.write( '\n' );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            processingEnv.getMessager()
+                         .printMessage( Diagnostic.Kind.WARNING,
+                                        "Cannot write bean index " + INDEX + ": " + e.getMessage() );
+        }
+    }
+}
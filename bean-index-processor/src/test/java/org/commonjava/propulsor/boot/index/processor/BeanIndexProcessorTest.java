@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.index.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BeanIndexProcessorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void annotatedModeIndexesBeanDefiningAnnotationsOnly()
+            throws Exception
+    {
+        File classes = compile( null );
+
+        assertThat( load( classes ),
+                    equalTo( Arrays.asList( "test.Scoped", "test.Stereotyped", "test.Stereotyped$Nested" ) ) );
+    }
+
+    @Test
+    public void allModeIndexesEveryPossibleBean()
+            throws Exception
+    {
+        File classes = compile( "bean-discovery-mode=\"all\"" );
+
+        assertThat( load( classes ),
+                    equalTo( Arrays.asList( "test.Injected", "test.Plain", "test.Scoped", "test.Stereotyped",
+                                            "test.Stereotyped$Nested" ) ) );
+    }
+
+    @Test
+    public void noneModeIndexesNothing()
+            throws Exception
+    {
+        File classes = compile( "bean-discovery-mode=\"none\"" );
+
+        assertThat( load( classes ).isEmpty(), equalTo( true ) );
+    }
+
+    private File compile( String discoveryMode )
+            throws IOException
+    {
+        File sources = temp.newFolder( "src" );
+        File classes = temp.newFolder( "classes" );
+
+        if ( discoveryMode != null )
+        {
+            write( new File( classes, "META-INF/beans.xml" ), "<beans " + discoveryMode + "/>" );
+        }
+
+        List<String> args = new ArrayList<>( Arrays.asList( "-proc:only", "-processor",
+                                                            BeanIndexProcessor.class.getName(), "-classpath",
+                                                            System.getProperty( "java.class.path" ), "-d",
+                                                            classes.getPath() ) );
+        args.add( write( new File( sources, "test/Scoped.java" ),
+                         "package test; @javax.enterprise.context.ApplicationScoped public class Scoped {}" ) );
+        args.add( write( new File( sources, "test/Role.java" ),
+                         "package test; @javax.enterprise.inject.Stereotype @javax.enterprise.context.RequestScoped "
+                                 + "@java.lang.annotation.Retention( java.lang.annotation.RetentionPolicy.RUNTIME ) "
+                                 + "public @interface Role {}" ) );
+        args.add( write( new File( sources, "test/Stereotyped.java" ),
+                         "package test; @Role public class Stereotyped { "
+                                 + "@javax.enterprise.context.Dependent public static class Nested {} "
+                                 + "@javax.enterprise.context.Dependent public class Inner {} }" ) );
+        args.add( write( new File( sources, "test/Plain.java" ), "package test; public class Plain {}" ) );
+        args.add( write( new File( sources, "test/Injected.java" ),
+                         "package test; public class Injected { @javax.inject.Inject Injected( Plain p ) {} }" ) );
+        args.add( write( new File( sources, "test/NoBeanConstructor.java" ),
+                         "package test; public class NoBeanConstructor { NoBeanConstructor( Plain p ) {} }" ) );
+        args.add( write( new File( sources, "test/Abstract.java" ),
+                         "package test; public abstract class Abstract {}" ) );
+        args.add( write( new File( sources, "test/Ext.java" ),
+                         "package test; public class Ext implements javax.enterprise.inject.spi.Extension {}" ) );
+        args.add( write( new File( sources, "test/Vetoed.java" ),
+                         "package test; @javax.enterprise.inject.Vetoed public class Vetoed {}" ) );
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat( compiler.run( null, null, null, args.toArray( new String[0] ) ), equalTo( 0 ) );
+
+        return classes;
+    }
+
+    private static List<String> load( File classes )
+            throws IOException
+    {
+        File index = new File( classes, BeanIndexProcessor.INDEX );
+        return index.exists() ? Files.readAllLines( index.toPath(), StandardCharsets.UTF_8 ) : new ArrayList<>();
+    }
+
+    private static String write( File file, String content )
+            throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+        return file.getPath();
+    }
+}
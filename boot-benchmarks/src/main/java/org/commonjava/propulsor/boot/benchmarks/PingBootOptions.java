@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.benchmarks;
+
+import org.commonjava.propulsor.boot.BootOptions;
+
+import javax.enterprise.context.Dependent;
+
+/**
+ * Boot options of the ping application {@link TimeToFirstRequest} starts; found by {@link
+ * org.commonjava.propulsor.boot.Booter#main(String[])} through the service loader, and a bean since Booter looks
+ * them up in the container too.
+ */
+@Dependent
+public class PingBootOptions
+        extends BootOptions
+{
+    public static final String APPLICATION_NAME = "ping";
+
+    public PingBootOptions()
+    {
+        super( APPLICATION_NAME, null );
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.benchmarks;
+
+import org.commonjava.propulsor.config.ConfigurationException;
+import org.commonjava.propulsor.config.ConfigurationRegistry;
+import org.commonjava.propulsor.config.DefaultConfigurationRegistry;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Produces;
+
+/**
+ * The ping application has no configuration sections, but the configuration reader beans from
+ * propulsor-configuration-dotconf still need a registry to dispatch to.
+ */
+@ApplicationScoped
+public class PingConfiguration
+{
+    @Produces
+    @ApplicationScoped
+    public ConfigurationRegistry getConfigurationRegistry()
+            throws ConfigurationException
+    {
+        return new DefaultConfigurationRegistry();
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.benchmarks;
+
+import io.undertow.servlet.Servlets;
+import io.undertow.servlet.api.DeploymentInfo;
+import org.commonjava.propulsor.deploy.undertow.UndertowDeploymentProvider;
+
+import javax.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+public class PingDeploymentProvider
+        implements UndertowDeploymentProvider
+{
+    public static final String PATH = "/ping";
+
+    @Override
+    public DeploymentInfo getDeploymentInfo()
+    {
+        return new DeploymentInfo().addServlet( Servlets.servlet( "ping", PingServlet.class ).addMapping( PATH ) );
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.benchmarks;
+
+import org.commonjava.propulsor.boot.Booter;
+import org.commonjava.propulsor.boot.cds.AppCds;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time-to-first-request of a minimal Propulsor application (Weld, Undertow and one servlet), with and without
+ * an AppCDS archive from a training run: the time from launching the JVM until {@link PingDeploymentProvider#PATH}
+ * first answers. Launches alternate between the two, so both see the same machine conditions. Both boot Weld from the
+ * bean index, which is what lets the application run from a shaded jar.
+ *
+ * Usage:
+ * <pre>
+ * java -jar target/boot-benchmarks.jar [runs]
+ * </pre>
+ */
+public final class TimeToFirstRequest
+{
+    private static final int DEFAULT_RUNS = 5;
+
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private static final long POLL_MILLIS = 5;
+
+    private TimeToFirstRequest()
+    {
+    }
+
+    public static void main( final String[] args )
+            throws IOException, InterruptedException
+    {
+        final int runs = args.length > 0 ? Integer.parseInt( args[0] ) : DEFAULT_RUNS;
+        final String classpath = System.getProperty( "java.class.path" );
+        final Path work = Files.createTempDirectory( "time-to-first-request" );
+
+        final List<String> options = new ArrayList<>();
+        options.add( "-D" + PingBootOptions.APPLICATION_NAME + ".home=" + work );
+        options.add( "-D" + Booter.BEAN_DISCOVERY_PROP + "=" + Booter.BEAN_DISCOVERY_INDEX );
+        if ( Runtime.version().feature() >= 16 )
+        {
+            // Weld defines its proxies through ClassLoader.defineClass
+            options.add( "--add-opens=java.base/java.lang=ALL-UNNAMED" );
+        }
+
+        final List<String> training = new ArrayList<>( options );
+        training.add( "-D" + Booter.BOOT_TRAINING_PATHS_PROP + "=" + PingDeploymentProvider.PATH );
+        final Path archive = AppCds.createArchive( work.resolve( "ping.jsa" ), training, classpath,
+                                                   Booter.class.getName(),
+                                                   Arrays.asList( "--port", Integer.toString( findPort() ) ) );
+
+        final List<String> shared = new ArrayList<>( options );
+        shared.addAll( AppCds.getRuntimeOptions( archive ) );
+
+        final long[] without = new long[runs];
+        final long[] with = new long[runs];
+        for ( int i = 0; i < runs; i++ )
+        {
+            without[i] = measure( options, classpath, work.resolve( "without-" + i + ".log" ).toFile() );
+            with[i] = measure( shared, classpath, work.resolve( "with-" + i + ".log" ).toFile() );
+            System.out.printf( "Run %d: without archive %dms, with archive %dms%n", i + 1, without[i], with[i] );
+        }
+
+        report( "Without archive", without );
+        report( "With archive", with );
+        System.out.printf( "Median speedup: %.2fx (logs and archive in: %s)%n",
+                           (double) median( without ) / median( with ), work );
+    }
+
+    /**
+     * @return milliseconds from launching the application until it answered its first request
+     */
+    private static long measure( final List<String> options, final String classpath, final File log )
+            throws IOException, InterruptedException
+    {
+        final int port = findPort();
+        final List<String> command = new ArrayList<>();
+        command.add( AppCds.getJava() );
+        command.addAll( options );
+        command.add( "-cp" );
+        command.add( classpath );
+        command.add( Booter.class.getName() );
+        command.add( "--port" );
+        command.add( Integer.toString( port ) );
+
+        final URL url = new URL( "http://localhost:" + port + PingDeploymentProvider.PATH );
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder( command ).redirectErrorStream( true ).redirectOutput( log ).start();
+        try
+        {
+            while ( System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos( TIMEOUT_MILLIS ) )
+            {
+                if ( !process.isAlive() )
+                {
+                    throw new IllegalStateException(
+                            "Application exited with: " + process.exitValue() + "; see: " + log );
+                }
+
+                if ( ping( url ) )
+                {
+                    return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+                }
+
+                Thread.sleep( POLL_MILLIS );
+            }
+
+            throw new IllegalStateException( "No answer within " + TIMEOUT_MILLIS + "ms; see: " + log );
+        }
+        finally
+        {
+            process.destroy();
+            if ( !process.waitFor( 30, TimeUnit.SECONDS ) )
+            {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean ping( final URL url )
+    {
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = (HttpURLConnection) url.openConnection();
+            if ( connection.getResponseCode() != HttpURLConnection.HTTP_OK )
+            {
+                return false;
+            }
+
+            try (InputStream in = connection.getInputStream())
+            {
+                in.transferTo( OutputStream.nullOutputStream() );
+            }
+            return true;
+        }
+        catch ( final IOException e )
+        {
+            return false;
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static int findPort()
+            throws IOException
+    {
+        try (ServerSocket socket = new ServerSocket( 0 ))
+        {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report( final String name, final long[] millis )
+    {
+        final long[] sorted = millis.clone();
+        Arrays.sort( sorted );
+        System.out.printf( "%s: median %dms, min %dms, max %dms%n", name, median( sorted ), sorted[0],
+                           sorted[sorted.length - 1] );
+    }
+
+    private static long median( final long[] millis )
+    {
+        final long[] sorted = millis.clone();
+        Arrays.sort( sorted );
+        return sorted[sorted.length / 2];
+    }
+}
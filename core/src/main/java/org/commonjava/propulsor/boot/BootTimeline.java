@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Records how long each step of the boot takes: Weld initialization and configuration in {@link Booter}, each lifecycle
+ * action, and each deployment provider. Every step records its wall time and the CPU time of the thread that ran it,
+ * plus when it started relative to JVM start, so time spent before main() shows up as the offset of the first step.
+ *
+ * There is one timeline per JVM ({@link #get()}), since boot starts before there is a CDI container to hold it. The
+ * result can be written as JSON ({@link #writeJson(Writer)}) and is handed to listeners as steps complete, which is
+ * how it gets into the metric registry.
+ */
+public final class BootTimeline
+{
+    private static final BootTimeline INSTANCE = new BootTimeline();
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final boolean cpuSupported = threads.isCurrentThreadCpuTimeSupported();
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final long originNanos = System.nanoTime();
+
+    private final long originOffsetMillis = System.currentTimeMillis() - jvmStartMillis;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<Entry>> listeners = new CopyOnWriteArrayList<>();
+
+    BootTimeline()
+    {
+    }
+
+    public static BootTimeline get()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Start timing a step; it is recorded when the returned step is closed, on the same thread.
+     *
+     * @param category what kind of step this is, like "boot", "lifecycle" or "deploy"
+     */
+    public Step start( final String category, final String name )
+    {
+        return new Step( category, name );
+    }
+
+    /**
+     * @return the steps completed so far, in the order they completed
+     */
+    public List<Entry> getEntries()
+    {
+        return new ArrayList<>( entries );
+    }
+
+    /**
+     * Hand every completed step to the listener, starting with those already recorded.
+     */
+    public synchronized void addListener( final Consumer<Entry> listener )
+    {
+        entries.forEach( listener );
+        listeners.add( listener );
+    }
+
+    public synchronized void removeListener( final Consumer<Entry> listener )
+    {
+        listeners.remove( listener );
+    }
+
+    private synchronized void record( final Entry entry )
+    {
+        entries.add( entry );
+        listeners.forEach( listener -> listener.accept( entry ) );
+    }
+
+    /**
+     * Write the timeline as a JSON object, with the JVM start time and one element per step.
+     */
+    public void writeJson( final Writer out )
+            throws IOException
+    {
+        out.write( "{\"jvmStartMillis\":" );
+        out.write( Long.toString( jvmStartMillis ) );
+        out.write( ",\"steps\":[" );
+
+        boolean first = true;
+        for ( final Entry entry : entries )
+        {
+            if ( !first )
+            {
+                out.write( ',' );
+            }
+            first = false;
+
+            out.write( "\n{\"category\":" );
+            writeString( out, entry.category );
+            out.write( ",\"name\":" );
+            writeString( out, entry.name );
+            out.write( ",\"thread\":" );
+            writeString( out, entry.thread );
+            out.write( ",\"startMillis\":" );
+            out.write( Long.toString( entry.getStartMillis() ) );
+            out.write( ",\"wallMillis\":" );
+            out.write( Long.toString( entry.getWallMillis() ) );
+            out.write( ",\"cpuMillis\":" );
+            out.write( Long.toString( entry.getCpuMillis() ) );
+            out.write( ",\"failed\":" );
+            out.write( Boolean.toString( entry.failed ) );
+            out.write( '}' );
+        }
+
+        out.write( "]}\n" );
+        out.flush();
+    }
+
+    private static void writeString( final Writer out, final String value )
+            throws IOException
+    {
+        out.write( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                out.write( '\\' );
+                out.write( c );
+            }
+            else if ( c < 0x20 )
+            {
+                out.write( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                out.write( c );
+            }
+        }
+        out.write( '"' );
+    }
+
+    private long cpuNanos()
+    {
+        return cpuSupported ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * A step being timed. Close it on the thread that started it, once the step is done.
+     */
+    public final class Step
+            implements AutoCloseable
+    {
+        private final String category;
+
+        private final String name;
+
+        private final long startNanos = System.nanoTime();
+
+        private final long startCpuNanos = cpuNanos();
+
+        private boolean failed;
+
+        private boolean closed;
+
+        private Step( final String category, final String name )
+        {
+            this.category = category;
+            this.name = name;
+        }
+
+        /**
+         * Mark the step as failed; it is still recorded when closed.
+         */
+        public void failed()
+        {
+            failed = true;
+        }
+
+        @Override
+        public void close()
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+
+            long wall = System.nanoTime() - startNanos;
+            long cpu = startCpuNanos < 0 ? -1 : cpuNanos() - startCpuNanos;
+            long startMillis = originOffsetMillis + TimeUnit.NANOSECONDS.toMillis( startNanos - originNanos );
+
+            record( new Entry( category, name, Thread.currentThread().getName(), startMillis, wall, cpu, failed ) );
+        }
+    }
+
+    /**
+     * A completed step.
+     */
+    public static final class Entry
+    {
+        private final String category;
+
+        private final String name;
+
+        private final String thread;
+
+        private final long startMillis;
+
+        private final long wallNanos;
+
+        private final long cpuNanos;
+
+        private final boolean failed;
+
+        private Entry( final String category, final String name, final String thread, final long startMillis,
+                       final long wallNanos, final long cpuNanos, final boolean failed )
+        {
+            this.category = category;
+            this.name = name;
+            this.thread = thread;
+            this.startMillis = startMillis;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.failed = failed;
+        }
+
+        public String getCategory()
+        {
+            return category;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getThread()
+        {
+            return thread;
+        }
+
+        /**
+         * @return when the step started, in milliseconds since JVM start
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        public long getWallNanos()
+        {
+            return wallNanos;
+        }
+
+        public long getWallMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( wallNanos );
+        }
+
+        /**
+         * @return CPU time used by the thread that ran the step, or -1 if the JVM can't measure it
+         */
+        public long getCpuNanos()
+        {
+            return cpuNanos;
+        }
+
+        public long getCpuMillis()
+        {
+            return cpuNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis( cpuNanos );
+        }
+
+        public boolean isFailed()
+        {
+            return failed;
+        }
+
+        @Override
+        public String toString()
+        {
+            return category + ":" + name + " wall=" + getWallMillis() + "ms cpu=" + getCpuMillis() + "ms";
+        }
+    }
+}
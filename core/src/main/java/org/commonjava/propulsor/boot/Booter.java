@@ -15,6 +15,7 @@
  */
 package org.commonjava.propulsor.boot;
 
+import org.commonjava.propulsor.boot.index.BeanIndex;
 import org.commonjava.propulsor.config.Configurator;
 import org.commonjava.propulsor.config.ConfiguratorException;
 import org.commonjava.propulsor.deploy.DeployException;
@@ -29,8 +30,23 @@ import org.slf4j.LoggerFactory;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.spi.BeanManager;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.commonjava.propulsor.boot.BootStatus.ERR_LOAD_BOOT_OPTIONS;
 import static org.commonjava.propulsor.boot.BootStatus.ERR_PARSE_ARGS;
@@ -41,6 +57,48 @@ public class Booter
 {
     public static String BOOT_DEFAULTS_PROP = "boot.defaults";
 
+    /** System property naming a file to write the {@link BootTimeline} JSON report to, once start completes. */
+    public static final String BOOT_TIMELINE_PROP = "boot.timeline";
+
+    /**
+     * System property choosing how Weld finds the beans: {@link #BEAN_DISCOVERY_SCAN} (the default, unless bean
+     * classes were added with {@link #addBeanClasses(Class[])}), {@link #BEAN_DISCOVERY_INDEX} or
+     * {@link #BEAN_DISCOVERY_EXPLICIT}.
+     */
+    public static final String BEAN_DISCOVERY_PROP = "boot.bean.discovery";
+
+    /** Scan the classpath for bean archives, as Weld does by default. */
+    public static final String BEAN_DISCOVERY_SCAN = "scan";
+
+    /** Take the bean classes from the {@link BeanIndex} files written at build time, without scanning. */
+    public static final String BEAN_DISCOVERY_INDEX = "index";
+
+    /** Only use the bean classes given by {@link #BEAN_CLASSES_PROP} and {@link #addBeanClasses(Class[])}. */
+    public static final String BEAN_DISCOVERY_EXPLICIT = "explicit";
+
+    /** System property listing more bean classes, comma separated. */
+    public static final String BEAN_CLASSES_PROP = "boot.bean.classes";
+
+    /**
+     * System property listing the interceptors to enable, comma separated, when beans.xml files are not read (in the
+     * index and explicit modes). Interceptors with a {@link javax.annotation.Priority} are enabled anyway.
+     */
+    public static final String INTERCEPTORS_PROP = "boot.interceptors";
+
+    /**
+     * System property that, when true, makes {@link #runAndWait(BootOptions)} a training run: start, send a request to
+     * each of {@link #BOOT_TRAINING_PATHS_PROP}, then stop and exit. This loads the classes a real start and its first
+     * requests need, for recording a class data sharing archive (see {@link org.commonjava.propulsor.boot.cds.AppCds}).
+     */
+    public static final String BOOT_TRAINING_PROP = "boot.training";
+
+    /** System property listing the paths, comma separated, requested by a training run; "/" by default. */
+    public static final String BOOT_TRAINING_PATHS_PROP = "boot.training.paths";
+
+    private static final String BOOT_CATEGORY = "boot";
+
+    private static final String WELD_ISOLATION_PROP = "org.jboss.weld.se.archive.isolation";
+
     public static void main( final String[] args )
     {
         setUncaughtExceptionHandler();
@@ -65,6 +123,11 @@ public class Booter
                 {
                     Booter booter = new Booter();
                     booter.runAndWait( options );
+                    if ( Boolean.getBoolean( BOOT_TRAINING_PROP ) )
+                    {
+                        // leftover non-daemon threads must not keep a training run (and its archive dump) from ending
+                        System.exit( 0 );
+                    }
                 }
                 catch ( final BootException e )
                 {
@@ -172,6 +235,12 @@ public class Booter
 
     protected AppLifecycleManager lifecycleManager;
 
+    private final Set<Class<?>> beanClasses = new LinkedHashSet<>();
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    private final AtomicBoolean shutdownHookInstalled = new AtomicBoolean();
+
     @Override
     public void initialize( final BootOptions options ) throws BootException
     {
@@ -179,12 +248,17 @@ public class Booter
         this.options.setSystemProperties();
 
         weld = new Weld();
-        weld.property( "org.jboss.weld.se.archive.isolation", false );
+        weld.property( WELD_ISOLATION_PROP, false );
 
         // Weld shutdown hook might disturb application shutdown hooks. We need to disable it.
         weld.skipShutdownHook();
 
-        container = weld.initialize();
+        configureBeanDiscovery( weld );
+
+        try (BootTimeline.Step step = BootTimeline.get().start( BOOT_CATEGORY, "weld" ))
+        {
+            container = weld.initialize();
+        }
 
         // injectable version.
         final BootOptions cdiOptions = container.select( BootOptions.class ).get();
@@ -197,10 +271,121 @@ public class Booter
         logger.info( "\n\n\nStarted BeanManager: {}\n\n\n", bmgr );
     }
 
+    /**
+     * Declare bean classes for Weld. Unless {@link #BEAN_DISCOVERY_PROP} says otherwise, this switches to
+     * {@link #BEAN_DISCOVERY_EXPLICIT} mode, so these (and {@link #BEAN_CLASSES_PROP}) are the only beans.
+     */
+    public void addBeanClasses( final Class<?>... classes )
+    {
+        beanClasses.addAll( Arrays.asList( classes ) );
+    }
+
+    /**
+     * Set Weld up according to {@link #BEAN_DISCOVERY_PROP}. Outside of scan mode, discovery is disabled and Weld gets
+     * the bean classes handed to it, so container startup no longer depends on the size of the classpath.
+     */
+    protected void configureBeanDiscovery( final Weld weld )
+            throws BootException
+    {
+        final String mode = System.getProperty( BEAN_DISCOVERY_PROP,
+                                                beanClasses.isEmpty() ? BEAN_DISCOVERY_SCAN : BEAN_DISCOVERY_EXPLICIT );
+        final ClassLoader classLoader = getClass().getClassLoader();
+
+        final Set<String> names = new LinkedHashSet<>();
+        if ( BEAN_DISCOVERY_INDEX.equals( mode ) )
+        {
+            try
+            {
+                names.addAll( BeanIndex.load( classLoader ) );
+                for ( final String archive : BeanIndex.findUnindexedArchives( classLoader ) )
+                {
+                    logger.warn( "Bean archive: {} has no bean index; list its beans in: {}", archive,
+                                 BEAN_CLASSES_PROP );
+                }
+            }
+            catch ( final IOException e )
+            {
+                throw new BootException( "Failed to read bean indexes: %s", e, e.getMessage() );
+            }
+        }
+        else if ( !BEAN_DISCOVERY_EXPLICIT.equals( mode ) && !BEAN_DISCOVERY_SCAN.equals( mode ) )
+        {
+            throw new BootException( "Unknown %s: %s", BEAN_DISCOVERY_PROP, mode );
+        }
+
+        names.addAll( getClassNames( BEAN_CLASSES_PROP ) );
+
+        final Set<Class<?>> classes = new LinkedHashSet<>( loadClasses( names, classLoader ) );
+        classes.addAll( beanClasses );
+
+        if ( !BEAN_DISCOVERY_SCAN.equals( mode ) )
+        {
+            final List<Class<?>> interceptors = loadClasses( getClassNames( INTERCEPTORS_PROP ), classLoader );
+            weld.disableDiscovery();
+            // all beans go into one synthetic archive; without isolation, Weld drops that archive and its beans
+            weld.property( WELD_ISOLATION_PROP, true );
+            weld.enableInterceptors( interceptors.toArray( new Class<?>[0] ) );
+        }
+
+        if ( !classes.isEmpty() )
+        {
+            weld.addBeanClasses( classes.toArray( new Class<?>[0] ) );
+        }
+
+        logger.info( "Bean discovery: {}, with {} bean classes given", mode, classes.size() );
+    }
+
+    private static Set<String> getClassNames( final String property )
+    {
+        final Set<String> names = new LinkedHashSet<>();
+        final String value = System.getProperty( property );
+        if ( value != null )
+        {
+            for ( final String name : value.split( "," ) )
+            {
+                if ( !name.trim().isEmpty() )
+                {
+                    names.add( name.trim() );
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static List<Class<?>> loadClasses( final Set<String> names, final ClassLoader classLoader )
+            throws BootException
+    {
+        final List<Class<?>> classes = new ArrayList<>();
+        for ( final String name : names )
+        {
+            try
+            {
+                classes.add( Class.forName( name, false, classLoader ) );
+            }
+            catch ( final ClassNotFoundException | LinkageError e )
+            {
+                throw new BootException( "Cannot load bean class: %s", e, name );
+            }
+        }
+
+        return classes;
+    }
+
     @Override
     public void runAndWait( final BootOptions bootOptions ) throws BootException
     {
         start( bootOptions );
+        if ( Boolean.getBoolean( BOOT_TRAINING_PROP ) )
+        {
+            try (BootTimeline.Step step = BootTimeline.get().start( BOOT_CATEGORY, "training" ))
+            {
+                train( bootOptions );
+            }
+            stop();
+            return;
+        }
+
         addNotifyShutDownHook();
 
         logger.info( "Start waiting on {}", this );
@@ -218,6 +403,54 @@ public class Booter
         }
     }
 
+    /**
+     * Send a GET to each of the {@link #BOOT_TRAINING_PATHS_PROP} on the started server, so the classes serving a first
+     * request get loaded too. Whatever the responses are, the run goes on; it is only there to load classes.
+     */
+    protected void train( final BootOptions bootOptions )
+    {
+        String host = bootOptions.getBind();
+        if ( host == null || BootOptions.DEFAULT_BIND.equals( host ) )
+        {
+            host = "localhost";
+        }
+
+        String contextPath = bootOptions.getContextPath();
+        contextPath = contextPath == null || contextPath.isEmpty() ? "" : "/" + contextPath;
+
+        for ( final String path : System.getProperty( BOOT_TRAINING_PATHS_PROP, "/" ).split( "," ) )
+        {
+            final String trimmed = path.trim();
+            final String url = String.format( "http://%s:%d%s%s", host, bootOptions.getPort(), contextPath,
+                                              trimmed.startsWith( "/" ) ? trimmed : "/" + trimmed );
+            HttpURLConnection connection = null;
+            try
+            {
+                connection = (HttpURLConnection) new URL( url ).openConnection();
+                final int status = connection.getResponseCode();
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+                {
+                    if ( in != null )
+                    {
+                        in.transferTo( OutputStream.nullOutputStream() );
+                    }
+                }
+                logger.info( "Training request: {} returned: {}", url, status );
+            }
+            catch ( final IOException e )
+            {
+                logger.warn( "Training request: " + url + " failed: " + e.getMessage(), e );
+            }
+            finally
+            {
+                if ( connection != null )
+                {
+                    connection.disconnect();
+                }
+            }
+        }
+    }
+
     private void addNotifyShutDownHook()
     {
         Runtime.getRuntime().addShutdownHook( new Thread( () -> {
@@ -252,40 +485,74 @@ public class Booter
     public void start( final BootOptions bootOptions ) throws BootException
     {
         logger.info( "Starting, bootOptions: {}", bootOptions );
-        try
+        final BootTimeline timeline = BootTimeline.get();
+        try (BootTimeline.Step total = timeline.start( BOOT_CATEGORY, "start" ))
         {
             logger.info( "Initializing..." );
-            initialize( bootOptions );
-        }
-        catch ( final Throwable t )
-        {
-            throw new BootException( "Failed to initialize", t );
-        }
+            try (BootTimeline.Step step = timeline.start( BOOT_CATEGORY, "initialize" ))
+            {
+                initialize( bootOptions );
+            }
+            catch ( final Throwable t )
+            {
+                throw new BootException( "Failed to initialize", t );
+            }
 
-        logger.info( "Configuring..." );
-        try
-        {
-            config();
+            installShutdownHook();
+
+            logger.info( "Configuring..." );
+            try (BootTimeline.Step step = timeline.start( BOOT_CATEGORY, "config" ))
+            {
+                config();
+            }
+            catch ( final ConfiguratorException e )
+            {
+                throw new BootException( "Application config failed", e );
+            }
+
+            logger.info( "Lifecycle..." );
+            try (BootTimeline.Step step = timeline.start( BOOT_CATEGORY, "lifecycle" ))
+            {
+                startLifecycle();
+            }
+            catch ( AppLifecycleException e )
+            {
+                throw new BootException( "Application startup failed", e );
+            }
+
+            logger.info( "Deploying..." );
+            try (BootTimeline.Step step = timeline.start( BOOT_CATEGORY, "deploy" ))
+            {
+                deploy();
+            }
         }
-        catch ( final ConfiguratorException e )
+
+        logger.info( "Start complete!" );
+        reportTimeline( timeline );
+    }
+
+    /**
+     * Log the boot timeline, and write it to the file named by {@link #BOOT_TIMELINE_PROP} if that is set.
+     */
+    protected void reportTimeline( final BootTimeline timeline )
+    {
+        timeline.getEntries().forEach( entry -> logger.info( "Boot timeline: {}", entry ) );
+
+        final String file = System.getProperty( BOOT_TIMELINE_PROP );
+        if ( file == null )
         {
-            throw new BootException( "Application config failed", e );
+            return;
         }
 
-        logger.info( "Lifecycle..." );
-        try
+        try (Writer out = new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ))
         {
-            startLifecycle();
+            timeline.writeJson( out );
+            logger.info( "Boot timeline written to: {}", file );
         }
-        catch ( AppLifecycleException e )
+        catch ( final IOException e )
         {
-            throw new BootException( "Application startup failed", e );
+            logger.warn( "Failed to write boot timeline to: " + file, e );
         }
-
-        logger.info( "Deploying..." );
-        deploy();
-
-        logger.info( "Start complete!" );
     }
 
     @Override
@@ -318,7 +585,6 @@ public class Booter
         logger.info( "LifecycleManager: {}", lifecycleManager.getClass() );
 
         lifecycleManager.startup();
-        lifecycleManager.installShutdownHook();
     }
 
     @Override
@@ -336,21 +602,34 @@ public class Booter
         deployer.deploy( options );
     }
 
+    /**
+     * Shut down through a {@link ShutdownCoordinator}: drain and stop the deployer, run the shutdown actions, then shut
+     * Weld down, all within {@link ShutdownCoordinator#TIMEOUT_PROPERTY}. Only the first call does anything.
+     */
     @Override
     public void stop()
     {
-        if ( deployer != null )
-        {
-            deployer.stop();
-        }
-        if ( lifecycleManager != null )
+        if ( stopped.compareAndSet( false, true ) )
         {
-            lifecycleManager.stop();
+            newShutdownCoordinator().shutdown();
         }
-        if ( weld != null )
+    }
+
+    protected ShutdownCoordinator newShutdownCoordinator()
+    {
+        final Weld weld = this.weld;
+        return new ShutdownCoordinator( deployer, lifecycleManager, weld == null ? null : weld::shutdown );
+    }
+
+    /**
+     * Stop the application when the JVM exits. One hook runs the whole shutdown, so the deployer, the shutdown actions
+     * and Weld come down in order instead of racing each other in separate hooks.
+     */
+    private void installShutdownHook()
+    {
+        if ( shutdownHookInstalled.compareAndSet( false, true ) )
         {
-            weld.shutdown();
+            Runtime.getRuntime().addShutdownHook( new Thread( this::stop, "shutdown" ) );
         }
     }
-
 }
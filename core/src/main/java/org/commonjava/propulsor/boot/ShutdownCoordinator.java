@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot;
+
+import org.commonjava.propulsor.deploy.Deployer;
+import org.commonjava.propulsor.lifecycle.AppLifecycleManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shuts the application down in order, within one overall deadline: first the deployer stops taking requests and
+ * drains the ones in flight, then the shutdown actions run (concurrently where their dependencies allow, see
+ * {@link AppLifecycleManager#stop(long)}), and last the CDI container shuts down. Each step gets a share of the deadline
+ * and cannot hold up the ones after it past that; anything still running then is logged and left behind on a daemon
+ * thread.
+ */
+public class ShutdownCoordinator
+{
+    /** System property giving how long the whole shutdown may take. */
+    public static final String TIMEOUT_PROPERTY = "propulsor.shutdown.timeout.seconds";
+
+    public static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    /** System property giving how long in-flight requests get to complete. */
+    public static final String DRAIN_PROPERTY = "propulsor.shutdown.drain.seconds";
+
+    public static final long DEFAULT_DRAIN_SECONDS = 10;
+
+    /** How long the deployer gets to stop once drained, before the shutdown actions go ahead without it. */
+    private static final long DEPLOYER_STOP_MILLIS = 1000;
+
+    /** Most of the deadline kept back from the shutdown actions, so the container still gets to shut down. */
+    private static final long CONTAINER_RESERVE_MILLIS = 5000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Deployer deployer;
+
+    private final AppLifecycleManager lifecycleManager;
+
+    private final Runnable container;
+
+    private final long timeoutMillis;
+
+    private final long drainMillis;
+
+    /**
+     * Any of the parts may be null, if the application doesn't have one.
+     *
+     * @param container shuts the CDI container down
+     */
+    public ShutdownCoordinator( final Deployer deployer, final AppLifecycleManager lifecycleManager,
+                                final Runnable container, final long timeoutMillis, final long drainMillis )
+    {
+        this.deployer = deployer;
+        this.lifecycleManager = lifecycleManager;
+        this.container = container;
+        this.timeoutMillis = timeoutMillis;
+        this.drainMillis = drainMillis;
+    }
+
+    /**
+     * Use the timeouts given by {@link #TIMEOUT_PROPERTY} and {@link #DRAIN_PROPERTY}.
+     */
+    public ShutdownCoordinator( final Deployer deployer, final AppLifecycleManager lifecycleManager,
+                                final Runnable container )
+    {
+        this( deployer, lifecycleManager, container,
+              TimeUnit.SECONDS.toMillis( Long.getLong( TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_SECONDS ) ),
+              TimeUnit.SECONDS.toMillis( Long.getLong( DRAIN_PROPERTY, DEFAULT_DRAIN_SECONDS ) ) );
+    }
+
+    /**
+     * @return true if every step completed before the deadline, without failures
+     */
+    public boolean shutdown()
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+        final long actionsDeadline =
+                deadline - TimeUnit.MILLISECONDS.toNanos( Math.min( CONTAINER_RESERVE_MILLIS, timeoutMillis / 4 ) );
+        boolean clean = true;
+
+        if ( deployer != null )
+        {
+            final long deployerBudget = TimeUnit.MILLISECONDS.toNanos( drainMillis + DEPLOYER_STOP_MILLIS );
+            final long deployerDeadline = Math.min( actionsDeadline, start + deployerBudget );
+            final long drain = Math.min( drainMillis, remainingMillis( deployerDeadline ) );
+            clean = runBounded( "deployer", () -> {
+                if ( !deployer.drain( drain ) )
+                {
+                    logger.warn( "Stopping the deployer with requests still in flight" );
+                }
+                deployer.stop();
+            }, deployerDeadline );
+        }
+
+        if ( lifecycleManager != null )
+        {
+            final List<String> unfinished = lifecycleManager.stop( actionsDeadline );
+            if ( !unfinished.isEmpty() )
+            {
+                logger.warn( "Shutdown actions not completed: {}", unfinished );
+                clean = false;
+            }
+        }
+
+        if ( container != null )
+        {
+            clean = runBounded( "container", container, deadline ) && clean;
+        }
+
+        logger.info( "Shutdown {} in {}ms", clean ? "complete" : "incomplete",
+                     TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        return clean;
+    }
+
+    /**
+     * Run the step on a daemon thread, waiting for it until the deadline at most.
+     */
+    private boolean runBounded( final String name, final Runnable step, final long deadline )
+    {
+        final boolean[] failed = { false };
+        final Thread thread = new Thread( () -> {
+            try
+            {
+                step.run();
+            }
+            catch ( final RuntimeException e )
+            {
+                failed[0] = true;
+                logger.error( "Shutdown of the " + name + " failed: " + e.getMessage(), e );
+            }
+        }, "shutdown-" + name );
+        thread.setDaemon( true );
+        thread.start();
+
+        try
+        {
+            final long wait = remainingMillis( deadline );
+            if ( wait > 0 )
+            {
+                thread.join( wait );
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if ( thread.isAlive() )
+        {
+            logger.warn( "Shutdown of the {} did not complete in time; moving on without it", name );
+            thread.interrupt();
+            return false;
+        }
+
+        return !failed[0];
+    }
+
+    private static long remainingMillis( final long deadline )
+    {
+        return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() ) );
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.cds;
+
+import org.commonjava.propulsor.boot.Booter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates an AppCDS (application class data sharing) archive from a training run of the application (see
+ * {@link Booter#BOOT_TRAINING_PROP}), so production starts can map the classes Weld, Undertow, RESTEasy, Jackson and
+ * the application load at startup from the archive instead of loading and verifying them one by one.
+ *
+ * On JDK 13 and later the archive is dumped as the training run exits (-XX:ArchiveClassesAtExit); on JDK 11 and 12 the
+ * training run records the loaded classes, and a second JVM dumps the archive from that list. Either way, start the
+ * application with {@link #getRuntimeOptions(Path)} on the same JDK and the same classpath to use it. Only classes from
+ * jars are archived, so run from a packaged (e.g. shaded) jar, not from class directories.
+ *
+ * Usage, with the system properties the application normally starts with (they are passed on to the training run):
+ * <pre>
+ * java -Dapp.home=... -cp app.jar org.commonjava.propulsor.boot.cds.AppCds app.jsa [main class [args...]]
+ * </pre>
+ */
+public final class AppCds
+{
+    /** JVM options of this JVM not passed on to the training run, since they would conflict with the archiving. */
+    private static final List<String> CDS_OPTIONS =
+            Arrays.asList( "-Xshare", "-XX:SharedArchiveFile", "-XX:ArchiveClassesAtExit", "-XX:DumpLoadedClassList",
+                           "-XX:SharedClassListFile" );
+
+    private static final Logger logger = LoggerFactory.getLogger( AppCds.class );
+
+    private AppCds()
+    {
+    }
+
+    public static void main( final String[] args )
+            throws IOException, InterruptedException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println( "Usage: AppCds <archive> [<main class> [<args>...]]" );
+            System.exit( 1 );
+        }
+
+        final String mainClass = args.length > 1 ? args[1] : Booter.class.getName();
+        final List<String> appArgs = args.length > 2 ? Arrays.asList( args ).subList( 2, args.length )
+                : Collections.emptyList();
+
+        final Path archive = createArchive( Paths.get( args[0] ), getInheritedOptions(),
+                                            System.getProperty( "java.class.path" ), mainClass, appArgs );
+
+        System.out.printf( "Created %s; start with: %s%n", archive, String.join( " ", getRuntimeOptions( archive ) ) );
+    }
+
+    /**
+     * Run the training boot of the main class and dump the classes it loaded into the archive.
+     *
+     * @param javaOptions JVM options for the training run, like the system properties the application needs
+     * @return the archive
+     */
+    public static Path createArchive( final Path archive, final List<String> javaOptions, final String classpath,
+                                      final String mainClass, final List<String> args )
+            throws IOException, InterruptedException
+    {
+        warnAboutDirectories( classpath );
+        Files.deleteIfExists( archive );
+
+        final List<String> training = new ArrayList<>();
+        training.add( getJava() );
+        training.addAll( javaOptions );
+        training.add( "-D" + Booter.BOOT_TRAINING_PROP + "=true" );
+
+        if ( Runtime.version().feature() >= 13 )
+        {
+            training.add( "-XX:ArchiveClassesAtExit=" + archive );
+            run( training, classpath, mainClass, args );
+        }
+        else
+        {
+            final Path classList = Paths.get( archive + ".classlist" );
+            training.add( "-Xshare:off" );
+            training.add( "-XX:DumpLoadedClassList=" + classList );
+            run( training, classpath, mainClass, args );
+
+            final List<String> dump = new ArrayList<>();
+            dump.add( getJava() );
+            dump.add( "-Xshare:dump" );
+            dump.add( "-XX:SharedClassListFile=" + classList );
+            dump.add( "-XX:SharedArchiveFile=" + archive );
+            run( dump, classpath, null, Collections.emptyList() );
+        }
+
+        if ( !Files.exists( archive ) )
+        {
+            throw new IOException( "No class data sharing archive was written to: " + archive );
+        }
+
+        return archive;
+    }
+
+    /**
+     * @return the JVM options that start the application with the classes in the archive
+     */
+    public static List<String> getRuntimeOptions( final Path archive )
+    {
+        return Collections.singletonList( "-XX:SharedArchiveFile=" + archive );
+    }
+
+    /**
+     * @return the java launcher of the running JDK; the archive only works with the JDK that wrote it
+     */
+    public static String getJava()
+    {
+        return Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString();
+    }
+
+    private static List<String> getInheritedOptions()
+    {
+        final List<String> options = new ArrayList<>();
+        for ( final String option : ManagementFactory.getRuntimeMXBean().getInputArguments() )
+        {
+            if ( CDS_OPTIONS.stream().noneMatch( option::startsWith ) )
+            {
+                options.add( option );
+            }
+        }
+
+        return options;
+    }
+
+    private static void run( final List<String> command, final String classpath, final String mainClass,
+                             final List<String> args )
+            throws IOException, InterruptedException
+    {
+        final List<String> full = new ArrayList<>( command );
+        full.add( "-cp" );
+        full.add( classpath );
+        if ( mainClass != null )
+        {
+            full.add( mainClass );
+            full.addAll( args );
+        }
+
+        logger.info( "Running: {}", full );
+        final int exit = new ProcessBuilder( full ).inheritIO().start().waitFor();
+        if ( exit != 0 )
+        {
+            throw new IOException( "Exit status " + exit + " from: " + full );
+        }
+    }
+
+    private static void warnAboutDirectories( final String classpath )
+    {
+        for ( final String entry : classpath.split( File.pathSeparator ) )
+        {
+            if ( new File( entry ).isDirectory() )
+            {
+                logger.warn( "Classes in: {} cannot be archived; only classes from jars are", entry );
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bean class indexes written at build time by the processor in propulsor-bean-index-processor, one per jar (or classes
+ * directory), so Weld can be handed the bean classes instead of scanning the classpath for them. Modules opt in by
+ * adding that artifact to the maven-compiler-plugin's annotationProcessorPaths.
+ */
+public final class BeanIndex
+{
+    /** Where each jar keeps its index: one binary class name per line; blank lines and # comments are ignored. */
+    public static final String RESOURCE = "META-INF/propulsor/beans.idx";
+
+    private static final String BEANS_XML = "META-INF/beans.xml";
+
+    private BeanIndex()
+    {
+    }
+
+    /**
+     * @return the names of the bean classes in all indexes visible to the class loader, in classpath order
+     */
+    public static Set<String> load( final ClassLoader classLoader )
+            throws IOException
+    {
+        final Set<String> names = new LinkedHashSet<>();
+        final Enumeration<URL> resources = classLoader.getResources( RESOURCE );
+        while ( resources.hasMoreElements() )
+        {
+            final URL url = resources.nextElement();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader( url.openStream(), StandardCharsets.UTF_8 ) ))
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    line = line.trim();
+                    if ( !line.isEmpty() && !line.startsWith( "#" ) )
+                    {
+                        names.add( line );
+                    }
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @return the bean archives (jars or directories with a META-INF/beans.xml) visible to the class loader that have
+     * no index, typically because they were not compiled with the bean index processor
+     */
+    public static List<String> findUnindexedArchives( final ClassLoader classLoader )
+            throws IOException
+    {
+        final Set<String> indexed = new HashSet<>();
+        final Enumeration<URL> indexes = classLoader.getResources( RESOURCE );
+        while ( indexes.hasMoreElements() )
+        {
+            indexed.add( getArchive( indexes.nextElement(), RESOURCE ) );
+        }
+
+        final List<String> unindexed = new ArrayList<>();
+        final Enumeration<URL> beansXmls = classLoader.getResources( BEANS_XML );
+        while ( beansXmls.hasMoreElements() )
+        {
+            final String archive = getArchive( beansXmls.nextElement(), BEANS_XML );
+            if ( !indexed.contains( archive ) )
+            {
+                unindexed.add( archive );
+            }
+        }
+
+        return unindexed;
+    }
+
+    private static String getArchive( final URL url, final String resource )
+    {
+        final String path = url.toExternalForm();
+        return path.endsWith( resource ) ? path.substring( 0, path.length() - resource.length() ) : path;
+    }
+}
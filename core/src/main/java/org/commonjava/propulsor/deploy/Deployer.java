@@ -23,4 +23,14 @@ public interface Deployer {
 
     void stop();
 
+    /**
+     * Stop accepting new requests and wait for the ones in flight to complete, ahead of {@link #stop()}.
+     *
+     * @return true if every request in flight completed within the timeout
+     */
+    default boolean drain( long timeoutMillis )
+    {
+        return true;
+    }
+
 }
@@ -0,0 +1,529 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.lifecycle;
+
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs the actions of one lifecycle phase as a dependency graph (see {@link AppLifecycleAction#getDependencies()}).
+ * Every action whose dependencies have completed is handed to the executor, so independent actions run concurrently;
+ * scheduling itself happens on the calling thread, which returns once every action has completed.
+ *
+ * The graph is checked before anything runs: unknown dependency ids and cycles are reported as an
+ * {@link AppLifecycleException}. If an action fails, nothing new is started, the actions already running are waited
+ * for, and the first failure is thrown. Each action's time is logged, and for the phases that bring the application up,
+ * recorded on the {@link BootTimeline}.
+ */
+final class ActionGraph<T extends AppLifecycleAction>
+{
+    static final Comparator<AppLifecycleAction> PRIORITY_COMPARATOR =
+            Comparator.comparingInt( AppLifecycleAction::getPriority );
+
+    /**
+     * The work done on each action in a phase, like {@link BootupAction#init()}.
+     */
+    interface Step<T>
+    {
+        void run( T action )
+                throws Exception;
+    }
+
+    static final String TIMELINE_CATEGORY = "lifecycle";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final String phase;
+
+    private final boolean booting;
+
+    private final List<Node<T>> nodes;
+
+    ActionGraph( final String phase, final List<T> actions )
+            throws AppLifecycleException
+    {
+        this( phase, actions, true );
+    }
+
+    /**
+     * @param booting whether the phase brings the application up, and so belongs on the {@link BootTimeline}
+     */
+    ActionGraph( final String phase, final List<T> actions, final boolean booting )
+            throws AppLifecycleException
+    {
+        this.phase = phase;
+        this.booting = booting;
+
+        List<T> sorted = new ArrayList<>( actions );
+        Collections.sort( sorted, PRIORITY_COMPARATOR );
+
+        nodes = new ArrayList<>( sorted.size() );
+        Map<String, List<Node<T>>> byId = new HashMap<>();
+        for ( final T action : sorted )
+        {
+            Node<T> node = new Node<>( action );
+            nodes.add( node );
+            byId.computeIfAbsent( action.getId(), id -> new ArrayList<>() ).add( node );
+        }
+
+        List<Node<T>> undeclared = new ArrayList<>();
+        for ( final Node<T> node : nodes )
+        {
+            Set<String> dependencies = node.action.getDependencies();
+            if ( dependencies == null )
+            {
+                undeclared.add( node );
+                continue;
+            }
+
+            for ( final String id : dependencies )
+            {
+                List<Node<T>> found = byId.get( id );
+                if ( found == null )
+                {
+                    throw new AppLifecycleException( "%s action: %s depends on unknown action: %s", phase,
+                                                     node.action.getId(), id );
+                }
+                found.forEach( other -> other.addDependent( node ) );
+            }
+        }
+
+        // the old sequential order among the actions that don't declare dependencies, equal priorities included;
+        // never against a declared path, which would make a cycle nobody wrote
+        for ( int i = 0; i < undeclared.size(); i++ )
+        {
+            Node<T> node = undeclared.get( i );
+            for ( int j = 0; j < i; j++ )
+            {
+                Node<T> other = undeclared.get( j );
+                if ( !node.reaches( other ) )
+                {
+                    other.addDependent( node );
+                }
+            }
+        }
+
+        checkAcyclic();
+    }
+
+    /**
+     * Run every action through the step on the executor, each as soon as its dependencies have completed. Stops
+     * starting actions at the first failure, which is thrown once the running ones are done.
+     */
+    void run( final Step<T> step, final ExecutorService executor )
+            throws AppLifecycleException
+    {
+        Execution execution = new Execution( step, executor, true, null, 0 );
+        execution.run();
+
+        Throwable failure = execution.failure;
+        if ( failure != null )
+        {
+            if ( failure instanceof AppLifecycleException )
+            {
+                throw (AppLifecycleException) failure;
+            }
+            throw new AppLifecycleException( "%s action: %s failed: %s", failure, phase, execution.failedId,
+                                             failure.getMessage() );
+        }
+    }
+
+    /**
+     * Run every action through the step on the executor, each as soon as its dependencies have completed, giving up on
+     * any action still running after its timeout and on everything left at the deadline. Failed and abandoned actions
+     * are logged and count as done, so the actions depending on them still run; this is meant for shutdown, where
+     * getting as far as possible matters more than stopping at the first problem.
+     *
+     * @param timeoutNanos the timeout of each action, counted from when it starts; 0 or less means none
+     * @param deadlineNanos the {@link System#nanoTime()} by which everything has to be done
+     * @return the ids of the actions that failed, timed out, or never ran
+     */
+    List<String> runBounded( final Step<T> step, final ExecutorService executor, final ToLongFunction<T> timeoutNanos,
+                             final long deadlineNanos )
+    {
+        Execution execution = new Execution( step, executor, false, timeoutNanos, deadlineNanos );
+        execution.run();
+        return execution.unfinished;
+    }
+
+    /**
+     * State of one run of the graph. Scheduling happens on the thread calling {@link #run()}.
+     */
+    private final class Execution
+    {
+        private static final long POLL_NANOS = 50_000_000;
+
+        private final Step<T> step;
+
+        private final CompletionService<Node<T>> completion;
+
+        private final boolean failFast;
+
+        private final ToLongFunction<T> timeoutNanos;
+
+        private final long deadlineNanos;
+
+        private final Map<Node<T>, Integer> waiting = new HashMap<>();
+
+        private final Map<Future<Node<T>>, Node<T>> running = new HashMap<>();
+
+        private final Map<Node<T>, Long> started = new ConcurrentHashMap<>();
+
+        private final List<String> unfinished = new ArrayList<>();
+
+        private Throwable failure;
+
+        private String failedId;
+
+        private Execution( final Step<T> step, final ExecutorService executor, final boolean failFast,
+                           final ToLongFunction<T> timeoutNanos, final long deadlineNanos )
+        {
+            this.step = step;
+            this.completion = new ExecutorCompletionService<>( executor );
+            this.failFast = failFast;
+            this.timeoutNanos = timeoutNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void run()
+        {
+            if ( nodes.isEmpty() )
+            {
+                return;
+            }
+
+            long start = System.nanoTime();
+            for ( final Node<T> node : nodes )
+            {
+                waiting.put( node, node.dependencyCount );
+                if ( node.dependencyCount == 0 )
+                {
+                    submit( node );
+                }
+            }
+
+            try
+            {
+                while ( !running.isEmpty() )
+                {
+                    Future<Node<T>> done = next();
+                    Node<T> node = done == null ? null : running.remove( done );
+                    if ( node != null )
+                    {
+                        complete( node, done );
+                    }
+
+                    if ( timeoutNanos != null )
+                    {
+                        if ( System.nanoTime() - deadlineNanos >= 0 )
+                        {
+                            abandonAll();
+                            break;
+                        }
+                        abandonTimedOut();
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                failure = new AppLifecycleException( "Interrupted while running %s actions", e, phase );
+                abandonAll();
+            }
+
+            for ( final Node<T> node : nodes )
+            {
+                if ( waiting.get( node ) > 0 && !unfinished.contains( node.action.getId() ) )
+                {
+                    unfinished.add( node.action.getId() );
+                }
+            }
+
+            logger.info( "{} phase: {} actions completed in {}ms", phase, nodes.size() - unfinished.size(),
+                         TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        }
+
+        /**
+         * @return the next finished action, or null if none finished within {@link #POLL_NANOS} or before the
+         * deadline
+         */
+        private Future<Node<T>> next()
+                throws InterruptedException
+        {
+            if ( timeoutNanos == null )
+            {
+                return completion.take();
+            }
+
+            long wait = Math.min( POLL_NANOS, deadlineNanos - System.nanoTime() );
+            return wait > 0 ? completion.poll( wait, TimeUnit.NANOSECONDS ) : null;
+        }
+
+        private void submit( final Node<T> node )
+        {
+            Future<Node<T>> future = completion.submit( () -> {
+                started.put( node, System.nanoTime() );
+                return execute( step, node );
+            } );
+            running.put( future, node );
+        }
+
+        private void complete( final Node<T> node, final Future<Node<T>> done )
+        {
+            try
+            {
+                done.get();
+            }
+            catch ( ExecutionException e )
+            {
+                Throwable cause = e.getCause();
+                if ( cause instanceof ActionFailure )
+                {
+                    cause = cause.getCause();
+                }
+
+                if ( failure == null )
+                {
+                    failure = cause;
+                    failedId = node.action.getId();
+                }
+
+                if ( failFast )
+                {
+                    return;
+                }
+
+                logger.error( String.format( "%s action: %s failed: %s", phase, node.action.getId(),
+                                             cause.getMessage() ), cause );
+                unfinished.add( node.action.getId() );
+            }
+            catch ( CancellationException | InterruptedException e )
+            {
+                // abandoned already
+                return;
+            }
+
+            if ( failFast && failure != null )
+            {
+                return;
+            }
+
+            release( node );
+        }
+
+        private void release( final Node<T> node )
+        {
+            for ( final Node<T> dependent : node.dependents )
+            {
+                if ( waiting.merge( dependent, -1, Integer::sum ) == 0 )
+                {
+                    submit( dependent );
+                }
+            }
+        }
+
+        private void abandonTimedOut()
+        {
+            long now = System.nanoTime();
+            List<Node<T>> expired = new ArrayList<>();
+            running.forEach( ( future, node ) -> {
+                Long startedAt = started.get( node );
+                long timeout = timeoutNanos.applyAsLong( node.action );
+                if ( startedAt != null && timeout > 0 && now - startedAt >= timeout )
+                {
+                    future.cancel( true );
+                    expired.add( node );
+                }
+            } );
+
+            running.values().removeAll( expired );
+            for ( final Node<T> node : expired )
+            {
+                logger.warn( "{} action: {} timed out after {}ms; moving on without it", phase, node.action.getId(),
+                             TimeUnit.NANOSECONDS.toMillis( timeoutNanos.applyAsLong( node.action ) ) );
+                unfinished.add( node.action.getId() );
+                release( node );
+            }
+        }
+
+        private void abandonAll()
+        {
+            running.forEach( ( future, node ) -> {
+                future.cancel( true );
+                logger.warn( "{} action: {} was still running at the deadline; abandoning it", phase,
+                             node.action.getId() );
+                unfinished.add( node.action.getId() );
+            } );
+            running.clear();
+        }
+    }
+
+    private Node<T> execute( final Step<T> step, final Node<T> node )
+            throws ActionFailure
+    {
+        long start = System.nanoTime();
+        BootTimeline.Step timed =
+                booting ? BootTimeline.get().start( TIMELINE_CATEGORY, phase + ":" + node.action.getId() ) : null;
+        try
+        {
+            step.run( node.action );
+        }
+        catch ( Exception e )
+        {
+            if ( timed != null )
+            {
+                timed.failed();
+            }
+            throw new ActionFailure( e );
+        }
+        finally
+        {
+            if ( timed != null )
+            {
+                timed.close();
+            }
+            logger.info( "{} action: {} took {}ms", phase, node.action.getId(),
+                         TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        }
+
+        return node;
+    }
+
+    /**
+     * Walk the graph in dependency order (Kahn's algorithm); anything never reached is on or behind a cycle.
+     */
+    private void checkAcyclic()
+            throws AppLifecycleException
+    {
+        Map<Node<T>, Integer> waiting = new HashMap<>();
+        List<Node<T>> ready = new ArrayList<>();
+        for ( final Node<T> node : nodes )
+        {
+            waiting.put( node, node.dependencyCount );
+            if ( node.dependencyCount == 0 )
+            {
+                ready.add( node );
+            }
+        }
+
+        int reached = 0;
+        while ( !ready.isEmpty() )
+        {
+            Node<T> node = ready.remove( ready.size() - 1 );
+            reached++;
+            for ( final Node<T> dependent : node.dependents )
+            {
+                if ( waiting.merge( dependent, -1, Integer::sum ) == 0 )
+                {
+                    ready.add( dependent );
+                }
+            }
+        }
+
+        if ( reached < nodes.size() )
+        {
+            List<String> stuck = new ArrayList<>();
+            waiting.forEach( ( node, count ) -> {
+                if ( count > 0 )
+                {
+                    stuck.add( node.action.getId() );
+                }
+            } );
+            throw new AppLifecycleException( "%s actions have a dependency cycle among: %s", phase, stuck );
+        }
+    }
+
+    private static final class Node<T extends AppLifecycleAction>
+    {
+        private final T action;
+
+        private final List<Node<T>> dependents = new ArrayList<>();
+
+        private int dependencyCount;
+
+        private Node( final T action )
+        {
+            this.action = action;
+        }
+
+        /**
+         * Record that the dependent has to wait for this node.
+         */
+        private void addDependent( final Node<T> dependent )
+        {
+            if ( dependent != this && !dependents.contains( dependent ) )
+            {
+                dependents.add( dependent );
+                dependent.dependencyCount++;
+            }
+        }
+
+        /**
+         * @return whether the target has to wait for this node, directly or through other nodes
+         */
+        private boolean reaches( final Node<T> target )
+        {
+            Set<Node<T>> seen = new HashSet<>();
+            Deque<Node<T>> pending = new ArrayDeque<>( dependents );
+            while ( !pending.isEmpty() )
+            {
+                Node<T> next = pending.pop();
+                if ( next == target )
+                {
+                    return true;
+                }
+                if ( seen.add( next ) )
+                {
+                    pending.addAll( next.dependents );
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static final class ActionFailure
+            extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        private ActionFailure( final Exception cause )
+        {
+            super( cause );
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.commonjava.propulsor.lifecycle;
 
+import java.util.Set;
+
 public interface AppLifecycleAction {
 
     /** Used mainly for reporting, this is a unique identifier for this action. */
@@ -26,4 +28,17 @@ public interface AppLifecycleAction {
      */
     int getPriority();
 
+    /**
+     * Ids of the actions in the same phase that must complete before this one starts. Actions with no dependency path
+     * between them may run concurrently (see {@link AppLifecycleManager}).
+     *
+     * The default, null, keeps the sequential priority ordering among the actions that don't declare dependencies:
+     * the action waits for each of those that sorts ahead of it (by priority, then by the order the actions were found
+     * in), unless that one already depends on it. Return an empty set to depend on nothing at all.
+     */
+    default Set<String> getDependencies()
+    {
+        return null;
+    }
+
 }
@@ -20,15 +20,39 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 @ApplicationScoped
 public class AppLifecycleManager {
 
+    /** System property giving the most lifecycle actions run at once within a phase. */
+    public static final String THREADS_PROPERTY = "propulsor.lifecycle.threads";
+
+    public static final int DEFAULT_THREADS = Math.max( 4, Runtime.getRuntime().availableProcessors() );
+
+    /** System property giving how long a shutdown action may run, unless it sets its own timeout. */
+    public static final String SHUTDOWN_ACTION_TIMEOUT_PROPERTY = "propulsor.shutdown.action.timeout.seconds";
+
+    public static final long DEFAULT_SHUTDOWN_ACTION_TIMEOUT_SECONDS = 10;
+
+    /** How long {@link #stop()} lets all shutdown actions take together. */
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     private static final Comparator<AppLifecycleAction> PRIORITY_COMPARATOR =
             ( one, two ) -> new Integer( one.getPriority() ).compareTo( two.getPriority() );
 
@@ -52,6 +76,13 @@ public class AppLifecycleManager {
 
     private List<ShutdownAction> shutdownActions;
 
+    private int threads = Integer.getInteger( THREADS_PROPERTY, DEFAULT_THREADS );
+
+    private long shutdownActionTimeoutSeconds =
+            Long.getLong( SHUTDOWN_ACTION_TIMEOUT_PROPERTY, DEFAULT_SHUTDOWN_ACTION_TIMEOUT_SECONDS );
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
     protected AppLifecycleManager() {
     }
 
@@ -62,53 +93,155 @@ public class AppLifecycleManager {
         this.shutdownActions = shutdownActions;
     }
 
+    /**
+     * Run the bootup, migration and startup actions, one phase after the other. Within a phase, actions run as a
+     * dependency graph on a pool of {@link #getThreads()} threads: each starts as soon as the actions it depends on
+     * (see {@link AppLifecycleAction#getDependencies()}) have completed, so independent actions run concurrently.
+     */
     public void startup()
             throws AppLifecycleException
     {
-        boot();
-        migrate();
-        start();
+        ExecutorService executor = newExecutor( "lifecycle" );
+
+        try
+        {
+            boot( executor );
+            migrate( executor );
+            start( executor );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
     }
 
-    private void start()
-            throws AppLifecycleException
+    /**
+     * @return the most lifecycle actions run at once within a phase
+     */
+    public int getThreads()
     {
-        Collections.sort( startupActions, PRIORITY_COMPARATOR );
+        return threads;
+    }
 
-        for ( final StartupAction action : startupActions )
-        {
-            action.start();
-        }
+    public void setThreads( final int threads )
+    {
+        this.threads = threads;
     }
 
-    private void migrate()
+    private void start( final ExecutorService executor )
             throws AppLifecycleException
     {
-        Collections.sort( migrationActions, PRIORITY_COMPARATOR );
+        new ActionGraph<>( "Startup", startupActions ).run( StartupAction::start, executor );
+    }
 
-        for ( final MigrationAction action : migrationActions )
-        {
-            action.migrate();
-        }
+    private void migrate( final ExecutorService executor )
+            throws AppLifecycleException
+    {
+        new ActionGraph<>( "Migration", migrationActions ).run( MigrationAction::migrate, executor );
     }
 
-    private void boot()
+    private void boot( final ExecutorService executor )
             throws AppLifecycleException
     {
-        Collections.sort( bootupActions, PRIORITY_COMPARATOR );
+        new ActionGraph<>( "Bootup", bootupActions ).run( BootupAction::init, executor );
+    }
+
+    /**
+     * Run the shutdown actions, giving up on them after {@link #DEFAULT_SHUTDOWN_TIMEOUT_SECONDS}.
+     *
+     * @see #stop(long)
+     */
+    public void stop() {
+        stop( System.nanoTime() + TimeUnit.SECONDS.toNanos( DEFAULT_SHUTDOWN_TIMEOUT_SECONDS ) );
+    }
+
+    /**
+     * Run the shutdown actions, once; later calls do nothing. Like the startup phases they run as a dependency graph,
+     * so independent actions run concurrently. An action still running after its timeout (see
+     * {@link ShutdownAction#getShutdownTimeoutSeconds()}) is interrupted and left behind, as is everything still
+     * running at the deadline; failures are logged. Either way the actions depending on it still get to run.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} by which shutdown actions have to be done
+     * @return the ids of the shutdown actions that failed, timed out, or never ran
+     */
+    public List<String> stop( final long deadlineNanos ) {
+        if ( !stopped.compareAndSet( false, true ) )
+        {
+            return Collections.emptyList();
+        }
 
-        for ( final BootupAction action : bootupActions )
+        ExecutorService executor = newExecutor( "shutdown" );
+        try
+        {
+            ActionGraph<ShutdownAction> graph = new ActionGraph<>( "Shutdown", shutdownActions, false );
+            return graph.runBounded( ShutdownAction::shutdown, executor, this::getShutdownTimeoutNanos,
+                                     deadlineNanos );
+        }
+        catch ( final AppLifecycleException e )
         {
-            action.init();
+            // the dependencies don't add up; fall back to the old sequential shutdown, still bounded by the deadline
+            logger.error( "Cannot order shutdown actions: " + e.getMessage() + "; running them one at a time", e );
+            List<ShutdownAction> sorted = new ArrayList<>( shutdownActions );
+            sorted.sort( PRIORITY_COMPARATOR );
+            List<String> unfinished = new ArrayList<>();
+            for ( final ShutdownAction action : sorted )
+            {
+                if ( System.nanoTime() - deadlineNanos >= 0 )
+                {
+                    unfinished.add( action.getId() );
+                    continue;
+                }
+                try
+                {
+                    action.shutdown();
+                }
+                catch ( final RuntimeException re )
+                {
+                    logger.error( "Shutdown action: " + action.getId() + " failed: " + re.getMessage(), re );
+                    unfinished.add( action.getId() );
+                }
+            }
+            return unfinished;
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
     }
 
-    public void stop() {
-        Collections.sort( shutdownActions, PRIORITY_COMPARATOR );
+    /**
+     * @return how long a shutdown action that doesn't set its own timeout may run before shutdown moves on
+     */
+    public long getShutdownActionTimeoutSeconds()
+    {
+        return shutdownActionTimeoutSeconds;
+    }
 
-        for (final ShutdownAction shutdownAction : shutdownActions) {
-            shutdownAction.shutdown();
-        }
+    public void setShutdownActionTimeoutSeconds( final long shutdownActionTimeoutSeconds )
+    {
+        this.shutdownActionTimeoutSeconds = shutdownActionTimeoutSeconds;
+    }
+
+    private long getShutdownTimeoutNanos( final ShutdownAction action )
+    {
+        long seconds = action.getShutdownTimeoutSeconds();
+        return TimeUnit.SECONDS.toNanos( seconds > 0 ? seconds : shutdownActionTimeoutSeconds );
+    }
+
+    private ExecutorService newExecutor( final String name )
+    {
+        return Executors.newFixedThreadPool( Math.max( 1, threads ), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( final Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, name + "-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
     }
 
     @PostConstruct
@@ -25,4 +25,13 @@ public interface ShutdownAction extends AppLifecycleAction {
      */
     void shutdown();
 
+    /**
+     * How long {@link #shutdown()} may run before shutdown moves on without it, or 0 to use
+     * {@link AppLifecycleManager#getShutdownActionTimeoutSeconds()}.
+     */
+    default long getShutdownTimeoutSeconds()
+    {
+        return 0;
+    }
+
 }
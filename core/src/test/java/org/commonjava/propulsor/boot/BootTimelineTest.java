@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BootTimelineTest
+{
+    @Test
+    public void recordsStepsAndReplaysThemToListeners()
+            throws IOException
+    {
+        BootTimeline timeline = new BootTimeline();
+        try (BootTimeline.Step step = timeline.start( "boot", "weld" ))
+        {
+            spin( 20 );
+        }
+
+        List<BootTimeline.Entry> seen = new ArrayList<>();
+        timeline.addListener( seen::add );
+
+        BootTimeline.Step failed = timeline.start( "lifecycle", "Bootup:\"cache\"" );
+        failed.failed();
+        failed.close();
+        failed.close();
+
+        assertThat( seen.size(), equalTo( 2 ) );
+        assertThat( timeline.getEntries().size(), equalTo( 2 ) );
+
+        BootTimeline.Entry weld = seen.get( 0 );
+        assertThat( weld.getCategory(), equalTo( "boot" ) );
+        assertThat( weld.getWallMillis() >= 20, equalTo( true ) );
+        assertThat( weld.getCpuMillis() > 0 || weld.getCpuNanos() == -1, equalTo( true ) );
+        assertThat( weld.getStartMillis() >= 0, equalTo( true ) );
+        assertThat( seen.get( 1 ).isFailed(), equalTo( true ) );
+
+        StringWriter out = new StringWriter();
+        timeline.writeJson( out );
+        assertThat( out.toString(), containsString( "\"category\":\"boot\",\"name\":\"weld\"" ) );
+        assertThat( out.toString(), containsString( "\"name\":\"Bootup:\\\"cache\\\"\"" ) );
+        assertThat( out.toString(), containsString( "\"failed\":true" ) );
+    }
+
+    /**
+     * Burn CPU for the given time, so both wall and CPU time are measurable.
+     */
+    private static void spin( long millis )
+    {
+        long end = System.nanoTime() + millis * 1_000_000;
+        while ( System.nanoTime() < end )
+        {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BooterTrainingTest
+{
+    private HttpServer server;
+
+    @After
+    public void stop()
+    {
+        System.clearProperty( Booter.BOOT_TRAINING_PATHS_PROP );
+        if ( server != null )
+        {
+            server.stop( 0 );
+        }
+    }
+
+    @Test
+    public void trainingRequestsEachPathUnderTheContextPath()
+            throws IOException
+    {
+        List<String> requested = new CopyOnWriteArrayList<>();
+        server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/", exchange -> {
+            requested.add( exchange.getRequestURI().getPath() );
+            int status = exchange.getRequestURI().getPath().endsWith( "missing" ) ? 404 : 200;
+            exchange.sendResponseHeaders( status, -1 );
+            exchange.close();
+        } );
+        server.start();
+
+        BootOptions options = new BootOptions( "test", "." );
+        options.setPort( server.getAddress().getPort() );
+        options.setContextPath( "app" );
+        System.setProperty( Booter.BOOT_TRAINING_PATHS_PROP, "/ping, missing,/api/status" );
+
+        new Booter().train( options );
+
+        assertThat( requested, equalTo( Arrays.asList( "/app/ping", "/app/missing", "/app/api/status" ) ) );
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot;
+
+import org.commonjava.propulsor.deploy.Deployer;
+import org.commonjava.propulsor.lifecycle.AppLifecycleManager;
+import org.commonjava.propulsor.lifecycle.ShutdownAction;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ShutdownCoordinatorTest
+{
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void stepsRunInOrder()
+    {
+        ShutdownCoordinator coordinator =
+                new ShutdownCoordinator( new RecordingDeployer( null ), lifecycle(), () -> events.add( "container" ),
+                                         5000, 1000 );
+
+        assertThat( coordinator.shutdown(), equalTo( true ) );
+        assertThat( events, equalTo( Arrays.asList( "drain", "stop", "action", "container" ) ) );
+    }
+
+    @Test
+    public void hungDeployerDoesNotHoldUpTheRest()
+    {
+        CountDownLatch never = new CountDownLatch( 1 );
+        ShutdownCoordinator coordinator =
+                new ShutdownCoordinator( new RecordingDeployer( never ), lifecycle(), () -> events.add( "container" ),
+                                         3000, 200 );
+
+        long start = System.nanoTime();
+        assertThat( coordinator.shutdown(), equalTo( false ) );
+
+        assertThat( events, equalTo( Arrays.asList( "drain", "action", "container" ) ) );
+        assertThat( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 5 ), equalTo( true ) );
+    }
+
+    private AppLifecycleManager lifecycle()
+    {
+        ShutdownAction action = new ShutdownAction()
+        {
+            @Override
+            public void shutdown()
+            {
+                events.add( "action" );
+            }
+
+            @Override
+            public String getId()
+            {
+                return "action";
+            }
+
+            @Override
+            public int getPriority()
+            {
+                return 10;
+            }
+        };
+
+        return new AppLifecycleManager( new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                                        new ArrayList<>( Collections.singletonList( action ) ) );
+    }
+
+    /**
+     * Drains immediately, or hangs in stop() until the blocker is released.
+     */
+    private final class RecordingDeployer
+            implements Deployer
+    {
+        private final CountDownLatch blocker;
+
+        private RecordingDeployer( CountDownLatch blocker )
+        {
+            this.blocker = blocker;
+        }
+
+        @Override
+        public void deploy( BootOptions options )
+        {
+        }
+
+        @Override
+        public boolean drain( long timeoutMillis )
+        {
+            events.add( "drain" );
+            return true;
+        }
+
+        @Override
+        public void stop()
+        {
+            if ( blocker != null )
+            {
+                try
+                {
+                    blocker.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+            }
+
+            events.add( "stop" );
+        }
+    }
+}
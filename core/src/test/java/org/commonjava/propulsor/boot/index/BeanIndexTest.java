@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.boot.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BeanIndexTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void indexesAreMergedInClasspathOrder()
+            throws Exception
+    {
+        File first = archive( "first", "# generated\ntest.B\n\ntest.A\n" );
+        File second = archive( "second", "test.C\ntest.A\n" );
+
+        try (URLClassLoader loader = loader( first, second ))
+        {
+            assertThat( new ArrayList<>( BeanIndex.load( loader ) ),
+                        equalTo( Arrays.asList( "test.B", "test.A", "test.C" ) ) );
+            assertThat( BeanIndex.findUnindexedArchives( loader ).isEmpty(), equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void beanArchiveWithoutIndexIsReported()
+            throws Exception
+    {
+        File indexed = archive( "indexed", "test.A\n" );
+        File unindexed = archive( "unindexed", null );
+
+        try (URLClassLoader loader = loader( indexed, unindexed ))
+        {
+            assertThat( BeanIndex.findUnindexedArchives( loader ),
+                        equalTo( Collections.singletonList( unindexed.toURI().toURL().toExternalForm() ) ) );
+        }
+    }
+
+    private File archive( String name, String index )
+            throws IOException
+    {
+        File dir = temp.newFolder( name );
+        write( new File( dir, "META-INF/beans.xml" ), "<beans/>" );
+        if ( index != null )
+        {
+            write( new File( dir, BeanIndex.RESOURCE ), index );
+        }
+
+        return dir;
+    }
+
+    private static URLClassLoader loader( File... dirs )
+            throws IOException
+    {
+        URL[] urls = new URL[dirs.length];
+        for ( int i = 0; i < dirs.length; i++ )
+        {
+            urls[i] = dirs[i].toURI().toURL();
+        }
+
+        return new URLClassLoader( urls, null );
+    }
+
+    private static void write( File file, String content )
+            throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
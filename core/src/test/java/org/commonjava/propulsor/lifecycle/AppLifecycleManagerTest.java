@@ -0,0 +1,352 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.lifecycle;
+
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AppLifecycleManagerTest
+{
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void independentActionsRunConcurrently()
+            throws AppLifecycleException
+    {
+        // each waits for the other to start, so this only completes if they run at the same time
+        CountDownLatch bothStarted = new CountDownLatch( 2 );
+        List<BootupAction> bootup = Arrays.asList( new Bootup( "cache", 10, Collections.emptySet(), bothStarted ),
+                                                   new Bootup( "index", 20, Collections.emptySet(), bothStarted ),
+                                                   new Bootup( "serve", 30, deps( "cache", "index" ), null ) );
+
+        manager( bootup ).startup();
+
+        assertThat( events.size(), equalTo( 3 ) );
+        assertThat( events.get( 2 ), equalTo( "serve" ) );
+    }
+
+    @Test
+    public void priorityStillOrdersActionsWithoutDependencies()
+            throws AppLifecycleException
+    {
+        List<BootupAction> bootup = Arrays.asList( new Bootup( "third", 30, null, null ),
+                                                   new Bootup( "first", 10, null, null ),
+                                                   new Bootup( "second", 20, null, null ) );
+
+        manager( bootup ).startup();
+
+        assertThat( events, equalTo( Arrays.asList( "first", "second", "third" ) ) );
+    }
+
+    @Test
+    public void equalPriorityActionsWithoutDependenciesStaySequential()
+            throws AppLifecycleException
+    {
+        // if these ran concurrently, the fast one would finish first
+        List<BootupAction> bootup = Arrays.asList( new Bootup( "slow", 10, null, null ),
+                                                   new Bootup( "fast", 10, null, null ) );
+
+        manager( bootup ).startup();
+
+        assertThat( events, equalTo( Arrays.asList( "slow", "fast" ) ) );
+    }
+
+    @Test
+    public void declaredDependencyOnALaterActionWithoutDependenciesIsNoCycle()
+            throws AppLifecycleException
+    {
+        // "first" sorts ahead of "config" but waits for it; "config" must not wait for "first" in turn
+        List<BootupAction> bootup = Arrays.asList( new Bootup( "first", 1, deps( "config" ), null ),
+                                                   new Bootup( "early", 2, null, null ),
+                                                   new Bootup( "config", 5, null, null ),
+                                                   new Bootup( "late", 9, null, null ) );
+
+        manager( bootup ).startup();
+
+        assertThat( events.size(), equalTo( 4 ) );
+        assertThat( events.indexOf( "config" ) < events.indexOf( "first" ), equalTo( true ) );
+        assertThat( events.indexOf( "early" ) < events.indexOf( "config" ), equalTo( true ) );
+        assertThat( events.indexOf( "config" ) < events.indexOf( "late" ), equalTo( true ) );
+    }
+
+    @Test
+    public void failureStopsThePhase()
+    {
+        List<BootupAction> bootup = Arrays.asList( new Bootup( "broken", 10, Collections.emptySet(), null ),
+                                                   new Bootup( "after", 20, deps( "broken" ), null ) );
+
+        try
+        {
+            manager( bootup ).startup();
+            fail( "Startup should fail" );
+        }
+        catch ( AppLifecycleException e )
+        {
+            assertThat( e.getMessage(), containsString( "broken" ) );
+        }
+
+        assertThat( events.isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void cyclesAndUnknownDependenciesAreRejected()
+    {
+        assertRejected( Arrays.asList( new Bootup( "a", 10, deps( "b" ), null ),
+                                       new Bootup( "b", 10, deps( "a" ), null ) ), "cycle" );
+
+        assertRejected( Collections.singletonList( new Bootup( "a", 10, deps( "missing" ), null ) ), "missing" );
+    }
+
+    @Test
+    public void hungShutdownActionTimesOutAndTheRestStillRun()
+    {
+        CountDownLatch never = new CountDownLatch( 1 );
+        List<ShutdownAction> shutdown = Arrays.asList( new Shutdown( "hung", 10, Collections.emptySet(), never, 1 ),
+                                                       new Shutdown( "quick", 10, Collections.emptySet(), null, 0 ),
+                                                       new Shutdown( "last", 20, deps( "hung", "quick" ), null, 0 ) );
+        AppLifecycleManager manager =
+                new AppLifecycleManager( new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), shutdown );
+
+        long start = System.nanoTime();
+        List<String> unfinished = manager.stop( start + TimeUnit.SECONDS.toNanos( 10 ) );
+
+        assertThat( unfinished, equalTo( Collections.singletonList( "hung" ) ) );
+        assertThat( events, equalTo( Arrays.asList( "quick", "last" ) ) );
+        assertThat( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 5 ), equalTo( true ) );
+
+        // only the first stop does anything
+        assertThat( manager.stop( System.nanoTime() ).isEmpty(), equalTo( true ) );
+        assertThat( events.size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void shutdownGivesUpAtTheDeadline()
+    {
+        CountDownLatch never = new CountDownLatch( 1 );
+        List<ShutdownAction> shutdown = Arrays.asList( new Shutdown( "hung", 10, null, never, 0 ),
+                                                       new Shutdown( "after", 20, null, null, 0 ) );
+        AppLifecycleManager manager =
+                new AppLifecycleManager( new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), shutdown );
+
+        long start = System.nanoTime();
+        List<String> unfinished = manager.stop( start + TimeUnit.MILLISECONDS.toNanos( 300 ) );
+
+        assertThat( unfinished, equalTo( Arrays.asList( "hung", "after" ) ) );
+        assertThat( events.isEmpty(), equalTo( true ) );
+        assertThat( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 5 ), equalTo( true ) );
+    }
+
+    @Test
+    public void shutdownStaysOffTheBootTimeline()
+    {
+        List<ShutdownAction> shutdown =
+                Collections.singletonList( new Shutdown( "unrecorded", 10, null, null, 0 ) );
+        new AppLifecycleManager( new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), shutdown ).stop(
+                System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 ) );
+
+        assertThat( events, equalTo( Collections.singletonList( "unrecorded" ) ) );
+        for ( BootTimeline.Entry entry : BootTimeline.get().getEntries() )
+        {
+            assertThat( entry.getName(), not( containsString( "unrecorded" ) ) );
+        }
+    }
+
+    private void assertRejected( List<BootupAction> bootup, String message )
+    {
+        try
+        {
+            manager( bootup ).startup();
+            fail( "Startup should fail" );
+        }
+        catch ( AppLifecycleException e )
+        {
+            assertThat( e.getMessage(), containsString( message ) );
+        }
+
+        assertThat( events.isEmpty(), equalTo( true ) );
+    }
+
+    private static AppLifecycleManager manager( List<BootupAction> bootup )
+    {
+        return new AppLifecycleManager( new ArrayList<>( bootup ), new ArrayList<>(), new ArrayList<>(),
+                                        new ArrayList<>() );
+    }
+
+    private static Set<String> deps( String... ids )
+    {
+        return new HashSet<>( Arrays.asList( ids ) );
+    }
+
+    private final class Shutdown
+            implements ShutdownAction
+    {
+        private final String id;
+
+        private final int priority;
+
+        private final Set<String> dependencies;
+
+        private final CountDownLatch blocker;
+
+        private final long timeoutSeconds;
+
+        private Shutdown( String id, int priority, Set<String> dependencies, CountDownLatch blocker,
+                          long timeoutSeconds )
+        {
+            this.id = id;
+            this.priority = priority;
+            this.dependencies = dependencies;
+            this.blocker = blocker;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        @Override
+        public void shutdown()
+        {
+            if ( blocker != null )
+            {
+                try
+                {
+                    blocker.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+            }
+
+            events.add( id );
+        }
+
+        @Override
+        public long getShutdownTimeoutSeconds()
+        {
+            return timeoutSeconds;
+        }
+
+        @Override
+        public String getId()
+        {
+            return id;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public Set<String> getDependencies()
+        {
+            return dependencies;
+        }
+    }
+
+    private final class Bootup
+            implements BootupAction
+    {
+        private final String id;
+
+        private final int priority;
+
+        private final Set<String> dependencies;
+
+        private final CountDownLatch rendezvous;
+
+        private Bootup( String id, int priority, Set<String> dependencies, CountDownLatch rendezvous )
+        {
+            this.id = id;
+            this.priority = priority;
+            this.dependencies = dependencies;
+            this.rendezvous = rendezvous;
+        }
+
+        @Override
+        public void init()
+                throws AppLifecycleException
+        {
+            if ( id.equals( "broken" ) )
+            {
+                throw new IllegalStateException( "cannot init" );
+            }
+
+            if ( id.equals( "slow" ) )
+            {
+                try
+                {
+                    Thread.sleep( 200 );
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new AppLifecycleException( "%s interrupted", e, id );
+                }
+            }
+
+            if ( rendezvous != null )
+            {
+                rendezvous.countDown();
+                try
+                {
+                    if ( !rendezvous.await( 10, TimeUnit.SECONDS ) )
+                    {
+                        throw new AppLifecycleException( "%s ran alone", id );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new AppLifecycleException( "%s interrupted", e, id );
+                }
+            }
+
+            events.add( id );
+        }
+
+        @Override
+        public String getId()
+        {
+            return id;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public Set<String> getDependencies()
+        {
+            return dependencies;
+        }
+    }
+}
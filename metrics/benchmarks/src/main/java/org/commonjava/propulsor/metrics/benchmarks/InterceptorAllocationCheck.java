@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs {@link MetricsInterceptorBenchmark} with the JMH GC profiler and fails (non-zero exit) if an intercepted call
+ * allocates more than {@link #MAX_OVERHEAD_BYTES} beyond what updating the same metrics directly allocates. The
+ * Dropwizard reservoirs may allocate on their own, which is why the comparison is against the direct baseline rather
+ * than zero.
+ *
+ * It takes a few minutes, so it is not part of the default build. Run it in the verify phase with the
+ * allocation-check profile, or directly against the shaded jar:
+ * <pre>
+ * mvn -pl metrics/benchmarks -am -Pallocation-check verify
+ * java -cp target/benchmarks.jar org.commonjava.propulsor.metrics.benchmarks.InterceptorAllocationCheck
+ * </pre>
+ */
+public final class InterceptorAllocationCheck
+{
+    private static final double MAX_OVERHEAD_BYTES = 8;
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private InterceptorAllocationCheck()
+    {
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder().include( MetricsInterceptorBenchmark.class.getName() )
+                                              .addProfiler( GCProfiler.class )
+                                              .build();
+
+        Collection<RunResult> results = new Runner( options ).run();
+
+        Map<String, Double> allocated = new HashMap<>();
+        for ( RunResult result : results )
+        {
+            String label = result.getPrimaryResult().getLabel();
+            Result<?> norm = result.getSecondaryResults().get( ALLOC_NORM );
+            if ( norm != null )
+            {
+                allocated.put( label, norm.getScore() );
+            }
+        }
+
+        double direct = allocated.getOrDefault( "direct", Double.NaN );
+        double current = allocated.getOrDefault( "interceptor", Double.NaN );
+        double legacy = allocated.getOrDefault( "legacyInterceptor", Double.NaN );
+
+        System.out.printf( "%nBytes allocated per call: direct=%.1f, interceptor=%.1f, legacy=%.1f%n", direct, current,
+                           legacy );
+
+        double overhead = current - direct;
+        if ( Double.isNaN( overhead ) || overhead > MAX_OVERHEAD_BYTES )
+        {
+            System.out.printf( "FAILED: interceptor allocates %.1f bytes/call over direct metric updates (max: %.1f)%n",
+                               overhead, MAX_OVERHEAD_BYTES );
+            System.exit( 1 );
+        }
+
+        System.out.printf( "OK: interceptor allocates %.1f bytes/call over direct metric updates%n", overhead );
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.benchmarks;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.MetricsManager;
+import org.commonjava.propulsor.metrics.annotation.Measure;
+import org.commonjava.propulsor.metrics.annotation.MetricNamed;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.commons.lang3.ClassUtils.getAbbreviatedName;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.commonjava.propulsor.metrics.MetricsConstants.EXCEPTION;
+import static org.commonjava.propulsor.metrics.MetricsConstants.METER;
+import static org.commonjava.propulsor.metrics.MetricsConstants.TIMER;
+import static org.commonjava.propulsor.metrics.annotation.MetricNamed.DEFAULT;
+
+/**
+ * Copy of the original stream-based {@link org.commonjava.propulsor.metrics.MetricsInterceptor} (minus its trace
+ * logging), kept as the baseline the current implementation is compared against.
+ */
+public class LegacyMetricsInterceptor
+{
+    private final MetricsManager metricsManager;
+
+    private final MetricsConfig config;
+
+    public LegacyMetricsInterceptor( MetricsManager manager, MetricsConfig config )
+    {
+        this.metricsManager = manager;
+        this.config = config;
+    }
+
+    public Object operation( InvocationContext context ) throws Exception
+    {
+        if ( !config.isEnabled() )
+        {
+            return context.proceed();
+        }
+
+        Method method = context.getMethod();
+        Measure measure = method.getAnnotation( Measure.class );
+        if ( measure == null )
+        {
+            measure = method.getDeclaringClass().getAnnotation( Measure.class );
+        }
+
+        String nodePrefix = config.getInstancePrefix();
+
+        String defaultName = getDefaultName( context );
+
+        List<Timer.Context> timers = Stream.of( measure.timers() ).map( named -> {
+            String name = getName( nodePrefix, named, defaultName, TIMER );
+            return metricsManager.getTimer( name ).time();
+        } ).collect( Collectors.toList() );
+
+        try
+        {
+            return context.proceed();
+        }
+        catch ( Exception e )
+        {
+            Stream.of( measure.exceptions() ).forEach( ( named ) -> {
+                String name = getName( nodePrefix, named, defaultName, EXCEPTION );
+                Meter meter = metricsManager.getMeter( name );
+                meter.mark();
+            } );
+
+            throw e;
+        }
+        finally
+        {
+            timers.forEach( Timer.Context::stop );
+            Stream.of( measure.meters() ).forEach( ( named ) -> {
+                String name = getName( nodePrefix, named, defaultName, METER );
+                Meter meter = metricsManager.getMeter( name );
+                meter.mark();
+            } );
+        }
+    }
+
+    private String getDefaultName( InvocationContext context )
+    {
+        String cls = getAbbreviatedName( context.getMethod().getDeclaringClass().getName(), 1 );
+        String method = context.getMethod().getName();
+        return name( cls, method );
+    }
+
+    private String getName( String instancePrefix, MetricNamed named, String defaultName, String suffix )
+    {
+        String name = named.value();
+        if ( isBlank( name ) || name.equals( DEFAULT ) )
+        {
+            name = defaultName;
+        }
+        return name( instancePrefix, name, suffix );
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.benchmarks;
+
+import org.commonjava.propulsor.metrics.annotation.Measure;
+import org.commonjava.propulsor.metrics.annotation.MetricNamed;
+
+/**
+ * Target of the interceptor benchmarks, annotated the way a typical REST or storage method would be.
+ */
+public class MeasuredService
+{
+    @Measure( timers = @MetricNamed, meters = @MetricNamed, exceptions = @MetricNamed )
+    public long work( long value )
+    {
+        return value * 31 + 7;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.benchmarks;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.MetricsInterceptor;
+import org.commonjava.propulsor.metrics.MetricsManager;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Compares the cost of one intercepted call through {@link MetricsInterceptor} against the original stream-based
+ * implementation ({@link LegacyMetricsInterceptor}) and against updating the same metrics by hand. Run with
+ * <code>-prof gc</code> to see bytes allocated per call, or use {@link InterceptorAllocationCheck}.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MetricsInterceptorBenchmark
+{
+    private MetricsInterceptor interceptor;
+
+    private LegacyMetricsInterceptor legacyInterceptor;
+
+    private StubInvocationContext context;
+
+    private MeasuredService service;
+
+    private Timer timer;
+
+    private Meter meter;
+
+    private long value;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        config.setInstancePrefix( "bench" );
+
+        MetricRegistry registry = new MetricRegistry();
+        MetricsManager manager = new MetricsManager( config, registry );
+
+        service = new MeasuredService();
+        context = new StubInvocationContext( service );
+        interceptor = new MetricsInterceptor( manager, config );
+        legacyInterceptor = new LegacyMetricsInterceptor( manager, config );
+
+        // registers the metrics, which the direct benchmark then updates by hand
+        interceptor.operation( context );
+        timer = registry.getTimers().values().iterator().next();
+        meter = registry.getMeters().values().iterator().next();
+    }
+
+    @Benchmark
+    public long direct()
+    {
+        long start = System.nanoTime();
+        long result = service.work( value++ );
+        timer.update( System.nanoTime() - start, NANOSECONDS );
+        meter.mark();
+        return result;
+    }
+
+    @Benchmark
+    public long interceptor()
+            throws Exception
+    {
+        context.setValue( value++ );
+        interceptor.operation( context );
+        return context.getResult();
+    }
+
+    @Benchmark
+    public long legacyInterceptor()
+            throws Exception
+    {
+        context.setValue( value++ );
+        legacyInterceptor.operation( context );
+        return context.getResult();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.benchmarks;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reusable {@link InvocationContext} that calls straight into {@link MeasuredService#work(long)}, so the benchmarks
+ * measure the interceptor rather than reflection or container overhead.
+ */
+public final class StubInvocationContext
+        implements InvocationContext
+{
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    private final MeasuredService target;
+
+    private final Method method;
+
+    private long value;
+
+    private long result;
+
+    public StubInvocationContext( MeasuredService target )
+            throws NoSuchMethodException
+    {
+        this.target = target;
+        this.method = MeasuredService.class.getMethod( "work", long.class );
+    }
+
+    public void setValue( long value )
+    {
+        this.value = value;
+    }
+
+    public long getResult()
+    {
+        return result;
+    }
+
+    @Override
+    public Object getTarget()
+    {
+        return target;
+    }
+
+    @Override
+    public Object getTimer()
+    {
+        return null;
+    }
+
+    @Override
+    public Method getMethod()
+    {
+        return method;
+    }
+
+    @Override
+    public Constructor<?> getConstructor()
+    {
+        return null;
+    }
+
+    @Override
+    public Object[] getParameters()
+    {
+        return NO_PARAMETERS;
+    }
+
+    @Override
+    public void setParameters( Object[] parameters )
+    {
+    }
+
+    @Override
+    public Map<String, Object> getContextData()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Returns the target itself instead of the (boxed) result, so that the call does not allocate on its own.
+     */
+    @Override
+    public Object proceed()
+    {
+        result = target.work( value );
+        return target;
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import org.commonjava.propulsor.metrics.jfr.MeasuredMethodEvent;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Finishes the measurement of an intercepted call when its asynchronous result completes, rather than when the method
+ * returns. Nothing here blocks or starts a thread: completion is observed through the callbacks the async types
+ * already offer, and runs on whichever thread completes the result (or inline, if it is already complete). The
+ * result itself is always handed back unchanged.
+ * <p>
+ * Only {@link CompletionStage} and JAX-RS AsyncResponse offer such a callback. A plain {@link Future} does not, and
+ * nothing guarantees that anyone ever polls it, so its call is timed up to the handoff like a synchronous one.
+ * <p>
+ * A call is finished exactly once, whichever of its completion paths fires first.
+ */
+final class AsyncMeasurement
+        implements BiConsumer<Object, Throwable>
+{
+    /**
+     * How an intercepted method delivers its result, as detected once per method by {@link MeasurementPlan}.
+     */
+    enum Mode
+    {
+        /** The result is complete when the method returns. */
+        NONE,
+        /** The method returns a {@link CompletionStage}, such as a CompletableFuture. */
+        COMPLETION_STAGE,
+        /**
+         * The method is declared to return a {@link Future}. It is only waited on if the returned object turns out to
+         * be a {@link CompletionStage}.
+         */
+        FUTURE,
+        /** The method takes a JAX-RS AsyncResponse parameter, and resumes it later. */
+        ASYNC_RESPONSE
+    }
+
+    static final String ASYNC_RESPONSE_CLASS = "javax.ws.rs.container.AsyncResponse";
+
+    private final MeasurementPlan plan;
+
+    private final long sampled;
+
+    private final long start;
+
+    private final MeasuredMethodEvent event;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private boolean callbackRegistered;
+
+    AsyncMeasurement( MeasurementPlan plan, long sampled, long start, MeasuredMethodEvent event )
+    {
+        this.plan = plan;
+        this.sampled = sampled;
+        this.start = start;
+        this.event = event;
+    }
+
+    static Mode detect( Class<?> returnType, Class<?>[] parameterTypes )
+    {
+        if ( CompletionStage.class.isAssignableFrom( returnType ) )
+        {
+            return Mode.COMPLETION_STAGE;
+        }
+
+        if ( Future.class.isAssignableFrom( returnType ) )
+        {
+            return Mode.FUTURE;
+        }
+
+        return asyncResponseIndex( parameterTypes ) < 0 ? Mode.NONE : Mode.ASYNC_RESPONSE;
+    }
+
+    /**
+     * Matched by name, so that JAX-RS only needs to be on the classpath of applications that use it.
+     */
+    static int asyncResponseIndex( Class<?>[] parameterTypes )
+    {
+        for ( int i = 0; i < parameterTypes.length; i++ )
+        {
+            if ( ASYNC_RESPONSE_CLASS.equals( parameterTypes[i].getName() ) )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Called before the method runs, for methods that complete through an AsyncResponse parameter.
+     */
+    void beforeProceed( Object[] parameters )
+    {
+        Object response = parameters[plan.asyncResponseIndex];
+        if ( response != null )
+        {
+            AsyncResponseCallback.register( response, this );
+            callbackRegistered = true;
+        }
+    }
+
+    /**
+     * Called with the value the method returned, to finish the measurement when that completes. If there is nothing to
+     * wait on (a null result, or a Future that is not a CompletionStage) it is finished right away, so the call is
+     * timed up to the handoff.
+     */
+    void afterProceed( Object result )
+    {
+        if ( result instanceof CompletionStage )
+        {
+            ( (CompletionStage<?>) result ).whenComplete( this );
+        }
+        else if ( !callbackRegistered )
+        {
+            accept( result, null );
+        }
+    }
+
+    /**
+     * Finish the measurement, marking the exception meters if the call failed.
+     */
+    @Override
+    public void accept( Object result, Throwable error )
+    {
+        if ( !finished.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        if ( error != null )
+        {
+            MetricsInterceptor.markExceptions( plan );
+        }
+
+        MetricsInterceptor.finish( plan, sampled, start, event, error != null );
+    }
+}
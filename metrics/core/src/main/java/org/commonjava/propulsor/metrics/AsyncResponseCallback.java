@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+
+/**
+ * Finishes an {@link AsyncMeasurement} when the JAX-RS response it belongs to is sent. Kept apart from
+ * {@link AsyncMeasurement} so the JAX-RS API is loaded only for methods that take an {@link AsyncResponse}.
+ */
+final class AsyncResponseCallback
+        implements CompletionCallback
+{
+    private final AsyncMeasurement measurement;
+
+    private AsyncResponseCallback( AsyncMeasurement measurement )
+    {
+        this.measurement = measurement;
+    }
+
+    static void register( Object asyncResponse, AsyncMeasurement measurement )
+    {
+        ( (AsyncResponse) asyncResponse ).register( new AsyncResponseCallback( measurement ) );
+    }
+
+    @Override
+    public void onComplete( Throwable throwable )
+    {
+        measurement.accept( null, throwable );
+    }
+}
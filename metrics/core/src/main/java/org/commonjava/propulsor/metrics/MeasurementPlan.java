@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.annotation.Measure;
+import org.commonjava.propulsor.metrics.annotation.MetricNamed;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.commons.lang3.ClassUtils.getAbbreviatedName;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.commonjava.propulsor.metrics.MetricsConstants.ARGUMENTS;
+import static org.commonjava.propulsor.metrics.MetricsConstants.COUNTER;
+import static org.commonjava.propulsor.metrics.MetricsConstants.EXCEPTION;
+import static org.commonjava.propulsor.metrics.MetricsConstants.GAUGE;
+import static org.commonjava.propulsor.metrics.MetricsConstants.HISTOGRAM;
+import static org.commonjava.propulsor.metrics.MetricsConstants.METER;
+import static org.commonjava.propulsor.metrics.MetricsConstants.TIMER;
+import static org.commonjava.propulsor.metrics.annotation.MetricNamed.DEFAULT;
+
+/**
+ * Compiled form of a {@link Measure} annotation for a single intercepted method. Metric names are resolved and the
+ * metric instances are looked up in the registry once, so {@link MetricsInterceptor} only has to walk the arrays
+ * on each call. Plans are tagged with the {@link org.commonjava.propulsor.metrics.conf.MetricsConfig} generation they
+ * were built from, and are rebuilt by {@link MetricsManager} when that changes.
+ */
+final class MeasurementPlan
+{
+    /**
+     * Bit mask of the timers to update in a call, when none of them is sampled.
+     */
+    static final long ALL_TIMERS = -1L;
+
+    private final int generation;
+
+    final String[] timerNames;
+
+    final Timer[] timers;
+
+    /**
+     * The {@link #timers}, if every one of them is a {@link SampledTimer}; then a call only needs the clock when one of
+     * them samples it. Null otherwise, or when there are none, or too many for {@link #ALL_TIMERS}.
+     */
+    final SampledTimer[] sampledTimers;
+
+    final String[] meterNames;
+
+    final Meter[] meters;
+
+    final String[] exceptionNames;
+
+    final Meter[] exceptions;
+
+    final Counter[] counters;
+
+    final TimeSinceLastCallGauge[] gauges;
+
+    /**
+     * Histograms of the size of the returned value. Empty if the method's return type has no size.
+     */
+    final Histogram[] resultHistograms;
+
+    /**
+     * Histograms of the summed size of the sized arguments (see {@link #sizedArguments}). Empty if there are none.
+     */
+    final Histogram[] argumentHistograms;
+
+    /**
+     * Indexes of the parameters whose declared type has a size, according to {@link SizeUtils#isSized(Class)}.
+     */
+    final int[] sizedArguments;
+
+    /**
+     * How the method delivers its result; anything but {@link AsyncMeasurement.Mode#NONE} is measured until the
+     * result completes, by an {@link AsyncMeasurement}.
+     */
+    final AsyncMeasurement.Mode asyncMode;
+
+    /**
+     * Index of the JAX-RS AsyncResponse parameter, or -1 if there is none.
+     */
+    final int asyncResponseIndex;
+
+    /**
+     * Method and metric name for the {@link org.commonjava.propulsor.metrics.jfr.MeasuredMethodEvent}: the declaring
+     * class and method, and the first timer's name (or the default name, if there are no timers).
+     */
+    final String eventMethod;
+
+    final String eventMetric;
+
+    private MeasurementPlan( int generation, String[] timerNames, Timer[] timers, String[] meterNames, Meter[] meters,
+                             String[] exceptionNames, Meter[] exceptions, Counter[] counters,
+                             TimeSinceLastCallGauge[] gauges, Histogram[] resultHistograms,
+                             Histogram[] argumentHistograms, int[] sizedArguments, AsyncMeasurement.Mode asyncMode,
+                             int asyncResponseIndex, String eventMethod, String eventMetric )
+    {
+        this.generation = generation;
+        this.timerNames = timerNames;
+        this.timers = timers;
+        this.sampledTimers = getSampledTimers( timers );
+        this.meterNames = meterNames;
+        this.meters = meters;
+        this.exceptionNames = exceptionNames;
+        this.exceptions = exceptions;
+        this.counters = counters;
+        this.gauges = gauges;
+        this.resultHistograms = resultHistograms;
+        this.argumentHistograms = argumentHistograms;
+        this.sizedArguments = sizedArguments;
+        this.asyncMode = asyncMode;
+        this.asyncResponseIndex = asyncResponseIndex;
+        this.eventMethod = eventMethod;
+        this.eventMetric = eventMetric;
+    }
+
+    int getGeneration()
+    {
+        return generation;
+    }
+
+    static MeasurementPlan compile( Method method, int generation, MetricsConfig config, MetricsManager manager )
+    {
+        String instancePrefix = config.getInstancePrefix();
+
+        Measure measure = method.getAnnotation( Measure.class );
+        if ( measure == null )
+        {
+            measure = method.getDeclaringClass().getAnnotation( Measure.class );
+        }
+
+        String defaultName = getDefaultName( method );
+
+        MetricNamed[] timerNamed = measure.timers();
+        String[] timerNames = getNames( instancePrefix, timerNamed, defaultName, TIMER );
+        Timer[] timers = new Timer[timerNames.length];
+        for ( int i = 0; i < timerNames.length; i++ )
+        {
+            Integer sampleRate = config.getSampleRate( getBaseName( timerNamed[i], defaultName ) );
+            timers[i] = manager.getTimer( timerNames[i],
+                                          sampleRate == null ? timerNamed[i].sampleRate() : sampleRate );
+        }
+
+        String[] meterNames = getNames( instancePrefix, measure.meters(), defaultName, METER );
+        Meter[] meters = getMeters( meterNames, manager );
+
+        String[] exceptionNames = getNames( instancePrefix, measure.exceptions(), defaultName, EXCEPTION );
+        Meter[] exceptions = getMeters( exceptionNames, manager );
+
+        String[] counterNames = getNames( instancePrefix, measure.counters(), defaultName, COUNTER );
+        Counter[] counters = new Counter[counterNames.length];
+        for ( int i = 0; i < counterNames.length; i++ )
+        {
+            counters[i] = manager.getCounter( counterNames[i] );
+        }
+
+        String[] gaugeNames = getNames( instancePrefix, measure.guages(), defaultName, GAUGE );
+        TimeSinceLastCallGauge[] gauges = new TimeSinceLastCallGauge[gaugeNames.length];
+        for ( int i = 0; i < gaugeNames.length; i++ )
+        {
+            gauges[i] = manager.getGauge( gaugeNames[i], TimeSinceLastCallGauge.class, TimeSinceLastCallGauge::new );
+        }
+
+        Histogram[] resultHistograms = new Histogram[0];
+        if ( SizeUtils.isSized( method.getReturnType() ) )
+        {
+            String[] names = getNames( instancePrefix, measure.hisograms(), defaultName, HISTOGRAM );
+            resultHistograms = getHistograms( names, manager );
+        }
+
+        List<Integer> sized = new ArrayList<>();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for ( int i = 0; i < parameterTypes.length; i++ )
+        {
+            if ( SizeUtils.isSized( parameterTypes[i] ) )
+            {
+                sized.add( i );
+            }
+        }
+
+        int[] sizedArguments = new int[sized.size()];
+        for ( int i = 0; i < sizedArguments.length; i++ )
+        {
+            sizedArguments[i] = sized.get( i );
+        }
+
+        Histogram[] argumentHistograms = new Histogram[0];
+        if ( sizedArguments.length > 0 )
+        {
+            String[] names = getNames( instancePrefix, measure.hisograms(), defaultName, ARGUMENTS, HISTOGRAM );
+            argumentHistograms = getHistograms( names, manager );
+        }
+
+        AsyncMeasurement.Mode asyncMode = AsyncMeasurement.detect( method.getReturnType(), parameterTypes );
+        int asyncResponseIndex = AsyncMeasurement.asyncResponseIndex( parameterTypes );
+
+        String eventMethod = method.getDeclaringClass().getName() + "." + method.getName();
+        String eventMetric = timerNames.length > 0 ? timerNames[0] : name( instancePrefix, defaultName );
+
+        return new MeasurementPlan( generation, timerNames, timers, meterNames, meters, exceptionNames, exceptions,
+                                    counters, gauges, resultHistograms, argumentHistograms, sizedArguments, asyncMode,
+                                    asyncResponseIndex, eventMethod, eventMetric );
+    }
+
+    private static SampledTimer[] getSampledTimers( Timer[] timers )
+    {
+        if ( timers.length == 0 || timers.length > Long.SIZE )
+        {
+            return null;
+        }
+
+        SampledTimer[] sampled = new SampledTimer[timers.length];
+        for ( int i = 0; i < timers.length; i++ )
+        {
+            if ( !( timers[i] instanceof SampledTimer ) )
+            {
+                return null;
+            }
+            sampled[i] = (SampledTimer) timers[i];
+        }
+
+        return sampled;
+    }
+
+    /**
+     * Count a call on every timer and draw their sample decisions.
+     *
+     * @return a bit mask of the {@link #timers} to update with the call's duration; 0 if the call needn't be timed
+     */
+    long sample()
+    {
+        final SampledTimer[] sampled = sampledTimers;
+        if ( sampled == null )
+        {
+            return ALL_TIMERS;
+        }
+
+        long mask = 0;
+        for ( int i = 0; i < sampled.length; i++ )
+        {
+            if ( sampled[i].sample() )
+            {
+                mask |= 1L << i;
+            }
+        }
+
+        return mask;
+    }
+
+    private static Meter[] getMeters( String[] names, MetricsManager manager )
+    {
+        Meter[] meters = new Meter[names.length];
+        for ( int i = 0; i < names.length; i++ )
+        {
+            meters[i] = manager.getMeter( names[i] );
+        }
+
+        return meters;
+    }
+
+    private static Histogram[] getHistograms( String[] names, MetricsManager manager )
+    {
+        Histogram[] histograms = new Histogram[names.length];
+        for ( int i = 0; i < names.length; i++ )
+        {
+            histograms[i] = manager.getHistogram( names[i] );
+        }
+
+        return histograms;
+    }
+
+    /**
+     * Get default metric name. Use abbreviated package name, e.g., foo.bar.ClassA.methodB -> f.b.ClassA.methodB
+     */
+    private static String getDefaultName( Method method )
+    {
+        // minimum len 1 shortens the package name and keeps class name
+        String cls = getAbbreviatedName( method.getDeclaringClass().getName(), 1 );
+        return name( cls, method.getName() );
+    }
+
+    private static String[] getNames( String instancePrefix, MetricNamed[] named, String defaultName,
+                                      String... suffix )
+    {
+        String[] names = new String[named.length];
+        for ( int i = 0; i < named.length; i++ )
+        {
+            names[i] = getName( instancePrefix, named[i], defaultName, suffix );
+        }
+
+        return names;
+    }
+
+    /**
+     * Get the metric fullname.
+     * @param named user specified name
+     * @param defaultName 'class name + method name', not null.
+     */
+    private static String getName( String instancePrefix, MetricNamed named, String defaultName, String... suffix )
+    {
+        String name = name( name( instancePrefix, getBaseName( named, defaultName ) ), suffix );
+        String[] tags = named.tags();
+        if ( tags.length == 0 )
+        {
+            return name;
+        }
+
+        String separator = String.valueOf( MetricKey.TAG_SEPARATOR );
+        return MetricKey.parse( name + separator + String.join( separator, tags ) ).getEncoded();
+    }
+
+    private static String getBaseName( MetricNamed named, String defaultName )
+    {
+        String name = named.value();
+        if ( isBlank( name ) || name.equals( DEFAULT ) )
+        {
+            name = defaultName;
+        }
+        return name;
+    }
+}
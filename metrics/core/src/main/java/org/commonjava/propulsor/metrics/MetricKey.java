@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Identity of a dimensional metric: a dotted name plus a small set of tags, kept sorted by tag key. The hash and the
+ * registry name are computed once when the key is built, so a key held by the caller (for example in a static field
+ * or a per-endpoint map) can be looked up again without any allocation.
+ * <p>
+ * Dropwizard registries are keyed by String, so tagged metrics are registered under an encoded name in the Graphite
+ * 1.1 tag syntax, name;key1=value1;key2=value2. Reporters use {@link #parse(String)} to recover the tags and emit them
+ * the way their backend supports, or {@link #flatten()} to fold them into a plain dotted path. Untagged keys encode to
+ * the bare name, so they are interchangeable with the plain-String getters in {@link MetricsManager}.
+ * <p>
+ * Tag keys and values may not contain ';', '=' or whitespace; such characters are replaced with '_'.
+ */
+public final class MetricKey
+{
+    public static final char TAG_SEPARATOR = ';';
+
+    public static final char TAG_ASSIGNMENT = '=';
+
+    private static final String[] NO_TAGS = new String[0];
+
+    private final String name;
+
+    /**
+     * Alternating key, value, sorted by key.
+     */
+    private final String[] tags;
+
+    private final String encoded;
+
+    private final int hash;
+
+    private MetricKey( String name, String[] tags )
+    {
+        this.name = name;
+        this.tags = tags;
+        this.encoded = encode( name, tags );
+        this.hash = 31 * name.hashCode() + Arrays.hashCode( tags );
+    }
+
+    /**
+     * @param keyValues alternating tag keys and values; a repeated key keeps its last value
+     */
+    public static MetricKey of( String name, String... keyValues )
+    {
+        if ( name == null || name.isEmpty() )
+        {
+            throw new IllegalArgumentException( "Metric name is empty" );
+        }
+
+        if ( keyValues.length % 2 != 0 )
+        {
+            throw new IllegalArgumentException( "Tags must be given as key, value pairs: " + Arrays.toString(
+                            keyValues ) );
+        }
+
+        String[] tags = NO_TAGS;
+        for ( int i = 0; i < keyValues.length; i += 2 )
+        {
+            tags = withTag( tags, keyValues[i], keyValues[i + 1] );
+        }
+
+        return new MetricKey( name, tags );
+    }
+
+    /**
+     * Decode a registry name built by {@link #getEncoded()}. Tags that are out of order, or given in
+     * {@link org.commonjava.propulsor.metrics.annotation.MetricNamed#tags()} style, are sorted.
+     */
+    public static MetricKey parse( String encoded )
+    {
+        int semi = encoded.indexOf( TAG_SEPARATOR );
+        if ( semi < 0 )
+        {
+            return new MetricKey( encoded, NO_TAGS );
+        }
+
+        String[] tags = NO_TAGS;
+        int start = semi + 1;
+        while ( start <= encoded.length() )
+        {
+            int end = encoded.indexOf( TAG_SEPARATOR, start );
+            if ( end < 0 )
+            {
+                end = encoded.length();
+            }
+
+            int eq = encoded.indexOf( TAG_ASSIGNMENT, start );
+            if ( eq < 0 || eq > end )
+            {
+                if ( end > start )
+                {
+                    throw new IllegalArgumentException( "Invalid tag: '" + encoded.substring( start, end ) + "' in: "
+                                                                        + encoded );
+                }
+            }
+            else
+            {
+                tags = withTag( tags, encoded.substring( start, eq ), encoded.substring( eq + 1, end ) );
+            }
+
+            start = end + 1;
+        }
+
+        return new MetricKey( encoded.substring( 0, semi ), tags );
+    }
+
+    /**
+     * @return true if the registry name carries tags, without decoding it
+     */
+    public static boolean isTagged( String encoded )
+    {
+        return encoded.indexOf( TAG_SEPARATOR ) >= 0;
+    }
+
+    /**
+     * @return a key with the given tag added, or replaced if the key already has it
+     */
+    public MetricKey tagged( String key, String value )
+    {
+        return new MetricKey( name, withTag( tags, key, value ) );
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getTagCount()
+    {
+        return tags.length / 2;
+    }
+
+    public String getTagKey( int index )
+    {
+        return tags[index * 2];
+    }
+
+    public String getTagValue( int index )
+    {
+        return tags[index * 2 + 1];
+    }
+
+    /**
+     * @return the name the metric is registered under
+     */
+    public String getEncoded()
+    {
+        return encoded;
+    }
+
+    /**
+     * @return the name followed by each tag key and value as path segments, name.key1.value1.key2.value2, with any
+     * dots in the tags replaced by '_'; for backends with only hierarchical names
+     */
+    public String flatten()
+    {
+        if ( tags.length == 0 )
+        {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder( encoded.length() );
+        sb.append( name );
+        for ( String tag : tags )
+        {
+            sb.append( '.' ).append( tag.replace( '.', '_' ) );
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( !( o instanceof MetricKey ) )
+        {
+            return false;
+        }
+
+        MetricKey other = (MetricKey) o;
+        return hash == other.hash && name.equals( other.name ) && Arrays.equals( tags, other.tags );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return encoded;
+    }
+
+    private static String[] withTag( String[] tags, String key, String value )
+    {
+        key = sanitize( key );
+        value = sanitize( value );
+        if ( key.isEmpty() )
+        {
+            throw new IllegalArgumentException( "Tag key is empty" );
+        }
+
+        int pos = 0;
+        while ( pos < tags.length && tags[pos].compareTo( key ) < 0 )
+        {
+            pos += 2;
+        }
+
+        String[] result;
+        if ( pos < tags.length && tags[pos].equals( key ) )
+        {
+            result = tags.clone();
+        }
+        else
+        {
+            result = new String[tags.length + 2];
+            System.arraycopy( tags, 0, result, 0, pos );
+            System.arraycopy( tags, pos, result, pos + 2, tags.length - pos );
+            result[pos] = key;
+        }
+
+        result[pos + 1] = value;
+        return result;
+    }
+
+    private static String sanitize( String tag )
+    {
+        if ( tag == null )
+        {
+            return "";
+        }
+
+        StringBuilder sb = null;
+        for ( int i = 0; i < tag.length(); i++ )
+        {
+            char c = tag.charAt( i );
+            if ( c == TAG_SEPARATOR || c == TAG_ASSIGNMENT || Character.isWhitespace( c ) )
+            {
+                if ( sb == null )
+                {
+                    sb = new StringBuilder( tag );
+                }
+                sb.setCharAt( i, '_' );
+            }
+        }
+
+        return sb == null ? tag : sb.toString();
+    }
+
+    private static String encode( String name, String[] tags )
+    {
+        if ( tags.length == 0 )
+        {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder( name );
+        for ( int i = 0; i < tags.length; i += 2 )
+        {
+            sb.append( TAG_SEPARATOR ).append( tags[i] ).append( TAG_ASSIGNMENT ).append( tags[i + 1] );
+        }
+
+        return sb.toString();
+    }
+}
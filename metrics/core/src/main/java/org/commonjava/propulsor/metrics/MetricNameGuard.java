@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Canonicalises and interns the metric names handed to {@link MetricsManager}, and optionally caps how many distinct
+ * names may be registered under one prefix, so that names built from request data cannot grow the registry without
+ * bound. The cap is off unless {@link MetricsConfig#getCardinalityMax()} is set.
+ * <p>
+ * The prefix of a name is the name without its last two segments: for the names built by {@link MeasurementPlan}
+ * (&lt;prefix&gt;.&lt;class&gt;.&lt;method&gt;.&lt;type&gt;) that is the class, and for dynamic names such as
+ * requests.&lt;id&gt;.timer it is the part before the varying segment. Names of one or two segments have no prefix
+ * and all share the empty one, as do names directly under the instance prefix; size the cap with that in mind. For a
+ * name tagged by {@link MetricKey} the prefix is the whole untagged name, so all tag combinations of one metric share
+ * the limit. Once a prefix holds the maximum, new names under it are folded into one overflow metric per type,
+ * &lt;prefix&gt;.overflow.&lt;type&gt;, and counted in {@link #REJECTED}.
+ * <p>
+ * Admitted names are kept in an intern table, so repeated lookups return the same String instance and the registry
+ * map never sees a duplicate. Rejected names are deliberately not remembered. When a metric is removed from the
+ * registry its name is released, making room for another under the same prefix.
+ */
+final class MetricNameGuard
+{
+    static final String OVERFLOW = "overflow";
+
+    static final String REJECTED = "metrics.cardinality.rejected";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final MetricsConfig config;
+
+    private final MetricRegistry registry;
+
+    private final ConcurrentMap<String, String> admitted = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> prefixCounts = new ConcurrentHashMap<>();
+
+    private final Set<String> warnedPrefixes = ConcurrentHashMap.newKeySet();
+
+    MetricNameGuard( MetricsConfig config, MetricRegistry registry )
+    {
+        this.config = config;
+        this.registry = registry;
+        registry.addListener( new ReleaseListener() );
+    }
+
+    /**
+     * @param name the requested metric name
+     * @param type the metric type, one of the {@link MetricsConstants} type names, used for the overflow name
+     * @return the interned canonical name, or the prefix's overflow name if the prefix is full
+     */
+    String resolve( String name, String type )
+    {
+        String known = admitted.get( name );
+        if ( known != null )
+        {
+            return known;
+        }
+
+        String canonical = canonicalize( name );
+        if ( canonical != name )
+        {
+            known = admitted.get( canonical );
+            if ( known != null )
+            {
+                return known;
+            }
+        }
+
+        // names are counted even without a limit, so one set later applies to the names already registered
+        int max = config.getCardinalityMax();
+        String prefix = prefixOf( canonical );
+        AtomicInteger count = prefixCounts.computeIfAbsent( prefix, p -> new AtomicInteger() );
+        String resolved = admitted.computeIfAbsent( canonical, c -> {
+            if ( count.incrementAndGet() <= max || max <= 0 )
+            {
+                return c;
+            }
+
+            count.decrementAndGet();
+            return null;
+        } );
+
+        if ( resolved != null )
+        {
+            return resolved;
+        }
+
+        registry.counter( REJECTED ).inc();
+        if ( warnedPrefixes.add( prefix ) )
+        {
+            logger.warn( "More than {} metrics under '{}'; new names such as '{}' are reported as '{}'.", max, prefix,
+                         canonical, overflowName( prefix, type ) );
+        }
+
+        return overflowName( prefix, type );
+    }
+
+    /**
+     * Forget a name that was removed from the registry, freeing its place under its prefix.
+     */
+    void release( String name )
+    {
+        if ( admitted.remove( name ) != null )
+        {
+            AtomicInteger count = prefixCounts.get( prefixOf( name ) );
+            if ( count != null )
+            {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Trim the name and drop empty segments, so "a..b." and " a.b" both become "a.b". Tags encoded by
+     * {@link MetricKey} are kept as they are. Returns the same instance if the name is already canonical.
+     */
+    static String canonicalize( String name )
+    {
+        if ( name == null || name.trim().isEmpty() )
+        {
+            throw new IllegalArgumentException( "Metric name is blank" );
+        }
+
+        int semi = name.indexOf( MetricKey.TAG_SEPARATOR );
+        if ( semi >= 0 )
+        {
+            String base = name.substring( 0, semi );
+            String canonical = canonicalize( base );
+            return canonical.equals( base ) ? name : canonical + name.substring( semi );
+        }
+
+        String trimmed = name.trim();
+        boolean clean = trimmed.charAt( 0 ) != '.' && trimmed.charAt( trimmed.length() - 1 ) != '.'
+                        && !trimmed.contains( ".." );
+        if ( clean )
+        {
+            return trimmed;
+        }
+
+        StringBuilder sb = new StringBuilder( trimmed.length() );
+        for ( String segment : trimmed.split( "\\." ) )
+        {
+            if ( !segment.isEmpty() )
+            {
+                if ( sb.length() > 0 )
+                {
+                    sb.append( '.' );
+                }
+                sb.append( segment );
+            }
+        }
+
+        if ( sb.length() == 0 )
+        {
+            throw new IllegalArgumentException( "Metric name has no segments: " + name );
+        }
+
+        return sb.toString();
+    }
+
+    static String prefixOf( String canonical )
+    {
+        int semi = canonical.indexOf( MetricKey.TAG_SEPARATOR );
+        if ( semi >= 0 )
+        {
+            return canonical.substring( 0, semi );
+        }
+
+        int last = canonical.lastIndexOf( '.' );
+        int secondLast = last < 0 ? -1 : canonical.lastIndexOf( '.', last - 1 );
+        return secondLast < 0 ? "" : canonical.substring( 0, secondLast );
+    }
+
+    private static String overflowName( String prefix, String type )
+    {
+        return name( prefix.isEmpty() ? null : prefix, OVERFLOW, type );
+    }
+
+    private final class ReleaseListener
+            extends MetricRegistryListener.Base
+    {
+        @Override
+        public void onGaugeRemoved( String name )
+        {
+            release( name );
+        }
+
+        @Override
+        public void onCounterRemoved( String name )
+        {
+            release( name );
+        }
+
+        @Override
+        public void onHistogramRemoved( String name )
+        {
+            release( name );
+        }
+
+        @Override
+        public void onMeterRemoved( String name )
+        {
+            release( name );
+        }
+
+        @Override
+        public void onTimerRemoved( String name )
+        {
+            release( name );
+        }
+    }
+}
@@ -23,4 +23,12 @@ public class MetricsConstants
 
     public static final String TIMER = "timer";
 
+    public static final String COUNTER = "counter";
+
+    public static final String GAUGE = "gauge";
+
+    public static final String HISTOGRAM = "histogram";
+
+    public static final String ARGUMENTS = "args";
+
 }
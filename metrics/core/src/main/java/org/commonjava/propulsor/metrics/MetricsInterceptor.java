@@ -30,11 +30,13 @@
  */
 package org.commonjava.propulsor.metrics;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import org.commonjava.propulsor.metrics.annotation.Measure;
-import org.commonjava.propulsor.metrics.annotation.MetricNamed;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.jfr.MeasuredMethodEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,18 +44,8 @@ import javax.inject.Inject;
 import javax.interceptor.AroundInvoke;
 import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
-import java.lang.reflect.Method;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static com.codahale.metrics.MetricRegistry.name;
-import static org.apache.commons.lang3.ClassUtils.getAbbreviatedName;
-import static org.apache.commons.lang3.StringUtils.isBlank;
-import static org.commonjava.propulsor.metrics.annotation.MetricNamed.DEFAULT;
-import static org.commonjava.propulsor.metrics.MetricsConstants.EXCEPTION;
-import static org.commonjava.propulsor.metrics.MetricsConstants.METER;
-import static org.commonjava.propulsor.metrics.MetricsConstants.TIMER;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @Interceptor
 @Measure
@@ -73,6 +65,19 @@ public class MetricsInterceptor
         this.config = config;
     }
 
+    /**
+     * Hot path: everything that can be resolved ahead of time lives in the {@link MeasurementPlan}, so this only walks
+     * pre-resolved arrays. All timers share one start tick instead of allocating a {@link Timer.Context} apiece, and
+     * trace logging is guarded so it costs nothing when disabled. When every timer is a {@link SampledTimer}, the
+     * sample decisions are drawn first, and the clock is only read for calls that at least one of them samples.
+     * <p>
+     * Methods that return a {@link java.util.concurrent.CompletionStage}, or take a JAX-RS AsyncResponse, are measured
+     * until their result completes rather than until they return (see {@link AsyncMeasurement}); counters then track
+     * calls in flight until completion, too. The result is returned as is.
+     * <p>
+     * With metrics.jfr.events on, each call is also a {@link MeasuredMethodEvent}, which is only allocated and
+     * committed while a Flight Recorder recording has it enabled.
+     */
     @AroundInvoke
     public Object operation( InvocationContext context ) throws Exception
     {
@@ -81,87 +86,182 @@ public class MetricsInterceptor
             return context.proceed();
         }
 
-        Method method = context.getMethod();
-        Measure measure = method.getAnnotation( Measure.class );
-        if ( measure == null )
+        final MeasurementPlan plan = metricsManager.getMeasurementPlan( context.getMethod() );
+
+        if ( logger.isTraceEnabled() )
         {
-            measure = method.getDeclaringClass().getAnnotation( Measure.class );
+            logger.trace( "Gathering metrics for: {}", context.getContextData() );
+            for ( int i = 0; i < plan.timerNames.length; i++ )
+            {
+                logger.trace( "START: {}", plan.timerNames[i] );
+            }
         }
 
-        logger.trace( "Gathering metrics for: {}", context.getContextData() );
-        String nodePrefix = config.getInstancePrefix();
+        if ( plan.argumentHistograms.length > 0 )
+        {
+            updateArgumentHistograms( plan, context.getParameters() );
+        }
 
-        String defaultName = getDefaultName( context );
+        final Counter[] counters = plan.counters;
+        for ( int i = 0; i < counters.length; i++ )
+        {
+            counters[i].inc();
+        }
 
-        List<Timer.Context> timers = Stream.of( measure.timers() ).map( named ->
-                                            {
-                                                String name = getName( nodePrefix, named, defaultName, TIMER );
-                                                Timer.Context tc = metricsManager.getTimer( name ).time();
-                                                logger.trace( "START: {} ({})", name, tc );
-                                                return tc;
-                                            } )
-                                           .collect( Collectors.toList() );
+        final MeasuredMethodEvent event = config.isJfrEventsEnabled() ? MeasuredMethodEvent.start() : null;
+        final long sampled = plan.sample();
+        final long start = sampled != 0 ? System.nanoTime() : 0;
+        if ( plan.asyncMode != AsyncMeasurement.Mode.NONE )
+        {
+            return operationAsync( context, plan, sampled, start, event );
+        }
 
+        boolean failed = false;
         try
         {
-            return context.proceed();
+            Object result = context.proceed();
+
+            final Histogram[] resultHistograms = plan.resultHistograms;
+            if ( resultHistograms.length > 0 && result != null )
+            {
+                long size = SizeUtils.sizeOf( result );
+                for ( int i = 0; i < resultHistograms.length; i++ )
+                {
+                    resultHistograms[i].update( size );
+                }
+            }
+
+            return result;
         }
         catch ( Exception e )
         {
-            Stream.of( measure.exceptions() ).forEach( ( named ) ->
-                                           {
-                                               String name = getName( nodePrefix, named, defaultName, EXCEPTION );
-                                               Meter meter = metricsManager.getMeter( name );
-                                               logger.trace( "ERRORS++ {}", name );
-                                               meter.mark();
-                                           } );
-
+            failed = true;
+            markExceptions( plan );
             throw e;
         }
         finally
         {
-            if ( timers != null )
-            {
-                timers.forEach( timer->{
-                    logger.trace( "STOP: {}", timer );
-                    timer.stop();
-                } );
+            finish( plan, sampled, start, event, failed );
+        }
+    }
+
+    private Object operationAsync( InvocationContext context, MeasurementPlan plan, long sampled, long start,
+                                   MeasuredMethodEvent event )
+            throws Exception
+    {
+        AsyncMeasurement measurement = new AsyncMeasurement( plan, sampled, start, event );
+        if ( plan.asyncMode == AsyncMeasurement.Mode.ASYNC_RESPONSE )
+        {
+            measurement.beforeProceed( context.getParameters() );
+        }
+
+        Object result;
+        try
+        {
+            result = context.proceed();
+        }
+        catch ( Exception e )
+        {
+            measurement.accept( null, e );
+            throw e;
+        }
+
+        measurement.afterProceed( result );
+        return result;
+    }
 
+    static void markExceptions( MeasurementPlan plan )
+    {
+        final boolean trace = logger.isTraceEnabled();
+        final Meter[] exceptions = plan.exceptions;
+        for ( int i = 0; i < exceptions.length; i++ )
+        {
+            if ( trace )
+            {
+                logger.trace( "ERRORS++ {}", plan.exceptionNames[i] );
             }
-            Stream.of( measure.meters() ).forEach( ( named ) ->
-                                           {
-                                               String name = getName( nodePrefix, named, defaultName, METER );
-                                               Meter meter = metricsManager.getMeter( name );
-                                               logger.trace( "CALLS++ {}", name );
-                                               meter.mark();
-                                           } );
+            exceptions[i].mark();
         }
     }
 
     /**
-     * Get default metric name. Use abbreviated package name, e.g., foo.bar.ClassA.methodB -> f.b.ClassA.methodB
+     * Stop the timers and update the meters, counters and gauges for a call that started at the given tick, and
+     * commit its Flight Recorder event, if there is one.
+     *
+     * @param sampled the timers to update, from {@link MeasurementPlan#sample()}; the start tick is only read if this
+     * isn't 0
      */
-    private String getDefaultName( InvocationContext context )
+    static void finish( MeasurementPlan plan, long sampled, long start, MeasuredMethodEvent event, boolean failed )
     {
-        // minimum len 1 shortens the package name and keeps class name
-        String cls = getAbbreviatedName( context.getMethod().getDeclaringClass().getName(), 1 );
-        String method = context.getMethod().getName();
-        return name( cls, method );
+        if ( event != null )
+        {
+            event.finish( plan.eventMethod, plan.eventMetric, failed );
+        }
+
+        final boolean trace = logger.isTraceEnabled();
+        if ( sampled != 0 )
+        {
+            final long elapsed = System.nanoTime() - start;
+            final Timer[] timers = plan.timers;
+            final SampledTimer[] sampledTimers = plan.sampledTimers;
+            for ( int i = 0; i < timers.length; i++ )
+            {
+                if ( trace )
+                {
+                    logger.trace( "STOP: {}", plan.timerNames[i] );
+                }
+
+                if ( sampledTimers == null )
+                {
+                    timers[i].update( elapsed, NANOSECONDS );
+                }
+                else if ( ( sampled & ( 1L << i ) ) != 0 )
+                {
+                    sampledTimers[i].record( elapsed, NANOSECONDS );
+                }
+            }
+        }
+
+        final Meter[] meters = plan.meters;
+        for ( int i = 0; i < meters.length; i++ )
+        {
+            if ( trace )
+            {
+                logger.trace( "CALLS++ {}", plan.meterNames[i] );
+            }
+            meters[i].mark();
+        }
+
+        final Counter[] counters = plan.counters;
+        for ( int i = 0; i < counters.length; i++ )
+        {
+            counters[i].dec();
+        }
+
+        final TimeSinceLastCallGauge[] gauges = plan.gauges;
+        for ( int i = 0; i < gauges.length; i++ )
+        {
+            gauges[i].mark();
+        }
     }
 
-    /**
-     * Get the metric fullname.
-     * @param named user specified name
-     * @param defaultName 'class name + method name', not null.
-     */
-    private String getName( String instancePrefix, MetricNamed named, String defaultName, String suffix )
+    private void updateArgumentHistograms( MeasurementPlan plan, Object[] parameters )
     {
-        String name = named.value();
-        if ( isBlank( name ) || name.equals( DEFAULT ) )
+        long size = 0;
+        for ( int idx : plan.sizedArguments )
+        {
+            long sz = SizeUtils.sizeOf( parameters[idx] );
+            if ( sz > 0 )
+            {
+                size += sz;
+            }
+        }
+
+        final Histogram[] argumentHistograms = plan.argumentHistograms;
+        for ( int i = 0; i < argumentHistograms.length; i++ )
         {
-            name = defaultName;
+            argumentHistograms[i].update( size );
         }
-        return name( instancePrefix, name, suffix );
     }
 
 }
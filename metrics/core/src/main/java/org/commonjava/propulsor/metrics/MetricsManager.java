@@ -15,12 +15,17 @@
  */
 package org.commonjava.propulsor.metrics;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner;
 import org.commonjava.propulsor.metrics.healthcheck.ManagedHealthCheck;
+import org.commonjava.propulsor.metrics.reporter.ReportingScheduler;
 import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
 import org.commonjava.propulsor.metrics.spi.ReporterConfigurator;
 import org.slf4j.Logger;
@@ -31,6 +36,15 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.commonjava.propulsor.metrics.MetricsConstants.COUNTER;
+import static org.commonjava.propulsor.metrics.MetricsConstants.GAUGE;
+import static org.commonjava.propulsor.metrics.MetricsConstants.HISTOGRAM;
+import static org.commonjava.propulsor.metrics.MetricsConstants.METER;
+import static org.commonjava.propulsor.metrics.MetricsConstants.TIMER;
 
 /**
  * Manager class that it responsible for orchestrating initialization of the metrics / health check registries.
@@ -59,9 +73,43 @@ public class MetricsManager
     @Inject
     private MetricRegistry metricRegistry;
 
+    @Inject
+    private ReportingScheduler reportingScheduler;
+
+    @Inject
+    private HealthCheckRunner healthCheckRunner;
+
+    private final Map<Method, MeasurementPlan> measurementPlans = new ConcurrentHashMap<>();
+
+    private MetricNameGuard nameGuard;
+
+    private final MetricRegistry.MetricSupplier<Timer> timerSupplier =
+                    () -> new Timer( config.getReservoirType().newReservoir( config ) );
+
+    private final MetricRegistry.MetricSupplier<Histogram> histogramSupplier =
+                    () -> new Histogram( config.getReservoirType().newReservoir( config ) );
+
+    public MetricsManager()
+    {
+    }
+
+    /**
+     * Create a manager outside of CDI, for benchmarks and tests. The {@link #init()} method is not called.
+     */
+    public MetricsManager( MetricsConfig config, MetricRegistry metricRegistry )
+    {
+        this.config = config;
+        this.metricRegistry = metricRegistry;
+        this.reportingScheduler = new ReportingScheduler( config, metricRegistry );
+        this.healthCheckRunner = new HealthCheckRunner( config );
+        this.nameGuard = new MetricNameGuard( config, metricRegistry );
+    }
+
     @PostConstruct
     public void init()
     {
+        nameGuard = new MetricNameGuard( config, metricRegistry );
+
         if ( !config.isEnabled() )
         {
             logger.info( "Indy metrics subsystem not enabled" );
@@ -72,7 +120,9 @@ public class MetricsManager
 
         if ( healthChecks != null )
         {
-            healthChecks.forEach( hc -> healthCheckRegistry.register( hc.getName(), hc ) );
+            // the registry only sees the cached results; the checks themselves run on the runner's schedule
+            healthChecks.forEach(
+                            hc -> healthCheckRegistry.register( hc.getName(), healthCheckRunner.schedule( hc ) ) );
         }
 
         if ( initializers != null )
@@ -99,15 +149,137 @@ public class MetricsManager
         {
             reporterConfigurators.forEach( rc -> rc.computeEnabled( config ) );
         }
+
+        reportingScheduler.start();
+        healthCheckRunner.start();
+    }
+
+    /**
+     * @return the scheduler that drives the push reporters set up by the {@link MetricsInitializer}s
+     */
+    public ReportingScheduler getReportingScheduler()
+    {
+        return reportingScheduler;
     }
 
+    /**
+     * @return the runner that keeps the last result of each {@link ManagedHealthCheck}
+     */
+    public HealthCheckRunner getHealthCheckRunner()
+    {
+        return healthCheckRunner;
+    }
+
+    /**
+     * Retrieve or register a timer. New timers use the reservoir selected by {@link MetricsConfig#getReservoirType()}.
+     * <p>
+     * Like the other getters here, the name is canonicalised, and once its prefix holds
+     * {@link MetricsConfig#getCardinalityMax()} names a new one resolves to the prefix's overflow metric instead (see
+     * {@link MetricNameGuard}).
+     */
     public Timer getTimer( String name )
     {
-        return this.metricRegistry.timer( name );
+        return metricRegistry.timer( nameGuard.resolve( name, TIMER ), timerSupplier );
+    }
+
+    /**
+     * Retrieve or register a tagged timer. See {@link MetricKey} for how tags are encoded in the registry.
+     */
+    public Timer getTimer( MetricKey key )
+    {
+        return getTimer( key.getEncoded() );
+    }
+
+    /**
+     * Retrieve or register a timer that records only one in sampleRate durations (see {@link SampledTimer}). If a
+     * {@link SampledTimer} is already registered under the name, its sample rate is updated.
+     */
+    public Timer getTimer( String name, int sampleRate )
+    {
+        name = nameGuard.resolve( name, TIMER );
+        if ( sampleRate <= 1 && !( metricRegistry.getMetrics().get( name ) instanceof SampledTimer ) )
+        {
+            return metricRegistry.timer( name, timerSupplier );
+        }
+
+        Timer timer = metricRegistry.timer( name, () -> new SampledTimer(
+                        config.getReservoirType().newReservoir( config ), sampleRate ) );
+        if ( timer instanceof SampledTimer )
+        {
+            ( (SampledTimer) timer ).setSampleRate( sampleRate );
+        }
+        else
+        {
+            logger.warn( "Cannot sample timer: {}; it is already registered without sampling.", name );
+        }
+
+        return timer;
     }
 
     public Meter getMeter( String name )
     {
-        return metricRegistry.meter( name );
+        return metricRegistry.meter( nameGuard.resolve( name, METER ) );
+    }
+
+    public Meter getMeter( MetricKey key )
+    {
+        return getMeter( key.getEncoded() );
+    }
+
+    public Counter getCounter( String name )
+    {
+        return metricRegistry.counter( nameGuard.resolve( name, COUNTER ) );
+    }
+
+    public Counter getCounter( MetricKey key )
+    {
+        return getCounter( key.getEncoded() );
+    }
+
+    /**
+     * Retrieve or register a histogram. New histograms use the reservoir selected by
+     * {@link MetricsConfig#getReservoirType()}.
+     */
+    public Histogram getHistogram( String name )
+    {
+        return metricRegistry.histogram( nameGuard.resolve( name, HISTOGRAM ), histogramSupplier );
+    }
+
+    public Histogram getHistogram( MetricKey key )
+    {
+        return getHistogram( key.getEncoded() );
+    }
+
+    /**
+     * Retrieve the gauge registered under the given name, registering a new one from the supplier if there is none.
+     *
+     * @throws IllegalArgumentException if a different kind of gauge is already registered under that name
+     */
+    public <T extends Gauge<?>> T getGauge( String name, Class<T> type, MetricRegistry.MetricSupplier<T> supplier )
+    {
+        Gauge<?> gauge = metricRegistry.gauge( nameGuard.resolve( name, GAUGE ), supplier::newMetric );
+        if ( !type.isInstance( gauge ) )
+        {
+            throw new IllegalArgumentException( name + " is already used for a different type of gauge" );
+        }
+
+        return type.cast( gauge );
+    }
+
+    /**
+     * Retrieve the compiled {@link MeasurementPlan} for the given intercepted method, building it on first use or
+     * when the {@link MetricsConfig} has changed since it was built.
+     */
+    MeasurementPlan getMeasurementPlan( Method method )
+    {
+        int generation = config.getGeneration();
+        MeasurementPlan plan = measurementPlans.get( method );
+        if ( plan == null || plan.getGeneration() != generation )
+        {
+            plan = MeasurementPlan.compile( method, generation, config, this );
+            measurementPlans.put( method, plan );
+        }
+
+        return plan;
     }
 }
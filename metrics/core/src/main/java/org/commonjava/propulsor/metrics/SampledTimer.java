@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link Timer} that only feeds one in {@link #getSampleRate()} durations into its reservoir and rates, while still
+ * counting every call in a striped {@link LongAdder}. {@link #getCount()} is exact; each sampled call marks the rates
+ * with the sample rate in force when it was recorded, so they are estimates that stay right across
+ * {@link #setSampleRate(int)}. A sample rate of 1 (or less) records every call, like a plain timer.
+ * <p>
+ * Callers that can skip reading the clock split the work: {@link #sample()} counts the call and draws the decision,
+ * and only a sampled call needs timing and {@link #record(long, TimeUnit)}. {@link #update(long, TimeUnit)} and the
+ * time methods do both, so they still read the clock for every call.
+ */
+public class SampledTimer
+        extends Timer
+{
+    private final LongAdder calls = new LongAdder();
+
+    // kept here rather than in the superclass, which marks its meter with a weight of 1
+    private final Histogram histogram;
+
+    private final Meter meter = new Meter();
+
+    private volatile int sampleRate;
+
+    public SampledTimer( Reservoir reservoir, int sampleRate )
+    {
+        super( reservoir );
+        this.histogram = new Histogram( reservoir );
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    public void setSampleRate( int sampleRate )
+    {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Count a call, and decide whether its duration should be recorded.
+     *
+     * @return true if the caller should time the call and hand the duration to {@link #record(long, TimeUnit)}
+     */
+    public boolean sample()
+    {
+        calls.increment();
+
+        int rate = sampleRate;
+        return rate <= 1 || ThreadLocalRandom.current().nextInt( rate ) == 0;
+    }
+
+    /**
+     * Record the duration of a call that {@link #sample()} chose, standing in for one sample rate's worth of calls.
+     */
+    public void record( long duration, TimeUnit unit )
+    {
+        if ( duration >= 0 )
+        {
+            histogram.update( unit.toNanos( duration ) );
+            int rate = sampleRate;
+            meter.mark( rate <= 1 ? 1 : rate );
+        }
+    }
+
+    @Override
+    public void update( long duration, TimeUnit unit )
+    {
+        if ( sample() )
+        {
+            record( duration, unit );
+        }
+    }
+
+    @Override
+    public <T> T time( Callable<T> event )
+            throws Exception
+    {
+        try (Context context = time())
+        {
+            return event.call();
+        }
+    }
+
+    @Override
+    public <T> T timeSupplier( Supplier<T> event )
+    {
+        try (Context context = time())
+        {
+            return event.get();
+        }
+    }
+
+    @Override
+    public void time( Runnable event )
+    {
+        try (Context context = time())
+        {
+            event.run();
+        }
+    }
+
+    @Override
+    public long getCount()
+    {
+        return calls.sum();
+    }
+
+    @Override
+    public double getMeanRate()
+    {
+        return meter.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate()
+    {
+        return meter.getOneMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate()
+    {
+        return meter.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getFifteenMinuteRate()
+    {
+        return meter.getFifteenMinuteRate();
+    }
+
+    @Override
+    public Snapshot getSnapshot()
+    {
+        return histogram.getSnapshot();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Size calculation for the values recorded by {@link org.commonjava.propulsor.metrics.annotation.Measure#hisograms()}.
+ * Collections, maps, arrays and character sequences have a size; nothing else does.
+ */
+final class SizeUtils
+{
+    static final long UNSIZED = -1;
+
+    private SizeUtils()
+    {
+    }
+
+    static boolean isSized( Class<?> type )
+    {
+        return type.isArray() || Collection.class.isAssignableFrom( type ) || Map.class.isAssignableFrom( type )
+                || CharSequence.class.isAssignableFrom( type );
+    }
+
+    static long sizeOf( Object value )
+    {
+        if ( value == null )
+        {
+            return UNSIZED;
+        }
+        else if ( value instanceof Collection )
+        {
+            return ( (Collection<?>) value ).size();
+        }
+        else if ( value instanceof Map )
+        {
+            return ( (Map<?, ?>) value ).size();
+        }
+        else if ( value instanceof CharSequence )
+        {
+            return ( (CharSequence) value ).length();
+        }
+        else if ( value.getClass().isArray() )
+        {
+            return Array.getLength( value );
+        }
+
+        return UNSIZED;
+    }
+}
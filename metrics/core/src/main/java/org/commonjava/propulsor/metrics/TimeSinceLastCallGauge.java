@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * Reports the milliseconds since {@link #mark()} was last called, or -1 if it never was. Used for the gauges declared
+ * in {@link org.commonjava.propulsor.metrics.annotation.Measure#guages()}, where a growing value means the measured
+ * method has stopped being called (or has stopped completing).
+ */
+public class TimeSinceLastCallGauge
+        implements Gauge<Long>
+{
+    private volatile long lastCall = -1;
+
+    public void mark()
+    {
+        lastCall = System.currentTimeMillis();
+    }
+
+    @Override
+    public Long getValue()
+    {
+        long last = lastCall;
+        return last < 0 ? -1 : System.currentTimeMillis() - last;
+    }
+}
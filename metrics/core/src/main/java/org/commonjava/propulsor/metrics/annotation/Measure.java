@@ -24,6 +24,19 @@ import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.TYPE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
+/**
+ * Measure the annotated method (or every method of the annotated class) using
+ * {@link org.commonjava.propulsor.metrics.MetricsInterceptor}.
+ * <ul>
+ *     <li>meters: marked once per call</li>
+ *     <li>timers: duration of each call</li>
+ *     <li>exceptions: marked once per call that throws</li>
+ *     <li>guages: milliseconds since a call last completed</li>
+ *     <li>counters: calls currently in flight (incremented on entry, decremented on exit)</li>
+ *     <li>hisograms: size of the returned value (name suffix 'histogram') and summed size of the arguments
+ *     (suffix 'args.histogram'), for collections, maps, arrays and character sequences</li>
+ * </ul>
+ */
 @InterceptorBinding
 @Target( { METHOD, TYPE } )
 @Retention( RUNTIME )
@@ -29,4 +29,17 @@ public @interface MetricNamed
     String DEFAULT = "default";
 
     String value() default DEFAULT;
+
+    /**
+     * For timers: time only one in this many calls, feeding its duration into the reservoir and rates. Every call is
+     * still counted. Intercepted methods whose timers are all sampled only read the clock for the sampled calls.
+     * Overridden by a &lt;name&gt;.sample entry in the metrics configuration.
+     */
+    int sampleRate() default 1;
+
+    /**
+     * Tags for the metric, each as key=value. The metric is registered under a
+     * {@link org.commonjava.propulsor.metrics.MetricKey}, and reporters emit the tags as their backend supports.
+     */
+    String[] tags() default {};
 }
\ No newline at end of file
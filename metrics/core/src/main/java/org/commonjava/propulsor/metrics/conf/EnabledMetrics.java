@@ -19,40 +19,52 @@ import org.commonjava.propulsor.config.ConfigurationException;
 import org.commonjava.propulsor.config.annotation.ConfigName;
 import org.commonjava.propulsor.config.section.BeanSectionListener;
 import org.commonjava.propulsor.config.section.ConfigurationSectionListener;
+import org.commonjava.propulsor.metrics.MetricKey;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
-import java.util.stream.Stream;
-
-import static java.lang.Boolean.FALSE;
 
 /**
  * Mapping of enabled metrics. This works much the same way as normal logging systems in Java, where enablement is
- * hierarchical. You can turn on all metrics in org.commonjava.propulsor by setting org.commonjava.propulsor.enable=true,
- * while still turning off org.commonjava.propulsor.config.enable=false or even
- * org.commonjava.propulsor.config.DotConfConfigurationReader.enable=false.
+ * hierarchical. You can turn on all metrics in org.commonjava.propulsor by setting
+ * org.commonjava.propulsor.enabled=true, while still turning off org.commonjava.propulsor.config.enabled=false or even
+ * org.commonjava.propulsor.config.DotConfConfigurationReader.enabled=false. The most specific matching key wins, and a
+ * '*' segment matches any single segment, so jvm.*.heap.enabled=false covers jvm.memory.heap and jvm.pools.heap. Names
+ * that no key matches follow the enabled flag of the section itself.
  *
  * In practice, metrics will probably be topical, not arranged around class / package hierarchies. But the same logic
  * applies.
+ *
+ * Lookups go through an immutable {@link EnabledMetricsTrie} compiled from the configured map, and the final answer
+ * for each name is memoized, so reporters filtering every metric on every cycle (possibly from several threads) only
+ * pay for a hash lookup. The memo holds at most {@link #MAX_VERDICTS} names and is emptied when full, so names that
+ * come and go (and metrics removed from the registry) can't make it grow without bound. Any change to the configuration bumps {@link #getGeneration()}; compiled rules are tagged
+ * with the generation they were built from, and rules from an older generation are never used.
  */
 public abstract class EnabledMetrics<T>
         extends BeanSectionListener<T>
 {
     public static final String ENABLED = "enabled";
 
-    private Map<String, Boolean> enabledMetricMap = new HashMap<>();
+    /**
+     * Size at which the memoized answers are dropped, to be recomputed as names are asked about again.
+     */
+    static final int MAX_VERDICTS = 8192;
+
+    private Map<String, Boolean> enabledMetricMap = new ConcurrentHashMap<>();
 
-    private transient Map<String, Boolean> denormalized = new HashMap<>();
+    private final transient AtomicReference<CompiledFlags> compiled = new AtomicReference<>();
+
+    private final transient AtomicInteger generation = new AtomicInteger();
 
     public void set(String name, boolean enabled)
     {
         enabledMetricMap.put( name, enabled );
+        invalidate();
     }
 
     public Boolean get( String name )
@@ -62,46 +74,67 @@ public abstract class EnabledMetrics<T>
 
     public Boolean clear( String name )
     {
-        return enabledMetricMap.remove( name );
+        Boolean old = enabledMetricMap.remove( name );
+        invalidate();
+        return old;
     }
 
+    /**
+     * @return the flag of the most specific key matching this name, or {@link #isEnabled()} if no key matches. Tags
+     * encoded in the name by {@link org.commonjava.propulsor.metrics.MetricKey} are ignored.
+     */
     public boolean isEnabled( String name )
     {
-        Boolean enabled = this.enabled;
-        if ( enabled != null )
+        CompiledFlags flags = compiled.get();
+        int current = generation.get();
+        if ( flags == null || flags.generation != current )
         {
-            return enabled;
+            // a reader that compiled from an older generation may still publish, but its rules are never used
+            CompiledFlags fresh = new CompiledFlags( EnabledMetricsTrie.compile( enabledMetricMap ), current );
+            compiled.compareAndSet( flags, fresh );
+            flags = fresh;
         }
 
-        enabled = enabledMetricMap.get( name );
-        if ( enabled != null )
+        Boolean verdict = flags.verdicts.get( name );
+        if ( verdict == null )
         {
-            return enabled;
+            int tags = name.indexOf( MetricKey.TAG_SEPARATOR );
+            Boolean found = flags.trie.lookup( tags < 0 ? name : name.substring( 0, tags ) );
+            verdict = found != null ? found : enabled;
+            if ( flags.verdicts.size() >= MAX_VERDICTS )
+            {
+                flags.verdicts.clear();
+            }
+            flags.verdicts.put( name, verdict );
         }
 
-        String[] parts = name.split("\\.");
-        List<String> subnames = new ArrayList<>();
-        final StringBuilder sb = new StringBuilder(name);
+        return verdict;
+    }
 
-        // NOTE Ordering of add...we want to search most specific first!
-        Stream.of(parts).forEach( (part)->{
-            sb.append( '.' ).append( part );
-            subnames.add( 0, sb.toString() );
-        } );
+    /**
+     * Incremented whenever this configuration is (re)loaded or changed, so anything compiled from it (like the
+     * measurement plans used by {@link org.commonjava.propulsor.metrics.MetricsInterceptor}) can tell it is stale.
+     */
+    public int getGeneration()
+    {
+        return generation.get();
+    }
 
-        return subnames.stream().map( ( subname ) ->
-                                         {
-                                             Boolean result = denormalized.get( subname );
-                                             if ( result == null )
-                                             {
-                                                 result = enabledMetricMap.get( subname );
-                                                 if ( result != null )
-                                                 {
-                                                     denormalized.put( subname, result );
-                                                 }
-                                             }
-                                             return result;
-                                         } ).filter( Objects::nonNull ).findFirst().orElse( FALSE );
+    /**
+     * Bump the generation, which retires the compiled rules.
+     */
+    protected void invalidate()
+    {
+        generation.incrementAndGet();
+        compiled.set( null );
+    }
+
+    @Override
+    public void sectionComplete( final String section )
+            throws ConfigurationException
+    {
+        super.sectionComplete( section );
+        invalidate();
     }
 
     private boolean enabled;
@@ -115,6 +148,7 @@ public abstract class EnabledMetrics<T>
     public void setEnabled(boolean enabled)
     {
         this.enabled = enabled;
+        invalidate();
     }
 
     @ConfigName( BeanSectionListener.UNSET_PROPERTIES_MAP )
@@ -151,11 +185,31 @@ public abstract class EnabledMetrics<T>
 
     protected final Map<String, Boolean> getEnabledMetrics()
     {
-        return enabledMetricMap;
+        return Collections.unmodifiableMap( enabledMetricMap );
     }
 
     public final void computeEnabledIfAbsent( String name, Function<String, Boolean> func )
     {
         enabledMetricMap.computeIfAbsent( name, func );
+        invalidate();
+    }
+
+    /**
+     * Trie plus the memoized answers computed from it, for one generation of the configured map. Swapped out as a
+     * unit, so a lookup racing with a change can't leave a stale answer in the new memo.
+     */
+    private static final class CompiledFlags
+    {
+        private final EnabledMetricsTrie trie;
+
+        private final int generation;
+
+        private final Map<String, Boolean> verdicts = new ConcurrentHashMap<>();
+
+        private CompiledFlags( EnabledMetricsTrie trie, int generation )
+        {
+            this.trie = trie;
+            this.generation = generation;
+        }
     }
 }
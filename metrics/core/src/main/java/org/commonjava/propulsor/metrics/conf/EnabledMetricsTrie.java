@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.conf;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable character trie compiled from the hierarchical enabled-metrics map in {@link EnabledMetrics}. A configured
+ * key matches a metric name when it equals the name or a dotted prefix of it, segment by segment, where a '*' segment
+ * matches any single segment (e.g. jvm.*.heap). Of all matching keys, the one covering the most segments wins; on a
+ * tie, the one with fewer wildcards wins. Without wildcards a lookup walks the name once; it never allocates.
+ */
+final class EnabledMetricsTrie
+{
+    private static final char SEPARATOR = '.';
+
+    private static final char WILDCARD = '*';
+
+    private static final long NO_MATCH = -1;
+
+    private static final int MAX_WILDCARDS = 0xff;
+
+    private static final char[] NO_KEYS = new char[0];
+
+    private static final EnabledMetricsTrie[] NO_CHILDREN = new EnabledMetricsTrie[0];
+
+    private final char[] keys;
+
+    private final EnabledMetricsTrie[] children;
+
+    private final Boolean value;
+
+    private EnabledMetricsTrie( char[] keys, EnabledMetricsTrie[] children, Boolean value )
+    {
+        this.keys = keys;
+        this.children = children;
+        this.value = value;
+    }
+
+    static EnabledMetricsTrie compile( Map<String, Boolean> flags )
+    {
+        Builder root = new Builder();
+        flags.forEach( ( name, flag ) -> {
+            if ( name != null && flag != null )
+            {
+                Builder node = root;
+                for ( int i = 0; i < name.length(); i++ )
+                {
+                    node = node.children.computeIfAbsent( name.charAt( i ), c -> new Builder() );
+                }
+                node.value = flag;
+            }
+        } );
+
+        return root.build();
+    }
+
+    /**
+     * @return the flag of the most specific configured key matching the name, or null if none matches
+     */
+    Boolean lookup( String name )
+    {
+        long best = search( this, name, 0, 0, 0 );
+        return best == NO_MATCH ? null : ( best & 1 ) == 1;
+    }
+
+    /**
+     * Match the segment of the name starting at pos against the children of node, both literally and against a
+     * wildcard segment, and return the best encoded match (see {@link #encode(int, int, boolean)}) for the rest of
+     * the name.
+     */
+    private static long search( EnabledMetricsTrie node, String name, int pos, int segments, int wildcards )
+    {
+        long best = NO_MATCH;
+        int len = name.length();
+
+        EnabledMetricsTrie literal = node;
+        int end = pos;
+        while ( literal != null && end < len && name.charAt( end ) != SEPARATOR )
+        {
+            literal = literal.child( name.charAt( end ) );
+            end++;
+        }
+
+        if ( literal != null )
+        {
+            best = segmentComplete( literal, name, end, segments + 1, wildcards );
+        }
+
+        EnabledMetricsTrie wildcard = node.child( WILDCARD );
+        if ( wildcard != null )
+        {
+            // the literal walk may have stopped early; carry on to the real end of the segment
+            while ( end < len && name.charAt( end ) != SEPARATOR )
+            {
+                end++;
+            }
+
+            if ( end > pos )
+            {
+                best = Math.max( best, segmentComplete( wildcard, name, end, segments + 1, wildcards + 1 ) );
+            }
+        }
+
+        return best;
+    }
+
+    private static long segmentComplete( EnabledMetricsTrie node, String name, int end, int segments, int wildcards )
+    {
+        long best = node.value == null ? NO_MATCH : encode( segments, wildcards, node.value );
+        if ( end < name.length() )
+        {
+            EnabledMetricsTrie next = node.child( SEPARATOR );
+            if ( next != null )
+            {
+                best = Math.max( best, search( next, name, end + 1, segments, wildcards ) );
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Orders matches by number of segments covered, then by fewest wildcards; the lowest bit carries the flag.
+     */
+    private static long encode( int segments, int wildcards, boolean value )
+    {
+        long specificity = ( (long) segments << 8 ) | ( MAX_WILDCARDS - Math.min( wildcards, MAX_WILDCARDS ) );
+        return ( specificity << 1 ) | ( value ? 1 : 0 );
+    }
+
+    private EnabledMetricsTrie child( char c )
+    {
+        int idx = Arrays.binarySearch( keys, c );
+        return idx < 0 ? null : children[idx];
+    }
+
+    private static final class Builder
+    {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+
+        private Boolean value;
+
+        private EnabledMetricsTrie build()
+        {
+            if ( children.isEmpty() )
+            {
+                return new EnabledMetricsTrie( NO_KEYS, NO_CHILDREN, value );
+            }
+
+            char[] keys = new char[children.size()];
+            EnabledMetricsTrie[] nodes = new EnabledMetricsTrie[children.size()];
+            int i = 0;
+            for ( Map.Entry<Character, Builder> entry : children.entrySet() )
+            {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+
+            return new EnabledMetricsTrie( keys, nodes, value );
+        }
+    }
+}
@@ -15,11 +15,15 @@
  */
 package org.commonjava.propulsor.metrics.conf;
 
+import org.commonjava.propulsor.config.ConfigurationException;
 import org.commonjava.propulsor.config.annotation.ConfigName;
 import org.commonjava.propulsor.config.annotation.SectionName;
+import org.commonjava.propulsor.config.section.BeanSectionListener;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Named;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,8 +41,38 @@ public class MetricsConfig
 
     public static final TimeUnit DURATION_TIMEUNIT = TimeUnit.SECONDS;
 
+    public static final long DEFAULT_RESERVOIR_WINDOW_SECONDS = 60;
+
+    public static final String SAMPLE = "sample";
+
+    public static final int DEFAULT_REPORTER_THREADS = 2;
+
+    public static final int DEFAULT_CARDINALITY_MAX = 0;
+
+    public static final long DEFAULT_HEALTHCHECK_PERIOD_SECONDS = 30;
+
+    public static final long DEFAULT_HEALTHCHECK_TIMEOUT_SECONDS = 10;
+
     private String instancePrefix;
 
+    private ReservoirType reservoirType = ReservoirType.EXPONENTIAL;
+
+    private Long reservoirWindowSeconds;
+
+    private Map<String, Integer> sampleRates = new HashMap<>();
+
+    private Integer reporterThreads;
+
+    private Integer cardinalityMax;
+
+    private Boolean jfrEvents;
+
+    private Boolean jfrStream;
+
+    private Long healthCheckPeriodSeconds;
+
+    private Long healthCheckTimeoutSeconds;
+
     @Override
     protected String getEnabledPrefix()
     {
@@ -54,6 +88,171 @@ public class MetricsConfig
     public void setInstancePrefix( final String instancePrefix )
     {
         this.instancePrefix = instancePrefix;
+        invalidate();
+    }
+
+    public ReservoirType getReservoirType()
+    {
+        return reservoirType;
+    }
+
+    public void setReservoirType( final ReservoirType reservoirType )
+    {
+        this.reservoirType = reservoirType;
+    }
+
+    @ConfigName( "reservoir" )
+    public void setReservoir( final String reservoir )
+    {
+        this.reservoirType = ReservoirType.fromConfigName( reservoir );
+    }
+
+    public long getReservoirWindowSeconds()
+    {
+        return reservoirWindowSeconds == null ? DEFAULT_RESERVOIR_WINDOW_SECONDS : reservoirWindowSeconds;
+    }
+
+    @ConfigName( "reservoir.window.seconds" )
+    public void setReservoirWindowSeconds( final Long reservoirWindowSeconds )
+    {
+        this.reservoirWindowSeconds = reservoirWindowSeconds;
+    }
+
+    /**
+     * @return the size of the pool {@link org.commonjava.propulsor.metrics.reporter.ReportingScheduler} runs
+     * reporters on
+     */
+    public int getReporterThreads()
+    {
+        return reporterThreads == null ? DEFAULT_REPORTER_THREADS : reporterThreads;
+    }
+
+    @ConfigName( "reporter.threads" )
+    public void setReporterThreads( final Integer reporterThreads )
+    {
+        this.reporterThreads = reporterThreads;
+    }
+
+    /**
+     * @return the most distinct metric names {@link org.commonjava.propulsor.metrics.MetricsManager} will register
+     * under one prefix (the name without its last two segments) before folding new ones into an overflow metric; 0 or
+     * less (the default) means no limit
+     */
+    public int getCardinalityMax()
+    {
+        return cardinalityMax == null ? DEFAULT_CARDINALITY_MAX : cardinalityMax;
+    }
+
+    @ConfigName( "cardinality.max" )
+    public void setCardinalityMax( final Integer cardinalityMax )
+    {
+        this.cardinalityMax = cardinalityMax;
+    }
+
+    /**
+     * @return true if {@link org.commonjava.propulsor.metrics.MetricsInterceptor} should emit a
+     * {@link org.commonjava.propulsor.metrics.jfr.MeasuredMethodEvent} per call (recorded only when a Flight
+     * Recorder recording enables it)
+     */
+    public boolean isJfrEventsEnabled()
+    {
+        return jfrEvents != null && jfrEvents;
+    }
+
+    @ConfigName( "jfr.events" )
+    public void setJfrEvents( final Boolean jfrEvents )
+    {
+        this.jfrEvents = jfrEvents;
+    }
+
+    /**
+     * @return true if GC pause, safepoint and allocation events should be streamed from Flight Recorder into the
+     * registry (see {@link org.commonjava.propulsor.metrics.jfr.JfrStreamInitializer})
+     */
+    public boolean isJfrStreamEnabled()
+    {
+        return jfrStream != null && jfrStream;
+    }
+
+    @ConfigName( "jfr.stream" )
+    public void setJfrStream( final Boolean jfrStream )
+    {
+        this.jfrStream = jfrStream;
+    }
+
+    /**
+     * @return how often {@link org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner} runs a health check
+     * that does not set its own period
+     */
+    public long getHealthCheckPeriodSeconds()
+    {
+        return healthCheckPeriodSeconds == null ? DEFAULT_HEALTHCHECK_PERIOD_SECONDS : healthCheckPeriodSeconds;
+    }
+
+    @ConfigName( "healthcheck.period.seconds" )
+    public void setHealthCheckPeriodSeconds( final Long healthCheckPeriodSeconds )
+    {
+        this.healthCheckPeriodSeconds = healthCheckPeriodSeconds;
+    }
+
+    /**
+     * @return how long {@link org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner} lets a health check
+     * that does not set its own timeout run before recording it as unhealthy
+     */
+    public long getHealthCheckTimeoutSeconds()
+    {
+        return healthCheckTimeoutSeconds == null ? DEFAULT_HEALTHCHECK_TIMEOUT_SECONDS : healthCheckTimeoutSeconds;
+    }
+
+    @ConfigName( "healthcheck.timeout.seconds" )
+    public void setHealthCheckTimeoutSeconds( final Long healthCheckTimeoutSeconds )
+    {
+        this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds;
+    }
+
+    /**
+     * Timer sampling rate configured via &lt;name&gt;.sample = N, where the name is the one given in
+     * {@link org.commonjava.propulsor.metrics.annotation.MetricNamed} (or the default class + method name), without
+     * instance prefix or type suffix. Null if none is configured.
+     */
+    public Integer getSampleRate( final String name )
+    {
+        return sampleRates.get( name );
+    }
+
+    public void setSampleRate( final String name, final int rate )
+    {
+        sampleRates.put( name, rate );
+        invalidate();
+    }
+
+    /**
+     * In addition to the hierarchical &lt;name&gt;.enabled flags handled by {@link EnabledMetrics}, pick up
+     * &lt;name&gt;.sample sampling rates.
+     */
+    @Override
+    @ConfigName( BeanSectionListener.UNSET_PROPERTIES_MAP )
+    public void setMapParameters( final Map<String, Object> params )
+            throws ConfigurationException
+    {
+        super.setMapParameters( params );
+
+        for ( Map.Entry<String, Object> entry : params.entrySet() )
+        {
+            String name = entry.getKey();
+            if ( name.endsWith( "." + SAMPLE ) && name.length() > SAMPLE.length() + 1 && entry.getValue() != null )
+            {
+                String trimmed = name.substring( 0, name.length() - SAMPLE.length() - 1 );
+                try
+                {
+                    sampleRates.put( trimmed, Integer.valueOf( String.valueOf( entry.getValue() ).trim() ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw new ConfigurationException( "Invalid sample rate for %s: %s", trimmed, entry.getValue() );
+                }
+            }
+        }
     }
 
 }
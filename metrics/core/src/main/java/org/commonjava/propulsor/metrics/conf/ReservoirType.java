@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.conf;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import org.commonjava.propulsor.metrics.reservoir.HdrHistogramReservoir;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservoir implementations that can be selected for timers and histograms via the 'reservoir' option of
+ * {@link MetricsConfig}.
+ */
+public enum ReservoirType
+{
+    /**
+     * Dropwizard default: forward-decaying sample biased to the last five minutes. Takes a lock on each update.
+     */
+    EXPONENTIAL( "exponential" ),
+
+    /**
+     * Every value from the configured window (see {@link MetricsConfig#getReservoirWindowSeconds()}).
+     */
+    SLIDING_TIME_WINDOW( "sliding-time-window" ),
+
+    /**
+     * Lock-free HdrHistogram recorder, with snapshots over the configured window; see {@link HdrHistogramReservoir}.
+     */
+    HDR( "hdr" );
+
+    private final String configName;
+
+    ReservoirType( String configName )
+    {
+        this.configName = configName;
+    }
+
+    public String getConfigName()
+    {
+        return configName;
+    }
+
+    public Reservoir newReservoir( MetricsConfig config )
+    {
+        switch ( this )
+        {
+            case HDR:
+                return new HdrHistogramReservoir( HdrHistogramReservoir.DEFAULT_SIGNIFICANT_DIGITS,
+                                                  config.getReservoirWindowSeconds(), Clock.defaultClock() );
+            case SLIDING_TIME_WINDOW:
+                return new SlidingTimeWindowArrayReservoir( config.getReservoirWindowSeconds(), TimeUnit.SECONDS );
+            default:
+                return new ExponentiallyDecayingReservoir();
+        }
+    }
+
+    public static ReservoirType fromConfigName( String name )
+    {
+        for ( ReservoirType type : values() )
+        {
+            if ( type.configName.equalsIgnoreCase( name ) || type.name().equalsIgnoreCase( name ) )
+            {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException( "Unknown metrics reservoir: " + name );
+    }
+}
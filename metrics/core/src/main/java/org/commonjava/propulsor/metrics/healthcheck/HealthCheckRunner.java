@@ -0,0 +1,341 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.healthcheck;
+
+import com.codahale.metrics.health.HealthCheck;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs health checks in the background, each on its own period and with its own timeout, and keeps the last result of
+ * each. Callers read that cached result (and its age) instead of running the check, so health endpoints answer
+ * without waiting on anything, however expensive the checks are.
+ *
+ * A check is never run again while its previous run is still going; that tick is skipped. A run that outlasts its
+ * timeout is interrupted and recorded as unhealthy, and until the first run completes a check reports as pending
+ * (unhealthy).
+ */
+@ApplicationScoped
+public class HealthCheckRunner
+{
+    public static final String PENDING = "Pending first run";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private MetricsConfig config;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService pool;
+
+    public HealthCheckRunner()
+    {
+    }
+
+    public HealthCheckRunner( MetricsConfig config )
+    {
+        this.config = config;
+    }
+
+    /**
+     * Run the given check in the background, using its own period and timeout where it sets them.
+     *
+     * @return a health check that answers with the cached result, to register in place of the original
+     */
+    public HealthCheck schedule( ManagedHealthCheck check )
+    {
+        return schedule( check.getName(), check, check.getPeriodSeconds(), check.getTimeoutSeconds() );
+    }
+
+    /**
+     * Run the given check every periodSeconds in the background, recording it as unhealthy if a run takes longer than
+     * timeoutSeconds. A period or timeout of 0 or less means the configured default. Checks scheduled before
+     * {@link #start()} begin with it; later ones start running immediately.
+     *
+     * @return a health check that answers with the cached result, to register in place of the original
+     */
+    public synchronized HealthCheck schedule( String name, HealthCheck check, long periodSeconds, long timeoutSeconds )
+    {
+        Entry entry = new Entry( name, check, periodSeconds > 0 ? periodSeconds : config.getHealthCheckPeriodSeconds(),
+                                 timeoutSeconds > 0 ? timeoutSeconds : config.getHealthCheckTimeoutSeconds() );
+
+        Entry old = entries.put( name, entry );
+        if ( old != null )
+        {
+            old.cancel();
+        }
+
+        if ( scheduler != null )
+        {
+            start( entry );
+        }
+
+        return new CachedHealthCheck( entry );
+    }
+
+    public synchronized void start()
+    {
+        if ( scheduler != null )
+        {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor( threadFactory( "healthcheck-tick" ) );
+        pool = Executors.newCachedThreadPool( threadFactory( "healthcheck" ) );
+        entries.values().forEach( this::start );
+    }
+
+    @PreDestroy
+    public synchronized void stop()
+    {
+        if ( scheduler != null )
+        {
+            entries.values().forEach( Entry::cancel );
+            scheduler.shutdownNow();
+            pool.shutdownNow();
+            scheduler = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * @return the last result of the named check, or null if no such check is scheduled
+     */
+    public CachedResult getResult( String name )
+    {
+        Entry entry = entries.get( name );
+        return entry == null ? null : entry.result;
+    }
+
+    /**
+     * @return the last result of every scheduled check, by name
+     */
+    public SortedMap<String, CachedResult> getResults()
+    {
+        SortedMap<String, CachedResult> results = new TreeMap<>();
+        entries.forEach( ( name, entry ) -> results.put( name, entry.result ) );
+        return results;
+    }
+
+    private void start( Entry entry )
+    {
+        entry.task = scheduler.scheduleAtFixedRate( () -> run( entry ), 0, entry.periodSeconds, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Start a run of the check, unless the last one is still going. Runs on the scheduler thread.
+     */
+    private void run( Entry entry )
+    {
+        if ( !entry.running.compareAndSet( false, true ) )
+        {
+            logger.debug( "Health check {} is still running; skipping this run", entry.name );
+            return;
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        long start = System.nanoTime();
+        Future<?> future;
+        try
+        {
+            future = pool.submit( () -> {
+                try
+                {
+                    HealthCheck.Result result = entry.check.execute();
+                    if ( done.compareAndSet( false, true ) )
+                    {
+                        entry.result = new CachedResult( result, System.nanoTime() - start );
+                    }
+                }
+                finally
+                {
+                    entry.running.set( false );
+                }
+            } );
+        }
+        catch ( RuntimeException e )
+        {
+            entry.running.set( false );
+            logger.error( "Failed to start health check " + entry.name + ": " + e.getMessage(), e );
+            return;
+        }
+
+        scheduler.schedule( () -> {
+            if ( done.compareAndSet( false, true ) )
+            {
+                logger.warn( "Health check {} timed out after {}s", entry.name, entry.timeoutSeconds );
+                entry.result = new CachedResult(
+                                HealthCheck.Result.unhealthy( "Timed out after %ds", entry.timeoutSeconds ),
+                                System.nanoTime() - start );
+                future.cancel( true );
+            }
+        }, entry.timeoutSeconds, TimeUnit.SECONDS );
+    }
+
+    private static ThreadFactory threadFactory( String prefix )
+    {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread( runnable, prefix + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+
+    /**
+     * Last result of a health check, with when it was recorded and how long the run took.
+     */
+    public static final class CachedResult
+    {
+        private final HealthCheck.Result result;
+
+        private final long recordedNanos;
+
+        private final long durationNanos;
+
+        private final boolean pending;
+
+        private CachedResult( HealthCheck.Result result, long durationNanos )
+        {
+            this( result, durationNanos, false );
+        }
+
+        private CachedResult( HealthCheck.Result result, long durationNanos, boolean pending )
+        {
+            this.result = result;
+            this.recordedNanos = System.nanoTime();
+            this.durationNanos = durationNanos;
+            this.pending = pending;
+        }
+
+        public HealthCheck.Result getResult()
+        {
+            return result;
+        }
+
+        public boolean isHealthy()
+        {
+            return result.isHealthy();
+        }
+
+        /**
+         * @return true until the check's first run completes (or times out)
+         */
+        public boolean isPending()
+        {
+            return pending;
+        }
+
+        /**
+         * @return milliseconds since this result was recorded
+         */
+        public long getAgeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - recordedNanos );
+        }
+
+        /**
+         * @return how long the run that produced this result took, in milliseconds
+         */
+        public long getDurationMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( durationNanos );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "CachedResult{" + result + ", age=" + getAgeMillis() + "ms}";
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String name;
+
+        private final HealthCheck check;
+
+        private final long periodSeconds;
+
+        private final long timeoutSeconds;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private volatile CachedResult result =
+                        new CachedResult( HealthCheck.Result.unhealthy( PENDING ), 0, true );
+
+        private ScheduledFuture<?> task;
+
+        private Entry( String name, HealthCheck check, long periodSeconds, long timeoutSeconds )
+        {
+            this.name = name;
+            this.check = check;
+            this.periodSeconds = periodSeconds;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        private void cancel()
+        {
+            if ( task != null )
+            {
+                task.cancel( false );
+                task = null;
+            }
+        }
+    }
+
+    /**
+     * Stands in for a scheduled check in the {@link com.codahale.metrics.health.HealthCheckRegistry}, answering with
+     * its cached result.
+     */
+    private static final class CachedHealthCheck
+            extends HealthCheck
+    {
+        private final Entry entry;
+
+        private CachedHealthCheck( Entry entry )
+        {
+            this.entry = entry;
+        }
+
+        @Override
+        protected Result check()
+        {
+            return entry.result.getResult();
+        }
+    }
+}
@@ -19,6 +19,10 @@ import com.codahale.metrics.health.HealthCheck;
 
 import static org.apache.commons.lang3.ClassUtils.getAbbreviatedName;
 
+/**
+ * Health check that {@link org.commonjava.propulsor.metrics.MetricsManager} picks up and runs in the background through
+ * the {@link HealthCheckRunner}; the registry only ever sees its last result.
+ */
 public abstract class ManagedHealthCheck
                 extends HealthCheck
 {
@@ -28,4 +32,22 @@ public abstract class ManagedHealthCheck
         return getAbbreviatedName( this.getClass().getName(), 1 );
     }
 
+    /**
+     * @return how often to run this check, or 0 to use
+     * {@link org.commonjava.propulsor.metrics.conf.MetricsConfig#getHealthCheckPeriodSeconds()}
+     */
+    public long getPeriodSeconds()
+    {
+        return 0;
+    }
+
+    /**
+     * @return how long this check may run before it is recorded as unhealthy, or 0 to use
+     * {@link org.commonjava.propulsor.metrics.conf.MetricsConfig#getHealthCheckTimeoutSeconds()}
+     */
+    public long getTimeoutSeconds()
+    {
+        return 0;
+    }
+
 }
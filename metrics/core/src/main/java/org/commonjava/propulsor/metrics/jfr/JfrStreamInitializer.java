@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jfr;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.metrics.ManagedMetricsException;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.commonjava.propulsor.metrics.InitializerUtil.registerIfEnabled;
+
+/**
+ * Streams Flight Recorder events into the registry, when metrics.jfr.stream is on:
+ * <ul>
+ *     <li>jvm.jfr.gc.pause: timer of the total pause time of each garbage collection (jdk.GarbageCollection)</li>
+ *     <li>jvm.jfr.safepoint.sync: timer of the time each safepoint took to reach, from the request until all threads
+ *     were stopped (jdk.SafepointBegin); the time spent at the safepoint afterwards is not included</li>
+ *     <li>jvm.jfr.allocation: meter of sampled allocated bytes (jdk.ObjectAllocationSample, Java 16 and later)</li>
+ * </ul>
+ * Each can be turned off like any other metric. Event streaming needs Java 14 or later; on older JVMs this logs a
+ * warning and does nothing.
+ */
+@ApplicationScoped
+@Named
+public class JfrStreamInitializer
+        implements MetricsInitializer
+{
+    static final String GC_PAUSE = "jvm.jfr.gc.pause";
+
+    static final String SAFEPOINT_SYNC = "jvm.jfr.safepoint.sync";
+
+    static final String ALLOCATION = "jvm.jfr.allocation";
+
+    private static final int ALLOCATION_SAMPLE_VERSION = 16;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final MetricsConfig config;
+
+    private RecordingStreamBridge stream;
+
+    @Inject
+    public JfrStreamInitializer( MetricsConfig config )
+    {
+        this.config = config;
+    }
+
+    @Override
+    public void initialize( MetricRegistry registry, HealthCheckRegistry healthCheckRegistry )
+            throws ManagedMetricsException
+    {
+        if ( !config.isJfrStreamEnabled() )
+        {
+            return;
+        }
+
+        try
+        {
+            stream = RecordingStreamBridge.open();
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            throw new ManagedMetricsException( "Failed to open Flight Recorder event stream", e );
+        }
+
+        if ( stream == null )
+        {
+            logger.warn( "Flight Recorder event streaming needs Java 14 or later; {} metrics are not available.",
+                         "jvm.jfr" );
+            return;
+        }
+
+        Timer gcPause = new Timer();
+        registerIfEnabled( GC_PAUSE, gcPause, config, registry );
+        if ( registry.getTimers().get( GC_PAUSE ) == gcPause )
+        {
+            stream.enable( "jdk.GarbageCollection" );
+            stream.onEvent( "jdk.GarbageCollection",
+                            e -> gcPause.update( e.getDuration( "sumOfPauses" ).toNanos(), NANOSECONDS ) );
+        }
+
+        Timer safepoint = new Timer();
+        registerIfEnabled( SAFEPOINT_SYNC, safepoint, config, registry );
+        if ( registry.getTimers().get( SAFEPOINT_SYNC ) == safepoint )
+        {
+            stream.enable( "jdk.SafepointBegin" );
+            stream.onEvent( "jdk.SafepointBegin", e -> safepoint.update( e.getDuration().toNanos(), NANOSECONDS ) );
+        }
+
+        Meter allocation = new Meter();
+        if ( Runtime.version().feature() >= ALLOCATION_SAMPLE_VERSION )
+        {
+            registerIfEnabled( ALLOCATION, allocation, config, registry );
+        }
+        if ( registry.getMeters().get( ALLOCATION ) == allocation )
+        {
+            stream.enable( "jdk.ObjectAllocationSample" );
+            stream.onEvent( "jdk.ObjectAllocationSample", e -> allocation.mark( e.getLong( "weight" ) ) );
+        }
+
+        stream.startAsync();
+        logger.info( "Streaming Flight Recorder events into {} metrics", "jvm.jfr" );
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        if ( stream != null )
+        {
+            stream.close();
+            stream = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one call of a {@link org.commonjava.propulsor.metrics.annotation.Measure measured} method,
+ * emitted by {@link org.commonjava.propulsor.metrics.MetricsInterceptor} when metrics.jfr.events is on. The event spans
+ * the call (until its result completes, for async methods), so recordings can line calls up with GC, safepoints and
+ * locks on the same thread.
+ * <p>
+ * Use {@link #start()}, which returns null, without allocating, unless a recording has the event enabled; the fields
+ * are only filled in for events that will be committed.
+ */
+@Name( MeasuredMethodEvent.NAME )
+@Label( "Measured Method" )
+@Category( { "Propulsor", "Metrics" } )
+@Description( "Call of a method measured by the Propulsor metrics interceptor" )
+@StackTrace( false )
+public final class MeasuredMethodEvent
+        extends Event
+{
+    public static final String NAME = "org.commonjava.propulsor.MeasuredMethod";
+
+    public static final String SUCCESS = "success";
+
+    public static final String FAILURE = "failure";
+
+    @Label( "Method" )
+    private String method;
+
+    @Label( "Metric" )
+    private String metric;
+
+    @Label( "Outcome" )
+    private String outcome;
+
+    /**
+     * @return a started event, or null if no recording wants it
+     */
+    public static MeasuredMethodEvent start()
+    {
+        if ( !Type.EVENT_TYPE.isEnabled() )
+        {
+            return null;
+        }
+
+        MeasuredMethodEvent event = new MeasuredMethodEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it, if it passes the recording's threshold.
+     */
+    public void finish( String method, String metric, boolean failed )
+    {
+        end();
+        if ( shouldCommit() )
+        {
+            this.method = method;
+            this.metric = metric;
+            this.outcome = failed ? FAILURE : SUCCESS;
+            commit();
+        }
+    }
+
+    public String getMethod()
+    {
+        return method;
+    }
+
+    public String getMetric()
+    {
+        return metric;
+    }
+
+    public String getOutcome()
+    {
+        return outcome;
+    }
+
+    /**
+     * Looked up on first use rather than while this class initializes, since the lookup registers the class.
+     */
+    private static final class Type
+    {
+        private static final EventType EVENT_TYPE = EventType.getEventType( MeasuredMethodEvent.class );
+    }
+}
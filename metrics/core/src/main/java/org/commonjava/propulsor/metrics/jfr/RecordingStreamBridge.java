@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jfr;
+
+import jdk.jfr.EventSettings;
+import jdk.jfr.consumer.RecordedEvent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Reflective access to jdk.jfr.consumer.RecordingStream, which only exists from Java 14 on. This module targets Java
+ * 11, where Flight Recorder has events and recordings but no in-process streaming, so the stream is used only when the
+ * running JVM has it.
+ */
+final class RecordingStreamBridge
+        implements AutoCloseable
+{
+    private static final String RECORDING_STREAM = "jdk.jfr.consumer.RecordingStream";
+
+    private final Object stream;
+
+    private final Method enable;
+
+    private final Method onEvent;
+
+    private final Method startAsync;
+
+    private final Method close;
+
+    private RecordingStreamBridge( Class<?> type )
+            throws ReflectiveOperationException
+    {
+        this.stream = type.getConstructor().newInstance();
+        this.enable = type.getMethod( "enable", String.class );
+        this.onEvent = type.getMethod( "onEvent", String.class, Consumer.class );
+        this.startAsync = type.getMethod( "startAsync" );
+        this.close = type.getMethod( "close" );
+    }
+
+    /**
+     * @return a new, unstarted stream, or null if this JVM can't stream Flight Recorder events
+     */
+    static RecordingStreamBridge open()
+            throws ReflectiveOperationException
+    {
+        Class<?> type;
+        try
+        {
+            type = Class.forName( RECORDING_STREAM );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return null;
+        }
+
+        return new RecordingStreamBridge( type );
+    }
+
+    /**
+     * Enable the event, recording every occurrence regardless of its duration.
+     */
+    EventSettings enable( String eventName )
+    {
+        EventSettings settings = (EventSettings) invoke( enable, eventName );
+        return settings.withThreshold( Duration.ZERO );
+    }
+
+    void onEvent( String eventName, Consumer<RecordedEvent> action )
+    {
+        invoke( onEvent, eventName, action );
+    }
+
+    void startAsync()
+    {
+        invoke( startAsync );
+    }
+
+    @Override
+    public void close()
+    {
+        invoke( close );
+    }
+
+    private Object invoke( Method method, Object... args )
+    {
+        try
+        {
+            return method.invoke( stream, args );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new IllegalStateException( "Cannot call RecordingStream." + method.getName(), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException( "RecordingStream." + method.getName() + " failed", cause );
+        }
+    }
+}
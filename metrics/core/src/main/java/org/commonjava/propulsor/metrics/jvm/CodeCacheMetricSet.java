@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.RatioGauge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Used, committed and max bytes and usage ratio of each code cache memory pool, as &lt;pool&gt;.used etc., e.g.
+ * CodeHeap_non-profiled_nmethods.used. A full code cache stops the JIT compiler, which shows up as latency long before
+ * anything fails.
+ */
+final class CodeCacheMetricSet
+        implements MetricSet
+{
+    @Override
+    public Map<String, Metric> getMetrics()
+    {
+        Map<String, Metric> metrics = new HashMap<>();
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getType() != MemoryType.NON_HEAP || !isCodeCache( pool.getName() ) )
+            {
+                continue;
+            }
+
+            String prefix = pool.getName().replace( "'", "" ).replace( ' ', '_' );
+            metrics.put( prefix + ".used", (Gauge<Long>) () -> pool.getUsage().getUsed() );
+            metrics.put( prefix + ".committed", (Gauge<Long>) () -> pool.getUsage().getCommitted() );
+            metrics.put( prefix + ".max", (Gauge<Long>) () -> pool.getUsage().getMax() );
+            metrics.put( prefix + ".usage", new RatioGauge()
+            {
+                @Override
+                protected Ratio getRatio()
+                {
+                    MemoryUsage usage = pool.getUsage();
+                    return Ratio.of( usage.getUsed(), usage.getMax() < 0 ? usage.getCommitted() : usage.getMax() );
+                }
+            } );
+        }
+
+        return metrics;
+    }
+
+    private static boolean isCodeCache( String poolName )
+    {
+        return poolName.startsWith( "CodeHeap" ) || poolName.equals( "Code Cache" );
+    }
+}
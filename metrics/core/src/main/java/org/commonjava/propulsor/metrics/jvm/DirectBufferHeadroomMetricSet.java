@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.RatioGauge;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How close direct buffers are to -XX:MaxDirectMemorySize, next to the count/used/capacity that
+ * {@link com.codahale.metrics.jvm.BufferPoolMetricSet} reports: "max", "headroom" (bytes left) and "usage"
+ * (used / max). The limit defaults to the max heap size when the option isn't set. Mapped buffers have
+ * no such limit; their size is covered by the stock set.
+ */
+final class DirectBufferHeadroomMetricSet
+        implements MetricSet
+{
+    private static final String MAX_DIRECT_MEMORY = "MaxDirectMemorySize";
+
+    @Override
+    public Map<String, Metric> getMetrics()
+    {
+        Map<String, Metric> metrics = new HashMap<>();
+        BufferPoolMXBean direct = null;
+        for ( BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans( BufferPoolMXBean.class ) )
+        {
+            if ( "direct".equals( pool.getName() ) )
+            {
+                direct = pool;
+            }
+        }
+
+        if ( direct == null )
+        {
+            return metrics;
+        }
+
+        long max = maxDirectMemory();
+        BufferPoolMXBean pool = direct;
+        metrics.put( "max", (Gauge<Long>) () -> max );
+        metrics.put( "headroom", (Gauge<Long>) () -> max - pool.getMemoryUsed() );
+        metrics.put( "usage", new RatioGauge()
+        {
+            @Override
+            protected Ratio getRatio()
+            {
+                return Ratio.of( pool.getMemoryUsed(), max );
+            }
+        } );
+        return metrics;
+    }
+
+    static long maxDirectMemory()
+    {
+        HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean( HotSpotDiagnosticMXBean.class );
+        if ( hotspot != null )
+        {
+            try
+            {
+                long configured = Long.parseLong( hotspot.getVMOption( MAX_DIRECT_MEMORY ).getValue() );
+                if ( configured > 0 )
+                {
+                    return configured;
+                }
+            }
+            catch ( IllegalArgumentException e )
+            {
+                // not a HotSpot option here; fall back to the default
+            }
+        }
+
+        return Runtime.getRuntime().maxMemory();
+    }
+}
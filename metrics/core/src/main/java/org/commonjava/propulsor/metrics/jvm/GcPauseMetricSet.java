@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jvm;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer per stop-the-world garbage collector of the duration of each collection, fed by the collectors' JMX
+ * notifications rather than by polling, so every pause is recorded rather than the sum since the last report. Names
+ * are the collector names with spaces replaced by '_', e.g. G1_Young_Generation.
+ * <p>
+ * Collectors that report concurrent cycles (such as "G1 Concurrent GC", "ZGC Cycles" or "ConcurrentMarkSweep") are
+ * left out: their durations are mostly time the application kept running, not pauses. ZGC and Shenandoah report
+ * their pauses separately, under "... Pauses".
+ */
+final class GcPauseMetricSet
+        implements MetricSet, NotificationListener
+{
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    private final Map<NotificationEmitter, String> emitters = new HashMap<>();
+
+    GcPauseMetricSet()
+    {
+        for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            if ( gc instanceof NotificationEmitter && !isConcurrent( gc.getName() ) )
+            {
+                timers.put( gc.getName(), new Timer() );
+                emitters.put( (NotificationEmitter) gc, gc.getName() );
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics()
+    {
+        Map<String, Metric> metrics = new HashMap<>();
+        timers.forEach( ( name, timer ) -> metrics.put( name.replace( ' ', '_' ), timer ) );
+        return Collections.unmodifiableMap( metrics );
+    }
+
+    void start()
+    {
+        emitters.keySet().forEach( emitter -> emitter.addNotificationListener( this, null, null ) );
+    }
+
+    void stop()
+    {
+        for ( NotificationEmitter emitter : emitters.keySet() )
+        {
+            try
+            {
+                emitter.removeNotificationListener( this );
+            }
+            catch ( ListenerNotFoundException e )
+            {
+                // never started
+            }
+        }
+    }
+
+    static boolean isConcurrent( String gcName )
+    {
+        return gcName.contains( "Concurrent" ) || gcName.endsWith( " Cycles" );
+    }
+
+    @Override
+    public void handleNotification( Notification notification, Object handback )
+    {
+        if ( !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( notification.getType() ) )
+        {
+            return;
+        }
+
+        GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from( (CompositeData) notification.getUserData() );
+        Timer timer = timers.get( info.getGcName() );
+        if ( timer != null )
+        {
+            timer.update( info.getGcInfo().getDuration(), TimeUnit.MILLISECONDS );
+        }
+    }
+}
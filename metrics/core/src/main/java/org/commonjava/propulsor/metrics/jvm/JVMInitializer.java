@@ -15,6 +15,7 @@
  */
 package org.commonjava.propulsor.metrics.jvm;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.codahale.metrics.jvm.BufferPoolMetricSet;
@@ -25,10 +26,14 @@ import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
 import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.lang.management.CompilationMXBean;
 import java.lang.management.ManagementFactory;
 
 import static org.commonjava.propulsor.metrics.InitializerUtil.registerIfEnabled;
@@ -53,8 +58,24 @@ public class JVMInitializer
 
     private static final String METRIC_JVM_CLASSLOADING = "jvm.classloading";
 
+    private static final String METRIC_JVM_ALLOCATION = "jvm.allocation";
+
+    private static final String METRIC_JVM_THREAD_POOLS = "jvm.threads.pools";
+
+    private static final String METRIC_JVM_GC_PAUSE = "jvm.gc.pause";
+
+    private static final String METRIC_JVM_COMPILATION_TIME = "jvm.compilation.time";
+
+    private static final String METRIC_JVM_CODECACHE = "jvm.codecache";
+
+    private static final String METRIC_JVM_DIRECT_BUFFERS = "jvm.buffers.direct";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     private final MetricsConfig config;
 
+    private GcPauseMetricSet gcPauses;
+
     @Inject
     public JVMInitializer( MetricsConfig config )
     {
@@ -71,5 +92,65 @@ public class JVMInitializer
         registerIfEnabled( METRIC_JVM_CLASSLOADING, new ClassLoadingGaugeSet(), config, registry );
         registerIfEnabled( METRIC_JVM_BUFFERS, new BufferPoolMetricSet( ManagementFactory.getPlatformMBeanServer() ),
                            config, registry );
+
+        registerRuntimeMetrics( registry );
+    }
+
+    /**
+     * The finer-grained runtime metrics, each under its own key so it can be turned off on its own:
+     * <ul>
+     *     <li>jvm.allocation: bytes allocated by all threads, and the allocation rate</li>
+     *     <li>jvm.threads.pools: CPU time and allocated bytes per thread pool (see {@link ThreadUsageSampler})</li>
+     *     <li>jvm.gc.pause: timer per stop-the-world collector of each collection's duration (see
+     *     {@link GcPauseMetricSet})</li>
+     *     <li>jvm.compilation.time: total JIT compilation time in milliseconds</li>
+     *     <li>jvm.codecache: usage of each code cache pool</li>
+     *     <li>jvm.buffers.direct.{max,headroom,usage}: room left for direct buffers</li>
+     * </ul>
+     * Safepoints are not covered here: HotSpot only exposes their statistics through the unexported sun.management
+     * package. Turn on metrics.jfr.stream for the jvm.jfr.safepoint.sync timer instead.
+     */
+    private void registerRuntimeMetrics( MetricRegistry registry )
+    {
+        ThreadUsageSampler threadUsage = new ThreadUsageSampler();
+        if ( threadUsage.isSupported() )
+        {
+            registerIfEnabled( METRIC_JVM_ALLOCATION, threadUsage.allocationMetrics(), config, registry );
+            if ( config.isEnabled() && config.isEnabled( METRIC_JVM_THREAD_POOLS ) )
+            {
+                threadUsage.registerPoolMetrics( registry, METRIC_JVM_THREAD_POOLS );
+            }
+        }
+        else
+        {
+            logger.info( "Per-thread CPU and allocation measurement is unavailable or turned off in this JVM; "
+                                         + "jvm.allocation and jvm.threads.pools are not registered" );
+        }
+
+        if ( config.isEnabled() && config.isEnabled( METRIC_JVM_GC_PAUSE ) )
+        {
+            gcPauses = new GcPauseMetricSet();
+            registry.register( METRIC_JVM_GC_PAUSE, gcPauses );
+            gcPauses.start();
+        }
+
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        if ( compilation != null && compilation.isCompilationTimeMonitoringSupported() )
+        {
+            registerIfEnabled( METRIC_JVM_COMPILATION_TIME, (Gauge<Long>) compilation::getTotalCompilationTime,
+                               config, registry );
+        }
+
+        registerIfEnabled( METRIC_JVM_CODECACHE, new CodeCacheMetricSet(), config, registry );
+        registerIfEnabled( METRIC_JVM_DIRECT_BUFFERS, new DirectBufferHeadroomMetricSet(), config, registry );
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        if ( gcPauses != null )
+        {
+            gcPauses.stop();
+        }
     }
 }
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import org.commonjava.propulsor.metrics.MetricKey;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Samples CPU time and allocated bytes of every live thread, at most once a second and only when one of its gauges is
+ * read, and keeps running totals so that threads ending don't make them go backwards. Provides:
+ * <ul>
+ *     <li>{@link #allocationMetrics()}: bytes allocated by all threads, and the allocation rate in bytes per second
+ *     between the last two samples.</li>
+ *     <li>{@link #registerPoolMetrics(MetricRegistry, String)}: CPU nanoseconds and allocated bytes per thread pool,
+ *     as gauges tagged with pool=&lt;name&gt;. A pool is a thread name without its trailing number, so
+ *     "XNIO-1 task-12" counts towards "XNIO-1 task". Pools that appear later are registered on the next sample; past
+ *     {@link #MAX_POOLS} they are counted as "other".</li>
+ * </ul>
+ * Per-thread figures come from the HotSpot com.sun.management.ThreadMXBean; on other JVMs {@link #isSupported()} is
+ * false. Thread CPU time and allocation measurement are JVM-wide switches that HotSpot turns on by default; they are
+ * only read here, never flipped, so if either is off {@link #isSupported()} is false too, and if one is turned off
+ * later the totals stop moving.
+ */
+final class ThreadUsageSampler
+{
+    static final int MAX_POOLS = 100;
+
+    static final String OTHER_POOL = "other";
+
+    private static final long SAMPLE_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+    private static final Pattern TRAILING_NUMBER = Pattern.compile( "[-_#.: ]*\\d+$" );
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private final Map<Long, ThreadState> states = new HashMap<>();
+
+    private final Map<String, long[]> pools = new HashMap<>();
+
+    private MetricRegistry poolRegistry;
+
+    private String poolPrefix;
+
+    private long lastSample;
+
+    private long allocatedBytes;
+
+    private double allocationRate;
+
+    ThreadUsageSampler()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean ?
+                        (com.sun.management.ThreadMXBean) bean :
+                        null;
+    }
+
+    boolean isSupported()
+    {
+        return threads != null && threads.isThreadAllocatedMemorySupported() && threads.isThreadCpuTimeSupported()
+                        && isEnabled();
+    }
+
+    private boolean isEnabled()
+    {
+        return threads.isThreadAllocatedMemoryEnabled() && threads.isThreadCpuTimeEnabled();
+    }
+
+    MetricSet allocationMetrics()
+    {
+        return () -> {
+            Map<String, Metric> metrics = new HashMap<>();
+            metrics.put( "bytes", (Gauge<Long>) () -> {
+                sample();
+                synchronized ( this )
+                {
+                    return allocatedBytes;
+                }
+            } );
+            metrics.put( "rate", (Gauge<Double>) () -> {
+                sample();
+                synchronized ( this )
+                {
+                    return allocationRate;
+                }
+            } );
+            return metrics;
+        };
+    }
+
+    /**
+     * Register the per-pool gauges as &lt;prefix&gt;.cpu and &lt;prefix&gt;.allocated, for the pools running now and
+     * for those that show up in later samples.
+     */
+    synchronized void registerPoolMetrics( MetricRegistry registry, String prefix )
+    {
+        this.poolRegistry = registry;
+        this.poolPrefix = prefix;
+        pools.forEach( this::registerPool );
+        lastSample = 0;
+        sample();
+    }
+
+    static String poolName( String threadName )
+    {
+        String pool = TRAILING_NUMBER.matcher( threadName ).replaceFirst( "" ).trim();
+        return pool.isEmpty() ? "unnamed" : pool;
+    }
+
+    synchronized void sample()
+    {
+        long now = System.nanoTime();
+        if ( ( lastSample != 0 && now - lastSample < SAMPLE_NANOS ) || !isEnabled() )
+        {
+            return;
+        }
+
+        long[] ids = threads.getAllThreadIds();
+        long[] cpu = threads.getThreadCpuTime( ids );
+        long[] allocated = threads.getThreadAllocatedBytes( ids );
+
+        long allocatedDelta = 0;
+        Map<Long, ThreadState> live = new HashMap<>( ids.length * 2 );
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            if ( cpu[i] < 0 || allocated[i] < 0 )
+            {
+                // the thread ended while we were looking
+                continue;
+            }
+
+            ThreadState state = states.get( ids[i] );
+            if ( state == null )
+            {
+                ThreadInfo info = threads.getThreadInfo( ids[i] );
+                if ( info == null )
+                {
+                    continue;
+                }
+                state = new ThreadState( pool( poolName( info.getThreadName() ) ) );
+            }
+
+            long cpuDelta = cpu[i] - state.cpu;
+            long allocDelta = allocated[i] - state.allocated;
+            state.cpu = cpu[i];
+            state.allocated = allocated[i];
+            state.pool[0] += cpuDelta;
+            state.pool[1] += allocDelta;
+            allocatedDelta += allocDelta;
+            live.put( ids[i], state );
+        }
+
+        states.clear();
+        states.putAll( live );
+
+        allocatedBytes += allocatedDelta;
+        if ( lastSample != 0 )
+        {
+            allocationRate = allocatedDelta / ( ( now - lastSample ) / (double) TimeUnit.SECONDS.toNanos( 1 ) );
+        }
+        lastSample = now;
+    }
+
+    /**
+     * @return the running totals of the pool, {cpu nanos, allocated bytes}, registering its gauges if it is new
+     */
+    private long[] pool( String name )
+    {
+        long[] totals = pools.get( name );
+        if ( totals != null )
+        {
+            return totals;
+        }
+
+        if ( pools.size() >= MAX_POOLS && !OTHER_POOL.equals( name ) )
+        {
+            return pool( OTHER_POOL );
+        }
+
+        long[] created = new long[2];
+        pools.put( name, created );
+        registerPool( name, created );
+        return created;
+    }
+
+    private void registerPool( String name, long[] totals )
+    {
+        if ( poolRegistry != null )
+        {
+            poolRegistry.gauge( MetricKey.of( poolPrefix + ".cpu", "pool", name ).getEncoded(),
+                                () -> (Gauge<Long>) () -> read( totals, 0 ) );
+            poolRegistry.gauge( MetricKey.of( poolPrefix + ".allocated", "pool", name ).getEncoded(),
+                                () -> (Gauge<Long>) () -> read( totals, 1 ) );
+        }
+    }
+
+    private long read( long[] totals, int index )
+    {
+        sample();
+        synchronized ( this )
+        {
+            return totals[index];
+        }
+    }
+
+    private static final class ThreadState
+    {
+        private final long[] pool;
+
+        private long cpu;
+
+        private long allocated;
+
+        private ThreadState( long[] pool )
+        {
+            this.pool = pool;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.codahale.metrics.health.HealthCheckRegistry;
 import org.commonjava.propulsor.metrics.ManagedMetricsException;
 import org.commonjava.propulsor.metrics.conf.ConsoleReporterConfig;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
 import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +29,6 @@ import org.slf4j.LoggerFactory;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 import static org.commonjava.propulsor.metrics.conf.MetricsConfig.DURATION_TIMEUNIT;
 import static org.commonjava.propulsor.metrics.conf.MetricsConfig.RATE_TIMEUNIT;
@@ -41,11 +41,15 @@ public class ConsoleReporterInitializer
 
     private final MetricsConfig metricsConfig;
 
+    private final ReportingScheduler reportingScheduler;
+
     @Inject
-    public ConsoleReporterInitializer( ConsoleReporterConfig config, MetricsConfig metricsConfig )
+    public ConsoleReporterInitializer( ConsoleReporterConfig config, MetricsConfig metricsConfig,
+                                       ReportingScheduler reportingScheduler )
     {
         this.config = config;
         this.metricsConfig = metricsConfig;
+        this.reportingScheduler = reportingScheduler;
     }
 
     @Override
@@ -57,13 +61,17 @@ public class ConsoleReporterInitializer
             Logger logger = LoggerFactory.getLogger( getClass() );
             logger.debug( "Setting up console metrics reporter" );
 
-            ConsoleReporter.forRegistry( registry )
-                           .convertDurationsTo( DURATION_TIMEUNIT )
-                           .convertRatesTo( RATE_TIMEUNIT )
-                           .formattedFor( config.getTimeZone() )
-                           .formattedFor( config.getLocale() )
-                           .build()
-                           .start( config.getReportSeconds(), TimeUnit.SECONDS );
+            EnabledMetricFilter filter = new EnabledMetricFilter( config );
+            ConsoleReporter reporter = ConsoleReporter.forRegistry( registry )
+                                                      .convertDurationsTo( DURATION_TIMEUNIT )
+                                                      .convertRatesTo( RATE_TIMEUNIT )
+                                                      .formattedFor( config.getTimeZone() )
+                                                      .formattedFor( config.getLocale() )
+                                                      .filter( filter )
+                                                      .build();
+
+            reportingScheduler.schedule( DeltaReporter.wrapIfEnabled( reporter, config, registry, filter ), filter,
+                                         config.getReportSeconds() );
         }
     }
 }
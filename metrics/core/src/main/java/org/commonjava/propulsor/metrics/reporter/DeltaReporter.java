@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.spi.ReporterConfigurator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporter that passes only the metrics that changed since the last report on to another reporter, plus everything
+ * every N cycles, so backends aren't rewritten with the same values on every report. Counters, meters, histograms and
+ * timers count as changed when their count moved; gauges when their value differs. Each gauge is read once here and
+ * handed on as a constant, so the delegate doesn't evaluate it again.
+ *
+ * The delegate itself is never started; this reporter is scheduled instead and calls it. Stopping this reporter stops
+ * the delegate too, so it can release its resources.
+ */
+public class DeltaReporter
+        extends ScheduledReporter
+{
+    private static final String REPORTER_NAME = "delta-reporter";
+
+    private final ScheduledReporter delegate;
+
+    private final int fullRefreshCycles;
+
+    private final Map<String, Object> lastValues = new HashMap<>();
+
+    private final Map<String, long[]> lastCounts = new HashMap<>();
+
+    private long cycle;
+
+    /**
+     * @param fullRefreshCycles every metric is reported on every Nth cycle, starting with the first
+     */
+    public DeltaReporter( MetricRegistry registry, MetricFilter filter, ScheduledReporter delegate,
+                          int fullRefreshCycles )
+    {
+        super( registry, REPORTER_NAME, filter, TimeUnit.SECONDS, TimeUnit.MILLISECONDS );
+        this.delegate = delegate;
+        this.fullRefreshCycles = Math.max( 1, fullRefreshCycles );
+    }
+
+    /**
+     * Wrap the reporter in a {@link DeltaReporter} if the configuration asks for delta reporting; otherwise return it
+     * as is. Either way, the result is the reporter to start.
+     */
+    public static ScheduledReporter wrapIfEnabled( ScheduledReporter reporter, ReporterConfigurator<?> config,
+                                                   MetricRegistry registry, MetricFilter filter )
+    {
+        if ( !config.isDeltaEnabled() )
+        {
+            return reporter;
+        }
+
+        return new DeltaReporter( registry, filter, reporter, config.getDeltaFullRefreshCycles() );
+    }
+
+    @Override
+    public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                        SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                        SortedMap<String, Timer> timers )
+    {
+        boolean full = cycle++ % fullRefreshCycles == 0;
+        if ( full )
+        {
+            // forget metrics that are gone from the registry
+            lastValues.clear();
+            lastCounts.clear();
+        }
+
+        SortedMap<String, Gauge> changedGauges = new TreeMap<>();
+        for ( Map.Entry<String, Gauge> entry : gauges.entrySet() )
+        {
+            Object value;
+            try
+            {
+                value = entry.getValue().getValue();
+            }
+            catch ( RuntimeException e )
+            {
+                // let the delegate deal with it the way it usually does
+                changedGauges.put( entry.getKey(), entry.getValue() );
+                continue;
+            }
+
+            Object last = lastValues.put( entry.getKey(), value );
+            if ( full || !Objects.equals( last, value ) )
+            {
+                changedGauges.put( entry.getKey(), () -> value );
+            }
+        }
+
+        SortedMap<String, Counter> changedCounters = changed( counters, full );
+        SortedMap<String, Histogram> changedHistograms = changed( histograms, full );
+        SortedMap<String, Meter> changedMeters = changed( meters, full );
+        SortedMap<String, Timer> changedTimers = changed( timers, full );
+
+        if ( changedGauges.isEmpty() && changedCounters.isEmpty() && changedHistograms.isEmpty()
+                        && changedMeters.isEmpty() && changedTimers.isEmpty() )
+        {
+            return;
+        }
+
+        delegate.report( changedGauges, changedCounters, changedHistograms, changedMeters, changedTimers );
+    }
+
+    private <T extends Metric & Counting> SortedMap<String, T> changed( SortedMap<String, T> metrics, boolean full )
+    {
+        SortedMap<String, T> changed = new TreeMap<>();
+        for ( Map.Entry<String, T> entry : metrics.entrySet() )
+        {
+            long count = entry.getValue().getCount();
+            long[] last = lastCounts.get( entry.getKey() );
+            if ( last == null )
+            {
+                lastCounts.put( entry.getKey(), new long[] { count } );
+            }
+            else if ( last[0] != count )
+            {
+                last[0] = count;
+            }
+            else if ( !full )
+            {
+                continue;
+            }
+
+            changed.put( entry.getKey(), entry.getValue() );
+        }
+
+        return changed;
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        delegate.stop();
+    }
+}
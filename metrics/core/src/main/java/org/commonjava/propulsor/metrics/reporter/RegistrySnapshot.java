@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Point-in-time copy of a {@link MetricRegistry}, taken once per tick by {@link ReportingScheduler} and shared by
+ * every reporter due on that tick. Counts and rates are copied when the snapshot is taken. Gauge values and
+ * histogram / timer snapshots are computed the first time a reporter asks for them and then reused, so each is
+ * evaluated at most once per tick, and not at all if no due reporter includes it.
+ */
+final class RegistrySnapshot
+{
+    private static final UniformReservoir UNUSED_RESERVOIR = new UniformReservoir( 1 );
+
+    private final SortedMap<String, Gauge> gauges = new TreeMap<>();
+
+    private final SortedMap<String, Counter> counters = new TreeMap<>();
+
+    private final SortedMap<String, Histogram> histograms = new TreeMap<>();
+
+    private final SortedMap<String, Meter> meters = new TreeMap<>();
+
+    private final SortedMap<String, Timer> timers = new TreeMap<>();
+
+    RegistrySnapshot( MetricRegistry registry )
+    {
+        for ( Map.Entry<String, Metric> entry : registry.getMetrics().entrySet() )
+        {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            if ( metric instanceof Gauge )
+            {
+                Memo<Object> value = new Memo<>( ( (Gauge<?>) metric )::getValue );
+                gauges.put( name, value::get );
+            }
+            else if ( metric instanceof Counter )
+            {
+                Counter counter = new Counter();
+                counter.inc( ( (Counter) metric ).getCount() );
+                counters.put( name, counter );
+            }
+            else if ( metric instanceof Histogram )
+            {
+                histograms.put( name, new FrozenHistogram( (Histogram) metric ) );
+            }
+            else if ( metric instanceof Timer )
+            {
+                timers.put( name, new FrozenTimer( (Timer) metric ) );
+            }
+            else if ( metric instanceof Meter )
+            {
+                meters.put( name, new FrozenMeter( (Meter) metric ) );
+            }
+        }
+    }
+
+    void reportTo( ScheduledReporter reporter, MetricFilter filter )
+    {
+        reporter.report( filter( gauges, filter ), filter( counters, filter ), filter( histograms, filter ),
+                         filter( meters, filter ), filter( timers, filter ) );
+    }
+
+    private static <T extends Metric> SortedMap<String, T> filter( SortedMap<String, T> metrics, MetricFilter filter )
+    {
+        if ( filter == MetricFilter.ALL )
+        {
+            return Collections.unmodifiableSortedMap( metrics );
+        }
+
+        SortedMap<String, T> filtered = new TreeMap<>();
+        metrics.forEach( ( name, metric ) -> {
+            if ( filter.matches( name, metric ) )
+            {
+                filtered.put( name, metric );
+            }
+        } );
+
+        return Collections.unmodifiableSortedMap( filtered );
+    }
+
+    /**
+     * Value computed on first use and shared from then on, by whichever reporter thread gets there first.
+     */
+    private static final class Memo<T>
+    {
+        private Supplier<T> supplier;
+
+        private T value;
+
+        // set after value, so a reader that sees it also sees value, even when the supplier returned null
+        private volatile boolean computed;
+
+        private Memo( Supplier<T> supplier )
+        {
+            this.supplier = supplier;
+        }
+
+        T get()
+        {
+            if ( !computed )
+            {
+                synchronized ( this )
+                {
+                    if ( !computed )
+                    {
+                        value = supplier.get();
+                        supplier = null;
+                        computed = true;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+
+    private static final class FrozenHistogram
+            extends Histogram
+    {
+        private final long count;
+
+        private final Memo<Snapshot> snapshot;
+
+        private FrozenHistogram( Histogram histogram )
+        {
+            super( UNUSED_RESERVOIR );
+            this.count = histogram.getCount();
+            this.snapshot = new Memo<>( histogram::getSnapshot );
+        }
+
+        @Override
+        public void update( long value )
+        {
+            throw new UnsupportedOperationException( "Snapshot metrics are read-only" );
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public Snapshot getSnapshot()
+        {
+            return snapshot.get();
+        }
+    }
+
+    private static final class FrozenMeter
+            extends Meter
+    {
+        private final long count;
+
+        private final double oneMinuteRate;
+
+        private final double fiveMinuteRate;
+
+        private final double fifteenMinuteRate;
+
+        private final double meanRate;
+
+        private FrozenMeter( Meter meter )
+        {
+            this.count = meter.getCount();
+            this.oneMinuteRate = meter.getOneMinuteRate();
+            this.fiveMinuteRate = meter.getFiveMinuteRate();
+            this.fifteenMinuteRate = meter.getFifteenMinuteRate();
+            this.meanRate = meter.getMeanRate();
+        }
+
+        @Override
+        public void mark( long n )
+        {
+            throw new UnsupportedOperationException( "Snapshot metrics are read-only" );
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public double getOneMinuteRate()
+        {
+            return oneMinuteRate;
+        }
+
+        @Override
+        public double getFiveMinuteRate()
+        {
+            return fiveMinuteRate;
+        }
+
+        @Override
+        public double getFifteenMinuteRate()
+        {
+            return fifteenMinuteRate;
+        }
+
+        @Override
+        public double getMeanRate()
+        {
+            return meanRate;
+        }
+    }
+
+    private static final class FrozenTimer
+            extends Timer
+    {
+        private final long count;
+
+        private final double oneMinuteRate;
+
+        private final double fiveMinuteRate;
+
+        private final double fifteenMinuteRate;
+
+        private final double meanRate;
+
+        private final Memo<Snapshot> snapshot;
+
+        private FrozenTimer( Timer timer )
+        {
+            super( UNUSED_RESERVOIR );
+            this.count = timer.getCount();
+            this.oneMinuteRate = timer.getOneMinuteRate();
+            this.fiveMinuteRate = timer.getFiveMinuteRate();
+            this.fifteenMinuteRate = timer.getFifteenMinuteRate();
+            this.meanRate = timer.getMeanRate();
+            this.snapshot = new Memo<>( timer::getSnapshot );
+        }
+
+        @Override
+        public void update( long duration, TimeUnit unit )
+        {
+            throw new UnsupportedOperationException( "Snapshot metrics are read-only" );
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public double getOneMinuteRate()
+        {
+            return oneMinuteRate;
+        }
+
+        @Override
+        public double getFiveMinuteRate()
+        {
+            return fiveMinuteRate;
+        }
+
+        @Override
+        public double getFifteenMinuteRate()
+        {
+            return fifteenMinuteRate;
+        }
+
+        @Override
+        public double getMeanRate()
+        {
+            return meanRate;
+        }
+
+        @Override
+        public Snapshot getSnapshot()
+        {
+            return snapshot.get();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives all push reporters from one clock, instead of each {@link ScheduledReporter} running its own thread and
+ * taking its own copy of the registry. The tick is the greatest common divisor of the registered periods. On each tick
+ * the registry is copied once into a {@link RegistrySnapshot}, and every reporter whose period is up gets that same
+ * snapshot (narrowed by its filter) on a small shared pool, sized by {@link MetricsConfig#getReporterThreads()}. A
+ * reporter still busy with its previous report skips the tick rather than queueing up behind itself.
+ *
+ * Reporters registered here are never started themselves; they are stopped when the scheduler is.
+ */
+@ApplicationScoped
+public class ReportingScheduler
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private MetricsConfig config;
+
+    private final List<Registration> registrations = new ArrayList<>();
+
+    private ScheduledExecutorService ticker;
+
+    private ExecutorService pool;
+
+    private ScheduledFuture<?> tickTask;
+
+    private long tickSeconds;
+
+    private long ticks;
+
+    public ReportingScheduler()
+    {
+    }
+
+    public ReportingScheduler( MetricsConfig config, MetricRegistry metricRegistry )
+    {
+        this.config = config;
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Report to the given reporter every periodSeconds, with the metrics its filter matches. Registrations made before
+     * {@link #start()} begin with it; later ones take effect immediately.
+     */
+    public synchronized void schedule( ScheduledReporter reporter, MetricFilter filter, long periodSeconds )
+    {
+        if ( periodSeconds <= 0 )
+        {
+            throw new IllegalArgumentException( "Report period must be positive: " + periodSeconds );
+        }
+
+        registrations.add( new Registration( reporter, filter, periodSeconds ) );
+        if ( ticker != null )
+        {
+            reschedule();
+        }
+    }
+
+    public synchronized void start()
+    {
+        if ( ticker != null )
+        {
+            return;
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor( new NamedThreadFactory( "metrics-report-tick" ) );
+        pool = Executors.newFixedThreadPool( Math.max( 1, config.getReporterThreads() ),
+                                             new NamedThreadFactory( "metrics-reporter" ) );
+        reschedule();
+    }
+
+    @PreDestroy
+    public synchronized void stop()
+    {
+        if ( ticker != null )
+        {
+            ticker.shutdownNow();
+            pool.shutdown();
+            try
+            {
+                if ( !pool.awaitTermination( 1, TimeUnit.SECONDS ) )
+                {
+                    pool.shutdownNow();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+            }
+
+            ticker = null;
+            pool = null;
+        }
+
+        registrations.forEach( r -> r.reporter.stop() );
+        registrations.clear();
+    }
+
+    /**
+     * @return the current tick in seconds, or 0 if nothing is scheduled yet
+     */
+    public synchronized long getTickSeconds()
+    {
+        return tickSeconds;
+    }
+
+    private void reschedule()
+    {
+        if ( tickTask != null )
+        {
+            tickTask.cancel( false );
+            tickTask = null;
+        }
+
+        if ( registrations.isEmpty() )
+        {
+            return;
+        }
+
+        long tick = 0;
+        for ( Registration registration : registrations )
+        {
+            tick = gcd( tick, registration.periodSeconds );
+        }
+
+        tickSeconds = tick;
+        ticks = 0;
+        for ( Registration registration : registrations )
+        {
+            registration.everyTicks = registration.periodSeconds / tick;
+        }
+
+        logger.debug( "Metrics reporting tick: {}s for {} reporters", tick, registrations.size() );
+        tickTask = ticker.scheduleAtFixedRate( this::tick, tick, tick, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Report to everything due on the next tick. Runs on the ticker thread.
+     */
+    synchronized void tick()
+    {
+        long tick = ++ticks;
+        RegistrySnapshot snapshot = null;
+        for ( Registration registration : registrations )
+        {
+            if ( tick % registration.everyTicks != 0 )
+            {
+                continue;
+            }
+
+            if ( !registration.running.compareAndSet( false, true ) )
+            {
+                logger.warn( "Metrics reporter {} is still busy with its last report; skipping this one",
+                             registration.reporter );
+                continue;
+            }
+
+            if ( snapshot == null )
+            {
+                snapshot = new RegistrySnapshot( metricRegistry );
+            }
+
+            RegistrySnapshot shared = snapshot;
+            pool.execute( () -> {
+                try
+                {
+                    shared.reportTo( registration.reporter, registration.filter );
+                }
+                catch ( RuntimeException e )
+                {
+                    logger.error( "Metrics reporter " + registration.reporter + " failed: " + e.getMessage(), e );
+                }
+                finally
+                {
+                    registration.running.set( false );
+                }
+            } );
+        }
+    }
+
+    private static long gcd( long a, long b )
+    {
+        return b == 0 ? a : gcd( b, a % b );
+    }
+
+    private static final class Registration
+    {
+        private final ScheduledReporter reporter;
+
+        private final MetricFilter filter;
+
+        private final long periodSeconds;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private long everyTicks = 1;
+
+        private Registration( ScheduledReporter reporter, MetricFilter filter, long periodSeconds )
+        {
+            this.reporter = reporter;
+            this.filter = filter;
+            this.periodSeconds = periodSeconds;
+        }
+    }
+
+    private static final class NamedThreadFactory
+            implements ThreadFactory
+    {
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private NamedThreadFactory( String prefix )
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, prefix + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
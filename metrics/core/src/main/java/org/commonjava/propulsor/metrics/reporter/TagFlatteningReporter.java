@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.MetricKey;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporter that renames tagged metrics to their {@link MetricKey#flatten() flattened} path before passing them on, for
+ * backends such as Graphite that only understand dotted names. Reports without tagged metrics are passed on as they
+ * are.
+ *
+ * Like {@link DeltaReporter}, the delegate is never started, and is stopped along with this reporter.
+ */
+public class TagFlatteningReporter
+        extends ScheduledReporter
+{
+    private static final String REPORTER_NAME = "tag-flattening-reporter";
+
+    private final ScheduledReporter delegate;
+
+    public TagFlatteningReporter( MetricRegistry registry, ScheduledReporter delegate )
+    {
+        super( registry, REPORTER_NAME, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS );
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                        SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                        SortedMap<String, Timer> timers )
+    {
+        delegate.report( flatten( gauges ), flatten( counters ), flatten( histograms ), flatten( meters ),
+                         flatten( timers ) );
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        delegate.stop();
+    }
+
+    private static <T> SortedMap<String, T> flatten( SortedMap<String, T> metrics )
+    {
+        boolean tagged = false;
+        for ( String name : metrics.keySet() )
+        {
+            if ( MetricKey.isTagged( name ) )
+            {
+                tagged = true;
+                break;
+            }
+        }
+
+        if ( !tagged )
+        {
+            return metrics;
+        }
+
+        SortedMap<String, T> flattened = new TreeMap<>();
+        for ( Map.Entry<String, T> entry : metrics.entrySet() )
+        {
+            String name = entry.getKey();
+            flattened.put( MetricKey.isTagged( name ) ? MetricKey.parse( name ).flatten() : name, entry.getValue() );
+        }
+
+        return flattened;
+    }
+}
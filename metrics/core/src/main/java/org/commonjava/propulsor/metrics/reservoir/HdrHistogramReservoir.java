@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reservoir;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Reservoir} backed by an HdrHistogram {@link Recorder}. Recording is wait-free, and nothing is sampled away,
+ * so tail percentiles (p99, p999) are accurate to the configured number of significant digits.
+ * <p>
+ * Snapshots cover a sliding window, kept as {@link #CHUNKS} interval histograms. Taking a snapshot folds whatever the
+ * recorder has collected into the current chunk and merges the chunks still inside the window; it does not consume
+ * them, so any number of reporters can read the same values. Values are placed in the chunk current when they are
+ * folded in, so the window edge is only as sharp as the interval between snapshots.
+ */
+public class HdrHistogramReservoir
+        implements Reservoir
+{
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    public static final long DEFAULT_WINDOW_SECONDS = 60;
+
+    static final int CHUNKS = 6;
+
+    private final Recorder recorder;
+
+    private final Clock clock;
+
+    private final long chunkNanos;
+
+    private final Histogram[] chunks = new Histogram[CHUNKS];
+
+    private final long[] chunkStarts = new long[CHUNKS];
+
+    private int current;
+
+    private Histogram recycled;
+
+    public HdrHistogramReservoir()
+    {
+        this( DEFAULT_SIGNIFICANT_DIGITS, DEFAULT_WINDOW_SECONDS, Clock.defaultClock() );
+    }
+
+    public HdrHistogramReservoir( int significantDigits, long windowSeconds, Clock clock )
+    {
+        if ( windowSeconds <= 0 )
+        {
+            throw new IllegalArgumentException( "Reservoir window must be positive: " + windowSeconds );
+        }
+
+        this.recorder = new Recorder( significantDigits );
+        this.clock = clock;
+        this.chunkNanos = Math.max( 1, TimeUnit.SECONDS.toNanos( windowSeconds ) / CHUNKS );
+
+        long tick = clock.getTick();
+        for ( int i = 0; i < CHUNKS; i++ )
+        {
+            chunks[i] = new Histogram( significantDigits );
+            chunkStarts[i] = tick;
+        }
+    }
+
+    /**
+     * Number of values inside the window as of the last snapshot. Does not fold in new values or otherwise change
+     * what the next snapshot sees.
+     */
+    @Override
+    public synchronized int size()
+    {
+        long tick = clock.getTick();
+        long count = 0;
+        for ( int i = 0; i < CHUNKS; i++ )
+        {
+            if ( inWindow( i, tick ) )
+            {
+                count += chunks[i].getTotalCount();
+            }
+        }
+
+        return (int) Math.min( count, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public void update( long value )
+    {
+        recorder.recordValue( value < 0 ? 0 : value );
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot()
+    {
+        long tick = clock.getTick();
+        advance( tick );
+
+        Histogram interval = recorder.getIntervalHistogram( recycled );
+        chunks[current].add( interval );
+        recycled = interval;
+
+        Histogram merged = chunks[current].copy();
+        for ( int i = 0; i < CHUNKS; i++ )
+        {
+            if ( i != current && inWindow( i, tick ) )
+            {
+                merged.add( chunks[i] );
+            }
+        }
+
+        return new HdrHistogramSnapshot( merged );
+    }
+
+    private boolean inWindow( int chunk, long tick )
+    {
+        return tick - chunkStarts[chunk] < CHUNKS * chunkNanos;
+    }
+
+    /**
+     * Move to the chunk covering tick, clearing the chunks that have dropped out of the window on the way.
+     */
+    private void advance( long tick )
+    {
+        long elapsed = ( tick - chunkStarts[current] ) / chunkNanos;
+        if ( elapsed <= 0 )
+        {
+            return;
+        }
+
+        long steps = Math.min( elapsed, CHUNKS );
+        long start = chunkStarts[current] + elapsed * chunkNanos;
+        for ( long i = steps; i > 0; i-- )
+        {
+            current = ( current + 1 ) % CHUNKS;
+            chunks[current].reset();
+            chunkStarts[current] = start - ( i - 1 ) * chunkNanos;
+        }
+    }
+}
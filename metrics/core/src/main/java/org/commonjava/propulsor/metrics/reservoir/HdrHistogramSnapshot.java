@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reservoir;
+
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable {@link Snapshot} view of an HdrHistogram. Quantiles and aggregates come straight from the histogram;
+ * {@link #getValues()} lists each distinct recorded value once, rather than once per recorded occurrence.
+ */
+public class HdrHistogramSnapshot
+        extends Snapshot
+{
+    private final Histogram histogram;
+
+    HdrHistogramSnapshot( Histogram histogram )
+    {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue( double quantile )
+    {
+        if ( quantile < 0.0 || quantile > 1.0 || Double.isNaN( quantile ) )
+        {
+            throw new IllegalArgumentException( quantile + " is not in [0..1]" );
+        }
+
+        return histogram.getValueAtPercentile( quantile * 100.0 );
+    }
+
+    @Override
+    public long[] getValues()
+    {
+        long[] values = new long[16];
+        int count = 0;
+        for ( HistogramIterationValue value : histogram.recordedValues() )
+        {
+            if ( count == values.length )
+            {
+                values = Arrays.copyOf( values, count * 2 );
+            }
+            values[count++] = histogram.highestEquivalentValue( value.getValueIteratedTo() );
+        }
+
+        return Arrays.copyOf( values, count );
+    }
+
+    @Override
+    public int size()
+    {
+        return (int) Math.min( histogram.getTotalCount(), Integer.MAX_VALUE );
+    }
+
+    @Override
+    public long getMax()
+    {
+        return histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean()
+    {
+        return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+    }
+
+    @Override
+    public long getMin()
+    {
+        return histogram.getTotalCount() == 0 ? 0 : histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev()
+    {
+        return histogram.getTotalCount() < 2 ? 0 : histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump( OutputStream output )
+    {
+        try (PrintWriter out = new PrintWriter( new OutputStreamWriter( output, StandardCharsets.UTF_8 ) ))
+        {
+            for ( long value : getValues() )
+            {
+                out.printf( "%d%n", value );
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.commonjava.propulsor.metrics.spi;
 
 import org.commonjava.propulsor.config.ConfigurationException;
+import org.commonjava.propulsor.config.annotation.ConfigName;
 import org.commonjava.propulsor.config.section.ConfigurationSectionListener;
 import org.commonjava.propulsor.metrics.conf.EnabledMetrics;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
@@ -26,21 +27,62 @@ import org.commonjava.propulsor.metrics.conf.MetricsConfig;
 public abstract class ReporterConfigurator<T extends ReporterConfigurator>
         extends EnabledMetrics<T>
 {
+    public static final long DEFAULT_REPORT_SECONDS = 60;
+
+    public static final int DEFAULT_DELTA_FULL_REFRESH_CYCLES = 10;
+
     private long reportPeriod;
 
+    private boolean deltaEnabled;
+
+    private Integer deltaFullRefreshCycles;
+
     @Override
     protected final String getEnabledPrefix()
     {
         return "m.";
     }
 
+    /**
+     * @return the report period in seconds, {@link #DEFAULT_REPORT_SECONDS} unless configured
+     */
     public long getReportSeconds()
     {
-        return reportPeriod;
+        return reportPeriod > 0 ? reportPeriod : DEFAULT_REPORT_SECONDS;
     }
 
+    @ConfigName( "report.period" )
     public void setReportPeriod( long reportPeriod )
     {
         this.reportPeriod = reportPeriod;
     }
+
+    /**
+     * @return true if only metrics that changed since the last report should be sent; see
+     * {@link org.commonjava.propulsor.metrics.reporter.DeltaReporter}
+     */
+    public boolean isDeltaEnabled()
+    {
+        return deltaEnabled;
+    }
+
+    @ConfigName( "delta" )
+    public void setDeltaEnabled( boolean deltaEnabled )
+    {
+        this.deltaEnabled = deltaEnabled;
+    }
+
+    /**
+     * @return how often (in report cycles) every metric is sent when delta reporting is enabled
+     */
+    public int getDeltaFullRefreshCycles()
+    {
+        return deltaFullRefreshCycles == null ? DEFAULT_DELTA_FULL_REFRESH_CYCLES : deltaFullRefreshCycles;
+    }
+
+    @ConfigName( "delta.full.refresh.cycles" )
+    public void setDeltaFullRefreshCycles( Integer deltaFullRefreshCycles )
+    {
+        this.deltaFullRefreshCycles = deltaFullRefreshCycles;
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MetricKeyTest
+{
+    @Test
+    public void tagsAreSortedAndEncoded()
+    {
+        MetricKey key = MetricKey.of( "app.requests", "path", "/a b", "node", "n1" );
+
+        assertThat( key.getEncoded(), equalTo( "app.requests;node=n1;path=/a_b" ) );
+        assertThat( key.getTagCount(), equalTo( 2 ) );
+        assertThat( key.getTagKey( 0 ), equalTo( "node" ) );
+        assertThat( key, equalTo( MetricKey.of( "app.requests", "node", "n1", "path", "/a b" ) ) );
+        assertThat( key.hashCode(), equalTo( MetricKey.parse( key.getEncoded() ).hashCode() ) );
+        assertThat( MetricKey.parse( "app.requests;path=/a_b;node=n1" ), equalTo( key ) );
+        assertThat( key.tagged( "node", "n2" ).getEncoded(), equalTo( "app.requests;node=n2;path=/a_b" ) );
+        assertThat( key.flatten(), equalTo( "app.requests.node.n1.path./a_b" ) );
+        assertThat( MetricKey.of( "plain" ).getEncoded(), equalTo( "plain" ) );
+    }
+
+    @Test
+    public void managerRegistersTaggedMetricsUnderEncodedName()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        MetricsManager manager = new MetricsManager( new MetricsConfig(), registry );
+        MetricKey key = MetricKey.of( "app.requests.timer", "node", "n1" );
+
+        Timer timer = manager.getTimer( key );
+
+        assertThat( registry.getTimers().get( "app.requests.timer;node=n1" ), sameInstance( timer ) );
+        assertThat( manager.getTimer( MetricKey.of( "app.requests.timer", "node", "n1" ) ), sameInstance( timer ) );
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MetricNameGuardTest
+{
+    @Test
+    public void namesBeyondLimitFoldIntoOverflow()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        MetricsConfig config = new MetricsConfig();
+        config.setCardinalityMax( 3 );
+        MetricsManager manager = new MetricsManager( config, registry );
+
+        Timer first = manager.getTimer( "requests.1.timer" );
+        manager.getTimer( "requests.2.timer" );
+        manager.getTimer( "requests.3.timer" );
+        Timer overflow = manager.getTimer( "requests.4.timer" );
+
+        assertThat( overflow, not( sameInstance( first ) ) );
+        assertThat( manager.getTimer( "requests.5.timer" ), sameInstance( overflow ) );
+        assertThat( registry.getTimers().get( "requests.overflow.timer" ), sameInstance( overflow ) );
+        assertThat( registry.counter( MetricNameGuard.REJECTED ).getCount(), equalTo( 2L ) );
+
+        // already-admitted names and other prefixes are unaffected, and other types get their own overflow
+        assertThat( manager.getTimer( "requests.1.timer" ), sameInstance( first ) );
+        manager.getMeter( "other.1.meter" );
+        assertThat( registry.getMeters().containsKey( "other.1.meter" ), equalTo( true ) );
+        manager.getMeter( "requests.6.meter" );
+        assertThat( registry.getMeters().containsKey( "requests.overflow.meter" ), equalTo( true ) );
+    }
+
+    @Test
+    public void removedNamesFreeTheirPlace()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        MetricsConfig config = new MetricsConfig();
+        config.setCardinalityMax( 2 );
+        MetricsManager manager = new MetricsManager( config, registry );
+
+        manager.getCounter( "requests.1.counter" );
+        manager.getCounter( "requests.2.counter" );
+        registry.remove( "requests.1.counter" );
+
+        manager.getCounter( "requests.3.counter" );
+        assertThat( registry.getCounters().containsKey( "requests.3.counter" ), equalTo( true ) );
+        assertThat( registry.counter( MetricNameGuard.REJECTED ).getCount(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void namesAreCanonicalisedAndInterned()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        MetricNameGuard guard = new MetricNameGuard( new MetricsConfig(), registry );
+
+        String name = guard.resolve( new String( "a.b.c" ), MetricsConstants.TIMER );
+        assertThat( guard.resolve( " a..b.c. ", MetricsConstants.TIMER ), sameInstance( name ) );
+        assertThat( guard.resolve( new String( "a.b.c" ), MetricsConstants.TIMER ), sameInstance( name ) );
+
+        assertThat( MetricNameGuard.prefixOf( "x.y.f.Cls.method.timer" ), equalTo( "x.y.f.Cls" ) );
+        assertThat( MetricNameGuard.prefixOf( "method.timer" ), equalTo( "" ) );
+    }
+
+    @Test
+    public void limitCanBeDisabled()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        MetricsConfig config = new MetricsConfig();
+        config.setCardinalityMax( 0 );
+        MetricsManager manager = new MetricsManager( config, registry );
+
+        for ( int i = 0; i < 2000; i++ )
+        {
+            manager.getCounter( "requests." + i + ".counter" );
+        }
+
+        assertThat( registry.getCounters().size(), equalTo( 2000 ) );
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.UniformReservoir;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.jfr.MeasuredMethodEvent;
+import org.commonjava.propulsor.metrics.fixture.FixtureAsyncResponse;
+import org.commonjava.propulsor.metrics.fixture.FixtureInvocationContext;
+import org.commonjava.propulsor.metrics.fixture.MeasuredFixture;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.container.AsyncResponse;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MetricsInterceptorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private MetricsConfig config;
+
+    private MetricRegistry registry;
+
+    private MetricsManager manager;
+
+    private MetricsInterceptor interceptor;
+
+    private Method method;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        config = new MetricsConfig();
+        config.setEnabled( true );
+        config.setInstancePrefix( "node" );
+
+        registry = new MetricRegistry();
+        manager = new MetricsManager( config, registry );
+        interceptor = new MetricsInterceptor( manager, config );
+        method = MeasuredFixture.class.getMethod( "split", String.class, Supplier.class );
+    }
+
+    @Test
+    public void planIsCompiledOncePerMethod()
+    {
+        MeasurementPlan plan = manager.getMeasurementPlan( method );
+
+        assertThat( manager.getMeasurementPlan( method ), sameInstance( plan ) );
+        assertThat( manager.getMeasurementPlan( method ), sameInstance( plan ) );
+    }
+
+    @Test
+    public void planIsRebuiltWhenTheConfigChanges()
+            throws Exception
+    {
+        MeasurementPlan plan = manager.getMeasurementPlan( method );
+
+        config.sectionComplete( "metrics" );
+        MeasurementPlan reloaded = manager.getMeasurementPlan( method );
+        assertThat( reloaded, not( sameInstance( plan ) ) );
+        assertThat( manager.getMeasurementPlan( method ), sameInstance( reloaded ) );
+
+        config.setInstancePrefix( "other" );
+        MeasurementPlan renamed = manager.getMeasurementPlan( method );
+        assertThat( renamed, not( sameInstance( reloaded ) ) );
+        assertThat( renamed.eventMetric, equalTo( "other.o.c.p.m.f.MeasuredFixture.split" ) );
+    }
+
+    @Test
+    public void countersTrackCallsInFlight()
+            throws Exception
+    {
+        AtomicLong during = new AtomicLong( -1 );
+        Supplier<Long> probe = () -> {
+            Counter counter = registry.getCounters().get( "node.in-flight.counter" );
+            during.set( counter.getCount() );
+            return during.get();
+        };
+
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), method, "abc", probe ) );
+
+        assertThat( during.get(), equalTo( 1L ) );
+        assertThat( registry.getCounters().get( "node.in-flight.counter" ).getCount(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void histogramsRecordResultAndArgumentSizes()
+            throws Exception
+    {
+        Supplier<Long> noop = () -> 0L;
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), method, "abcd", noop ) );
+
+        assertThat( registry.getHistograms().get( "node.sizes.histogram" ).getSnapshot().getMax(), equalTo( 4L ) );
+        assertThat( registry.getHistograms().get( "node.sizes.args.histogram" ).getSnapshot().getMax(),
+                    equalTo( 4L ) );
+    }
+
+    @Test
+    public void gaugeReportsTimeSinceLastCall()
+            throws Exception
+    {
+        Supplier<Long> noop = () -> 0L;
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), method, "a", noop ) );
+
+        TimeSinceLastCallGauge gauge = (TimeSinceLastCallGauge) registry.getGauges().get( "node.last.gauge" );
+        assertThat( gauge, notNullValue() );
+        assertThat( gauge.getValue() >= 0, equalTo( true ) );
+    }
+
+    @Test
+    public void sampledTimerCountsEveryCall()
+            throws Exception
+    {
+        Method sampled = MeasuredFixture.class.getMethod( "sampled" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), sampled ) );
+        }
+
+        SampledTimer timer = (SampledTimer) registry.getTimers().get( "node.sampled.timer" );
+        assertThat( timer.getSampleRate(), equalTo( 1000 ) );
+        assertThat( timer.getCount(), equalTo( 100L ) );
+    }
+
+    @Test
+    public void sampledTimerOnlyRecordsOneInNDurations()
+            throws Exception
+    {
+        config.setSampleRate( "sampled", 100 );
+        Method sampled = MeasuredFixture.class.getMethod( "sampled" );
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), sampled ) );
+        }
+
+        SampledTimer timer = (SampledTimer) registry.getTimers().get( "node.sampled.timer" );
+        assertThat( timer.getCount(), equalTo( 10_000L ) );
+
+        // about 100 expected; ten standard deviations either way
+        int recorded = timer.getSnapshot().size();
+        assertThat( recorded > 0 && recorded < 200, equalTo( true ) );
+    }
+
+    @Test
+    public void sampleRateChangeLeavesPastRatesAlone()
+    {
+        SampledTimer timer = new SampledTimer( new UniformReservoir(), 1 );
+        timer.update( 1, TimeUnit.MILLISECONDS );
+        timer.update( 1, TimeUnit.MILLISECONDS );
+        double before = timer.getMeanRate();
+
+        // past calls were each recorded for one call; a rate of 10 must not count them ten times
+        timer.setSampleRate( 10 );
+        assertThat( timer.getMeanRate() <= before, equalTo( true ) );
+        assertThat( timer.getSnapshot().size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void sampleKeysNeedTheirOwnSegment()
+            throws Exception
+    {
+        Map<String, Object> params = new HashMap<>();
+        params.put( "requests.downsample", "true" );
+        params.put( "sampled.sample", "10" );
+        config.setMapParameters( params );
+
+        assertThat( config.getSampleRate( "requests.down" ), nullValue() );
+        assertThat( config.getSampleRate( "sampled" ), equalTo( 10 ) );
+    }
+
+    @Test
+    public void configuredSampleRateOverridesAnnotation()
+            throws Exception
+    {
+        Method sampled = MeasuredFixture.class.getMethod( "sampled" );
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), sampled ) );
+
+        config.setSampleRate( "sampled", 10 );
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), sampled ) );
+
+        SampledTimer timer = (SampledTimer) registry.getTimers().get( "node.sampled.timer" );
+        assertThat( timer.getSampleRate(), equalTo( 10 ) );
+        assertThat( timer.getCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void completionStageIsTimedUntilItCompletes()
+            throws Exception
+    {
+        Method stage = MeasuredFixture.class.getMethod( "stage", CompletableFuture.class );
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        Object returned = interceptor.operation(
+                        new FixtureInvocationContext( new MeasuredFixture(), stage, result ) );
+
+        assertThat( returned, sameInstance( result ) );
+        assertThat( registry.getTimers().get( "node.stage.timer" ).getCount(), equalTo( 0L ) );
+        assertThat( registry.getCounters().get( "node.stage.counter" ).getCount(), equalTo( 1L ) );
+
+        result.complete( "done" );
+        assertThat( registry.getTimers().get( "node.stage.timer" ).getCount(), equalTo( 1L ) );
+        assertThat( registry.getCounters().get( "node.stage.counter" ).getCount(), equalTo( 0L ) );
+        assertThat( registry.getMeters().get( "node.stage.exception" ).getCount(), equalTo( 0L ) );
+
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), stage, failing ) );
+        failing.completeExceptionally( new IllegalStateException( "boom" ) );
+        assertThat( registry.getTimers().get( "node.stage.timer" ).getCount(), equalTo( 2L ) );
+        assertThat( registry.getMeters().get( "node.stage.exception" ).getCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void plainFutureIsTimedUntilHandoff()
+            throws Exception
+    {
+        Method future = MeasuredFixture.class.getMethod( "future", Future.class );
+        FutureTask<String> task = new FutureTask<>( () -> "done" );
+
+        Object returned = interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), future, task ) );
+
+        // nothing may ever poll a plain Future, so the measurement can't wait on it
+        assertThat( returned, sameInstance( task ) );
+        assertThat( registry.getTimers().get( "node.future.timer" ).getCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void futureThatIsAStageIsTimedUntilItCompletes()
+            throws Exception
+    {
+        Method future = MeasuredFixture.class.getMethod( "future", Future.class );
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        Object returned =
+                        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), future, result ) );
+
+        assertThat( returned, sameInstance( result ) );
+        assertThat( registry.getTimers().get( "node.future.timer" ).getCount(), equalTo( 0L ) );
+
+        result.complete( "done" );
+        assertThat( registry.getTimers().get( "node.future.timer" ).getCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void asyncResponseIsTimedUntilResumed()
+            throws Exception
+    {
+        Method suspended = MeasuredFixture.class.getMethod( "suspended", AsyncResponse.class );
+        FixtureAsyncResponse response = new FixtureAsyncResponse();
+
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), suspended, response ) );
+        assertThat( registry.getTimers().get( "node.suspended.timer" ).getCount(), equalTo( 0L ) );
+
+        response.resume( new IllegalStateException( "unmapped" ) );
+        assertThat( registry.getTimers().get( "node.suspended.timer" ).getCount(), equalTo( 1L ) );
+        assertThat( registry.getMeters().get( "node.suspended.exception" ).getCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void emitsFlightRecorderEventWhenRecorded()
+            throws Exception
+    {
+        config.setJfrEvents( true );
+        Supplier<Long> noop = () -> 0L;
+
+        // not recorded: no event is even allocated, and nothing is committed
+        assertThat( MeasuredMethodEvent.start(), nullValue() );
+        interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), method, "a", noop ) );
+
+        Path dump = temp.newFile( "measured.jfr" ).toPath();
+        try (Recording recording = new Recording())
+        {
+            recording.enable( MeasuredMethodEvent.NAME ).withoutThreshold();
+            recording.start();
+            interceptor.operation( new FixtureInvocationContext( new MeasuredFixture(), method, "ab", noop ) );
+            recording.stop();
+            recording.dump( dump );
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents( dump );
+        events.removeIf( e -> !e.getEventType().getName().equals( MeasuredMethodEvent.NAME ) );
+        assertThat( events.size(), equalTo( 1 ) );
+        assertThat( events.get( 0 ).getString( "method" ), equalTo( MeasuredFixture.class.getName() + ".split" ) );
+        assertThat( events.get( 0 ).getString( "metric" ), equalTo( "node.o.c.p.m.f.MeasuredFixture.split" ) );
+        assertThat( events.get( 0 ).getString( "outcome" ), equalTo( MeasuredMethodEvent.SUCCESS ) );
+    }
+}
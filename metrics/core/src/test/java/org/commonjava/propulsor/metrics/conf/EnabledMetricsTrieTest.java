@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.conf;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class EnabledMetricsTrieTest
+{
+    @Test
+    public void mostSpecificDottedPrefixWins()
+    {
+        Map<String, Boolean> flags = new HashMap<>();
+        flags.put( "org.commonjava", true );
+        flags.put( "org.commonjava.propulsor.config", false );
+        flags.put( "org.commonjava.propulsor.config.Reader.load", true );
+
+        EnabledMetricsTrie trie = EnabledMetricsTrie.compile( flags );
+
+        assertThat( trie.lookup( "org.commonjava" ), equalTo( true ) );
+        assertThat( trie.lookup( "org.commonjava.propulsor.boot" ), equalTo( true ) );
+        assertThat( trie.lookup( "org.commonjava.propulsor.config.Reader" ), equalTo( false ) );
+        assertThat( trie.lookup( "org.commonjava.propulsor.config.Reader.load" ), equalTo( true ) );
+        assertThat( trie.lookup( "org.commonjava.propulsor.config.Reader.load.timer" ), equalTo( true ) );
+    }
+
+    @Test
+    public void prefixMustEndOnSegmentBoundary()
+    {
+        Map<String, Boolean> flags = new HashMap<>();
+        flags.put( "jvm.mem", true );
+
+        EnabledMetricsTrie trie = EnabledMetricsTrie.compile( flags );
+
+        assertThat( trie.lookup( "jvm.memory.heap" ), nullValue() );
+        assertThat( trie.lookup( "jvm.mem.heap" ), equalTo( true ) );
+        assertThat( trie.lookup( "jvm" ), nullValue() );
+    }
+
+    @Test
+    public void wildcardMatchesOneSegment()
+    {
+        Map<String, Boolean> flags = new HashMap<>();
+        flags.put( "jvm", true );
+        flags.put( "jvm.*.heap", false );
+        flags.put( "jvm.memory.heap.used", true );
+
+        EnabledMetricsTrie trie = EnabledMetricsTrie.compile( flags );
+
+        assertThat( trie.lookup( "jvm.memory.heap.committed" ), equalTo( false ) );
+        assertThat( trie.lookup( "jvm.pools.heap" ), equalTo( false ) );
+        assertThat( trie.lookup( "jvm.memory.heap.used" ), equalTo( true ) );
+        assertThat( trie.lookup( "jvm.memory.non-heap" ), equalTo( true ) );
+        assertThat( trie.lookup( "jvm.heap" ), equalTo( true ) );
+    }
+
+    @Test
+    public void literalBeatsWildcardAtSameDepth()
+    {
+        Map<String, Boolean> flags = new HashMap<>();
+        flags.put( "app.*.timer", false );
+        flags.put( "app.storage.timer", true );
+
+        EnabledMetricsTrie trie = EnabledMetricsTrie.compile( flags );
+
+        assertThat( trie.lookup( "app.storage.timer" ), equalTo( true ) );
+        assertThat( trie.lookup( "app.rest.timer" ), equalTo( false ) );
+        assertThat( trie.lookup( "app.rest.meter" ), nullValue() );
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.fixture;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.TimeoutHandler;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal {@link AsyncResponse} that calls its registered {@link CompletionCallback}s when resumed.
+ */
+public class FixtureAsyncResponse
+        implements AsyncResponse
+{
+    private final List<CompletionCallback> callbacks = new ArrayList<>();
+
+    private boolean done;
+
+    @Override
+    public boolean resume( Object response )
+    {
+        return complete( null );
+    }
+
+    @Override
+    public boolean resume( Throwable response )
+    {
+        return complete( response );
+    }
+
+    @Override
+    public boolean cancel()
+    {
+        return complete( null );
+    }
+
+    @Override
+    public boolean cancel( int retryAfter )
+    {
+        return complete( null );
+    }
+
+    @Override
+    public boolean cancel( Date retryAfter )
+    {
+        return complete( null );
+    }
+
+    @Override
+    public boolean isSuspended()
+    {
+        return !done;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+    @Override
+    public boolean setTimeout( long time, TimeUnit unit )
+    {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler( TimeoutHandler handler )
+    {
+    }
+
+    @Override
+    public Collection<Class<?>> register( Class<?> callback )
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register( Class<?> callback, Class<?>... callbacks )
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<Class<?>> register( Object callback )
+    {
+        callbacks.add( (CompletionCallback) callback );
+        return Collections.singleton( CompletionCallback.class );
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register( Object callback, Object... callbacks )
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private boolean complete( Throwable error )
+    {
+        if ( done )
+        {
+            return false;
+        }
+
+        done = true;
+        callbacks.forEach( cb -> cb.onComplete( error ) );
+        return true;
+    }
+}
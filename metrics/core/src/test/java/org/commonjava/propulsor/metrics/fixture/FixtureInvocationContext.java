@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.fixture;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal {@link InvocationContext} that invokes the method reflectively on the target.
+ */
+public class FixtureInvocationContext
+        implements InvocationContext
+{
+    private final Object target;
+
+    private final Method method;
+
+    private Object[] parameters;
+
+    private final Map<String, Object> contextData = new HashMap<>();
+
+    public FixtureInvocationContext( Object target, Method method, Object... parameters )
+    {
+        this.target = target;
+        this.method = method;
+        this.parameters = parameters;
+    }
+
+    @Override
+    public Object getTarget()
+    {
+        return target;
+    }
+
+    @Override
+    public Object getTimer()
+    {
+        return null;
+    }
+
+    @Override
+    public Method getMethod()
+    {
+        return method;
+    }
+
+    @Override
+    public Constructor<?> getConstructor()
+    {
+        return null;
+    }
+
+    @Override
+    public Object[] getParameters()
+    {
+        return parameters;
+    }
+
+    @Override
+    public void setParameters( Object[] parameters )
+    {
+        this.parameters = parameters;
+    }
+
+    @Override
+    public Map<String, Object> getContextData()
+    {
+        return contextData;
+    }
+
+    @Override
+    public Object proceed()
+            throws Exception
+    {
+        return method.invoke( target, parameters );
+    }
+}
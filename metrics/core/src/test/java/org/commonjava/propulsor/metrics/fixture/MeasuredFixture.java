@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.fixture;
+
+import org.commonjava.propulsor.metrics.annotation.Measure;
+import org.commonjava.propulsor.metrics.annotation.MetricNamed;
+
+import javax.ws.rs.container.AsyncResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+public class MeasuredFixture
+{
+    @Measure( counters = @MetricNamed( "in-flight" ), guages = @MetricNamed( "last" ),
+              hisograms = @MetricNamed( "sizes" ) )
+    public List<String> split( String value, Supplier<Long> duringCall )
+    {
+        duringCall.get();
+
+        List<String> result = new ArrayList<>();
+        for ( char c : value.toCharArray() )
+        {
+            result.add( String.valueOf( c ) );
+        }
+        return result;
+    }
+
+    @Measure( timers = @MetricNamed( value = "sampled", sampleRate = 1000 ) )
+    public void sampled()
+    {
+    }
+
+    @Measure( timers = @MetricNamed( "stage" ), exceptions = @MetricNamed( "stage" ),
+              counters = @MetricNamed( "stage" ) )
+    public CompletableFuture<String> stage( CompletableFuture<String> result )
+    {
+        return result;
+    }
+
+    @Measure( timers = @MetricNamed( "future" ) )
+    public Future<String> future( Future<String> result )
+    {
+        return result;
+    }
+
+    @Measure( timers = @MetricNamed( "suspended" ), exceptions = @MetricNamed( "suspended" ) )
+    public void suspended( AsyncResponse response )
+    {
+    }
+}
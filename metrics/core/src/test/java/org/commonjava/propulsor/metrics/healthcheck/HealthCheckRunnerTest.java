@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.healthcheck;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class HealthCheckRunnerTest
+{
+    @Test
+    public void registryServesCachedResult()
+            throws InterruptedException
+    {
+        AtomicInteger runs = new AtomicInteger();
+        HealthCheckRunner runner = new HealthCheckRunner( new MetricsConfig() );
+        HealthCheck cached = runner.schedule( "counting", new HealthCheck()
+        {
+            @Override
+            protected Result check()
+            {
+                return Result.healthy( "run %d", runs.incrementAndGet() );
+            }
+        }, 3600, 0 );
+
+        HealthCheckRegistry registry = new HealthCheckRegistry();
+        registry.register( "counting", cached );
+
+        assertThat( runner.getResult( "counting" ).isPending(), equalTo( true ) );
+        assertThat( registry.runHealthCheck( "counting" ).isHealthy(), equalTo( false ) );
+
+        runner.start();
+        try
+        {
+            awaitResult( runner, "counting" );
+            for ( int i = 0; i < 10; i++ )
+            {
+                assertThat( registry.runHealthCheck( "counting" ).getMessage(), equalTo( "run 1" ) );
+            }
+
+            HealthCheckRunner.CachedResult result = runner.getResult( "counting" );
+            assertThat( result.isHealthy(), equalTo( true ) );
+            assertThat( runs.get(), equalTo( 1 ) );
+            assertThat( runner.getResults().keySet().contains( "counting" ), equalTo( true ) );
+            assertThat( runner.getResult( "missing" ), nullValue() );
+        }
+        finally
+        {
+            runner.stop();
+        }
+    }
+
+    @Test
+    public void slowCheckTimesOutWithoutPilingUp()
+            throws InterruptedException
+    {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch( 1 );
+        HealthCheckRunner runner = new HealthCheckRunner( new MetricsConfig() );
+        runner.schedule( "stuck", new HealthCheck()
+        {
+            @Override
+            protected Result check()
+            {
+                runs.incrementAndGet();
+                // ignore the interrupt from the timeout, like a check stuck in uninterruptible I/O
+                while ( release.getCount() > 0 )
+                {
+                    try
+                    {
+                        release.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // keep waiting
+                    }
+                }
+                return Result.healthy();
+            }
+        }, 1, 1 );
+
+        runner.start();
+        try
+        {
+            HealthCheckRunner.CachedResult result = awaitResult( runner, "stuck" );
+            assertThat( result.isHealthy(), equalTo( false ) );
+            assertThat( result.getResult().getMessage(), equalTo( "Timed out after 1s" ) );
+
+            // further ticks are skipped while the stuck run is still going
+            Thread.sleep( 1500 );
+            assertThat( runs.get(), equalTo( 1 ) );
+        }
+        finally
+        {
+            release.countDown();
+            runner.stop();
+        }
+    }
+
+    private static HealthCheckRunner.CachedResult awaitResult( HealthCheckRunner runner, String name )
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        while ( runner.getResult( name ).isPending() && System.nanoTime() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        HealthCheckRunner.CachedResult result = runner.getResult( name );
+        assertThat( result.isPending(), equalTo( false ) );
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jfr;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class JfrStreamInitializerTest
+{
+    @Test
+    public void streamsGarbageCollectionPauses()
+            throws Exception
+    {
+        assumeTrue( Runtime.version().feature() >= 14 );
+
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        config.setJfrStream( true );
+        config.set( JfrStreamInitializer.SAFEPOINT_SYNC, false );
+
+        MetricRegistry registry = new MetricRegistry();
+        JfrStreamInitializer initializer = new JfrStreamInitializer( config );
+        initializer.initialize( registry, new HealthCheckRegistry() );
+        try
+        {
+            assertThat( registry.getTimers().containsKey( JfrStreamInitializer.SAFEPOINT_SYNC ), equalTo( false ) );
+
+            long deadline = System.currentTimeMillis() + 20000;
+            while ( registry.timer( JfrStreamInitializer.GC_PAUSE ).getCount() == 0
+                            && System.currentTimeMillis() < deadline )
+            {
+                System.gc();
+                Thread.sleep( 200 );
+            }
+
+            assertThat( registry.timer( JfrStreamInitializer.GC_PAUSE ).getCount() > 0, equalTo( true ) );
+        }
+        finally
+        {
+            initializer.stop();
+        }
+    }
+}
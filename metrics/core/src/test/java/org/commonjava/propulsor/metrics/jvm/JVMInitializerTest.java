@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JVMInitializerTest
+{
+    @Test
+    public void registersRuntimeMetricSetsUnlessDisabled()
+    {
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        config.set( "jvm.codecache", false );
+
+        MetricRegistry registry = new MetricRegistry();
+        JVMInitializer initializer = new JVMInitializer( config );
+        initializer.initialize( registry, new HealthCheckRegistry() );
+        try
+        {
+            assertThat( registry.getGauges().containsKey( "jvm.compilation.time" ), equalTo( true ) );
+            assertThat( registry.getGauges().containsKey( "jvm.buffers.direct.headroom" ), equalTo( true ) );
+            assertThat( registry.getGauges().containsKey( "jvm.buffers.direct.count" ), equalTo( true ) );
+            assertThat( registry.getTimers().keySet().stream().anyMatch( n -> n.startsWith( "jvm.gc.pause." ) ),
+                        equalTo( true ) );
+            assertThat( registry.getGauges().keySet().stream().anyMatch( n -> n.startsWith( "jvm.codecache." ) ),
+                        equalTo( false ) );
+
+            Gauge<?> allocated = registry.getGauges().get( "jvm.allocation.bytes" );
+            assertThat( ( (Long) allocated.getValue() ) > 0, equalTo( true ) );
+
+            String mainCpu = MetricKey.of( "jvm.threads.pools.cpu", "pool", "main" ).getEncoded();
+            assertThat( registry.getGauges().containsKey( mainCpu ), equalTo( true ) );
+        }
+        finally
+        {
+            initializer.stop();
+        }
+    }
+
+    @Test
+    public void threadPoolNameDropsTrailingNumber()
+    {
+        assertThat( ThreadUsageSampler.poolName( "XNIO-1 task-12" ), equalTo( "XNIO-1 task" ) );
+        assertThat( ThreadUsageSampler.poolName( "pool-3-thread-7" ), equalTo( "pool-3-thread" ) );
+        assertThat( ThreadUsageSampler.poolName( "main" ), equalTo( "main" ) );
+        assertThat( ThreadUsageSampler.poolName( "42" ), equalTo( "unnamed" ) );
+    }
+
+    @Test
+    public void concurrentCollectorsAreNotPauses()
+    {
+        assertThat( GcPauseMetricSet.isConcurrent( "G1 Young Generation" ), equalTo( false ) );
+        assertThat( GcPauseMetricSet.isConcurrent( "ZGC Pauses" ), equalTo( false ) );
+        assertThat( GcPauseMetricSet.isConcurrent( "G1 Concurrent GC" ), equalTo( true ) );
+        assertThat( GcPauseMetricSet.isConcurrent( "ZGC Cycles" ), equalTo( true ) );
+        assertThat( GcPauseMetricSet.isConcurrent( "ConcurrentMarkSweep" ), equalTo( true ) );
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class DeltaReporterTest
+{
+    @Test
+    public void reportsOnlyChangedMetricsBetweenFullRefreshes()
+    {
+        MetricRegistry registry = new MetricRegistry();
+        AtomicInteger gaugeValue = new AtomicInteger();
+        AtomicInteger gaugeReads = new AtomicInteger();
+        registry.register( "gauge", (Gauge<Integer>) () -> {
+            gaugeReads.incrementAndGet();
+            return gaugeValue.get();
+        } );
+        registry.counter( "counter" ).inc();
+        registry.timer( "timer" ).update( 1, TimeUnit.MILLISECONDS );
+
+        RecordingReporter recording = new RecordingReporter( registry );
+        DeltaReporter delta = new DeltaReporter( registry, MetricFilter.ALL, recording, 3 );
+
+        delta.report();
+        assertThat( recording.last(), equalTo( names( "counter", "gauge", "timer" ) ) );
+        assertThat( gaugeReads.get(), equalTo( 1 ) );
+
+        delta.report();
+        assertThat( recording.reports.size(), equalTo( 1 ) );
+
+        registry.counter( "counter" ).inc();
+        gaugeValue.set( 5 );
+        registry.counter( "new.counter" );
+        delta.report();
+        assertThat( recording.last(), equalTo( names( "counter", "gauge", "new.counter" ) ) );
+
+        delta.report();
+        assertThat( recording.last(), equalTo( names( "counter", "gauge", "new.counter", "timer" ) ) );
+        assertThat( recording.reports.size(), equalTo( 3 ) );
+    }
+
+    private static List<String> names( String... names )
+    {
+        return new ArrayList<>( asList( names ) );
+    }
+
+    private static final class RecordingReporter
+            extends ScheduledReporter
+    {
+        private final List<List<String>> reports = new ArrayList<>();
+
+        private RecordingReporter( MetricRegistry registry )
+        {
+            super( registry, "recording", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                            SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                            SortedMap<String, Timer> timers )
+        {
+            TreeSet<String> names = new TreeSet<>();
+            gauges.values().forEach( Gauge::getValue );
+            names.addAll( gauges.keySet() );
+            names.addAll( counters.keySet() );
+            names.addAll( histograms.keySet() );
+            names.addAll( meters.keySet() );
+            names.addAll( timers.keySet() );
+            reports.add( new ArrayList<>( names ) );
+        }
+
+        private List<String> last()
+        {
+            return reports.get( reports.size() - 1 );
+        }
+    }
+}
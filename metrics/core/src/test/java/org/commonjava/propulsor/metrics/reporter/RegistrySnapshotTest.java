@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import org.junit.Test;
+
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RegistrySnapshotTest
+{
+    @Test
+    public void nullSnapshotIsTakenOnceAndKept()
+    {
+        AtomicInteger reads = new AtomicInteger();
+        MetricRegistry registry = new MetricRegistry();
+        registry.register( "histogram", new Histogram( new UniformReservoir() )
+        {
+            @Override
+            public Snapshot getSnapshot()
+            {
+                reads.incrementAndGet();
+                return null;
+            }
+        } );
+
+        RegistrySnapshot snapshot = new RegistrySnapshot( registry );
+        ScheduledReporter reporter = new ScheduledReporter( registry, "reading", MetricFilter.ALL, TimeUnit.SECONDS,
+                                                            TimeUnit.MILLISECONDS )
+        {
+            @Override
+            public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                                SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                                SortedMap<String, Timer> timers )
+            {
+                assertThat( histograms.get( "histogram" ).getSnapshot(), nullValue() );
+            }
+        };
+
+        snapshot.reportTo( reporter, MetricFilter.ALL );
+        snapshot.reportTo( reporter, MetricFilter.ALL );
+
+        assertThat( reads.get(), equalTo( 1 ) );
+    }
+}
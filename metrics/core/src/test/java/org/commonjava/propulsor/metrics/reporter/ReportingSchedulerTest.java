@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ReportingSchedulerTest
+{
+    @Test
+    public void reportersShareOneSnapshotPerTick()
+            throws InterruptedException
+    {
+        MetricRegistry registry = new MetricRegistry();
+        AtomicInteger gaugeReads = new AtomicInteger();
+        registry.register( "gauge", (Gauge<Integer>) gaugeReads::incrementAndGet );
+        registry.counter( "counter" ).inc();
+
+        // long periods, so the real ticker never fires during the test and we can drive tick() by hand
+        ReportingScheduler scheduler = new ReportingScheduler( new MetricsConfig(), registry );
+        RecordingReporter hourly = new RecordingReporter( registry );
+        RecordingReporter twoHourly = new RecordingReporter( registry );
+        scheduler.schedule( hourly, MetricFilter.ALL, 3600 );
+        scheduler.schedule( twoHourly, MetricFilter.startsWith( "counter" ), 7200 );
+        scheduler.start();
+
+        try
+        {
+            assertThat( scheduler.getTickSeconds(), equalTo( 3600L ) );
+
+            scheduler.tick();
+            Map<String, Counter> first = hourly.next();
+            assertThat( hourly.lastGauges.get( "gauge" ).getValue(), equalTo( 1 ) );
+            assertThat( twoHourly.poll(), nullValue() );
+
+            hourly.awaitIdle();
+            scheduler.tick();
+            Map<String, Counter> second = hourly.next();
+            Map<String, Counter> narrowed = twoHourly.next();
+            assertThat( narrowed.get( "counter" ), sameInstance( second.get( "counter" ) ) );
+            assertThat( twoHourly.lastGauges.isEmpty(), equalTo( true ) );
+            assertThat( first.get( "counter" ) == second.get( "counter" ), equalTo( false ) );
+
+            // one gauge read per tick, however many reporters see it
+            assertThat( hourly.lastGauges.get( "gauge" ).getValue(), equalTo( 2 ) );
+            assertThat( gaugeReads.get(), equalTo( 2 ) );
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+
+        assertThat( hourly.stopped, equalTo( true ) );
+        assertThat( twoHourly.stopped, equalTo( true ) );
+    }
+
+    private static final class RecordingReporter
+            extends ScheduledReporter
+    {
+        private final BlockingQueue<SortedMap<String, Counter>> reports = new LinkedBlockingQueue<>();
+
+        private volatile SortedMap<String, Gauge> lastGauges;
+
+        private volatile boolean stopped;
+
+        private volatile Thread reportingThread;
+
+        private RecordingReporter( MetricRegistry registry )
+        {
+            super( registry, "recording", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                            SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                            SortedMap<String, Timer> timers )
+        {
+            reportingThread = Thread.currentThread();
+            lastGauges = gauges;
+            reports.add( counters );
+        }
+
+        @Override
+        public void stop()
+        {
+            stopped = true;
+            super.stop();
+        }
+
+        private Map<String, Counter> next()
+                throws InterruptedException
+        {
+            Map<String, Counter> report = reports.poll( 5, TimeUnit.SECONDS );
+            assertThat( "No report within 5s", report == null, equalTo( false ) );
+            return report;
+        }
+
+        /**
+         * The report is handed over before the scheduler marks this reporter idle, and a busy reporter skips the next
+         * tick. Wait until the thread that reported has gone back to waiting in the pool.
+         */
+        private void awaitIdle()
+                throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+            while ( reportingThread.getState() == Thread.State.RUNNABLE && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 10 );
+            }
+        }
+
+        private Map<String, Counter> poll()
+        {
+            return reports.poll();
+        }
+    }
+}
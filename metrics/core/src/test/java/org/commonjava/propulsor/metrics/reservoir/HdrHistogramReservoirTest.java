@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.reservoir;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class HdrHistogramReservoirTest
+{
+    private long tick;
+
+    private final Clock clock = new Clock()
+    {
+        @Override
+        public long getTick()
+        {
+            return tick;
+        }
+    };
+
+    @Test
+    public void tailPercentilesAreNotSampledAway()
+    {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir( 3, 60, clock );
+        for ( int i = 1; i <= 10000; i++ )
+        {
+            reservoir.update( i );
+        }
+
+        tick += TimeUnit.SECONDS.toNanos( 5 );
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat( snapshot.size(), equalTo( 10000 ) );
+        assertThat( snapshot.getMin(), equalTo( 1L ) );
+        assertTrue( Math.abs( snapshot.get999thPercentile() - 9990 ) <= 10 );
+        assertTrue( Math.abs( snapshot.getMax() - 10000 ) <= 10 );
+    }
+
+    @Test
+    public void readersDoNotConsumeEachOthersValues()
+    {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir( 2, 60, clock );
+        reservoir.update( 10 );
+        reservoir.update( 20 );
+
+        assertThat( reservoir.size(), equalTo( 0 ) );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 2 ) );
+        assertThat( reservoir.size(), equalTo( 2 ) );
+
+        tick += TimeUnit.SECONDS.toNanos( 15 );
+        reservoir.update( 30 );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 3 ) );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 3 ) );
+        assertThat( reservoir.getSnapshot().getMax(), equalTo( 30L ) );
+    }
+
+    @Test
+    public void valuesExpireWithTheWindow()
+    {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir( 2, 60, clock );
+        reservoir.update( 10 );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 1 ) );
+
+        tick += TimeUnit.SECONDS.toNanos( 30 );
+        reservoir.update( 20 );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 2 ) );
+
+        tick += TimeUnit.SECONDS.toNanos( 40 );
+        assertThat( reservoir.size(), equalTo( 1 ) );
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat( snapshot.size(), equalTo( 1 ) );
+        assertThat( snapshot.getMin(), equalTo( 20L ) );
+
+        tick += TimeUnit.MINUTES.toNanos( 10 );
+        assertThat( reservoir.getSnapshot().size(), equalTo( 0 ) );
+    }
+}
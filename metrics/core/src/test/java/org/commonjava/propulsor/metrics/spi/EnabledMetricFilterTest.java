@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.spi;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class EnabledMetricFilterTest
+{
+    @Test
+    public void unmatchedNamesFollowSectionFlag()
+    {
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        config.set( "app.storage", false );
+
+        EnabledMetricFilter filter = new EnabledMetricFilter( config );
+
+        assertThat( filter.matches( "app.rest.timer", null ), equalTo( true ) );
+        assertThat( filter.matches( "app.storage.read.timer", null ), equalTo( false ) );
+
+        config.setEnabled( false );
+        assertThat( filter.matches( "app.rest.timer", null ), equalTo( false ) );
+    }
+
+    @Test
+    public void verdictsFollowRuleChangesForRegisteredMetrics()
+    {
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+
+        MetricRegistry registry = new MetricRegistry();
+        Counter counter = registry.counter( "app.storage.counter" );
+        EnabledMetricFilter filter = new EnabledMetricFilter( config );
+
+        assertThat( filter.matches( "app.storage.counter", counter ), equalTo( true ) );
+
+        config.set( "app.*.counter", false );
+        assertThat( filter.matches( "app.storage.counter", counter ), equalTo( false ) );
+    }
+
+    @Test
+    public void verdictsStayRightPastTheMemoLimit()
+    {
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        config.set( "app.storage", false );
+
+        EnabledMetricFilter filter = new EnabledMetricFilter( config );
+
+        // dynamic names overflow the memo several times over
+        for ( int i = 0; i < 20_000; i++ )
+        {
+            assertThat( filter.matches( "app.rest.path" + i + ".timer", null ), equalTo( true ) );
+            assertThat( filter.matches( "app.storage.path" + i + ".timer", null ), equalTo( false ) );
+        }
+    }
+}
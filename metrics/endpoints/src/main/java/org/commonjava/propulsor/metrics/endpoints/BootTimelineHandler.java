@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.commonjava.propulsor.boot.BootTimeline;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Serves the {@link BootTimeline} report (see {@link BootTimeline#writeJson(java.io.Writer)}). It is small and only
+ * grows during boot, so it is rendered on the IO thread.
+ */
+public class BootTimelineHandler
+        implements HttpHandler
+{
+    private final BootTimeline timeline;
+
+    public BootTimelineHandler( BootTimeline timeline )
+    {
+        this.timeline = timeline;
+    }
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange )
+            throws IOException
+    {
+        if ( !JsonResponses.isReadRequest( exchange ) )
+        {
+            return;
+        }
+
+        StringWriter body = new StringWriter();
+        timeline.writeJson( body );
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, JsonResponses.CONTENT_TYPE );
+        exchange.getResponseSender().send( body.toString() );
+    }
+}
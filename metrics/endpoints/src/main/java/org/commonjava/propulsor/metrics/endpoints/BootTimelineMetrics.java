@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the {@link BootTimeline} as gauges: boot.wall and boot.cpu, in milliseconds, tagged with the category and
+ * name of each step (see {@link MetricKey}). Steps completed before the registry is initialized are registered right
+ * away, later ones as they complete. Only the registry most recently initialized is fed; the timeline lives as long as
+ * the JVM, so the listener is removed again on re-initialize and when this bean is destroyed.
+ */
+@ApplicationScoped
+public class BootTimelineMetrics
+        implements MetricsInitializer
+{
+    public static final String NAME = "boot";
+
+    public static final String WALL = NAME + ".wall";
+
+    public static final String CPU = NAME + ".cpu";
+
+    @Inject
+    private MetricsConfig config;
+
+    private BootTimeline timeline = BootTimeline.get();
+
+    private Consumer<BootTimeline.Entry> listener;
+
+    public BootTimelineMetrics()
+    {
+    }
+
+    public BootTimelineMetrics( MetricsConfig config, BootTimeline timeline )
+    {
+        this.config = config;
+        this.timeline = timeline;
+    }
+
+    @Override
+    public synchronized void initialize( MetricRegistry registry, HealthCheckRegistry healthCheckRegistry )
+    {
+        stop();
+        if ( !config.isEnabled() || !config.isEnabled( NAME ) )
+        {
+            return;
+        }
+
+        listener = entry -> {
+            register( registry, WALL, entry, entry.getWallMillis() );
+            if ( entry.getCpuNanos() >= 0 )
+            {
+                register( registry, CPU, entry, entry.getCpuMillis() );
+            }
+        };
+        timeline.addListener( listener );
+    }
+
+    @PreDestroy
+    public synchronized void stop()
+    {
+        if ( listener != null )
+        {
+            timeline.removeListener( listener );
+            listener = null;
+        }
+    }
+
+    private static void register( MetricRegistry registry, String name, BootTimeline.Entry entry, long millis )
+    {
+        MetricKey key = MetricKey.of( name, "category", entry.getCategory(), "step", entry.getName() );
+        registry.gauge( key.getEncoded(), () -> (Gauge<Long>) () -> millis );
+    }
+}
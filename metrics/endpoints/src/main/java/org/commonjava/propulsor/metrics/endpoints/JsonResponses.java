@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Bits shared by the endpoint handlers. There is one {@link JsonFactory} for all of them; generators are cheap to
+ * create from it, and write straight to the response (or a small buffer) without building a tree first.
+ */
+final class JsonResponses
+{
+    static final String CONTENT_TYPE = "application/json";
+
+    static final JsonFactory JSON = new JsonFactory();
+
+    private JsonResponses()
+    {
+    }
+
+    /**
+     * Answer 405 to anything but GET and HEAD.
+     *
+     * @return true if the request may go ahead
+     */
+    static boolean isReadRequest( HttpServerExchange exchange )
+    {
+        if ( Methods.GET.equals( exchange.getRequestMethod() ) || Methods.HEAD.equals( exchange.getRequestMethod() ) )
+        {
+            return true;
+        }
+
+        exchange.setStatusCode( StatusCodes.METHOD_NOT_ALLOWED );
+        exchange.getResponseHeaders().put( Headers.ALLOW, "GET, HEAD" );
+        exchange.endExchange();
+        return false;
+    }
+}
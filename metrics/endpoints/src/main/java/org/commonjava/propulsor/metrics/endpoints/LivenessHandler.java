@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Answers liveness probes with a fixed body, straight from the IO thread. It looks at nothing but the request, so it
+ * keeps answering while the worker pool is saturated or the application's beans are busy; if it stops answering, the
+ * process really is stuck.
+ */
+public class LivenessHandler
+        implements HttpHandler
+{
+    private static final byte[] BODY = "{\"status\":\"UP\"}".getBytes( UTF_8 );
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange )
+    {
+        if ( !JsonResponses.isReadRequest( exchange ) )
+        {
+            return;
+        }
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, JsonResponses.CONTENT_TYPE );
+        exchange.getResponseHeaders().put( Headers.CACHE_CONTROL, "no-store" );
+        exchange.getResponseSender().send( ByteBuffer.wrap( BODY ) );
+    }
+}
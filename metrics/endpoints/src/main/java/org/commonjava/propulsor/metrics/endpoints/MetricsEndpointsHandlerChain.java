@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.PathHandler;
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.commonjava.propulsor.deploy.undertow.UndertowHandlerChain;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.endpoints.conf.MetricsEndpointsConfig;
+import org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner;
+import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Puts the liveness, readiness, metrics and boot timeline endpoints in front of the servlet deployment, so they are
+ * answered by plain Undertow handlers without going through the servlet container, JAX-RS or CDI request handling.
+ * Everything the handlers need is looked up once, when the handler chain is built.
+ */
+@ApplicationScoped
+public class MetricsEndpointsHandlerChain
+        implements UndertowHandlerChain
+{
+    @Inject
+    private MetricsEndpointsConfig config;
+
+    @Inject
+    private MetricsConfig metricsConfig;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private HealthCheckRegistry healthCheckRegistry;
+
+    @Inject
+    private HealthCheckRunner healthCheckRunner;
+
+    public MetricsEndpointsHandlerChain()
+    {
+    }
+
+    public MetricsEndpointsHandlerChain( MetricsEndpointsConfig config, MetricsConfig metricsConfig,
+                                         MetricRegistry metricRegistry, HealthCheckRegistry healthCheckRegistry,
+                                         HealthCheckRunner healthCheckRunner )
+    {
+        this.config = config;
+        this.metricsConfig = metricsConfig;
+        this.metricRegistry = metricRegistry;
+        this.healthCheckRegistry = healthCheckRegistry;
+        this.healthCheckRunner = healthCheckRunner;
+    }
+
+    @Override
+    public HttpHandler getHandler( HttpHandler baseHandler )
+    {
+        if ( !config.isEnabled() )
+        {
+            return baseHandler;
+        }
+
+        Logger logger = LoggerFactory.getLogger( getClass() );
+        logger.debug( "Setting up health and metrics endpoints at: {}, {}, {}, {}", config.getLivenessPath(),
+                      config.getReadinessPath(), config.getMetricsPath(), config.getBootPath() );
+
+        EnabledMetricFilter filter = new EnabledMetricFilter( metricsConfig );
+        MetricsJsonWriter jsonWriter = new MetricsJsonWriter( metricRegistry, filter );
+
+        return new PathHandler( baseHandler ).addExactPath( config.getLivenessPath(), new LivenessHandler() )
+                                             .addExactPath( config.getReadinessPath(),
+                                                            new ReadinessHandler( healthCheckRegistry,
+                                                                                  healthCheckRunner ) )
+                                             .addExactPath( config.getMetricsPath(),
+                                                            new MetricsJsonHandler( jsonWriter ) )
+                                             .addExactPath( config.getBootPath(),
+                                                            new BootTimelineHandler( BootTimeline.get() ) );
+    }
+
+    @Override
+    public boolean wrapsDefaults()
+    {
+        return true;
+    }
+}
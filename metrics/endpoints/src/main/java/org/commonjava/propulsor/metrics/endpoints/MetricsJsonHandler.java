@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+
+/**
+ * Serves the metric registry as JSON (see {@link MetricsJsonWriter}). Rendering reads gauges and writes with blocking
+ * IO, so it is done on a worker thread, streaming into the exchange's output stream as it goes.
+ */
+public class MetricsJsonHandler
+        implements HttpHandler
+{
+    private final MetricsJsonWriter jsonWriter;
+
+    public MetricsJsonHandler( MetricsJsonWriter jsonWriter )
+    {
+        this.jsonWriter = jsonWriter;
+    }
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange )
+            throws Exception
+    {
+        if ( exchange.isInIoThread() )
+        {
+            exchange.dispatch( this );
+            return;
+        }
+
+        if ( !JsonResponses.isReadRequest( exchange ) )
+        {
+            return;
+        }
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, JsonResponses.CONTENT_TYPE );
+        if ( Methods.HEAD.equals( exchange.getRequestMethod() ) )
+        {
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.startBlocking();
+        jsonWriter.write( exchange.getOutputStream() );
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a {@link MetricRegistry} as JSON with a streaming {@link JsonGenerator}, in the same layout as Dropwizard's
+ * metrics-json module: one object per metric type, keyed by metric name. Rates are per second and durations are in
+ * milliseconds. Gauges whose values are not numbers, booleans or strings are written as strings.
+ */
+public final class MetricsJsonWriter
+{
+    private static final double DURATION_FACTOR = 1.0 / TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final MetricRegistry registry;
+
+    private final MetricFilter filter;
+
+    public MetricsJsonWriter( MetricRegistry registry, MetricFilter filter )
+    {
+        this.registry = registry;
+        this.filter = filter;
+    }
+
+    public void write( OutputStream out )
+            throws IOException
+    {
+        try (JsonGenerator generator = JsonResponses.JSON.createGenerator( out ))
+        {
+            write( generator );
+        }
+    }
+
+    public void write( JsonGenerator generator )
+            throws IOException
+    {
+        generator.writeStartObject();
+
+        generator.writeObjectFieldStart( "gauges" );
+        for ( Map.Entry<String, Gauge> entry : registry.getGauges( filter ).entrySet() )
+        {
+            writeGauge( generator, entry.getKey(), entry.getValue() );
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart( "counters" );
+        for ( Map.Entry<String, Counter> entry : registry.getCounters( filter ).entrySet() )
+        {
+            generator.writeObjectFieldStart( entry.getKey() );
+            generator.writeNumberField( "count", entry.getValue().getCount() );
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart( "histograms" );
+        for ( Map.Entry<String, Histogram> entry : registry.getHistograms( filter ).entrySet() )
+        {
+            Histogram histogram = entry.getValue();
+            generator.writeObjectFieldStart( entry.getKey() );
+            generator.writeNumberField( "count", histogram.getCount() );
+            writeSnapshot( generator, histogram.getSnapshot(), 1 );
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart( "meters" );
+        for ( Map.Entry<String, Meter> entry : registry.getMeters( filter ).entrySet() )
+        {
+            generator.writeObjectFieldStart( entry.getKey() );
+            writeRates( generator, entry.getValue() );
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart( "timers" );
+        for ( Map.Entry<String, Timer> entry : registry.getTimers( filter ).entrySet() )
+        {
+            Timer timer = entry.getValue();
+            generator.writeObjectFieldStart( entry.getKey() );
+            writeRates( generator, timer );
+            writeSnapshot( generator, timer.getSnapshot(), DURATION_FACTOR );
+            generator.writeStringField( "duration_units", "milliseconds" );
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeEndObject();
+    }
+
+    private void writeGauge( JsonGenerator generator, String name, Gauge<?> gauge )
+            throws IOException
+    {
+        Object value;
+        try
+        {
+            value = gauge.getValue();
+        }
+        catch ( RuntimeException e )
+        {
+            logger.debug( "Skipping gauge: {}. Reading its value failed: {}", name, e.getMessage() );
+            return;
+        }
+
+        generator.writeObjectFieldStart( name );
+        generator.writeFieldName( "value" );
+        if ( value == null )
+        {
+            generator.writeNull();
+        }
+        else if ( value instanceof Integer || value instanceof Long || value instanceof Short
+                        || value instanceof Byte )
+        {
+            generator.writeNumber( ( (Number) value ).longValue() );
+        }
+        else if ( value instanceof Number )
+        {
+            writeDouble( generator, ( (Number) value ).doubleValue() );
+        }
+        else if ( value instanceof Boolean )
+        {
+            generator.writeBoolean( (Boolean) value );
+        }
+        else
+        {
+            generator.writeString( value.toString() );
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeRates( JsonGenerator generator, Metered metered )
+            throws IOException
+    {
+        generator.writeNumberField( "count", metered.getCount() );
+        writeDoubleField( generator, "m1_rate", metered.getOneMinuteRate() );
+        writeDoubleField( generator, "m5_rate", metered.getFiveMinuteRate() );
+        writeDoubleField( generator, "m15_rate", metered.getFifteenMinuteRate() );
+        writeDoubleField( generator, "mean_rate", metered.getMeanRate() );
+        generator.writeStringField( "units", "events/second" );
+    }
+
+    private static void writeSnapshot( JsonGenerator generator, Snapshot snapshot, double factor )
+            throws IOException
+    {
+        writeDoubleField( generator, "max", snapshot.getMax() * factor );
+        writeDoubleField( generator, "mean", snapshot.getMean() * factor );
+        writeDoubleField( generator, "min", snapshot.getMin() * factor );
+        writeDoubleField( generator, "p50", snapshot.getMedian() * factor );
+        writeDoubleField( generator, "p75", snapshot.get75thPercentile() * factor );
+        writeDoubleField( generator, "p95", snapshot.get95thPercentile() * factor );
+        writeDoubleField( generator, "p98", snapshot.get98thPercentile() * factor );
+        writeDoubleField( generator, "p99", snapshot.get99thPercentile() * factor );
+        writeDoubleField( generator, "p999", snapshot.get999thPercentile() * factor );
+        writeDoubleField( generator, "stddev", snapshot.getStdDev() * factor );
+    }
+
+    private static void writeDoubleField( JsonGenerator generator, String field, double value )
+            throws IOException
+    {
+        generator.writeFieldName( field );
+        writeDouble( generator, value );
+    }
+
+    /**
+     * JSON has no NaN or infinity; write those as null rather than producing an unparseable document.
+     */
+    private static void writeDouble( JsonGenerator generator, double value )
+            throws IOException
+    {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) )
+        {
+            generator.writeNull();
+        }
+        else
+        {
+            generator.writeNumber( value );
+        }
+    }
+}
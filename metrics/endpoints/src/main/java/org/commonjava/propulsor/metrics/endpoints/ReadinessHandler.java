@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Answers readiness probes with the result of every registered health check, and 503 if any of them is unhealthy.
+ *
+ * Checks run by the {@link HealthCheckRunner} are answered from its cache, so as long as all checks are, the response
+ * is put together on the IO thread without waiting for anything. Any other check in the registry has to be run for
+ * the probe, which is done on a worker thread.
+ */
+public class ReadinessHandler
+        implements HttpHandler
+{
+    private final HealthCheckRegistry registry;
+
+    private final HealthCheckRunner runner;
+
+    public ReadinessHandler( HealthCheckRegistry registry, HealthCheckRunner runner )
+    {
+        this.registry = registry;
+        this.runner = runner;
+    }
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange )
+            throws IOException
+    {
+        if ( !JsonResponses.isReadRequest( exchange ) )
+        {
+            return;
+        }
+
+        SortedSet<String> names = registry.getNames();
+        Map<String, HealthCheckRunner.CachedResult> cached = runner.getResults();
+        if ( exchange.isInIoThread() && !cached.keySet().containsAll( names ) )
+        {
+            exchange.dispatch( this );
+            return;
+        }
+
+        String[] checks = names.toArray( new String[0] );
+        HealthCheck.Result[] results = new HealthCheck.Result[checks.length];
+        boolean ready = true;
+        for ( int i = 0; i < checks.length; i++ )
+        {
+            HealthCheckRunner.CachedResult result = cached.get( checks[i] );
+            try
+            {
+                results[i] = result == null ? registry.runHealthCheck( checks[i] ) : result.getResult();
+            }
+            catch ( NoSuchElementException e )
+            {
+                // unregistered since the names were read; it no longer counts
+                continue;
+            }
+            ready &= results[i].isHealthy();
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream( 128 + 128 * checks.length );
+        try (JsonGenerator generator = JsonResponses.JSON.createGenerator( body ))
+        {
+            generator.writeStartObject();
+            generator.writeStringField( "status", ready ? "UP" : "DOWN" );
+            generator.writeObjectFieldStart( "checks" );
+            for ( int i = 0; i < checks.length; i++ )
+            {
+                if ( results[i] == null )
+                {
+                    continue;
+                }
+
+                generator.writeObjectFieldStart( checks[i] );
+                writeResult( generator, results[i] );
+
+                HealthCheckRunner.CachedResult result = cached.get( checks[i] );
+                if ( result != null )
+                {
+                    generator.writeBooleanField( "pending", result.isPending() );
+                    generator.writeNumberField( "ageMillis", result.getAgeMillis() );
+                    generator.writeNumberField( "durationMillis", result.getDurationMillis() );
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        exchange.setStatusCode( ready ? StatusCodes.OK : StatusCodes.SERVICE_UNAVAILABLE );
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, JsonResponses.CONTENT_TYPE );
+        exchange.getResponseHeaders().put( Headers.CACHE_CONTROL, "no-store" );
+        exchange.getResponseSender().send( ByteBuffer.wrap( body.toByteArray() ) );
+    }
+
+    private static void writeResult( JsonGenerator generator, HealthCheck.Result result )
+            throws IOException
+    {
+        generator.writeBooleanField( "healthy", result.isHealthy() );
+        if ( result.getMessage() != null )
+        {
+            generator.writeStringField( "message", result.getMessage() );
+        }
+        if ( result.getError() != null )
+        {
+            generator.writeStringField( "error", result.getError().toString() );
+        }
+        generator.writeStringField( "timestamp", result.getTimestamp() );
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints.conf;
+
+import org.commonjava.propulsor.config.annotation.ConfigName;
+import org.commonjava.propulsor.config.annotation.SectionName;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Configuration for the built-in health and metrics endpoints. The paths are matched against the full request path,
+ * since the endpoints are served in front of the servlet deployment and its context path.
+ * <p>
+ * The endpoints are off unless enabled: they bypass the application's servlet filters, security included, and would
+ * shadow any servlet mapped at the same paths.
+ */
+@ApplicationScoped
+@SectionName( "metrics.endpoints" )
+public class MetricsEndpointsConfig
+{
+    public static final boolean DEFAULT_ENABLED = false;
+
+    public static final String DEFAULT_LIVENESS_PATH = "/healthz";
+
+    public static final String DEFAULT_READINESS_PATH = "/readyz";
+
+    public static final String DEFAULT_METRICS_PATH = "/metrics";
+
+    public static final String DEFAULT_BOOT_PATH = "/bootz";
+
+    private Boolean enabled;
+
+    private String livenessPath;
+
+    private String readinessPath;
+
+    private String metricsPath;
+
+    private String bootPath;
+
+    public boolean isEnabled()
+    {
+        return enabled == null ? DEFAULT_ENABLED : enabled;
+    }
+
+    @ConfigName( "enabled" )
+    public void setEnabled( final Boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the path answered with a fixed "UP" for as long as the server can answer at all
+     */
+    public String getLivenessPath()
+    {
+        return livenessPath == null ? DEFAULT_LIVENESS_PATH : livenessPath;
+    }
+
+    @ConfigName( "liveness.path" )
+    public void setLivenessPath( final String livenessPath )
+    {
+        this.livenessPath = livenessPath;
+    }
+
+    /**
+     * @return the path answered with the health check results, and 503 if any of them is unhealthy
+     */
+    public String getReadinessPath()
+    {
+        return readinessPath == null ? DEFAULT_READINESS_PATH : readinessPath;
+    }
+
+    @ConfigName( "readiness.path" )
+    public void setReadinessPath( final String readinessPath )
+    {
+        this.readinessPath = readinessPath;
+    }
+
+    /**
+     * @return the path answered with the metric registry as JSON
+     */
+    public String getMetricsPath()
+    {
+        return metricsPath == null ? DEFAULT_METRICS_PATH : metricsPath;
+    }
+
+    @ConfigName( "metrics.path" )
+    public void setMetricsPath( final String metricsPath )
+    {
+        this.metricsPath = metricsPath;
+    }
+
+    /**
+     * @return the path answered with the {@link org.commonjava.propulsor.boot.BootTimeline} report
+     */
+    public String getBootPath()
+    {
+        return bootPath == null ? DEFAULT_BOOT_PATH : bootPath;
+    }
+
+    @ConfigName( "boot.path" )
+    public void setBootPath( final String bootPath )
+    {
+        this.bootPath = bootPath;
+    }
+}
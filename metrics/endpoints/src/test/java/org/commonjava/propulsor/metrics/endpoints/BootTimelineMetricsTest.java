@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class BootTimelineMetricsTest
+{
+    @Test
+    public void stepsBecomeTaggedGauges()
+    {
+        BootTimeline timeline = BootTimeline.get();
+        try (BootTimeline.Step step = timeline.start( "test", "before" ))
+        {
+            // registered when the initializer runs
+        }
+
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        MetricRegistry registry = new MetricRegistry();
+        new BootTimelineMetrics( config, timeline ).initialize( registry, new HealthCheckRegistry() );
+
+        try (BootTimeline.Step step = timeline.start( "test", "after" ))
+        {
+            // registered as it completes
+        }
+
+        String before = MetricKey.of( BootTimelineMetrics.WALL, "category", "test", "step", "before" ).getEncoded();
+        String after = MetricKey.of( BootTimelineMetrics.WALL, "category", "test", "step", "after" ).getEncoded();
+        Gauge<?> gauge = registry.getGauges().get( before );
+        assertThat( gauge, notNullValue() );
+        assertThat( gauge.getValue() instanceof Long, equalTo( true ) );
+        assertThat( registry.getGauges().containsKey( after ), equalTo( true ) );
+    }
+
+    @Test
+    public void onlyTheLatestRegistryIsFed()
+    {
+        BootTimeline timeline = BootTimeline.get();
+        MetricsConfig config = new MetricsConfig();
+        config.setEnabled( true );
+        BootTimelineMetrics metrics = new BootTimelineMetrics( config, timeline );
+        MetricRegistry first = new MetricRegistry();
+        MetricRegistry second = new MetricRegistry();
+        metrics.initialize( first, new HealthCheckRegistry() );
+        metrics.initialize( second, new HealthCheckRegistry() );
+
+        try (BootTimeline.Step step = timeline.start( "test", "reinitialized" ))
+        {
+            // only the second registry hears of it
+        }
+
+        String key = MetricKey.of( BootTimelineMetrics.WALL, "category", "test", "step", "reinitialized" )
+                              .getEncoded();
+        assertThat( first.getGauges().containsKey( key ), equalTo( false ) );
+        assertThat( second.getGauges().containsKey( key ), equalTo( true ) );
+
+        metrics.stop();
+        try (BootTimeline.Step step = timeline.start( "test", "stopped" ))
+        {
+            // nobody hears of it
+        }
+
+        String stopped = MetricKey.of( BootTimelineMetrics.WALL, "category", "test", "step", "stopped" ).getEncoded();
+        assertThat( second.getGauges().containsKey( stopped ), equalTo( false ) );
+    }
+}
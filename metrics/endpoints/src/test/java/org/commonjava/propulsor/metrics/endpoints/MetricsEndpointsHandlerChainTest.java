@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.endpoints;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.util.StatusCodes;
+import org.apache.commons.io.IOUtils;
+import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.endpoints.conf.MetricsEndpointsConfig;
+import org.commonjava.propulsor.metrics.healthcheck.HealthCheckRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MetricsEndpointsHandlerChainTest
+{
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final Set<String> unregistering = new CopyOnWriteArraySet<>();
+
+    // lists the unregistering names as if they were removed between getNames() and running them
+    private final HealthCheckRegistry healthCheckRegistry = new HealthCheckRegistry()
+    {
+        @Override
+        public SortedSet<String> getNames()
+        {
+            SortedSet<String> names = new TreeSet<>( super.getNames() );
+            names.addAll( unregistering );
+            return names;
+        }
+    };
+
+    private final MetricsConfig metricsConfig = new MetricsConfig();
+
+    private HealthCheckRunner runner;
+
+    private Undertow server;
+
+    private String base;
+
+    @Before
+    public void start()
+    {
+        runner = new HealthCheckRunner( metricsConfig );
+        MetricsEndpointsConfig config = new MetricsEndpointsConfig();
+        config.setEnabled( true );
+        MetricsEndpointsHandlerChain chain =
+                        new MetricsEndpointsHandlerChain( config, metricsConfig, metricRegistry, healthCheckRegistry,
+                                                          runner );
+
+        server = Undertow.builder()
+                         .addHttpListener( 0, "127.0.0.1" )
+                         .setHandler( chain.getHandler(
+                                         exchange -> exchange.setStatusCode( StatusCodes.NOT_FOUND ) ) )
+                         .build();
+        server.start();
+
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get( 0 ).getAddress();
+        base = "http://127.0.0.1:" + address.getPort();
+    }
+
+    @After
+    public void stop()
+    {
+        server.stop();
+        runner.stop();
+    }
+
+    @Test
+    public void livenessAnswersWithoutChecks()
+            throws IOException
+    {
+        HttpURLConnection connection = open( MetricsEndpointsConfig.DEFAULT_LIVENESS_PATH );
+        assertThat( connection.getResponseCode(), equalTo( StatusCodes.OK ) );
+        assertThat( read( connection ), equalTo( "{\"status\":\"UP\"}" ) );
+
+        assertThat( open( "/api/things" ).getResponseCode(), equalTo( StatusCodes.NOT_FOUND ) );
+    }
+
+    @Test
+    public void endpointsAreOffByDefault()
+    {
+        HttpHandler base = exchange -> exchange.setStatusCode( StatusCodes.NOT_FOUND );
+        MetricsEndpointsHandlerChain chain =
+                        new MetricsEndpointsHandlerChain( new MetricsEndpointsConfig(), metricsConfig, metricRegistry,
+                                                          healthCheckRegistry, runner );
+
+        assertThat( chain.getHandler( base ), sameInstance( base ) );
+    }
+
+    @Test
+    public void readinessSkipsChecksUnregisteredDuringTheProbe()
+            throws IOException
+    {
+        healthCheckRegistry.register( "stays", new HealthCheck()
+        {
+            @Override
+            protected Result check()
+            {
+                return Result.healthy();
+            }
+        } );
+        unregistering.add( "gone" );
+
+        HttpURLConnection connection = open( MetricsEndpointsConfig.DEFAULT_READINESS_PATH );
+        assertThat( connection.getResponseCode(), equalTo( StatusCodes.OK ) );
+        String body = read( connection );
+        assertThat( body, containsString( "\"stays\":{\"healthy\":true" ) );
+        assertThat( body, not( containsString( "gone" ) ) );
+    }
+
+    @Test
+    public void readinessReportsCachedAndUnmanagedChecks()
+            throws Exception
+    {
+        AtomicBoolean healthy = new AtomicBoolean( true );
+        healthCheckRegistry.register( "managed", runner.schedule( "managed", new HealthCheck()
+        {
+            @Override
+            protected Result check()
+            {
+                return healthy.get() ? Result.healthy() : Result.unhealthy( "broken" );
+            }
+        }, 3600, 0 ) );
+        healthCheckRegistry.register( "unmanaged", new HealthCheck()
+        {
+            @Override
+            protected Result check()
+            {
+                return Result.healthy( "ran" );
+            }
+        } );
+
+        // pending until the runner has run the check
+        HttpURLConnection pending = open( MetricsEndpointsConfig.DEFAULT_READINESS_PATH );
+        assertThat( pending.getResponseCode(), equalTo( StatusCodes.SERVICE_UNAVAILABLE ) );
+        assertThat( readError( pending ), containsString( "\"pending\":true" ) );
+
+        runner.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        while ( runner.getResult( "managed" ).isPending() && System.nanoTime() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        HttpURLConnection ready = open( MetricsEndpointsConfig.DEFAULT_READINESS_PATH );
+        assertThat( ready.getResponseCode(), equalTo( StatusCodes.OK ) );
+        String body = read( ready );
+        assertThat( body, containsString( "\"status\":\"UP\"" ) );
+        assertThat( body, containsString( "\"managed\":{\"healthy\":true" ) );
+        assertThat( body, containsString( "\"unmanaged\":{\"healthy\":true,\"message\":\"ran\"" ) );
+        assertThat( body, containsString( "\"ageMillis\":" ) );
+    }
+
+    @Test
+    public void metricsAreServedAsJson()
+            throws IOException
+    {
+        metricsConfig.setEnabled( true );
+        metricRegistry.counter( "app.requests" ).inc( 3 );
+        metricRegistry.timer( "app.latency" ).update( 5, TimeUnit.MILLISECONDS );
+        metricsConfig.set( "app.hidden", false );
+        metricRegistry.counter( "app.hidden" ).inc();
+
+        HttpURLConnection connection = open( MetricsEndpointsConfig.DEFAULT_METRICS_PATH );
+        assertThat( connection.getResponseCode(), equalTo( StatusCodes.OK ) );
+        assertThat( connection.getContentType(), equalTo( JsonResponses.CONTENT_TYPE ) );
+
+        String body = read( connection );
+        assertThat( body, containsString( "\"counters\":{\"app.requests\":{\"count\":3}}" ) );
+        assertThat( body, containsString( "\"app.latency\":{\"count\":1," ) );
+        assertThat( body, containsString( "\"p50\":5.0" ) );
+        assertThat( body, not( containsString( "app.hidden" ) ) );
+
+        HttpURLConnection post = open( MetricsEndpointsConfig.DEFAULT_METRICS_PATH );
+        post.setRequestMethod( "POST" );
+        assertThat( post.getResponseCode(), equalTo( StatusCodes.METHOD_NOT_ALLOWED ) );
+    }
+
+    private HttpURLConnection open( String path )
+            throws IOException
+    {
+        return (HttpURLConnection) new URL( base + path ).openConnection();
+    }
+
+    private static String read( HttpURLConnection connection )
+            throws IOException
+    {
+        try (InputStream in = connection.getInputStream())
+        {
+            return IOUtils.toString( in, UTF_8 );
+        }
+    }
+
+    private static String readError( HttpURLConnection connection )
+            throws IOException
+    {
+        try (InputStream in = connection.getErrorStream())
+        {
+            return IOUtils.toString( in, UTF_8 );
+        }
+    }
+}
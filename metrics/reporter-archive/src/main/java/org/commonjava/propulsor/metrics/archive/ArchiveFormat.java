@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of archive segment files.
+ *
+ * A segment starts with a header: the {@link #MAGIC} int, the {@link #VERSION} byte and the creation time as a long.
+ * Snapshots follow back to back, each as an int body length, a long timestamp and the body. The length is written last,
+ * so a snapshot interrupted half way (or the unused, zeroed tail of the segment) reads as a length of zero, which ends
+ * the segment.
+ *
+ * A snapshot body is an int entry count followed by the entries. Each entry starts with a byte holding the metric
+ * type, with {@link #DEFINE} set the first time a name is used in the segment, then the varint id of the name. A
+ * defining entry carries the name itself next (varint length plus UTF-8 bytes); later entries only refer to the id.
+ * The values depend on the type:
+ * <ul>
+ *     <li>gauge: double</li>
+ *     <li>counter: varint count (zigzag, since counters can go negative)</li>
+ *     <li>meter: varint count, then the 1, 5 and 15 minute and mean rates as doubles</li>
+ *     <li>histogram: varint count, then the snapshot statistics</li>
+ *     <li>timer: the meter values, then the snapshot statistics, in nanoseconds</li>
+ * </ul>
+ * Snapshot statistics are min and max as varints, then mean, standard deviation and the {@link #QUANTILES} as
+ * doubles.
+ */
+final class ArchiveFormat
+{
+    static final int MAGIC = 0x504d4152; // "PMAR"
+
+    static final byte VERSION = 1;
+
+    static final int HEADER_BYTES = Integer.BYTES + 1 + Long.BYTES;
+
+    static final int SNAPSHOT_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    static final String SEGMENT_PREFIX = "metrics-";
+
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    static final byte GAUGE = 1;
+
+    static final byte COUNTER = 2;
+
+    static final byte METER = 3;
+
+    static final byte HISTOGRAM = 4;
+
+    static final byte TIMER = 5;
+
+    static final byte DEFINE = (byte) 0x80;
+
+    static final byte TYPE_MASK = 0x7f;
+
+    static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.98, 0.99, 0.999 };
+
+    private ArchiveFormat()
+    {
+    }
+
+    static String segmentName( long createdMillis )
+    {
+        return String.format( "%s%019d%s", SEGMENT_PREFIX, createdMillis, SEGMENT_SUFFIX );
+    }
+
+    static void putVarLong( ByteBuffer buffer, long value )
+    {
+        long zigzag = ( value << 1 ) ^ ( value >> 63 );
+        while ( ( zigzag & ~0x7fL ) != 0 )
+        {
+            buffer.put( (byte) ( ( zigzag & 0x7f ) | 0x80 ) );
+            zigzag >>>= 7;
+        }
+        buffer.put( (byte) zigzag );
+    }
+
+    static long getVarLong( ByteBuffer buffer )
+    {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer.get();
+            zigzag |= (long) ( b & 0x7f ) << shift;
+            shift += 7;
+        }
+        while ( ( b & 0x80 ) != 0 );
+
+        return ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+    }
+
+    static void putVarInt( ByteBuffer buffer, int value )
+    {
+        putVarLong( buffer, value );
+    }
+
+    static int getVarInt( ByteBuffer buffer )
+    {
+        return (int) getVarLong( buffer );
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import org.commonjava.propulsor.metrics.archive.ArchivedMetrics.ArchivedHistogram;
+import org.commonjava.propulsor.metrics.archive.ArchivedMetrics.ArchivedMeter;
+import org.commonjava.propulsor.metrics.archive.ArchivedMetrics.ArchivedStatistics;
+import org.commonjava.propulsor.metrics.archive.ArchivedMetrics.ArchivedTimer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.COUNTER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.DEFINE;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.GAUGE;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.HISTOGRAM;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.MAGIC;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.METER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.QUANTILES;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.SEGMENT_PREFIX;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.SEGMENT_SUFFIX;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.SNAPSHOT_HEADER_BYTES;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.TIMER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.TYPE_MASK;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.VERSION;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.getVarInt;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.getVarLong;
+
+/**
+ * Reads the snapshots written by {@link ArchiveReporter} back, oldest first, so they can be replayed into another
+ * reporter once its backend is reachable again:
+ *
+ * <pre>
+ * ArchiveReader reader = new ArchiveReader( dir );
+ * GraphiteReporter graphite = GraphiteReporter.forRegistry( new MetricRegistry() ).withClock( reader.getClock() )...;
+ * reader.replay( from, to, snapshot -&gt; snapshot.reportTo( graphite ) );
+ * </pre>
+ *
+ * Segments are mapped read-only one at a time and snapshots are decoded one by one, so only the snapshot being
+ * replayed is held on the heap. Reporters that take a {@link Clock} should be given {@link #getClock()}, which reads the timestamp of the snapshot being replayed,
+ * so the points land where they were recorded rather than at replay time.
+ */
+public class ArchiveReader
+{
+    private final File dir;
+
+    private final ReplayClock clock = new ReplayClock();
+
+    public ArchiveReader( File dir )
+    {
+        this.dir = dir;
+    }
+
+    public Clock getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * @return the segment files in the archive directory, oldest first
+     */
+    public List<File> getSegments()
+    {
+        File[] segments = listSegments( dir );
+        Arrays.sort( segments );
+        return Arrays.asList( segments );
+    }
+
+    public void replay( Consumer<ArchivedSnapshot> consumer )
+            throws IOException
+    {
+        replay( Long.MIN_VALUE, Long.MAX_VALUE, consumer );
+    }
+
+    public void replay( ScheduledReporter reporter )
+            throws IOException
+    {
+        replay( snapshot -> snapshot.reportTo( reporter ) );
+    }
+
+    /**
+     * Pass every archived snapshot taken between the two times (inclusive, in milliseconds) to the consumer.
+     */
+    public void replay( long fromMillis, long toMillis, Consumer<ArchivedSnapshot> consumer )
+            throws IOException
+    {
+        for ( File segment : getSegments() )
+        {
+            readSegment( segment, fromMillis, toMillis, consumer );
+        }
+    }
+
+    private void readSegment( File segment, long fromMillis, long toMillis, Consumer<ArchivedSnapshot> consumer )
+            throws IOException
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open( segment.toPath() ))
+        {
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+
+        if ( buffer.remaining() < ArchiveFormat.HEADER_BYTES || buffer.getInt() != MAGIC )
+        {
+            throw new IOException( "Not a metrics archive segment: " + segment );
+        }
+
+        byte version = buffer.get();
+        if ( version != VERSION )
+        {
+            throw new IOException( "Unsupported metrics archive version " + version + " in: " + segment );
+        }
+        buffer.getLong();
+
+        List<String> names = new ArrayList<>();
+        while ( buffer.remaining() >= SNAPSHOT_HEADER_BYTES )
+        {
+            int length = buffer.getInt();
+            if ( length <= 0 || length > buffer.remaining() - Long.BYTES )
+            {
+                break;
+            }
+
+            long timestamp = buffer.getLong();
+            int end = buffer.position() + length;
+
+            // names are defined on first use within a segment, so every snapshot is decoded, even outside the range
+            ArchivedSnapshot snapshot;
+            try
+            {
+                snapshot = decode( buffer, timestamp, names );
+            }
+            catch ( RuntimeException e )
+            {
+                // not a snapshot after all, like what an older writer left behind an abandoned one
+                break;
+            }
+            if ( buffer.position() != end )
+            {
+                throw new IOException( "Corrupt metrics archive snapshot at " + timestamp + " in: " + segment );
+            }
+
+            if ( timestamp >= fromMillis && timestamp <= toMillis )
+            {
+                clock.timestamp = timestamp;
+                consumer.accept( snapshot );
+            }
+        }
+    }
+
+    private ArchivedSnapshot decode( ByteBuffer buffer, long timestamp, List<String> names )
+    {
+        ArchivedSnapshot snapshot = new ArchivedSnapshot( timestamp );
+        int count = buffer.getInt();
+        for ( int i = 0; i < count; i++ )
+        {
+            byte flags = buffer.get();
+            int id = getVarInt( buffer );
+            if ( ( flags & DEFINE ) != 0 )
+            {
+                byte[] bytes = new byte[getVarInt( buffer )];
+                buffer.get( bytes );
+                names.add( id, new String( bytes, UTF_8 ) );
+            }
+
+            String name = names.get( id );
+            switch ( flags & TYPE_MASK )
+            {
+                case GAUGE:
+                {
+                    double value = buffer.getDouble();
+                    snapshot.gauges.put( name, () -> value );
+                    break;
+                }
+                case COUNTER:
+                {
+                    Counter counter = new Counter();
+                    counter.inc( getVarLong( buffer ) );
+                    snapshot.counters.put( name, counter );
+                    break;
+                }
+                case METER:
+                {
+                    snapshot.meters.put( name, new ArchivedMeter( getVarLong( buffer ), getRates( buffer ) ) );
+                    break;
+                }
+                case HISTOGRAM:
+                {
+                    long histogramCount = getVarLong( buffer );
+                    snapshot.histograms.put( name, new ArchivedHistogram( histogramCount, getStatistics( buffer ) ) );
+                    break;
+                }
+                case TIMER:
+                {
+                    long timerCount = getVarLong( buffer );
+                    double[] rates = getRates( buffer );
+                    snapshot.timers.put( name, new ArchivedTimer( timerCount, rates, getStatistics( buffer ) ) );
+                    break;
+                }
+                default:
+                    throw new IllegalStateException( "Unknown metric type in archive: " + ( flags & TYPE_MASK ) );
+            }
+        }
+
+        return snapshot;
+    }
+
+    private static double[] getRates( ByteBuffer buffer )
+    {
+        double[] rates = new double[4];
+        for ( int i = 0; i < rates.length; i++ )
+        {
+            rates[i] = buffer.getDouble();
+        }
+        return rates;
+    }
+
+    private static Snapshot getStatistics( ByteBuffer buffer )
+    {
+        long min = getVarLong( buffer );
+        long max = getVarLong( buffer );
+        double mean = buffer.getDouble();
+        double stdDev = buffer.getDouble();
+        double[] quantileValues = new double[QUANTILES.length];
+        for ( int i = 0; i < quantileValues.length; i++ )
+        {
+            quantileValues[i] = buffer.getDouble();
+        }
+
+        return new ArchivedStatistics( min, max, mean, stdDev, quantileValues );
+    }
+
+    static File[] listSegments( File dir )
+    {
+        File[] segments = dir.listFiles(
+                        ( d, name ) -> name.startsWith( SEGMENT_PREFIX ) && name.endsWith( SEGMENT_SUFFIX ) );
+        return segments == null ? new File[0] : segments;
+    }
+
+    private static final class ReplayClock
+            extends Clock
+    {
+        private volatile long timestamp;
+
+        @Override
+        public long getTick()
+        {
+            return TimeUnit.MILLISECONDS.toNanos( timestamp );
+        }
+
+        @Override
+        public long getTime()
+        {
+            return timestamp;
+        }
+    }
+}
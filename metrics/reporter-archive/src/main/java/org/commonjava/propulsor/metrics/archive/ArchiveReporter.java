@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporter that appends each registry snapshot to a local, memory-mapped archive (see {@link ArchiveFormat}), so the
+ * metrics of an outage can be replayed into another reporter with {@link ArchiveReader} later. Values are archived
+ * raw: rates per second and durations in nanoseconds, and are converted by the reporter they are replayed to.
+ */
+public class ArchiveReporter
+        extends ScheduledReporter
+{
+    private static final String REPORTER_NAME = "archive-reporter";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final SegmentWriter writer;
+
+    private final Clock clock;
+
+    public ArchiveReporter( MetricRegistry registry, MetricFilter filter, File dir, long segmentBytes,
+                            long segmentRollMillis, int maxSegments, Clock clock )
+    {
+        super( registry, REPORTER_NAME, filter, TimeUnit.SECONDS, TimeUnit.NANOSECONDS );
+        this.writer = new SegmentWriter( dir, segmentBytes, segmentRollMillis, maxSegments );
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                                     SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                                     SortedMap<String, Timer> timers )
+    {
+        try
+        {
+            writer.append( clock.getTime(), gauges, counters, histograms, meters, timers );
+        }
+        catch ( IOException e )
+        {
+            logger.error( "Failed to archive metrics: " + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        synchronized ( this )
+        {
+            try
+            {
+                writer.close();
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Failed to close metrics archive: " + e.getMessage(), e );
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.commonjava.propulsor.metrics.archive.conf.ArchiveReporterConfig;
+import org.commonjava.propulsor.metrics.reporter.ReportingScheduler;
+import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
+import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initialize the local metrics archive reporter.
+ */
+@ApplicationScoped
+public class ArchiveReporterInitializer
+                implements MetricsInitializer
+{
+    private final ArchiveReporterConfig config;
+
+    private final ReportingScheduler reportingScheduler;
+
+    @Inject
+    public ArchiveReporterInitializer( ArchiveReporterConfig config, ReportingScheduler reportingScheduler )
+    {
+        this.config = config;
+        this.reportingScheduler = reportingScheduler;
+    }
+
+    @Override
+    public void initialize( MetricRegistry registry, HealthCheckRegistry healthCheckRegistry )
+                    throws IOException
+    {
+        if ( config.isEnabled() )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.debug( "Setting up metrics archive reporter in: {}", config.getDir() );
+
+            EnabledMetricFilter filter = new EnabledMetricFilter( config );
+            ArchiveReporter reporter = new ArchiveReporter( registry, filter, config.getDir(),
+                                                            config.getSegmentSizeMb() * 1024L * 1024L,
+                                                            TimeUnit.MINUTES.toMillis( config.getSegmentRollMinutes() ),
+                                                            config.getMaxSegments(), Clock.defaultClock() );
+
+            reportingScheduler.schedule( reporter, filter, config.getReportSeconds() );
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.QUANTILES;
+
+/**
+ * Read-only metrics rebuilt from archived values, so a snapshot can be handed to any reporter. Updating them has no
+ * effect on the values reported.
+ */
+final class ArchivedMetrics
+{
+    private ArchivedMetrics()
+    {
+    }
+
+    static final class ArchivedMeter
+            extends Meter
+    {
+        private final long count;
+
+        private final double[] rates;
+
+        ArchivedMeter( long count, double[] rates )
+        {
+            this.count = count;
+            this.rates = rates;
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public double getOneMinuteRate()
+        {
+            return rates[0];
+        }
+
+        @Override
+        public double getFiveMinuteRate()
+        {
+            return rates[1];
+        }
+
+        @Override
+        public double getFifteenMinuteRate()
+        {
+            return rates[2];
+        }
+
+        @Override
+        public double getMeanRate()
+        {
+            return rates[3];
+        }
+    }
+
+    static final class ArchivedHistogram
+            extends Histogram
+    {
+        private final long count;
+
+        private final Snapshot snapshot;
+
+        ArchivedHistogram( long count, Snapshot snapshot )
+        {
+            super( new UniformReservoir( 1 ) );
+            this.count = count;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public Snapshot getSnapshot()
+        {
+            return snapshot;
+        }
+    }
+
+    static final class ArchivedTimer
+            extends Timer
+    {
+        private final long count;
+
+        private final double[] rates;
+
+        private final Snapshot snapshot;
+
+        ArchivedTimer( long count, double[] rates, Snapshot snapshot )
+        {
+            super( new UniformReservoir( 1 ) );
+            this.count = count;
+            this.rates = rates;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public double getOneMinuteRate()
+        {
+            return rates[0];
+        }
+
+        @Override
+        public double getFiveMinuteRate()
+        {
+            return rates[1];
+        }
+
+        @Override
+        public double getFifteenMinuteRate()
+        {
+            return rates[2];
+        }
+
+        @Override
+        public double getMeanRate()
+        {
+            return rates[3];
+        }
+
+        @Override
+        public Snapshot getSnapshot()
+        {
+            return snapshot;
+        }
+    }
+
+    /**
+     * Snapshot of the archived statistics. Quantiles between the archived ones are interpolated linearly, with min
+     * and max as the 0 and 1 quantiles, and {@link #getValues()} returns those points rather than the original
+     * samples.
+     */
+    static final class ArchivedStatistics
+            extends Snapshot
+    {
+        private final long min;
+
+        private final long max;
+
+        private final double mean;
+
+        private final double stdDev;
+
+        private final double[] quantileValues;
+
+        ArchivedStatistics( long min, long max, double mean, double stdDev, double[] quantileValues )
+        {
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.quantileValues = quantileValues;
+        }
+
+        @Override
+        public double getValue( double quantile )
+        {
+            double lowQuantile = 0;
+            double lowValue = min;
+            for ( int i = 0; i < QUANTILES.length; i++ )
+            {
+                if ( quantile <= QUANTILES[i] )
+                {
+                    return interpolate( quantile, lowQuantile, lowValue, QUANTILES[i], quantileValues[i] );
+                }
+                lowQuantile = QUANTILES[i];
+                lowValue = quantileValues[i];
+            }
+
+            return interpolate( quantile, lowQuantile, lowValue, 1, max );
+        }
+
+        private static double interpolate( double quantile, double lowQuantile, double lowValue,
+                                           double highQuantile, double highValue )
+        {
+            if ( highQuantile == lowQuantile )
+            {
+                return highValue;
+            }
+            return lowValue + ( highValue - lowValue ) * ( quantile - lowQuantile ) / ( highQuantile - lowQuantile );
+        }
+
+        @Override
+        public long[] getValues()
+        {
+            long[] values = new long[quantileValues.length + 2];
+            values[0] = min;
+            for ( int i = 0; i < quantileValues.length; i++ )
+            {
+                values[i + 1] = (long) quantileValues[i];
+            }
+            values[values.length - 1] = max;
+            return values;
+        }
+
+        @Override
+        public int size()
+        {
+            return quantileValues.length + 2;
+        }
+
+        @Override
+        public long getMax()
+        {
+            return max;
+        }
+
+        @Override
+        public double getMean()
+        {
+            return mean;
+        }
+
+        @Override
+        public long getMin()
+        {
+            return min;
+        }
+
+        @Override
+        public double getStdDev()
+        {
+            return stdDev;
+        }
+
+        @Override
+        public void dump( OutputStream output )
+        {
+            try (PrintWriter out = new PrintWriter( new OutputStreamWriter( output, UTF_8 ) ))
+            {
+                for ( long value : getValues() )
+                {
+                    out.printf( "%d%n", value );
+                }
+            }
+        }
+    }
+}
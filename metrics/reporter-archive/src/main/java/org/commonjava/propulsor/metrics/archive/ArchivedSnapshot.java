@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * One archived registry snapshot, as read back by {@link ArchiveReader}.
+ */
+public final class ArchivedSnapshot
+{
+    private final long timestamp;
+
+    final SortedMap<String, Gauge> gauges = new TreeMap<>();
+
+    final SortedMap<String, Counter> counters = new TreeMap<>();
+
+    final SortedMap<String, Histogram> histograms = new TreeMap<>();
+
+    final SortedMap<String, Meter> meters = new TreeMap<>();
+
+    final SortedMap<String, Timer> timers = new TreeMap<>();
+
+    ArchivedSnapshot( long timestamp )
+    {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return the time the snapshot was taken, in milliseconds since the epoch
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public SortedMap<String, Gauge> getGauges()
+    {
+        return Collections.unmodifiableSortedMap( gauges );
+    }
+
+    public SortedMap<String, Counter> getCounters()
+    {
+        return Collections.unmodifiableSortedMap( counters );
+    }
+
+    public SortedMap<String, Histogram> getHistograms()
+    {
+        return Collections.unmodifiableSortedMap( histograms );
+    }
+
+    public SortedMap<String, Meter> getMeters()
+    {
+        return Collections.unmodifiableSortedMap( meters );
+    }
+
+    public SortedMap<String, Timer> getTimers()
+    {
+        return Collections.unmodifiableSortedMap( timers );
+    }
+
+    /**
+     * Pass this snapshot to the reporter, as if it had just taken it from a registry.
+     */
+    public void reportTo( ScheduledReporter reporter )
+    {
+        reporter.report( getGauges(), getCounters(), getHistograms(), getMeters(), getTimers() );
+    }
+}
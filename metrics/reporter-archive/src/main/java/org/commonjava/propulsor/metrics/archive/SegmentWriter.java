@@ -0,0 +1,355 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.COUNTER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.DEFINE;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.GAUGE;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.HEADER_BYTES;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.HISTOGRAM;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.MAGIC;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.METER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.QUANTILES;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.SNAPSHOT_HEADER_BYTES;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.TIMER;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.VERSION;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.putVarInt;
+import static org.commonjava.propulsor.metrics.archive.ArchiveFormat.putVarLong;
+
+/**
+ * Appends snapshots to memory-mapped segment files, in the layout described by {@link ArchiveFormat}. Snapshots are
+ * encoded straight into the mapping, so nothing but the name dictionary of the current segment stays on the heap.
+ * A new segment is started when the current one is full or older than the roll interval, and the oldest segments are
+ * deleted beyond the configured count. Not thread-safe; {@link ArchiveReporter} only calls it from its report.
+ */
+final class SegmentWriter
+        implements Closeable
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final File dir;
+
+    private final long segmentBytes;
+
+    private final long rollMillis;
+
+    private final int maxSegments;
+
+    private final Map<String, Integer> names = new HashMap<>();
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private long segmentCreated;
+
+    SegmentWriter( File dir, long segmentBytes, long rollMillis, int maxSegments )
+    {
+        if ( segmentBytes <= HEADER_BYTES || segmentBytes > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Archive segment size must be more than " + HEADER_BYTES
+                                                                + " bytes and fit in one mapping: " + segmentBytes );
+        }
+
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.rollMillis = rollMillis;
+        this.maxSegments = maxSegments;
+    }
+
+    void append( long timestamp, SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                 SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                 SortedMap<String, Timer> timers )
+            throws IOException
+    {
+        if ( buffer == null || timestamp - segmentCreated >= rollMillis )
+        {
+            roll( timestamp );
+        }
+
+        int start = buffer.position();
+        int defined = names.size();
+        try
+        {
+            encode( start, timestamp, gauges, counters, histograms, meters, timers );
+        }
+        catch ( BufferOverflowException | IndexOutOfBoundsException e )
+        {
+            // the length of the partial snapshot is still zero, so readers stop in front of it
+            abandon( start, defined );
+            if ( start == HEADER_BYTES )
+            {
+                throw new IOException( "Metrics snapshot does not fit in an empty archive segment of "
+                                                       + segmentBytes + " bytes" );
+            }
+
+            roll( timestamp );
+            try
+            {
+                encode( buffer.position(), timestamp, gauges, counters, histograms, meters, timers );
+            }
+            catch ( BufferOverflowException | IndexOutOfBoundsException e2 )
+            {
+                abandon( HEADER_BYTES, 0 );
+                throw new IOException( "Metrics snapshot does not fit in an empty archive segment of "
+                                                       + segmentBytes + " bytes" );
+            }
+        }
+    }
+
+    /**
+     * Rewind over a partially encoded snapshot, forgetting the names it defined; their definitions are overwritten by
+     * the next snapshot, so later references to them could not be resolved. The partial bytes are zeroed, so a shorter
+     * snapshot written over them isn't followed by stale data that a reader could take for another snapshot.
+     */
+    private void abandon( int start, int defined )
+    {
+        // a failed put doesn't advance the position, so everything written lies before it
+        int end = buffer.position();
+        for ( int i = start; i < end; i++ )
+        {
+            buffer.put( i, (byte) 0 );
+        }
+
+        buffer.position( start );
+        names.values().removeIf( id -> id >= defined );
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        closeSegment();
+    }
+
+    private void encode( int start, long timestamp, SortedMap<String, Gauge> gauges,
+                         SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms,
+                         SortedMap<String, Meter> meters, SortedMap<String, Timer> timers )
+    {
+        buffer.position( start + SNAPSHOT_HEADER_BYTES );
+        int countPosition = buffer.position();
+        buffer.putInt( 0 );
+
+        int count = 0;
+        for ( Map.Entry<String, Gauge> entry : gauges.entrySet() )
+        {
+            Object value;
+            try
+            {
+                value = entry.getValue().getValue();
+            }
+            catch ( RuntimeException e )
+            {
+                logger.debug( "Skipping gauge: {}. Reading its value failed: {}", entry.getKey(), e.getMessage() );
+                continue;
+            }
+
+            double number;
+            if ( value instanceof Number )
+            {
+                number = ( (Number) value ).doubleValue();
+            }
+            else if ( value instanceof Boolean )
+            {
+                number = (Boolean) value ? 1 : 0;
+            }
+            else
+            {
+                continue;
+            }
+
+            putName( GAUGE, entry.getKey() );
+            buffer.putDouble( number );
+            count++;
+        }
+
+        for ( Map.Entry<String, Counter> entry : counters.entrySet() )
+        {
+            putName( COUNTER, entry.getKey() );
+            putVarLong( buffer, entry.getValue().getCount() );
+            count++;
+        }
+
+        for ( Map.Entry<String, Meter> entry : meters.entrySet() )
+        {
+            putName( METER, entry.getKey() );
+            putMetered( entry.getValue() );
+            count++;
+        }
+
+        for ( Map.Entry<String, Histogram> entry : histograms.entrySet() )
+        {
+            Histogram histogram = entry.getValue();
+            putName( HISTOGRAM, entry.getKey() );
+            putVarLong( buffer, histogram.getCount() );
+            putSnapshot( histogram.getSnapshot() );
+            count++;
+        }
+
+        for ( Map.Entry<String, Timer> entry : timers.entrySet() )
+        {
+            Timer timer = entry.getValue();
+            putName( TIMER, entry.getKey() );
+            putMetered( timer );
+            putSnapshot( timer.getSnapshot() );
+            count++;
+        }
+
+        buffer.putInt( countPosition, count );
+        buffer.putLong( start + Integer.BYTES, timestamp );
+
+        // written last: a non-zero length marks the snapshot as complete
+        buffer.putInt( start, buffer.position() - start - SNAPSHOT_HEADER_BYTES );
+    }
+
+    private void putName( byte type, String name )
+    {
+        Integer id = names.get( name );
+        if ( id == null )
+        {
+            id = names.size();
+            names.put( name, id );
+
+            byte[] bytes = name.getBytes( UTF_8 );
+            buffer.put( (byte) ( type | DEFINE ) );
+            putVarInt( buffer, id );
+            putVarInt( buffer, bytes.length );
+            buffer.put( bytes );
+        }
+        else
+        {
+            buffer.put( type );
+            putVarInt( buffer, id );
+        }
+    }
+
+    private void putMetered( Metered metered )
+    {
+        putVarLong( buffer, metered.getCount() );
+        buffer.putDouble( metered.getOneMinuteRate() );
+        buffer.putDouble( metered.getFiveMinuteRate() );
+        buffer.putDouble( metered.getFifteenMinuteRate() );
+        buffer.putDouble( metered.getMeanRate() );
+    }
+
+    private void putSnapshot( Snapshot snapshot )
+    {
+        putVarLong( buffer, snapshot.getMin() );
+        putVarLong( buffer, snapshot.getMax() );
+        buffer.putDouble( snapshot.getMean() );
+        buffer.putDouble( snapshot.getStdDev() );
+        for ( double quantile : QUANTILES )
+        {
+            buffer.putDouble( snapshot.getValue( quantile ) );
+        }
+    }
+
+    private void roll( long timestamp )
+            throws IOException
+    {
+        closeSegment();
+
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "Cannot create metrics archive directory: " + dir );
+        }
+
+        long created = timestamp;
+        File file = new File( dir, ArchiveFormat.segmentName( created ) );
+        while ( file.exists() )
+        {
+            file = new File( dir, ArchiveFormat.segmentName( ++created ) );
+        }
+
+        logger.debug( "Starting metrics archive segment: {}", file );
+        channel = FileChannel.open( file.toPath(), CREATE_NEW, READ, WRITE );
+        buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, segmentBytes );
+        buffer.putInt( MAGIC );
+        buffer.put( VERSION );
+        buffer.putLong( created );
+
+        segmentCreated = timestamp;
+        names.clear();
+
+        prune();
+    }
+
+    private void closeSegment()
+            throws IOException
+    {
+        if ( buffer == null )
+        {
+            return;
+        }
+
+        int length = buffer.position();
+        buffer.force();
+        buffer = null;
+        try
+        {
+            // give back the unused tail; the mapping itself is released when it is collected
+            channel.truncate( length );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Cannot truncate metrics archive segment: " + e.getMessage(), e );
+        }
+        finally
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void prune()
+    {
+        File[] segments = ArchiveReader.listSegments( dir );
+        Arrays.sort( segments );
+        for ( int i = 0; i < segments.length - maxSegments; i++ )
+        {
+            logger.debug( "Deleting old metrics archive segment: {}", segments[i] );
+            if ( !segments[i].delete() )
+            {
+                logger.warn( "Cannot delete old metrics archive segment: {}", segments[i] );
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive.conf;
+
+import org.commonjava.propulsor.config.annotation.ConfigName;
+import org.commonjava.propulsor.config.annotation.SectionName;
+import org.commonjava.propulsor.metrics.spi.ReporterConfigurator;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.File;
+
+/**
+ * Configuration for the local metrics archive. Snapshots are written to segment files under {@link #getDir()}; a
+ * segment is closed when it reaches {@link #getSegmentSizeMb()} or is older than {@link #getSegmentRollMinutes()}, and
+ * only the newest {@link #getMaxSegments()} are kept.
+ */
+@ApplicationScoped
+@SectionName( "metrics.archive" )
+public class ArchiveReporterConfig
+    extends ReporterConfigurator<ArchiveReporterConfig>
+{
+    private static final String DEFAULT_DIR = "metrics-archive";
+
+    private static final int DEFAULT_SEGMENT_SIZE_MB = 16;
+
+    private static final long DEFAULT_SEGMENT_ROLL_MINUTES = 60;
+
+    private static final int DEFAULT_MAX_SEGMENTS = 96;
+
+    private File dir;
+
+    private Integer segmentSizeMb;
+
+    private Long segmentRollMinutes;
+
+    private Integer maxSegments;
+
+    public File getDir()
+    {
+        return dir == null ? new File( DEFAULT_DIR ) : dir;
+    }
+
+    @ConfigName( "dir" )
+    public void setDir( String dir )
+    {
+        this.dir = new File( dir );
+    }
+
+    public int getSegmentSizeMb()
+    {
+        return segmentSizeMb == null ? DEFAULT_SEGMENT_SIZE_MB : segmentSizeMb;
+    }
+
+    @ConfigName( "segment.size.mb" )
+    public void setSegmentSizeMb( Integer segmentSizeMb )
+    {
+        this.segmentSizeMb = segmentSizeMb;
+    }
+
+    public long getSegmentRollMinutes()
+    {
+        return segmentRollMinutes == null ? DEFAULT_SEGMENT_ROLL_MINUTES : segmentRollMinutes;
+    }
+
+    @ConfigName( "segment.roll.minutes" )
+    public void setSegmentRollMinutes( Long segmentRollMinutes )
+    {
+        this.segmentRollMinutes = segmentRollMinutes;
+    }
+
+    public int getMaxSegments()
+    {
+        return maxSegments == null ? DEFAULT_MAX_SEGMENTS : maxSegments;
+    }
+
+    @ConfigName( "max.segments" )
+    public void setMaxSegments( Integer maxSegments )
+    {
+        this.maxSegments = maxSegments;
+    }
+}
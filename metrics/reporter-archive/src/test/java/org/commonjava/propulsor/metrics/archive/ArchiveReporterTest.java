@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.archive;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ArchiveReporterTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ManualClock clock = new ManualClock();
+
+    @Test
+    public void replaysArchivedSnapshots()
+            throws Exception
+    {
+        File dir = temp.newFolder();
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.counter" ).inc( 3 );
+        registry.register( "app.gauge", (Gauge<Integer>) () -> 42 );
+        registry.timer( "app.timer" ).update( 2, TimeUnit.MILLISECONDS );
+
+        ArchiveReporter reporter = new ArchiveReporter( registry, MetricFilter.ALL, dir, 1024 * 1024,
+                                                        TimeUnit.HOURS.toMillis( 1 ), 10, clock );
+        clock.time = 1000;
+        reporter.report();
+        registry.counter( "app.counter" ).dec( 5 );
+        clock.time = 2000;
+        reporter.report();
+        reporter.stop();
+
+        ArchiveReader reader = new ArchiveReader( dir );
+        List<ArchivedSnapshot> snapshots = new ArrayList<>();
+        List<Long> clockTimes = new ArrayList<>();
+        reader.replay( snapshot -> {
+            snapshots.add( snapshot );
+            clockTimes.add( reader.getClock().getTime() );
+        } );
+
+        assertThat( snapshots.size(), equalTo( 2 ) );
+        assertThat( clockTimes.get( 1 ), equalTo( 2000L ) );
+        assertThat( snapshots.get( 0 ).getTimestamp(), equalTo( 1000L ) );
+        assertThat( snapshots.get( 0 ).getCounters().get( "app.counter" ).getCount(), equalTo( 3L ) );
+        assertThat( snapshots.get( 1 ).getCounters().get( "app.counter" ).getCount(), equalTo( -2L ) );
+        assertThat( snapshots.get( 1 ).getGauges().get( "app.gauge" ).getValue(), equalTo( 42.0 ) );
+
+        Timer timer = snapshots.get( 1 ).getTimers().get( "app.timer" );
+        Snapshot stats = timer.getSnapshot();
+        assertThat( timer.getCount(), equalTo( 1L ) );
+        assertThat( stats.getMax(), equalTo( TimeUnit.MILLISECONDS.toNanos( 2 ) ) );
+        assertThat( stats.get99thPercentile(), equalTo( (double) TimeUnit.MILLISECONDS.toNanos( 2 ) ) );
+
+        List<ArchivedSnapshot> ranged = new ArrayList<>();
+        reader.replay( 1500, 2500, ranged::add );
+        assertThat( ranged.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void rollsSegmentsBySizeAndTimeAndPrunesOldest()
+            throws Exception
+    {
+        File dir = temp.newFolder();
+        MetricRegistry registry = new MetricRegistry();
+        for ( int i = 0; i < 20; i++ )
+        {
+            registry.counter( "app.counter." + i ).inc( i );
+        }
+
+        // the first snapshot defines all names (~400 bytes); later ones only refer to them (~60 bytes)
+        ArchiveReporter reporter =
+                        new ArchiveReporter( registry, MetricFilter.ALL, dir, 512, TimeUnit.MINUTES.toMillis( 1 ),
+                                             3, clock );
+
+        clock.time = 0;
+        reporter.report();
+        clock.time = 1000;
+        reporter.report();
+        clock.time = 2000;
+        reporter.report();
+        assertThat( new ArchiveReader( dir ).getSegments().size(), equalTo( 2 ) );
+
+        clock.time = TimeUnit.MINUTES.toMillis( 2 );
+        reporter.report();
+        clock.time = TimeUnit.MINUTES.toMillis( 4 );
+        reporter.report();
+        reporter.stop();
+
+        ArchiveReader reader = new ArchiveReader( dir );
+        assertThat( reader.getSegments().size(), equalTo( 3 ) );
+
+        List<Long> timestamps = new ArrayList<>();
+        reader.replay( snapshot -> {
+            timestamps.add( snapshot.getTimestamp() );
+            assertThat( snapshot.getCounters().get( "app.counter.7" ).getCount(), equalTo( 7L ) );
+        } );
+
+        assertThat( timestamps.get( 0 ), equalTo( 2000L ) );
+        assertThat( timestamps.size(), equalTo( 3 ) );
+    }
+
+    @Test
+    public void namesFromOversizedSnapshotAreNotReused()
+            throws Exception
+    {
+        File dir = temp.newFolder();
+        MetricRegistry registry = new MetricRegistry();
+        for ( int i = 0; i < 20; i++ )
+        {
+            registry.counter( "app.counter." + i ).inc( i );
+        }
+
+        ArchiveReporter reporter =
+                        new ArchiveReporter( registry, MetricFilter.ALL, dir, 512, TimeUnit.HOURS.toMillis( 1 ), 10,
+                                             clock );
+
+        // too big for any segment: the partial encode defines names that never reach the file
+        for ( int i = 0; i < 40; i++ )
+        {
+            registry.counter( "app.extra." + i ).inc();
+        }
+        clock.time = 1000;
+        reporter.report();
+
+        registry.removeMatching( MetricFilter.startsWith( "app.extra." ) );
+        clock.time = 2000;
+        reporter.report();
+        reporter.stop();
+
+        List<ArchivedSnapshot> snapshots = new ArrayList<>();
+        new ArchiveReader( dir ).replay( snapshots::add );
+
+        assertThat( snapshots.size(), equalTo( 1 ) );
+        assertThat( snapshots.get( 0 ).getCounters().get( "app.counter.7" ).getCount(), equalTo( 7L ) );
+    }
+
+    @Test
+    public void oversizedSnapshotLeavesNothingBehindInTheOpenSegment()
+            throws Exception
+    {
+        File dir = temp.newFolder();
+        MetricRegistry registry = new MetricRegistry();
+        for ( int i = 0; i < 60; i++ )
+        {
+            registry.counter( "app.counter." + i ).inc( i );
+        }
+
+        ArchiveReporter reporter =
+                        new ArchiveReporter( registry, MetricFilter.ALL, dir, 512, TimeUnit.HOURS.toMillis( 1 ), 10,
+                                             clock );
+        clock.time = 1000;
+        reporter.report();
+
+        registry.removeMatching( ( name, metric ) -> !name.equals( "app.counter.7" ) );
+        clock.time = 2000;
+        reporter.report();
+
+        // read before the segment is closed (or after a crash), when it is still mapped at full size
+        List<ArchivedSnapshot> snapshots = new ArrayList<>();
+        new ArchiveReader( dir ).replay( snapshots::add );
+        reporter.stop();
+
+        assertThat( snapshots.size(), equalTo( 1 ) );
+        assertThat( snapshots.get( 0 ).getCounters().keySet(), equalTo( Collections.singleton( "app.counter.7" ) ) );
+    }
+
+    private static final class ManualClock
+            extends Clock
+    {
+        private long time;
+
+        @Override
+        public long getTick()
+        {
+            return TimeUnit.MILLISECONDS.toNanos( time );
+        }
+
+        @Override
+        public long getTime()
+        {
+            return time;
+        }
+    }
+}
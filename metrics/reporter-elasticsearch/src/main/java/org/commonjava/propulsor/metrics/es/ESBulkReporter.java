@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.es;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Reporter that writes each snapshot of the registry as Elasticsearch _bulk requests, one document per metric, and
+ * hands them to an {@link ESBulkSender}. Serialization uses the Jackson streaming generator, writing straight into
+ * the request body. Reports with more than the configured bulk size are split into several requests, so no single
+ * request grows with the registry.
+ *
+ * Documents go to a daily index, '&lt;index&gt;-&lt;date&gt;', and carry 'name', 'type' and '@timestamp' fields next to
+ * the values of the metric. Tagged metrics (see {@link MetricKey}) get their untagged name in 'name' and their tags
+ * as fields of a 'tags' object. Durations and rates are converted to the units given to the constructor.
+ *
+ * The sender is started by the caller, and stopped along with this reporter.
+ */
+public class ESBulkReporter
+        extends ScheduledReporter
+{
+    private static final String REPORTER_NAME = "elasticsearch-reporter";
+
+    private static final int INITIAL_BULK_BYTES = 16 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final ESBulkSender sender;
+
+    private final String prefix;
+
+    private final String indexName;
+
+    private final SimpleDateFormat indexDateFormat;
+
+    private final int bulkSize;
+
+    private Bulk current;
+
+    public ESBulkReporter( MetricRegistry registry, MetricFilter filter, TimeUnit rateUnit, TimeUnit durationUnit,
+                           String prefix, String indexName, String indexDateFormat, int bulkSize,
+                           ESBulkSender sender )
+    {
+        super( registry, REPORTER_NAME, filter, rateUnit, durationUnit );
+        this.prefix = prefix;
+        this.indexName = indexName;
+        this.indexDateFormat = new SimpleDateFormat( indexDateFormat );
+        this.bulkSize = bulkSize;
+        this.sender = sender;
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        sender.stop();
+    }
+
+    @Override
+    public void report( SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+                        SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+                        SortedMap<String, Timer> timers )
+    {
+        long now = System.currentTimeMillis();
+        SerializedString index =
+                        new SerializedString( indexName + "-" + indexDateFormat.format( new Date( now ) ) );
+        String timestamp = Instant.ofEpochMilli( now ).toString();
+
+        try
+        {
+            for ( Map.Entry<String, Gauge> entry : gauges.entrySet() )
+            {
+                Object value;
+                try
+                {
+                    value = entry.getValue().getValue();
+                }
+                catch ( RuntimeException e )
+                {
+                    logger.debug( "Skipping gauge: {}. Reading its value failed: {}", entry.getKey(), e.getMessage() );
+                    continue;
+                }
+
+                if ( value instanceof Number || value instanceof Boolean )
+                {
+                    JsonGenerator gen = startDocument( index, entry.getKey(), "gauge", timestamp );
+                    if ( value instanceof Boolean )
+                    {
+                        gen.writeBooleanField( "value", (Boolean) value );
+                    }
+                    else
+                    {
+                        gen.writeNumberField( "value", ( (Number) value ).doubleValue() );
+                    }
+                    endDocument();
+                }
+            }
+
+            for ( Map.Entry<String, Counter> entry : counters.entrySet() )
+            {
+                JsonGenerator gen = startDocument( index, entry.getKey(), "counter", timestamp );
+                gen.writeNumberField( "count", entry.getValue().getCount() );
+                endDocument();
+            }
+
+            for ( Map.Entry<String, Histogram> entry : histograms.entrySet() )
+            {
+                Histogram histogram = entry.getValue();
+                JsonGenerator gen = startDocument( index, entry.getKey(), "histogram", timestamp );
+                gen.writeNumberField( "count", histogram.getCount() );
+                writeSnapshot( gen, histogram.getSnapshot(), 1 );
+                endDocument();
+            }
+
+            for ( Map.Entry<String, Meter> entry : meters.entrySet() )
+            {
+                JsonGenerator gen = startDocument( index, entry.getKey(), "meter", timestamp );
+                writeMetered( gen, entry.getValue() );
+                endDocument();
+            }
+
+            for ( Map.Entry<String, Timer> entry : timers.entrySet() )
+            {
+                Timer timer = entry.getValue();
+                JsonGenerator gen = startDocument( index, entry.getKey(), "timer", timestamp );
+                writeMetered( gen, timer );
+                writeSnapshot( gen, timer.getSnapshot(), convertDuration( 1 ) );
+                gen.writeStringField( "duration_units", getDurationUnit() );
+                endDocument();
+            }
+
+            flushBulk();
+        }
+        catch ( IOException e )
+        {
+            // the bulk is written to memory, so this is not expected
+            logger.error( "Failed to serialize metrics for Elasticsearch: " + e.getMessage(), e );
+            current = null;
+        }
+    }
+
+    private JsonGenerator startDocument( SerializedString index, String name, String type, String timestamp )
+            throws IOException
+    {
+        if ( current == null )
+        {
+            current = new Bulk( jsonFactory, INITIAL_BULK_BYTES );
+        }
+
+        JsonGenerator gen = current.generator;
+        gen.writeStartObject();
+        gen.writeObjectFieldStart( "index" );
+        gen.writeFieldName( "_index" );
+        gen.writeString( index );
+        gen.writeEndObject();
+        gen.writeEndObject();
+
+        gen.writeStartObject();
+        if ( MetricKey.isTagged( name ) )
+        {
+            MetricKey key = MetricKey.parse( name );
+            gen.writeStringField( "name", name( prefix, key.getName() ) );
+            gen.writeObjectFieldStart( "tags" );
+            for ( int i = 0; i < key.getTagCount(); i++ )
+            {
+                gen.writeStringField( key.getTagKey( i ), key.getTagValue( i ) );
+            }
+            gen.writeEndObject();
+        }
+        else
+        {
+            gen.writeStringField( "name", name( prefix, name ) );
+        }
+        gen.writeStringField( "type", type );
+        gen.writeStringField( "@timestamp", timestamp );
+        return gen;
+    }
+
+    private void endDocument()
+            throws IOException
+    {
+        current.generator.writeEndObject();
+        if ( ++current.documents >= bulkSize )
+        {
+            flushBulk();
+        }
+    }
+
+    private void flushBulk()
+            throws IOException
+    {
+        if ( current == null )
+        {
+            return;
+        }
+
+        current.generator.close();
+        current.out.write( '\n' );
+        sender.enqueue( current.out.toByteArray(), current.documents );
+        current = null;
+    }
+
+    private void writeSnapshot( JsonGenerator gen, Snapshot snapshot, double factor )
+            throws IOException
+    {
+        gen.writeNumberField( "max", snapshot.getMax() * factor );
+        gen.writeNumberField( "mean", snapshot.getMean() * factor );
+        gen.writeNumberField( "min", snapshot.getMin() * factor );
+        gen.writeNumberField( "stddev", snapshot.getStdDev() * factor );
+        gen.writeNumberField( "p50", snapshot.getMedian() * factor );
+        gen.writeNumberField( "p75", snapshot.get75thPercentile() * factor );
+        gen.writeNumberField( "p95", snapshot.get95thPercentile() * factor );
+        gen.writeNumberField( "p98", snapshot.get98thPercentile() * factor );
+        gen.writeNumberField( "p99", snapshot.get99thPercentile() * factor );
+        gen.writeNumberField( "p999", snapshot.get999thPercentile() * factor );
+    }
+
+    private void writeMetered( JsonGenerator gen, Metered metered )
+            throws IOException
+    {
+        gen.writeNumberField( "count", metered.getCount() );
+        gen.writeNumberField( "m1_rate", convertRate( metered.getOneMinuteRate() ) );
+        gen.writeNumberField( "m5_rate", convertRate( metered.getFiveMinuteRate() ) );
+        gen.writeNumberField( "m15_rate", convertRate( metered.getFifteenMinuteRate() ) );
+        gen.writeNumberField( "mean_rate", convertRate( metered.getMeanRate() ) );
+        gen.writeStringField( "rate_units", getRateUnit() );
+    }
+
+    /**
+     * One _bulk request body being written: newline-separated action and document lines.
+     */
+    private static final class Bulk
+    {
+        private final ByteArrayOutputStream out;
+
+        private final JsonGenerator generator;
+
+        private int documents;
+
+        private Bulk( JsonFactory jsonFactory, int estimatedSize )
+                throws IOException
+        {
+            this.out = new ByteArrayOutputStream( estimatedSize );
+            this.generator = jsonFactory.createGenerator( out, JsonEncoding.UTF8 );
+            this.generator.setRootValueSeparator( new SerializedString( "\n" ) );
+        }
+    }
+}
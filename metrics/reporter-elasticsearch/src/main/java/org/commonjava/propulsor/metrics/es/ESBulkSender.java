@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.es;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Posts serialized _bulk requests to Elasticsearch from a background thread, so a slow cluster never holds up the
+ * reporter. Requests wait in a bounded queue; when it is full the oldest request is dropped. Each request is tried
+ * against the configured hosts in turn (starting with the last one that worked) and dropped if none accepts it.
+ *
+ * Self-metrics are registered under {@link #SELF_METRICS_PREFIX}: a 'queue' gauge with the number of waiting
+ * requests, a 'send' timer for successful requests, a 'failures' counter for failed attempts, and a 'dropped' counter
+ * with the number of metric documents that were never indexed.
+ */
+public class ESBulkSender
+{
+    public static final String SELF_METRICS_PREFIX = "elasticsearch.reporter";
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final List<URI> bulkUris;
+
+    private final Duration timeout;
+
+    private final BlockingQueue<Bulk> queue;
+
+    private final HttpClient client;
+
+    private final Counter dropped;
+
+    private final Counter failures;
+
+    private final Timer sendTimer;
+
+    private final Thread senderThread;
+
+    private volatile boolean running;
+
+    private int currentHost;
+
+    public ESBulkSender( List<String> hosts, int timeoutMillis, int queueSize, MetricRegistry registry )
+    {
+        this.bulkUris = new ArrayList<>( hosts.size() );
+        for ( String host : hosts )
+        {
+            String base = host.contains( "://" ) ? host : "http://" + host;
+            bulkUris.add( URI.create( base.endsWith( "/" ) ? base + "_bulk" : base + "/_bulk" ) );
+        }
+
+        this.timeout = Duration.ofMillis( timeoutMillis );
+        this.queue = new ArrayBlockingQueue<>( queueSize );
+        this.client = HttpClient.newBuilder().connectTimeout( timeout ).build();
+
+        this.dropped = registry.counter( name( SELF_METRICS_PREFIX, "dropped" ) );
+        this.failures = registry.counter( name( SELF_METRICS_PREFIX, "failures" ) );
+        this.sendTimer = registry.timer( name( SELF_METRICS_PREFIX, "send" ) );
+        registry.gauge( name( SELF_METRICS_PREFIX, "queue" ), () -> queue::size );
+
+        this.senderThread = new Thread( this::run, "es-bulk-sender" );
+        this.senderThread.setDaemon( true );
+    }
+
+    public synchronized void start()
+    {
+        if ( !running )
+        {
+            running = true;
+            senderThread.start();
+        }
+    }
+
+    /**
+     * Stop the background thread. Requests still queued are discarded and counted as dropped.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        senderThread.interrupt();
+    }
+
+    /**
+     * Queue a _bulk request body (newline-delimited, ending with a newline) holding the given number of documents.
+     */
+    public void enqueue( byte[] body, int documents )
+    {
+        Bulk bulk = new Bulk( body, documents );
+        while ( !queue.offer( bulk ) )
+        {
+            Bulk oldest = queue.poll();
+            if ( oldest != null )
+            {
+                dropped.inc( oldest.documents );
+            }
+        }
+    }
+
+    private void run()
+    {
+        while ( running )
+        {
+            Bulk bulk;
+            try
+            {
+                bulk = queue.take();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if ( !send( bulk ) )
+            {
+                dropped.inc( bulk.documents );
+            }
+        }
+
+        Bulk bulk;
+        while ( ( bulk = queue.poll() ) != null )
+        {
+            dropped.inc( bulk.documents );
+        }
+    }
+
+    private boolean send( Bulk bulk )
+    {
+        for ( int attempt = 0; attempt < bulkUris.size(); attempt++ )
+        {
+            URI uri = bulkUris.get( currentHost );
+            HttpRequest request = HttpRequest.newBuilder( uri )
+                                             .timeout( timeout )
+                                             .header( "Content-Type", NDJSON )
+                                             .POST( HttpRequest.BodyPublishers.ofByteArray( bulk.body ) )
+                                             .build();
+
+            Timer.Context context = sendTimer.time();
+            try
+            {
+                HttpResponse<InputStream> response = client.send( request, HttpResponse.BodyHandlers.ofInputStream() );
+                try (InputStream in = response.body())
+                {
+                    if ( response.statusCode() / 100 == 2 )
+                    {
+                        context.stop();
+                        if ( hasErrors( in ) )
+                        {
+                            // the request went through, so retrying on another host would only duplicate the rest
+                            failures.inc();
+                            logger.warn( "Elasticsearch at {} rejected some of {} metric documents", uri,
+                                         bulk.documents );
+                        }
+                        return true;
+                    }
+
+                    logger.warn( "Elasticsearch at {} responded to _bulk with status: {}", uri,
+                                 response.statusCode() );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Failed to send metrics to Elasticsearch at {}: {}", uri, e.getMessage() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            failures.inc();
+            currentHost = ( currentHost + 1 ) % bulkUris.size();
+        }
+
+        return false;
+    }
+
+    /**
+     * Read just the top-level 'errors' flag of a _bulk response, skipping over the per-item results.
+     */
+    private boolean hasErrors( InputStream in )
+    {
+        try (JsonParser parser = jsonFactory.createParser( in ))
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                return false;
+            }
+
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ( "errors".equals( field ) )
+                {
+                    return value == JsonToken.VALUE_TRUE;
+                }
+                parser.skipChildren();
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to read _bulk response: " + e.getMessage(), e );
+        }
+
+        return false;
+    }
+
+    private static final class Bulk
+    {
+        private final byte[] body;
+
+        private final int documents;
+
+        private Bulk( byte[] body, int documents )
+        {
+            this.body = body;
+            this.documents = documents;
+        }
+    }
+}
@@ -19,17 +19,18 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
 import org.commonjava.propulsor.metrics.es.conf.ESReporterConfig;
+import org.commonjava.propulsor.metrics.reporter.DeltaReporter;
+import org.commonjava.propulsor.metrics.reporter.ReportingScheduler;
 import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
 import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
-import org.elasticsearch.metrics.ElasticsearchReporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.IOException;
-
-import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Initialize a new Elasticsearch metrics reporter.
@@ -42,6 +43,8 @@ public class ESReporterInitializer
 
     private MetricsConfig metricsConfig;
 
+    private ReportingScheduler reportingScheduler;
+
     @Override
     public void initialize( MetricRegistry registry, HealthCheckRegistry healthCheckRegistry ) throws IOException
     {
@@ -50,25 +53,30 @@ public class ESReporterInitializer
             Logger logger = LoggerFactory.getLogger( getClass() );
             logger.debug( "Setting up Elasticsearch metrics reporter" );
 
-            ElasticsearchReporter.forRegistry( registry )
-                                 .hosts( config.getHosts().split( "(\\s|[,;])+" ) )
-                                 .index( config.getIndexName() )
-                                 .convertDurationsTo( MetricsConfig.DURATION_TIMEUNIT )
-                                 .convertRatesTo( MetricsConfig.RATE_TIMEUNIT )
-                                 .prefixedWith( metricsConfig.getInstancePrefix() )
-                                 .timeout( config.getTimeout() )
-                                 .indexDateFormat( config.getIndexDateFormat() )
-                                 .filter( new EnabledMetricFilter( config ) )
-                                 .build()
-                                 .start( config.getReportSeconds(), SECONDS );
+            List<String> hosts = Arrays.asList( config.getHosts().split( "(\\s|[,;])+" ) );
+            ESBulkSender sender =
+                            new ESBulkSender( hosts, config.getTimeout(), config.getQueueSize(), registry );
+
+            EnabledMetricFilter filter = new EnabledMetricFilter( config );
+            ESBulkReporter reporter =
+                            new ESBulkReporter( registry, filter, MetricsConfig.RATE_TIMEUNIT,
+                                                MetricsConfig.DURATION_TIMEUNIT, metricsConfig.getInstancePrefix(),
+                                                config.getIndexName(), config.getIndexDateFormat(),
+                                                config.getBulkSize(), sender );
+
+            sender.start();
+            reportingScheduler.schedule( DeltaReporter.wrapIfEnabled( reporter, config, registry, filter ), filter,
+                                         config.getReportSeconds() );
         }
     }
 
     @Inject
-    public ESReporterInitializer( ESReporterConfig config, MetricsConfig metricsConfig )
+    public ESReporterInitializer( ESReporterConfig config, MetricsConfig metricsConfig,
+                                  ReportingScheduler reportingScheduler )
     {
         this.config = config;
         this.metricsConfig = metricsConfig;
+        this.reportingScheduler = reportingScheduler;
     }
 
 }
@@ -30,6 +30,12 @@ public class ESReporterConfig
 
     private static final Integer DEFAULT_TIMEOUT = Integer.valueOf( 2000 );
 
+    private static final String DEFAULT_INDEX_NAME = "metrics";
+
+    private static final int DEFAULT_BULK_SIZE = 1000;
+
+    private static final int DEFAULT_QUEUE_SIZE = 20;
+
     private String indexDateFormat;
 
     private String indexName;
@@ -38,6 +44,10 @@ public class ESReporterConfig
 
     private Integer timeout;
 
+    private Integer bulkSize;
+
+    private Integer queueSize;
+
     public String getIndexDateFormat()
     {
         return indexDateFormat == null ? DEFAULT_INDEX_DATE_FORMAT : indexDateFormat;
@@ -51,7 +61,7 @@ public class ESReporterConfig
 
     public String getIndexName()
     {
-        return indexName;
+        return indexName == null ? DEFAULT_INDEX_NAME : indexName;
     }
 
     @ConfigName( "index.name" )
@@ -81,4 +91,32 @@ public class ESReporterConfig
     {
         this.timeout = timeout;
     }
+
+    /**
+     * @return the maximum number of metric documents in one _bulk request. Larger reports are split.
+     */
+    public int getBulkSize()
+    {
+        return bulkSize == null ? DEFAULT_BULK_SIZE : bulkSize;
+    }
+
+    @ConfigName( "bulk.size" )
+    public void setBulkSize( Integer bulkSize )
+    {
+        this.bulkSize = bulkSize;
+    }
+
+    /**
+     * @return the number of _bulk requests held while Elasticsearch is slow or down. Once full, the oldest are dropped.
+     */
+    public int getQueueSize()
+    {
+        return queueSize == null ? DEFAULT_QUEUE_SIZE : queueSize;
+    }
+
+    @ConfigName( "queue.size" )
+    public void setQueueSize( Integer queueSize )
+    {
+        this.queueSize = queueSize;
+    }
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.es;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.io.IOUtils;
+import org.commonjava.test.http.expect.ExpectationServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.commonjava.propulsor.metrics.es.ESBulkSender.SELF_METRICS_PREFIX;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class ESBulkReporterTest
+{
+    @Rule
+    public ExpectationServer server = new ExpectationServer();
+
+    private final BlockingQueue<String> bulks = new LinkedBlockingQueue<>();
+
+    @Before
+    public void expectBulk()
+            throws Exception
+    {
+        server.expect( "POST", server.formatUrl( "_bulk" ), ( request, response ) -> {
+            bulks.add( IOUtils.toString( request.getInputStream(), UTF_8 ) );
+            response.setStatus( 200 );
+            response.getWriter().write( "{\"took\":1,\"errors\":false,\"items\":[]}" );
+        } );
+    }
+
+    @Test
+    public void writesOneDocumentPerMetric()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.counter" ).inc( 5 );
+        registry.timer( "app.timer" ).update( 2, TimeUnit.SECONDS );
+
+        ESBulkSender sender = newSender( 10, registry );
+        ESBulkReporter reporter = newReporter( registry, 100, sender );
+        sender.start();
+        try
+        {
+            reporter.report();
+
+            String bulk = bulks.poll( 5, TimeUnit.SECONDS );
+            assertThat( bulk, notNullValue() );
+
+            String[] lines = bulk.split( "\n" );
+            assertThat( lines.length, equalTo( 4 ) );
+            assertThat( bulk.endsWith( "\n" ), equalTo( true ) );
+            assertThat( lines[0], containsString( "{\"index\":{\"_index\":\"metrics-" ) );
+            assertThat( lines[1], containsString( "\"name\":\"test.app.counter\",\"type\":\"counter\"" ) );
+            assertThat( lines[1], containsString( "\"count\":5" ) );
+            assertThat( lines[3], containsString( "\"type\":\"timer\"" ) );
+            assertThat( lines[3], containsString( "\"p99\":2.0" ) );
+        }
+        finally
+        {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void splitsLargeReportsAndDropsOldestWhenQueueIsFull()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.a" ).inc();
+        registry.counter( "app.b" ).inc();
+        registry.counter( "app.c" ).inc();
+
+        ESBulkSender sender = newSender( 1, registry );
+        ESBulkReporter reporter = newReporter( registry, 1, sender );
+
+        reporter.report();
+        assertThat( registry.counter( name( SELF_METRICS_PREFIX, "dropped" ) ).getCount(), equalTo( 2L ) );
+
+        sender.start();
+        try
+        {
+            String bulk = bulks.poll( 5, TimeUnit.SECONDS );
+            assertThat( bulk, containsString( "\"name\":\"test.app.c\"" ) );
+            assertThat( bulk, not( containsString( "\"name\":\"test.app.a\"" ) ) );
+        }
+        finally
+        {
+            sender.stop();
+        }
+    }
+
+    private ESBulkSender newSender( int queueSize, MetricRegistry registry )
+    {
+        return new ESBulkSender( Collections.singletonList( server.getBaseUri() ), 2000, queueSize, registry );
+    }
+
+    private ESBulkReporter newReporter( MetricRegistry registry, int bulkSize, ESBulkSender sender )
+    {
+        MetricFilter appOnly = ( name, metric ) -> name.startsWith( "app." );
+        return new ESBulkReporter( registry, appOnly, TimeUnit.SECONDS, TimeUnit.SECONDS, "test", "metrics",
+                                   "yyyy-MM-dd", bulkSize, sender );
+    }
+}
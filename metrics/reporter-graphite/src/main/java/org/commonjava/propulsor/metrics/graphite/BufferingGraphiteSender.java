@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.graphite;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.graphite.GraphiteSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * {@link GraphiteSender} that decouples the reporter thread from the network. Metrics passed to {@link #send} go into
+ * a bounded buffer and return immediately; a background thread drains the buffer in batches into the delegate sender,
+ * reconnecting with exponential backoff when the delegate fails. When the buffer is full, the oldest metrics are
+ * dropped, so memory stays bounded however long Graphite is unavailable.
+ *
+ * The reporter closes its sender after every report. Here that only marks the end of the report; the delegate's
+ * connection is kept open across reports and only released by {@link #stop()}, which whoever starts the sender must
+ * call when the reporter stops.
+ *
+ * Self-metrics are registered under {@link #SELF_METRICS_PREFIX}: 'dropped' and 'failures' counters, a 'send' timer
+ * measuring each batch, and a 'buffered' gauge.
+ */
+public class BufferingGraphiteSender
+        implements GraphiteSender
+{
+    public static final String SELF_METRICS_PREFIX = "graphite.sender";
+
+    private static final long POLL_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final GraphiteSender delegate;
+
+    private final BlockingQueue<Point> buffer;
+
+    private final int batchSize;
+
+    private final long reconnectBackoffMillis;
+
+    private final long reconnectBackoffMaxMillis;
+
+    private final Counter dropped;
+
+    private final Counter failures;
+
+    private final Timer sendTimer;
+
+    private final Thread senderThread;
+
+    private volatile boolean running;
+
+    public BufferingGraphiteSender( GraphiteSender delegate, int bufferSize, int batchSize,
+                                    long reconnectBackoffMillis, long reconnectBackoffMaxMillis,
+                                    MetricRegistry registry )
+    {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>( bufferSize );
+        this.batchSize = batchSize;
+        this.reconnectBackoffMillis = reconnectBackoffMillis;
+        this.reconnectBackoffMaxMillis = reconnectBackoffMaxMillis;
+
+        this.dropped = registry.counter( name( SELF_METRICS_PREFIX, "dropped" ) );
+        this.failures = registry.counter( name( SELF_METRICS_PREFIX, "failures" ) );
+        this.sendTimer = registry.timer( name( SELF_METRICS_PREFIX, "send" ) );
+        registry.gauge( name( SELF_METRICS_PREFIX, "buffered" ), () -> buffer::size );
+
+        this.senderThread = new Thread( this::run, "graphite-sender" );
+        this.senderThread.setDaemon( true );
+    }
+
+    public synchronized void start()
+    {
+        if ( !running )
+        {
+            running = true;
+            senderThread.start();
+        }
+    }
+
+    /**
+     * Stop the background thread and close the delegate, waiting up to {@link #POLL_MILLIS} for both. Anything still
+     * buffered is discarded.
+     */
+    public synchronized void stop()
+    {
+        if ( !running )
+        {
+            return;
+        }
+
+        running = false;
+        senderThread.interrupt();
+        try
+        {
+            senderThread.join( POLL_MILLIS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void connect()
+    {
+        // connections are managed by the sender thread
+    }
+
+    @Override
+    public void send( String name, String value, long timestamp )
+    {
+        Point point = new Point( name, value, timestamp );
+        while ( !buffer.offer( point ) )
+        {
+            if ( buffer.poll() != null )
+            {
+                dropped.inc();
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        // batches are flushed by the sender thread as they fill, or as soon as the buffer runs dry
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return running;
+    }
+
+    @Override
+    public int getFailures()
+    {
+        return (int) failures.getCount();
+    }
+
+    @Override
+    public void close()
+    {
+        // called by the reporter after each report; see class javadoc
+    }
+
+    private void run()
+    {
+        List<Point> batch = new ArrayList<>( batchSize );
+        long backoff = reconnectBackoffMillis;
+        while ( running )
+        {
+            try
+            {
+                if ( batch.isEmpty() )
+                {
+                    Point first = buffer.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+                    if ( first == null )
+                    {
+                        continue;
+                    }
+
+                    batch.add( first );
+                    buffer.drainTo( batch, batchSize - 1 );
+                }
+
+                if ( sendBatch( batch ) )
+                {
+                    batch.clear();
+                    backoff = reconnectBackoffMillis;
+                }
+                else
+                {
+                    // the failed batch is retried after the backoff; if the buffer overflows in the meantime, the
+                    // oldest points still waiting there are dropped
+                    Thread.sleep( backoff );
+                    backoff = Math.min( backoff * 2, reconnectBackoffMaxMillis );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        closeDelegate();
+        dropped.inc( batch.size() + buffer.size() );
+        buffer.clear();
+    }
+
+    private boolean sendBatch( List<Point> batch )
+    {
+        Timer.Context context = sendTimer.time();
+        try
+        {
+            if ( !delegate.isConnected() )
+            {
+                delegate.connect();
+            }
+
+            for ( Point point : batch )
+            {
+                delegate.send( point.name, point.value, point.timestamp );
+            }
+            delegate.flush();
+            context.stop();
+            return true;
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            failures.inc();
+            logger.warn( "Failed to send {} metrics to Graphite: {}", batch.size(), e.getMessage() );
+            closeDelegate();
+            return false;
+        }
+    }
+
+    private void closeDelegate()
+    {
+        try
+        {
+            delegate.close();
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to close Graphite sender: " + e.getMessage(), e );
+        }
+    }
+
+    private static final class Point
+    {
+        private final String name;
+
+        private final String value;
+
+        private final long timestamp;
+
+        private Point( String name, String value, long timestamp )
+        {
+            this.name = name;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -16,12 +16,20 @@
 package org.commonjava.propulsor.metrics.graphite;
 
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
 import com.codahale.metrics.graphite.Graphite;
 import com.codahale.metrics.graphite.GraphiteReporter;
+import com.codahale.metrics.graphite.GraphiteSender;
+import com.codahale.metrics.graphite.GraphiteUDP;
+import com.codahale.metrics.graphite.PickledGraphite;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import org.commonjava.propulsor.metrics.ManagedMetricsException;
 import org.commonjava.propulsor.metrics.conf.MetricsConfig;
+import org.commonjava.propulsor.metrics.graphite.conf.GraphiteProtocol;
 import org.commonjava.propulsor.metrics.graphite.conf.GraphiteReporterConfig;
+import org.commonjava.propulsor.metrics.reporter.DeltaReporter;
+import org.commonjava.propulsor.metrics.reporter.ReportingScheduler;
+import org.commonjava.propulsor.metrics.reporter.TagFlatteningReporter;
 import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
 import org.commonjava.propulsor.metrics.spi.MetricsInitializer;
 import org.slf4j.Logger;
@@ -31,7 +39,6 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.TimeUnit;
 
 import static org.commonjava.propulsor.metrics.conf.MetricsConfig.DURATION_TIMEUNIT;
 import static org.commonjava.propulsor.metrics.conf.MetricsConfig.RATE_TIMEUNIT;
@@ -44,11 +51,15 @@ public class GraphiteReporterInitializer
 
     private final MetricsConfig metricsConfig;
 
+    private final ReportingScheduler reportingScheduler;
+
     @Inject
-    public GraphiteReporterInitializer( GraphiteReporterConfig config, MetricsConfig metricsConfig )
+    public GraphiteReporterInitializer( GraphiteReporterConfig config, MetricsConfig metricsConfig,
+                                        ReportingScheduler reportingScheduler )
     {
         this.config = config;
         this.metricsConfig = metricsConfig;
+        this.reportingScheduler = reportingScheduler;
     }
 
     @Override
@@ -60,13 +71,52 @@ public class GraphiteReporterInitializer
             Logger logger = LoggerFactory.getLogger( getClass() );
             logger.debug( "Setting up Graphite metrics reporter" );
 
-            GraphiteReporter.forRegistry( registry )
-                            .prefixedWith( metricsConfig.getInstancePrefix() )
-                            .convertDurationsTo( DURATION_TIMEUNIT )
-                            .convertRatesTo( RATE_TIMEUNIT )
-                            .filter( new EnabledMetricFilter( config ) )
-                            .build( new Graphite( new InetSocketAddress( config.getHost(), config.getPort() ) ) )
-                            .start( config.getReportSeconds(), TimeUnit.SECONDS );
+            EnabledMetricFilter filter = new EnabledMetricFilter( config );
+            GraphiteSender sender = createSender( registry );
+            GraphiteReporter reporter = GraphiteReporter.forRegistry( registry )
+                                                        .prefixedWith( metricsConfig.getInstancePrefix() )
+                                                        .convertDurationsTo( DURATION_TIMEUNIT )
+                                                        .convertRatesTo( RATE_TIMEUNIT )
+                                                        .filter( filter )
+                                                        .build( sender );
+
+            // Graphite paths are plain dotted names, so tagged metrics are flattened into the path. The reporter
+            // closes its sender after every report, so a buffering sender has to be stopped along with it.
+            ScheduledReporter flattening = new TagFlatteningReporter( registry, reporter )
+            {
+                @Override
+                public void stop()
+                {
+                    super.stop();
+                    if ( sender instanceof BufferingGraphiteSender )
+                    {
+                        ( (BufferingGraphiteSender) sender ).stop();
+                    }
+                }
+            };
+            reportingScheduler.schedule( DeltaReporter.wrapIfEnabled( flattening, config, registry, filter ), filter,
+                                         config.getReportSeconds() );
         }
     }
+
+    private GraphiteSender createSender( MetricRegistry registry )
+    {
+        InetSocketAddress address = new InetSocketAddress( config.getHost(), config.getPort() );
+        GraphiteProtocol protocol = config.getProtocol();
+        if ( !protocol.isBuffered() )
+        {
+            return new Graphite( address );
+        }
+
+        GraphiteSender delegate = protocol == GraphiteProtocol.UDP ?
+                        new GraphiteUDP( address ) :
+                        new PickledGraphite( address, config.getBatchSize() );
+
+        BufferingGraphiteSender sender =
+                        new BufferingGraphiteSender( delegate, config.getBufferSize(), config.getBatchSize(),
+                                                     config.getReconnectBackoffMillis(),
+                                                     config.getReconnectBackoffMaxMillis(), registry );
+        sender.start();
+        return sender;
+    }
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.graphite.conf;
+
+/**
+ * Wire protocols that can be selected for the Graphite reporter via the 'protocol' option of
+ * {@link GraphiteReporterConfig}.
+ */
+public enum GraphiteProtocol
+{
+    /**
+     * One line per metric over a socket written from the reporter thread. This is the default.
+     */
+    PLAINTEXT( "plaintext" ),
+
+    /**
+     * Pickled batches over TCP, sent from a background thread through a bounded buffer.
+     */
+    PICKLE( "pickle" ),
+
+    /**
+     * Plaintext datagrams, sent from a background thread through a bounded buffer.
+     */
+    UDP( "udp" );
+
+    private final String configName;
+
+    GraphiteProtocol( String configName )
+    {
+        this.configName = configName;
+    }
+
+    public String getConfigName()
+    {
+        return configName;
+    }
+
+    /**
+     * @return true if metrics are handed to a background sender rather than written by the reporter thread
+     */
+    public boolean isBuffered()
+    {
+        return this != PLAINTEXT;
+    }
+
+    public static GraphiteProtocol fromConfigName( String name )
+    {
+        for ( GraphiteProtocol protocol : values() )
+        {
+            if ( protocol.configName.equalsIgnoreCase( name ) || protocol.name().equalsIgnoreCase( name ) )
+            {
+                return protocol;
+            }
+        }
+
+        throw new IllegalArgumentException( "Unknown Graphite protocol: " + name );
+    }
+}
@@ -26,10 +26,28 @@ import javax.enterprise.context.ApplicationScoped;
 public class GraphiteReporterConfig
     extends ReporterConfigurator<GraphiteReporterConfig>
 {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final int DEFAULT_BUFFER_SIZE = 10000;
+
+    public static final long DEFAULT_RECONNECT_BACKOFF_MILLIS = 1000;
+
+    public static final long DEFAULT_RECONNECT_BACKOFF_MAX_MILLIS = 60000;
+
     private String host;
 
     private Integer port;
 
+    private GraphiteProtocol protocol = GraphiteProtocol.PLAINTEXT;
+
+    private Integer batchSize;
+
+    private Integer bufferSize;
+
+    private Long reconnectBackoffMillis;
+
+    private Long reconnectBackoffMaxMillis;
+
     public String getHost()
     {
         return host;
@@ -51,4 +69,71 @@ public class GraphiteReporterConfig
     {
         this.port = port;
     }
+
+    public GraphiteProtocol getProtocol()
+    {
+        return protocol;
+    }
+
+    public void setProtocol( GraphiteProtocol protocol )
+    {
+        this.protocol = protocol;
+    }
+
+    @ConfigName( "protocol" )
+    public void setProtocolName( String protocol )
+    {
+        this.protocol = GraphiteProtocol.fromConfigName( protocol );
+    }
+
+    /**
+     * @return the number of metrics pickled into one message, or sent between flushes for UDP
+     */
+    public int getBatchSize()
+    {
+        return batchSize == null ? DEFAULT_BATCH_SIZE : batchSize;
+    }
+
+    @ConfigName( "batch.size" )
+    public void setBatchSize( Integer batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the number of metrics a buffered sender holds while waiting on Graphite. Once full, the oldest are
+     * dropped.
+     */
+    public int getBufferSize()
+    {
+        return bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize;
+    }
+
+    @ConfigName( "buffer.size" )
+    public void setBufferSize( Integer bufferSize )
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getReconnectBackoffMillis()
+    {
+        return reconnectBackoffMillis == null ? DEFAULT_RECONNECT_BACKOFF_MILLIS : reconnectBackoffMillis;
+    }
+
+    @ConfigName( "reconnect.backoff.millis" )
+    public void setReconnectBackoffMillis( Long reconnectBackoffMillis )
+    {
+        this.reconnectBackoffMillis = reconnectBackoffMillis;
+    }
+
+    public long getReconnectBackoffMaxMillis()
+    {
+        return reconnectBackoffMaxMillis == null ? DEFAULT_RECONNECT_BACKOFF_MAX_MILLIS : reconnectBackoffMaxMillis;
+    }
+
+    @ConfigName( "reconnect.backoff.max.millis" )
+    public void setReconnectBackoffMaxMillis( Long reconnectBackoffMaxMillis )
+    {
+        this.reconnectBackoffMaxMillis = reconnectBackoffMaxMillis;
+    }
 }
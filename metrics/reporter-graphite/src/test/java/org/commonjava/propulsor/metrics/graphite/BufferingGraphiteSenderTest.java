@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.graphite;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.graphite.GraphiteSender;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.commonjava.propulsor.metrics.graphite.BufferingGraphiteSender.SELF_METRICS_PREFIX;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BufferingGraphiteSenderTest
+{
+    @Test
+    public void dropsOldestWhenBufferIsFull()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        StubSender stub = new StubSender( 0 );
+        BufferingGraphiteSender sender = new BufferingGraphiteSender( stub, 3, 10, 10, 100, registry );
+
+        for ( int i = 1; i <= 5; i++ )
+        {
+            sender.send( "m" + i, "1", i );
+        }
+        assertThat( registry.counter( name( SELF_METRICS_PREFIX, "dropped" ) ).getCount(), equalTo( 2L ) );
+
+        sender.start();
+        try
+        {
+            assertThat( stub.awaitSent( 3 ), equalTo( Arrays.asList( "m3", "m4", "m5" ) ) );
+        }
+        finally
+        {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void retriesBatchAfterConnectFailure()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        StubSender stub = new StubSender( 2 );
+        BufferingGraphiteSender sender = new BufferingGraphiteSender( stub, 100, 10, 10, 100, registry );
+        sender.start();
+        try
+        {
+            sender.send( "a", "1", 1 );
+            sender.send( "b", "2", 1 );
+            sender.flush();
+            sender.close();
+
+            assertThat( stub.awaitSent( 2 ), equalTo( Arrays.asList( "a", "b" ) ) );
+            assertThat( sender.getFailures(), equalTo( 2 ) );
+
+            // the batch is timed once the delegate has flushed, which is also what wakes awaitSent()
+            Timer sendTimer = registry.timer( name( SELF_METRICS_PREFIX, "send" ) );
+            long deadline = System.currentTimeMillis() + 5000;
+            while ( sendTimer.getCount() == 0 && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 10 );
+            }
+            assertThat( sendTimer.getCount(), equalTo( 1L ) );
+        }
+        finally
+        {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void stopClosesDelegate()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        StubSender stub = new StubSender( 0 );
+        BufferingGraphiteSender sender = new BufferingGraphiteSender( stub, 100, 10, 10, 100, registry );
+        sender.start();
+
+        sender.send( "a", "1", 1 );
+        stub.awaitSent( 1 );
+        assertThat( stub.isConnected(), equalTo( true ) );
+
+        sender.stop();
+        assertThat( stub.isConnected(), equalTo( false ) );
+        assertThat( sender.isConnected(), equalTo( false ) );
+    }
+
+    private static final class StubSender
+            implements GraphiteSender
+    {
+        private int failingConnects;
+
+        private boolean connected;
+
+        private final List<String> sent = new ArrayList<>();
+
+        private StubSender( int failingConnects )
+        {
+            this.failingConnects = failingConnects;
+        }
+
+        @Override
+        public synchronized void connect()
+                throws IOException
+        {
+            if ( failingConnects > 0 )
+            {
+                failingConnects--;
+                throw new IOException( "Connection refused" );
+            }
+            connected = true;
+        }
+
+        @Override
+        public synchronized void send( String name, String value, long timestamp )
+        {
+            sent.add( name );
+        }
+
+        @Override
+        public synchronized void flush()
+        {
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean isConnected()
+        {
+            return connected;
+        }
+
+        @Override
+        public int getFailures()
+        {
+            return 0;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            connected = false;
+        }
+
+        private synchronized List<String> awaitSent( int count )
+                throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+            while ( sent.size() < count && System.currentTimeMillis() < deadline )
+            {
+                wait( 100 );
+            }
+            return new ArrayList<>( sent );
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.prometheus;
+
+import com.codahale.metrics.MetricRegistry;
+import io.undertow.servlet.api.DeploymentInfo;
+import org.commonjava.propulsor.deploy.undertow.UndertowDeploymentProvider;
+import org.commonjava.propulsor.metrics.prometheus.conf.PrometheusReporterConfig;
+import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Adds the Prometheus scrape endpoint to the Undertow deployment, as an outer handler chain wrapper so scrapes are
+ * answered before the servlet machinery gets involved.
+ */
+@ApplicationScoped
+public class PrometheusDeploymentProvider
+        implements UndertowDeploymentProvider
+{
+    @Inject
+    private PrometheusReporterConfig config;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    public PrometheusDeploymentProvider()
+    {
+    }
+
+    public PrometheusDeploymentProvider( PrometheusReporterConfig config, MetricRegistry metricRegistry )
+    {
+        this.config = config;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public DeploymentInfo getDeploymentInfo()
+    {
+        DeploymentInfo di = new DeploymentInfo();
+        if ( config.isEnabled() )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.debug( "Setting up Prometheus scrape endpoint at: {}", config.getPath() );
+
+            PrometheusTextWriter textWriter =
+                            new PrometheusTextWriter( metricRegistry, new EnabledMetricFilter( config ) );
+
+            di.addOuterHandlerChainWrapper( next -> new PrometheusScrapeHandler( config.getPath(), textWriter, next ) );
+        }
+
+        return di;
+    }
+}
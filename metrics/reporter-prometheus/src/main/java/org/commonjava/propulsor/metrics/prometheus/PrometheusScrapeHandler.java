@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.prometheus;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serves scrapes of a single path and passes every other request on to the next handler. The response is streamed
+ * through the exchange's output stream, which fills Undertow's pooled buffers and flushes them as they fill up.
+ */
+public class PrometheusScrapeHandler
+        implements HttpHandler
+{
+    private final String path;
+
+    private final PrometheusTextWriter textWriter;
+
+    private final HttpHandler next;
+
+    public PrometheusScrapeHandler( String path, PrometheusTextWriter textWriter, HttpHandler next )
+    {
+        this.path = path;
+        this.textWriter = textWriter;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange )
+            throws Exception
+    {
+        if ( !path.equals( exchange.getRelativePath() ) )
+        {
+            next.handleRequest( exchange );
+            return;
+        }
+
+        if ( exchange.isInIoThread() )
+        {
+            // rendering calls gauges and writes with blocking IO, neither of which belongs on the IO thread
+            exchange.dispatch( this );
+            return;
+        }
+
+        if ( !Methods.GET.equals( exchange.getRequestMethod() ) && !Methods.HEAD.equals(
+                        exchange.getRequestMethod() ) )
+        {
+            exchange.setStatusCode( StatusCodes.METHOD_NOT_ALLOWED );
+            exchange.getResponseHeaders().put( Headers.ALLOW, "GET, HEAD" );
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, PrometheusTextWriter.CONTENT_TYPE );
+        if ( Methods.HEAD.equals( exchange.getRequestMethod() ) )
+        {
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.startBlocking();
+        try (Writer out = new OutputStreamWriter( exchange.getOutputStream(), UTF_8 ))
+        {
+            textWriter.write( out );
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.prometheus;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a {@link MetricRegistry} in the Prometheus text exposition format (version 0.0.4), writing each sample
+ * straight to the given {@link Writer} as it goes. Nothing is accumulated per scrape beyond the number formatting, so
+ * the cost of a scrape stays proportional to the registry, not to the size of the response.
+ *
+ * Dropwizard types are mapped as follows:
+ * <ul>
+ *     <li>Gauges with numeric or boolean values become gauges; other gauges are skipped.</li>
+ *     <li>Counters become gauges, since they can be decremented.</li>
+ *     <li>Meters become counters with a <code>_total</code> suffix.</li>
+ *     <li>Histograms and timers become summaries with quantiles and a <code>_count</code>. Timer values are in
+ *     seconds.</li>
+ * </ul>
+ *
+ * Metric names are sanitized by replacing every character Prometheus doesn't allow with '_'. Tagged metrics (see
+ * {@link MetricKey}) become labels on their untagged name. Prometheus wants all series of one name together, under a
+ * single TYPE line, so when there are tagged metrics the registry is sorted by untagged name first.
+ */
+public final class PrometheusTextWriter
+{
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.98, 0.99, 0.999 };
+
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.75", "0.95", "0.98", "0.99", "0.999" };
+
+    private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos( 1 );
+
+    private static final Comparator<String> BY_UNTAGGED_NAME =
+                    Comparator.comparing( PrometheusTextWriter::untagged ).thenComparing( Comparator.naturalOrder() );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final MetricRegistry registry;
+
+    private final MetricFilter filter;
+
+    public PrometheusTextWriter( MetricRegistry registry, MetricFilter filter )
+    {
+        this.registry = registry;
+        this.filter = filter;
+    }
+
+    public void write( Writer out )
+            throws IOException
+    {
+        // getMetrics() is a read-only view of the registry, so this doesn't copy or sort it unless there are tags
+        Map<String, Metric> metrics = registry.getMetrics();
+        if ( hasTagged( metrics ) )
+        {
+            Map<String, Metric> sorted = new TreeMap<>( BY_UNTAGGED_NAME );
+            sorted.putAll( metrics );
+            metrics = sorted;
+        }
+
+        String lastName = null;
+        for ( Map.Entry<String, Metric> entry : metrics.entrySet() )
+        {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            if ( !filter.matches( name, metric ) )
+            {
+                continue;
+            }
+
+            MetricKey key = null;
+            if ( MetricKey.isTagged( name ) )
+            {
+                key = MetricKey.parse( name );
+                name = key.getName();
+            }
+
+            // names that only differ in characters Prometheus doesn't allow are the same series to it
+            boolean typed = lastName != null && sameSanitized( name, lastName );
+            boolean written = true;
+
+            if ( metric instanceof Gauge )
+            {
+                written = writeGauge( out, name, key, typed, (Gauge<?>) metric );
+            }
+            else if ( metric instanceof Counter )
+            {
+                writeType( out, name, null, typed, "gauge" );
+                writeSample( out, name, key, null, ( (Counter) metric ).getCount() );
+            }
+            else if ( metric instanceof Histogram )
+            {
+                Histogram histogram = (Histogram) metric;
+                writeSummary( out, name, key, typed, histogram.getSnapshot(), histogram.getCount(), 1 );
+            }
+            else if ( metric instanceof Timer )
+            {
+                Timer timer = (Timer) metric;
+                writeSummary( out, name, key, typed, timer.getSnapshot(), timer.getCount(), SECONDS_PER_NANO );
+            }
+            else if ( metric instanceof Meter )
+            {
+                writeType( out, name, "_total", typed, "counter" );
+                writeSample( out, name, key, "_total", ( (Meter) metric ).getCount() );
+            }
+            else
+            {
+                written = false;
+            }
+
+            if ( written )
+            {
+                lastName = name;
+            }
+        }
+
+        out.flush();
+    }
+
+    private static boolean hasTagged( Map<String, Metric> metrics )
+    {
+        for ( String name : metrics.keySet() )
+        {
+            if ( MetricKey.isTagged( name ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String untagged( String name )
+    {
+        int tags = name.indexOf( MetricKey.TAG_SEPARATOR );
+        return tags < 0 ? name : name.substring( 0, tags );
+    }
+
+    /**
+     * @return false if the gauge was skipped, because its value isn't a number or can't be read
+     */
+    private boolean writeGauge( Writer out, String name, MetricKey key, boolean typed, Gauge<?> gauge )
+            throws IOException
+    {
+        Object value;
+        try
+        {
+            value = gauge.getValue();
+        }
+        catch ( RuntimeException e )
+        {
+            logger.debug( "Skipping gauge: {}. Reading its value failed: {}", name, e.getMessage() );
+            return false;
+        }
+
+        double number;
+        if ( value instanceof Number )
+        {
+            number = ( (Number) value ).doubleValue();
+        }
+        else if ( value instanceof Boolean )
+        {
+            number = (Boolean) value ? 1 : 0;
+        }
+        else
+        {
+            return false;
+        }
+
+        writeType( out, name, null, typed, "gauge" );
+        writeName( out, name, null );
+        writeLabels( out, key, null, null );
+        out.write( ' ' );
+        writeDouble( out, number );
+        out.write( '\n' );
+        return true;
+    }
+
+    private void writeSummary( Writer out, String name, MetricKey key, boolean typed, Snapshot snapshot, long count,
+                               double factor )
+            throws IOException
+    {
+        writeType( out, name, null, typed, "summary" );
+        for ( int i = 0; i < QUANTILES.length; i++ )
+        {
+            writeName( out, name, null );
+            writeLabels( out, key, "quantile", QUANTILE_LABELS[i] );
+            out.write( ' ' );
+            writeDouble( out, snapshot.getValue( QUANTILES[i] ) * factor );
+            out.write( '\n' );
+        }
+
+        writeSample( out, name, key, "_count", count );
+    }
+
+    /**
+     * @param typed true if the TYPE line for this name was already written, for an earlier tag combination
+     */
+    private void writeType( Writer out, String name, String suffix, boolean typed, String type )
+            throws IOException
+    {
+        if ( typed )
+        {
+            return;
+        }
+
+        out.write( "# TYPE " );
+        writeName( out, name, suffix );
+        out.write( ' ' );
+        out.write( type );
+        out.write( '\n' );
+    }
+
+    private void writeSample( Writer out, String name, MetricKey key, String suffix, long value )
+            throws IOException
+    {
+        writeName( out, name, suffix );
+        writeLabels( out, key, null, null );
+        out.write( ' ' );
+        out.write( Long.toString( value ) );
+        out.write( '\n' );
+    }
+
+    /**
+     * Write the sanitized form of the name one character at a time, rather than building a sanitized copy.
+     */
+    static void writeName( Writer out, String name, String suffix )
+            throws IOException
+    {
+        for ( int i = 0; i < name.length(); i++ )
+        {
+            out.write( sanitize( name.charAt( i ), i ) );
+        }
+
+        if ( suffix != null )
+        {
+            out.write( suffix );
+        }
+    }
+
+    /**
+     * @return whether the two names have the same sanitized form, compared without building it
+     */
+    static boolean sameSanitized( String name, String other )
+    {
+        if ( name.length() != other.length() )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < name.length(); i++ )
+        {
+            if ( sanitize( name.charAt( i ), i ) != sanitize( other.charAt( i ), i ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char sanitize( char c, int index )
+    {
+        boolean valid = ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || c == '_' || c == ':' || (
+                        index > 0 && c >= '0' && c <= '9' );
+
+        return valid ? c : '_';
+    }
+
+    /**
+     * Write the tags of the key, plus the extra label if given, as {k="v",...}. Writes nothing if there are neither.
+     */
+    private static void writeLabels( Writer out, MetricKey key, String extraLabel, String extraValue )
+            throws IOException
+    {
+        int tags = key == null ? 0 : key.getTagCount();
+        if ( tags == 0 && extraLabel == null )
+        {
+            return;
+        }
+
+        out.write( '{' );
+        for ( int i = 0; i < tags; i++ )
+        {
+            if ( i > 0 )
+            {
+                out.write( ',' );
+            }
+            writeLabel( out, key.getTagKey( i ), key.getTagValue( i ) );
+        }
+
+        if ( extraLabel != null )
+        {
+            if ( tags > 0 )
+            {
+                out.write( ',' );
+            }
+            writeLabel( out, extraLabel, extraValue );
+        }
+
+        out.write( '}' );
+    }
+
+    private static void writeLabel( Writer out, String label, String value )
+            throws IOException
+    {
+        for ( int i = 0; i < label.length(); i++ )
+        {
+            char c = label.charAt( i );
+            boolean valid = ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || c == '_' || (
+                            i > 0 && c >= '0' && c <= '9' );
+
+            out.write( valid ? c : '_' );
+        }
+
+        out.write( "=\"" );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '\\' || c == '"' )
+            {
+                out.write( '\\' );
+                out.write( c );
+            }
+            else if ( c == '\n' )
+            {
+                out.write( "\\n" );
+            }
+            else
+            {
+                out.write( c );
+            }
+        }
+        out.write( '"' );
+    }
+
+    private static void writeDouble( Writer out, double value )
+            throws IOException
+    {
+        if ( Double.isNaN( value ) )
+        {
+            out.write( "NaN" );
+        }
+        else if ( Double.isInfinite( value ) )
+        {
+            out.write( value > 0 ? "+Inf" : "-Inf" );
+        }
+        else
+        {
+            out.write( Double.toString( value ) );
+        }
+    }
+}
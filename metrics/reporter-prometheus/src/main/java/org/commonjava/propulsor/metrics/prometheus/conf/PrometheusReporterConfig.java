@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.prometheus.conf;
+
+import org.commonjava.propulsor.config.annotation.ConfigName;
+import org.commonjava.propulsor.config.annotation.SectionName;
+import org.commonjava.propulsor.metrics.spi.ReporterConfigurator;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Configuration for the Prometheus scrape endpoint. Unlike the push reporters, the report period is not used; the
+ * registry is rendered whenever Prometheus scrapes {@link #getPath()}.
+ */
+@ApplicationScoped
+@SectionName( "metrics.prometheus" )
+public class PrometheusReporterConfig
+    extends ReporterConfigurator<PrometheusReporterConfig>
+{
+    public static final String DEFAULT_PATH = "/metrics/prometheus";
+
+    private String path;
+
+    /**
+     * @return the scrape path, relative to the deployment's context path
+     */
+    public String getPath()
+    {
+        return path == null ? DEFAULT_PATH : path;
+    }
+
+    @ConfigName( "path" )
+    public void setPath( String path )
+    {
+        this.path = path;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014-2022 Red Hat, Inc. (http://github.com/Commonjava/commonjava)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.propulsor.metrics.prometheus;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import io.undertow.Undertow;
+import io.undertow.util.StatusCodes;
+import org.apache.commons.io.IOUtils;
+import org.commonjava.propulsor.metrics.MetricKey;
+import org.commonjava.propulsor.metrics.prometheus.conf.PrometheusReporterConfig;
+import org.commonjava.propulsor.metrics.spi.EnabledMetricFilter;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class PrometheusScrapeHandlerTest
+{
+    @Test
+    public void rendersEachMetricType()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.rest.counter" ).inc( 3 );
+        registry.meter( "app.rest.meter" ).mark( 2 );
+        registry.histogram( "app.rest-histogram" ).update( 10 );
+        registry.timer( "app.rest.timer" ).update( 2, TimeUnit.SECONDS );
+        registry.register( "app.up", (Gauge<Boolean>) () -> true );
+        registry.register( "app.name", (Gauge<String>) () -> "propulsor" );
+
+        StringWriter out = new StringWriter();
+        new PrometheusTextWriter( registry, MetricFilter.ALL ).write( out );
+        String text = out.toString();
+
+        assertThat( text, containsString( "# TYPE app_rest_counter gauge\napp_rest_counter 3\n" ) );
+        assertThat( text, containsString( "# TYPE app_rest_meter_total counter\napp_rest_meter_total 2\n" ) );
+        assertThat( text, containsString( "app_rest_histogram{quantile=\"0.5\"} 10.0\n" ) );
+        assertThat( text, containsString( "app_rest_histogram_count 1\n" ) );
+        assertThat( text, containsString( "app_rest_timer{quantile=\"0.99\"} 2.0\n" ) );
+        assertThat( text, containsString( "app_up 1.0\n" ) );
+        assertThat( text, not( containsString( "app_name" ) ) );
+    }
+
+    @Test
+    public void rendersTagsAsLabelsUnderOneType()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( MetricKey.of( "app.requests", "node", "b" ).getEncoded() ).inc( 2 );
+        registry.counter( "app.requests.other" ).inc();
+        registry.counter( MetricKey.of( "app.requests", "node", "a", "path", "/x\"y" ).getEncoded() ).inc();
+        registry.counter( "app.requests" ).inc( 5 );
+        registry.timer( MetricKey.of( "app.latency", "node", "a" ).getEncoded() ).update( 1, TimeUnit.SECONDS );
+
+        StringWriter out = new StringWriter();
+        new PrometheusTextWriter( registry, MetricFilter.ALL ).write( out );
+        String text = out.toString();
+
+        assertThat( text, containsString( "# TYPE app_requests gauge\napp_requests 5\n"
+                                                  + "app_requests{node=\"a\",path=\"/x\\\"y\"} 1\n"
+                                                  + "app_requests{node=\"b\"} 2\n" ) );
+        assertThat( text.indexOf( "# TYPE app_requests gauge" ),
+                    equalTo( text.lastIndexOf( "# TYPE app_requests gauge" ) ) );
+        assertThat( text, containsString( "app_latency{node=\"a\",quantile=\"0.5\"} 1.0\n" ) );
+        assertThat( text, containsString( "app_latency_count{node=\"a\"} 1\n" ) );
+    }
+
+    @Test
+    public void namesThatSanitizeAlikeGetOneType()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.hits" ).inc();
+        registry.counter( "app_hits" ).inc();
+
+        StringWriter out = new StringWriter();
+        new PrometheusTextWriter( registry, MetricFilter.ALL ).write( out );
+        String text = out.toString();
+
+        assertThat( text.indexOf( "# TYPE app_hits gauge" ), not( equalTo( -1 ) ) );
+        assertThat( text.indexOf( "# TYPE app_hits gauge" ), equalTo( text.lastIndexOf( "# TYPE app_hits" ) ) );
+    }
+
+    @Test
+    public void skippedGaugeDoesNotTakeTheType()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register( "app.status", (Gauge<String>) () -> "up" );
+        registry.counter( MetricKey.of( "app.status", "node", "a" ).getEncoded() ).inc();
+
+        StringWriter out = new StringWriter();
+        new PrometheusTextWriter( registry, MetricFilter.ALL ).write( out );
+
+        assertThat( out.toString(), equalTo( "# TYPE app_status gauge\napp_status{node=\"a\"} 1\n" ) );
+    }
+
+    @Test
+    public void servesScrapePathAndRespectsEnabledMetrics()
+            throws Exception
+    {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter( "app.rest.counter" ).inc();
+        registry.counter( "app.storage.counter" ).inc();
+
+        PrometheusReporterConfig config = new PrometheusReporterConfig();
+        config.setEnabled( true );
+        config.set( "app.storage", false );
+
+        PrometheusTextWriter textWriter =
+                        new PrometheusTextWriter( registry, new EnabledMetricFilter( config ) );
+
+        Undertow server = Undertow.builder()
+                                  .addHttpListener( 0, "127.0.0.1" )
+                                  .setHandler( new PrometheusScrapeHandler( config.getPath(), textWriter,
+                                                                            exchange -> exchange.setStatusCode(
+                                                                                            StatusCodes.NOT_FOUND ) ) )
+                                  .build();
+        server.start();
+        try
+        {
+            InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get( 0 ).getAddress();
+            String base = "http://127.0.0.1:" + address.getPort();
+
+            HttpURLConnection scrape = (HttpURLConnection) new URL( base + config.getPath() ).openConnection();
+            assertThat( scrape.getResponseCode(), equalTo( StatusCodes.OK ) );
+            assertThat( scrape.getContentType(), equalTo( PrometheusTextWriter.CONTENT_TYPE ) );
+
+            String body;
+            try (InputStream in = scrape.getInputStream())
+            {
+                body = IOUtils.toString( in, UTF_8 );
+            }
+
+            assertThat( body, containsString( "app_rest_counter 1\n" ) );
+            assertThat( body, not( containsString( "app_storage_counter" ) ) );
+
+            HttpURLConnection other = (HttpURLConnection) new URL( base + "/api/things" ).openConnection();
+            assertThat( other.getResponseCode(), equalTo( StatusCodes.NOT_FOUND ) );
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+}
@@ -15,11 +15,13 @@
  */
 package org.commonjava.propulsor.deploy.undertow;
 
+import io.undertow.Handlers;
 import io.undertow.Undertow;
 import io.undertow.UndertowOptions;
 import io.undertow.predicate.Predicate;
 import io.undertow.predicate.Predicates;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.GracefulShutdownHandler;
 import io.undertow.server.handlers.encoding.ContentEncodingRepository;
 import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
 import io.undertow.server.handlers.encoding.EncodingHandler;
@@ -28,7 +30,9 @@ import io.undertow.servlet.Servlets;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.DeploymentManager;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -39,6 +43,7 @@ import javax.inject.Inject;
 import javax.servlet.ServletException;
 
 import org.commonjava.propulsor.boot.BootOptions;
+import org.commonjava.propulsor.boot.BootTimeline;
 import org.commonjava.propulsor.boot.PortFinder;
 import org.commonjava.propulsor.deploy.DeployException;
 import org.commonjava.propulsor.deploy.Deployer;
@@ -50,6 +55,9 @@ import org.slf4j.LoggerFactory;
 public class UndertowDeployer
     implements Deployer
 {
+    /** Category of the {@link BootTimeline} steps recorded while deploying. */
+    public static final String TIMELINE_CATEGORY = "deploy";
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
@@ -67,6 +75,8 @@ public class UndertowDeployer
 
     private Undertow server;
 
+    private volatile GracefulShutdownHandler gracefulShutdown;
+
     protected UndertowDeployer()
     {
     }
@@ -120,7 +130,10 @@ public class UndertowDeployer
 
         final DeploymentManager dm = Servlets.defaultContainer()
                                              .addDeployment( di );
-        dm.deploy();
+        try (BootTimeline.Step step = BootTimeline.get().start( TIMELINE_CATEGORY, "servlets.deploy" ))
+        {
+            dm.deploy();
+        }
 
         ThreadLocal<Integer> usingPort = new ThreadLocal<>();
         try
@@ -158,7 +171,10 @@ public class UndertowDeployer
                 usingPort.set( port );
                 server = getUndertowServer( dm, port, bootOptions );
             }
-            server.start();
+            try (BootTimeline.Step step = BootTimeline.get().start( TIMELINE_CATEGORY, "server" ))
+            {
+                server.start();
+            }
             System.out.printf( "%s listening on %s:%s\n\n", bootOptions.getApplicationName(), bootOptions.getBind(), bootOptions.getPort() );
 
         }
@@ -172,9 +188,10 @@ public class UndertowDeployer
                     throws ServletException
     {
         logger.info( "Build Undertow with HTTP/2 enabled" );
+        gracefulShutdown = Handlers.gracefulShutdown( getHandler( dm ) );
         return Undertow.builder()
                        .setServerOption( UndertowOptions.ENABLE_HTTP2, true )
-                       .setHandler( getHandler( dm ) )
+                       .setHandler( gracefulShutdown )
                        .addHttpListener( foundPort, bootOptions.getBind() )
                        .build();
     }
@@ -182,13 +199,45 @@ public class UndertowDeployer
     private HttpHandler getHandler( final DeploymentManager dm )
             throws ServletException
     {
-        HttpHandler base = dm.start();
+        HttpHandler handler;
+        try (BootTimeline.Step step = BootTimeline.get().start( TIMELINE_CATEGORY, "servlets.start" ))
+        {
+            handler = dm.start();
+        }
 
-        if ( !handlerChain.isUnsatisfied() )
+        List<UndertowHandlerChain> wrappers = new ArrayList<>();
+        boolean replaced = false;
+        if ( handlerChain != null )
         {
-            return handlerChain.get().getHandler( base );
+            for ( final UndertowHandlerChain chain : handlerChain )
+            {
+                if ( chain.wrapsDefaults() )
+                {
+                    wrappers.add( chain );
+                }
+                else
+                {
+                    handler = chain.getHandler( handler );
+                    replaced = true;
+                }
+            }
         }
 
+        if ( !replaced )
+        {
+            handler = getEncodingHandler( handler );
+        }
+
+        for ( final UndertowHandlerChain wrapper : wrappers )
+        {
+            handler = wrapper.getHandler( handler );
+        }
+
+        return handler;
+    }
+
+    private HttpHandler getEncodingHandler( final HttpHandler base )
+    {
         // FROM: https://stackoverflow.com/questions/28295752/compressing-undertow-server-responses#28329810
         final Predicate sizePredicate =
                 Predicates.parse( "max-content-size[" + Long.toString( 5 * 1024 ) + "]" );
@@ -204,6 +253,36 @@ public class UndertowDeployer
         return eh;
     }
 
+    /**
+     * Have the {@link GracefulShutdownHandler} in front of everything turn away new requests with a 503, then wait
+     * for the ones in flight.
+     */
+    @Override
+    public boolean drain( final long timeoutMillis )
+    {
+        final GracefulShutdownHandler handler = gracefulShutdown;
+        if ( server == null || handler == null )
+        {
+            return true;
+        }
+
+        handler.shutdown();
+        try
+        {
+            boolean drained = handler.awaitShutdown( timeoutMillis );
+            if ( !drained )
+            {
+                logger.warn( "Requests still in flight after {}ms; stopping anyway", timeoutMillis );
+            }
+            return drained;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     @Override
     public void stop()
     {
@@ -22,8 +22,21 @@ import io.undertow.server.HttpHandler;
  * {@link io.undertow.servlet.api.DeploymentManager} instance (created from the
  * {@link io.undertow.servlet.api.DeploymentInfo}, which in turn is constructed from
  * {@link UndertowDeploymentProvider} instances provided by your application.
+ *
+ * By default a chain replaces the default handler wrapping (response compression). Chains that only put handlers in
+ * front of the deployment return true from {@link #wrapsDefaults()}; they are applied last, around the defaults and
+ * any replacing chain.
  */
 public interface UndertowHandlerChain
 {
     HttpHandler getHandler( HttpHandler baseHandler );
+
+    /**
+     * @return true if this chain goes in front of the default handlers (and any chain that replaces them), rather than
+     * replacing them itself
+     */
+    default boolean wrapsDefaults()
+    {
+        return false;
+    }
 }
@@ -36,6 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.commonjava.propulsor.boot.BootTimeline;
+import org.commonjava.propulsor.deploy.undertow.UndertowDeployer;
 import org.commonjava.propulsor.deploy.undertow.UndertowDeploymentProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,12 +56,26 @@ public final class DeploymentInfoUtils
         for ( final UndertowDeploymentProvider fromProvider : fromProviders )
         {
             logger.debug( "Merging info from deployment provider: {}", fromProvider );
-            final DeploymentInfo from = fromProvider.getDeploymentInfo();
-            logger.debug( "Got: {} from: {}", from, fromProvider );
-            merge( into, from );
+            final String step = "provider:" + getProviderName( fromProvider );
+            try (BootTimeline.Step timed = BootTimeline.get().start( UndertowDeployer.TIMELINE_CATEGORY, step ))
+            {
+                final DeploymentInfo from = fromProvider.getDeploymentInfo();
+                logger.debug( "Got: {} from: {}", from, fromProvider );
+                merge( into, from );
+            }
         }
     }
 
+    /**
+     * @return the simple class name of the provider, without the suffix of any CDI proxy class
+     */
+    private static String getProviderName( final UndertowDeploymentProvider provider )
+    {
+        final String name = provider.getClass().getSimpleName();
+        final int proxy = name.indexOf( '$' );
+        return proxy > 0 ? name.substring( 0, proxy ) : name;
+    }
+
     public static void merge( final DeploymentInfo into, final Set<DeploymentInfo> froms )
     {
         for ( final DeploymentInfo from : froms )